@@ -56,6 +56,10 @@ public class Parameters {
          * round trip algorithm (not yet for CH)
          */
         public static final String ROUND_TRIP = "round_trip";
+        /**
+         * several round trips of a target distance from one search tree (not for CH)
+         */
+        public static final String LOOP = "loop";
 
         /**
          * All public properties for alternative routing.
@@ -85,6 +89,19 @@ public class Parameters {
             public static final String POINTS = ROUND_TRIP + ".points";
             public static final String INIT_MAX_RETRIES = ROUTING_INIT_PREFIX + ROUND_TRIP + ".max_retries";
         }
+
+        /**
+         * All public properties for the loop calculation.
+         */
+        public static final class Loop {
+            public static final String DISTANCE = LOOP + ".distance";
+            public static final String MAX_PATHS = LOOP + ".max_paths";
+            public static final String CANDIDATES = LOOP + ".candidates";
+            public static final String MAX_SHARE = LOOP + ".max_share_factor";
+            public static final String INIT_THREADS = ROUTING_INIT_PREFIX + LOOP + ".threads";
+            public static final String INIT_MAX_DISTANCE = ROUTING_INIT_PREFIX + LOOP + ".max_distance";
+            public static final String INIT_MAX_CANDIDATES = ROUTING_INIT_PREFIX + LOOP + ".max_candidates";
+        }
     }
 
     /**
@@ -94,6 +111,7 @@ public class Parameters {
         public static final String EDGE_BASED = "edge_based";
         public static final String MAX_VISITED_NODES = "max_visited_nodes";
         public static final String INIT_MAX_VISITED_NODES = ROUTING_INIT_PREFIX + "max_visited_nodes";
+        public static final String INIT_MAX_MATRIX_POINTS = ROUTING_INIT_PREFIX + "max_matrix_points";
         /**
          * if true the response will contain turn instructions
          */
@@ -17,6 +17,7 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.coll.GHIntArrayList;
 import com.graphhopper.json.geo.JsonFeature;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.reader.dem.*;
@@ -26,6 +27,7 @@ import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.lm.LMAlgoFactoryDecorator;
 import com.graphhopper.routing.subnetwork.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.template.AlternativeRoutingTemplate;
+import com.graphhopper.routing.template.LoopRoutingTemplate;
 import com.graphhopper.routing.template.RoundTripRoutingTemplate;
 import com.graphhopper.routing.template.RoutingTemplate;
 import com.graphhopper.routing.template.ViaRoutingTemplate;
@@ -37,12 +39,15 @@ import com.graphhopper.storage.change.ChangeGraphResponse;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.index.SnapBatch;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
 import com.graphhopper.util.details.PathDetailsBuilderFactory;
 import com.graphhopper.util.exceptions.PointDistanceExceededException;
+import com.graphhopper.util.exceptions.PointNotFoundException;
 import com.graphhopper.util.exceptions.PointOutOfBoundsException;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
@@ -53,6 +58,10 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -67,7 +76,9 @@ import static com.graphhopper.util.Parameters.Algorithms.*;
  * @see GraphHopperAPI
  */
 public class GraphHopper implements GraphHopperAPI {
-
+    // stored in the properties of a sorted graph, so that it is not sorted again on load
+    private static final String SORTED_PROPERTY = "graph.sorted";
+    private static final String SORTED_HILBERT = "hilbert";
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final String fileLockName = "gh.lock";
@@ -83,6 +94,7 @@ public class GraphHopper implements GraphHopperAPI {
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
+    private boolean compactGeometry = false;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
     private boolean allowWrites = true;
@@ -91,15 +103,27 @@ public class GraphHopper implements GraphHopperAPI {
     private boolean smoothElevation = false;
     // for routing
     private int maxRoundTripRetries = 3;
+    private int loopThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService loopThreadPool;
+    private double loopMaxDistance = 100_000;
+    private int loopMaxCandidates = 64;
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int maxMatrixPoints = 100;
 
     private int nonChMaxWaypointDistance = Integer.MAX_VALUE;
     // for index
     private LocationIndex locationIndex;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int snapCacheSize = 0;
+    private double snapCachePrecision = 1e-5;
+    // for running scores, volatile as the scores can be replaced while requests are served
+    private volatile EdgeScoreStorage edgeScoreStorage;
+    // for the OSM way ID of every edge
+    private boolean osmWayIds = false;
+    private DAType osmWayIdsDAType;
     // for prepare
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
@@ -135,6 +159,8 @@ public class GraphHopper implements GraphHopperAPI {
      */
     protected GraphHopper loadGraph(GraphHopperStorage g) {
         this.ghStorage = g;
+        if (encodingManager != null && encodingManager.supports(FlagEncoderFactory.RUNNING))
+            edgeScoreStorage = new EdgeScoreStorage(g.getDirectory()).create(g.getAllEdges().length());
         fullyLoaded = true;
         initLocationIndex();
         return this;
@@ -262,6 +288,18 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Puts a {@link SnapCache} in front of the location index, which keeps the specified number of
+     * results. Points closer than the precision in degrees share a result. A size of 0 disables the
+     * cache.
+     */
+    public GraphHopper setSnapCache(int size, double precision) {
+        ensureNotLoaded();
+        snapCacheSize = size;
+        snapCachePrecision = precision;
+        return this;
+    }
+
     public GraphHopper setMinNetworkSize(int minNetworkSize, int minOneWayNetworkSize) {
         this.minNetworkSize = minNetworkSize;
         this.minOneWayNetworkSize = minOneWayNetworkSize;
@@ -303,9 +341,10 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     /**
-     * Not yet stable enough to offer it for everyone
+     * Keeps the graph in one contiguous region of native memory instead of the heap, which avoids
+     * the segment lookup of every access. The graph is loaded from and flushed to disc.
      */
-    private GraphHopper setUnsafeMemory() {
+    public GraphHopper setUnsafeMemory() {
         ensureNotLoaded();
         dataAccessType = DAType.UNSAFE_STORE;
         return this;
@@ -482,7 +521,9 @@ public class GraphHopper implements GraphHopperAPI {
     }
 
     /**
-     * Sorts the graph which requires more RAM while import. See #12
+     * Sorts the nodes and edges of the graph along a Hilbert curve, which requires more RAM while
+     * import. A graph is sorted only once, before the CH and LM preparation, so a sorted and
+     * prepared graph can be loaded. See #12
      */
     public GraphHopper setSortGraph(boolean sortGraph) {
         ensureNotLoaded();
@@ -490,6 +531,16 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Stores the pillar nodes of a new graph delta encoded with variable length, which makes the
+     * geometry 2-3 times smaller and allows more than 16GB of it. A loaded graph keeps its format.
+     */
+    public GraphHopper setCompactGeometry(boolean compactGeometry) {
+        ensureNotLoaded();
+        this.compactGeometry = compactGeometry;
+        return this;
+    }
+
     public boolean isAllowWrites() {
         return allowWrites;
     }
@@ -545,7 +596,13 @@ public class GraphHopper implements GraphHopperAPI {
         String graphDATypeStr = args.get("graph.dataaccess", "RAM_STORE");
         dataAccessType = DAType.fromString(graphDATypeStr);
 
+        osmWayIds = args.getBool("graph.osm_way_ids", osmWayIds);
+        String osmWayIdsDATypeStr = args.get("graph.osm_way_ids.dataaccess", "");
+        if (!osmWayIdsDATypeStr.isEmpty())
+            osmWayIdsDAType = DAType.fromString(osmWayIdsDATypeStr);
+
         sortGraph = args.getBool("graph.do_sort", sortGraph);
+        compactGeometry = args.getBool("graph.compact_geometry", compactGeometry);
         removeZipped = args.getBool("graph.remove_zipped", removeZipped);
         int bytesForFlags = args.getInt("graph.bytes_for_flags", 4);
         String flagEncodersStr = args.get("graph.flag_encoders", "");
@@ -617,10 +674,16 @@ public class GraphHopper implements GraphHopperAPI {
         // index
         preciseIndexResolution = args.getInt("index.high_resolution", preciseIndexResolution);
         maxRegionSearch = args.getInt("index.max_region_search", maxRegionSearch);
+        snapCacheSize = args.getInt("index.snap_cache.size", snapCacheSize);
+        snapCachePrecision = args.getDouble("index.snap_cache.precision", snapCachePrecision);
 
         // routing
         maxVisitedNodes = args.getInt(Routing.INIT_MAX_VISITED_NODES, Integer.MAX_VALUE);
         maxRoundTripRetries = args.getInt(RoundTrip.INIT_MAX_RETRIES, maxRoundTripRetries);
+        loopThreads = args.getInt(Loop.INIT_THREADS, loopThreads);
+        loopMaxDistance = args.getDouble(Loop.INIT_MAX_DISTANCE, loopMaxDistance);
+        loopMaxCandidates = args.getInt(Loop.INIT_MAX_CANDIDATES, loopMaxCandidates);
+        maxMatrixPoints = args.getInt(Routing.INIT_MAX_MATRIX_POINTS, maxMatrixPoints);
         nonChMaxWaypointDistance = args.getInt(Parameters.NON_CH.MAX_NON_CH_POINT_DISTANCE, Integer.MAX_VALUE);
 
         return this;
@@ -693,7 +756,14 @@ public class GraphHopper implements GraphHopperAPI {
         encodingManager.setPreferredLanguage(preferredLanguage);
         DataReader reader = createReader(ghStorage);
         logger.info("using " + ghStorage.toString() + ", memory:" + getMemInfo());
+        if (edgeScoreStorage != null)
+            edgeScoreStorage.create(0);
+
         reader.readGraph();
+        // edges without a score entry get 0
+        if (edgeScoreStorage != null)
+            edgeScoreStorage.ensureEdgeCount(ghStorage.getAllEdges().length());
+
         return reader;
     }
 
@@ -756,6 +826,10 @@ public class GraphHopper implements GraphHopperAPI {
         GraphExtension ext = encodingManager.needsTurnCostsSupport()
                 ? new TurnCostExtension() : new GraphExtension.NoOpExtension();
 
+        // create before the CH and LM weightings as they read the scores
+        if (encodingManager.supports(FlagEncoderFactory.RUNNING))
+            edgeScoreStorage = new EdgeScoreStorage(dir);
+
         if (lmFactoryDecorator.isEnabled())
             initLMAlgoFactoryDecorator();
 
@@ -767,6 +841,15 @@ public class GraphHopper implements GraphHopperAPI {
         }
 
         ghStorage.setSegmentSize(defaultSegmentSize);
+        ghStorage.setCompactGeometry(compactGeometry);
+        // the scores of the running encoder are joined via the OSM way IDs
+        if (osmWayIds || encodingManager.supports(FlagEncoderFactory.RUNNING)) {
+            if (osmWayIdsDAType != null) {
+                dir.put("way_ids_index", osmWayIdsDAType);
+                dir.put("way_ids", osmWayIdsDAType);
+            }
+            ghStorage.setOSMWayIdsEnabled(true);
+        }
 
         if (!new File(graphHopperFolder).exists())
             return false;
@@ -785,6 +868,7 @@ public class GraphHopper implements GraphHopperAPI {
             if (!ghStorage.loadExisting())
                 return false;
 
+            loadEdgeScores();
             postProcessing();
             fullyLoaded = true;
             return true;
@@ -794,6 +878,101 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    private void loadEdgeScores() {
+        if (edgeScoreStorage == null || edgeScoreStorage.loadExisting())
+            return;
+
+        // e.g. graph was imported without scores, route as if all scores are 0
+        logger.warn("No edge scores found in " + ghLocation + ", using 0 for all edges");
+        edgeScoreStorage.create(ghStorage.getAllEdges().length());
+    }
+
+    /**
+     * @return the running scores of every edge or null if no running encoder is used
+     */
+    public EdgeScoreStorage getEdgeScoreStorage() {
+        return edgeScoreStorage;
+    }
+
+    /**
+     * Replaces the edge scores for all following requests. This waits until all running requests
+     * and calculations of runLocked are finished, so that no request mixes old and new scores, and
+     * then closes the old scores.
+     * The customizable CH preparations of the mindful and vibrant weightings are customized for the
+     * new scores in the meantime. If writes are allowed the new scores are flushed afterwards.
+     */
+    public void swapEdgeScoreStorage(EdgeScoreStorage edgeScores) {
+        if (edgeScoreStorage == null)
+            throw new IllegalStateException("Edge scores require the running encoder but was " + encodingManager);
+        ensureEdgeScoresNotPrepared();
+
+        EdgeScoreStorage oldEdgeScores;
+        Lock writeLock = readWriteLock.writeLock();
+        writeLock.lock();
+        try {
+            oldEdgeScores = edgeScoreStorage;
+            edgeScoreStorage = edgeScores;
+            customizeCH();
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (oldEdgeScores != edgeScores)
+            oldEdgeScores.close();
+        if (isAllowWrites())
+            edgeScores.flush();
+    }
+
+    /**
+     * Throws an exception if the CH or LM preparation depends on the edge scores, as the prepared
+     * data would not match changed scores. A customizable CH preparation is customized instead,
+     * see customizeCH.
+     */
+    protected void ensureEdgeScoresNotPrepared() {
+        List<Weighting> weightings = new ArrayList<>();
+        if (chFactoryDecorator.isEnabled()) {
+            for (Weighting weighting : chFactoryDecorator.getWeightings()) {
+                if (!isCHCustomizable(weighting))
+                    weightings.add(weighting);
+            }
+        }
+        if (lmFactoryDecorator.isEnabled())
+            weightings.addAll(lmFactoryDecorator.getWeightings());
+        for (Weighting weighting : weightings) {
+            if (weighting instanceof RunningWeighting)
+                throw new IllegalStateException("The CH or LM preparation of " + weighting + " depends on the edge scores. "
+                        + "Remove the graph folder and import the OSM file together with the scores instead "
+                        + "or prepare CH with prepare.ch.customizable");
+        }
+    }
+
+    /**
+     * Customizes the CH preparations of the mindful and vibrant weightings for the current edge
+     * scores, if they were prepared customizable.
+     *
+     * @return true if a preparation was customized
+     */
+    protected boolean customizeCH() {
+        if (!chFactoryDecorator.isEnabled())
+            return false;
+
+        List<Weighting> weightings = new ArrayList<>();
+        for (PrepareContractionHierarchies prepare : chFactoryDecorator.getPreparations()) {
+            Weighting weighting = prepare.getWeighting();
+            if (weighting instanceof RunningWeighting && isCHCustomizable(weighting))
+                // the new weighting reads the current edge scores
+                weightings.add(createWeighting(new HintsMap(weighting.getName()), weighting.getFlagEncoder(), ghStorage));
+        }
+        chFactoryDecorator.customize(weightings);
+        return !weightings.isEmpty();
+    }
+
+    private boolean isCHCustomizable(Weighting weighting) {
+        return chFactoryDecorator.isPreparationCustomizable()
+                && "true".equals(ghStorage.getProperties().get(CH.PREPARE + "customizable."
+                + AbstractWeighting.weightingToFileName(weighting)));
+    }
+
     public RoutingAlgorithmFactory getAlgorithmFactory(HintsMap map) {
         RoutingAlgorithmFactory routingAlgorithmFactory = new RoutingAlgorithmFactorySimple();
         for (RoutingAlgorithmFactoryDecorator decorator : algoDecorators) {
@@ -848,16 +1027,19 @@ public class GraphHopper implements GraphHopperAPI {
      */
     public void postProcessing() {
         // Later: move this into the GraphStorage.optimize method
-        // Or: Doing it after preparation to optimize shortcuts too. But not possible yet #12
-
-        if (sortGraph) {
-            if (ghStorage.isCHPossible() && isCHPrepared())
-                throw new IllegalArgumentException("Sorting a prepared CHGraph is not possible yet. See #12");
-
-            GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage);
-            GHUtility.sortDFS(ghStorage, newGraph);
-            logger.info("graph sorted (" + getMemInfo() + ")");
-            ghStorage = newGraph;
+        // The shortcuts are sorted too as the preparation happens after sorting. Sorting an already
+        // prepared graph is not possible yet #12
+
+        if (sortGraph && !SORTED_HILBERT.equals(ghStorage.getProperties().get(SORTED_PROPERTY))) {
+            if (ghStorage.isCHPossible() && isCHPrepared() || isLMPrepared())
+                throw new IllegalArgumentException("Sorting a prepared graph is not possible yet, sort it on import. See #12");
+            if (ghStorage.getExtension() instanceof TurnCostExtension)
+                throw new IllegalArgumentException("Sorting a graph with turn costs is not possible yet");
+            if (dataAccessType.isMMap() || osmWayIdsDAType != null && osmWayIdsDAType.isMMap())
+                throw new IllegalArgumentException("Sorting a memory mapped graph is not possible yet, the sorted graph "
+                        + "would overwrite the files it is copied from. Import it with RAM_STORE or UNSAFE_STORE");
+
+            sortGraph();
         }
 
         if (hasElevation()) {
@@ -865,6 +1047,7 @@ public class GraphHopper implements GraphHopperAPI {
         }
 
         initLocationIndex();
+        pathBuilderFactory.setOSMWayIds(ghStorage.getOSMWayIds());
 
         if (chFactoryDecorator.isEnabled())
             chFactoryDecorator.createPreparations(ghStorage, traversalMode);
@@ -876,6 +1059,49 @@ public class GraphHopper implements GraphHopperAPI {
         loadOrPrepareLM();
     }
 
+    /**
+     * Renumbers the nodes along a Hilbert curve and the edges by their nodes, so that the nodes and
+     * edges explored by a query are stored in few segments. The OSM way IDs and edge scores are
+     * renumbered too. The sorted graph uses the same DataAccess types as the imported one.
+     */
+    private void sortGraph() {
+        StopWatch sw = new StopWatch().start();
+        Directory dir = ghStorage.getDirectory();
+        GHDirectory sortedDir = new GHDirectory(dir.getLocation(), dir.getDefaultType());
+        if (osmWayIdsDAType != null) {
+            sortedDir.put("way_ids_index", osmWayIdsDAType);
+            sortedDir.put("way_ids", osmWayIdsDAType);
+        }
+        GraphHopperStorage newGraph = GHUtility.newStorage(ghStorage, sortedDir);
+        GHIntArrayList newToOldEdges = GHUtility.copySorted(ghStorage, newGraph, GHUtility.createHilbertOrder(ghStorage));
+        int edges = newToOldEdges.size();
+        OSMWayIdStorage osmWayIds = ghStorage.getOSMWayIds();
+        if (osmWayIds != null) {
+            for (int edge = 0; edge < edges; edge++) {
+                newGraph.getOSMWayIds().setOSMWayId(edge, osmWayIds.getOSMWayId(newToOldEdges.get(edge)));
+            }
+        }
+
+        if (edgeScoreStorage != null) {
+            EdgeScoreStorage sortedEdgeScores = new EdgeScoreStorage(newGraph.getDirectory()).create(edges);
+            float[] scores = new float[EdgeScoreStorage.SCORES];
+            for (int edge = 0; edge < edges; edge++) {
+                for (int score = 0; score < scores.length; score++) {
+                    scores[score] = edgeScoreStorage.getScore(newToOldEdges.get(edge), score);
+                }
+                sortedEdgeScores.setScores(edge, scores);
+            }
+            edgeScoreStorage.close();
+            edgeScoreStorage = sortedEdgeScores;
+        }
+
+        ghStorage.getProperties().copyTo(newGraph.getProperties());
+        newGraph.getProperties().put(SORTED_PROPERTY, SORTED_HILBERT);
+        ghStorage.close();
+        ghStorage = newGraph;
+        logger.info("graph sorted along a Hilbert curve in " + (int) sw.stop().getSeconds() + "s (" + getMemInfo() + ")");
+    }
+
     private void interpolateBridgesAndOrTunnels() {
         if (ghStorage.getEncodingManager().supports("generic")) {
             final FlagEncoder genericFlagEncoder = ghStorage.getEncodingManager()
@@ -928,9 +1154,9 @@ public class GraphHopper implements GraphHopperAPI {
         } else if ("short_fastest".equalsIgnoreCase(weightingStr)) {
             weighting = new ShortFastestWeighting(encoder, hintsMap);
         } else if ("mindful".equalsIgnoreCase(weightingStr)) {
-            weighting = new MindfulWeighting(hintsMap, encoder, this);
+            weighting = new MindfulWeighting(hintsMap, encoder, getEdgeScoreStorage());
         } else if ("vibrant".equalsIgnoreCase(weightingStr)) {
-            weighting = new VibrantWeighting(hintsMap, encoder, this);
+            weighting = new VibrantWeighting(hintsMap, encoder, getEdgeScoreStorage());
         }
 
         if (weighting == null)
@@ -963,10 +1189,48 @@ public class GraphHopper implements GraphHopperAPI {
         return response;
     }
 
+    /**
+     * Same as {@link #route(GHRequest)} but looks up the points which are part of the specified
+     * batch in the batch, see {@link #snap(Collection, String)}.
+     */
+    public GHResponse route(GHRequest request, SnapBatch snapBatch) {
+        GHResponse response = new GHResponse();
+        calcPaths(request, response, snapBatch);
+        return response;
+    }
+
+    /**
+     * Snaps the specified points once for all routes of the specified vehicle which use the
+     * returned batch via {@link #route(GHRequest, SnapBatch)}.
+     */
+    public SnapBatch snap(Collection<GHPoint> points, String vehicle) {
+        if (ghStorage == null || !fullyLoaded)
+            throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
+
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        try {
+            if (!encodingManager.supports(vehicle))
+                throw new IllegalArgumentException("Vehicle not supported: " + vehicle + ". Supported are: " + encodingManager.toString());
+
+            return new SnapBatch(locationIndex, ghStorage.getBounds(), points,
+                    DefaultEdgeFilter.allEdges(encodingManager.getEncoder(vehicle)));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     /**
      * This method calculates the alternative path list using the low level Path objects.
      */
     public List<Path> calcPaths(GHRequest request, GHResponse ghRsp) {
+        return calcPaths(request, ghRsp, null);
+    }
+
+    private List<Path> calcPaths(GHRequest request, GHResponse ghRsp, SnapBatch snapBatch) {
         if (ghStorage == null || !fullyLoaded)
             throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
 
@@ -1015,9 +1279,14 @@ public class GraphHopper implements GraphHopperAPI {
             if (ROUND_TRIP.equalsIgnoreCase(algoStr))
                 routingTemplate = new RoundTripRoutingTemplate(request, ghRsp, locationIndex, maxRoundTripRetries);
             else if (ALT_ROUTE.equalsIgnoreCase(algoStr))
-                routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, locationIndex);
-            else
-                routingTemplate = new ViaRoutingTemplate(request, ghRsp, locationIndex);
+                routingTemplate = new AlternativeRoutingTemplate(request, ghRsp, locationIndex).setSnapBatch(snapBatch);
+            else if (LOOP.equalsIgnoreCase(algoStr)) {
+                if (chFactoryDecorator.isEnabled() && !disableCH)
+                    throw new IllegalArgumentException("The " + LOOP + " algorithm is not supported for CH, disable it with " + CH.DISABLE + "=true");
+                routingTemplate = new LoopRoutingTemplate(request, ghRsp, locationIndex, getLoopThreadPool()).
+                        setMaxDistance(loopMaxDistance).setMaxCandidates(loopMaxCandidates);
+            } else
+                routingTemplate = new ViaRoutingTemplate(request, ghRsp, locationIndex).setSnapBatch(snapBatch);
 
             List<Path> altPaths = null;
             int maxRetries = routingTemplate.getMaxRetries();
@@ -1044,13 +1313,13 @@ public class GraphHopper implements GraphHopperAPI {
                     if (tmpAlgoFactory instanceof LMAlgoFactoryDecorator.LMRAFactory)
                         chAlgoFactory = ((LMAlgoFactoryDecorator.LMRAFactory) tmpAlgoFactory).getDefaultAlgoFactory();
 
-                    if (chAlgoFactory instanceof PrepareContractionHierarchies)
-                        weighting = ((PrepareContractionHierarchies) chAlgoFactory).getWeighting();
-                    else
+                    if (!(chAlgoFactory instanceof PrepareContractionHierarchies))
                         throw new IllegalStateException("Although CH was enabled a non-CH algorithm factory was returned " + tmpAlgoFactory);
 
+                    PrepareContractionHierarchies pch = (PrepareContractionHierarchies) chAlgoFactory;
+                    weighting = pch.getCustomizedWeighting();
                     tMode = getCHFactoryDecorator().getNodeBase();
-                    queryGraph = new QueryGraph(ghStorage.getGraph(CHGraph.class, weighting));
+                    queryGraph = new QueryGraph(ghStorage.getGraph(CHGraph.class, pch.getWeighting()));
                     queryGraph.lookup(qResults);
                 } else {
                     checkNonChMaxWaypointDistance(points);
@@ -1104,6 +1373,137 @@ public class GraphHopper implements GraphHopperAPI {
         }
     }
 
+    /**
+     * Calculates the weight, the distance and the time from every of the specified from points to
+     * every to point. With CH one upward search per point is necessary, see
+     * {@link com.graphhopper.routing.ch.ManyToManyCH}, otherwise one search per from point, see
+     * {@link DijkstraManyToMany}. Pass the same list as from and to points for a symmetric matrix.
+     *
+     * @param hints the vehicle, the weighting and further hints like ch.disable or max_visited_nodes
+     */
+    public DistanceMatrix calcMatrix(List<GHPoint> fromPoints, List<GHPoint> toPoints, HintsMap hints) {
+        if (ghStorage == null || !fullyLoaded)
+            throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
+
+        if (ghStorage.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+            throw new IllegalArgumentException("At least one from and one to point have to be specified, but was:"
+                    + fromPoints.size() + "x" + toPoints.size());
+
+        if (fromPoints.size() > maxMatrixPoints || toPoints.size() > maxMatrixPoints)
+            throw new IllegalArgumentException("Too many points for a matrix, at most " + maxMatrixPoints
+                    + " from and to points are allowed, but was:" + fromPoints.size() + "x" + toPoints.size());
+
+        String vehicle = hints.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        try {
+            if (!encodingManager.supports(vehicle))
+                throw new IllegalArgumentException("Vehicle not supported: " + vehicle + ". Supported are: " + encodingManager.toString());
+
+            hints.setVehicle(vehicle);
+            FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+            boolean disableCH = hints.getBool(CH.DISABLE, false);
+            if (!chFactoryDecorator.isDisablingAllowed() && disableCH)
+                throw new IllegalArgumentException("Disabling CH not allowed on the server-side");
+
+            int maxVisitedNodesForRequest = hints.getInt(Routing.MAX_VISITED_NODES, maxVisitedNodes);
+            if (maxVisitedNodesForRequest > maxVisitedNodes)
+                throw new IllegalArgumentException("The max_visited_nodes parameter has to be below or equal to:" + maxVisitedNodes);
+
+            checkIfPointsAreInBounds(fromPoints);
+            checkIfPointsAreInBounds(toPoints);
+            List<QueryResult> fromResults = lookupMatrixPoints(fromPoints, encoder, "from point");
+            List<QueryResult> toResults = toPoints == fromPoints ? fromResults : lookupMatrixPoints(toPoints, encoder, "to point");
+            List<QueryResult> allResults = fromResults;
+            if (toResults != fromResults) {
+                allResults = new ArrayList<>(fromResults);
+                allResults.addAll(toResults);
+            }
+
+            QueryGraph queryGraph;
+            ManyToManyAlgorithm algo;
+            if (chFactoryDecorator.isEnabled() && !disableCH) {
+                // if LM is enabled we have the LMFactory with the CH algo!
+                RoutingAlgorithmFactory chAlgoFactory = getAlgorithmFactory(hints);
+                if (chAlgoFactory instanceof LMAlgoFactoryDecorator.LMRAFactory)
+                    chAlgoFactory = ((LMAlgoFactoryDecorator.LMRAFactory) chAlgoFactory).getDefaultAlgoFactory();
+                if (!(chAlgoFactory instanceof PrepareContractionHierarchies))
+                    throw new IllegalStateException("Although CH was enabled a non-CH algorithm factory was returned " + chAlgoFactory);
+
+                PrepareContractionHierarchies pch = (PrepareContractionHierarchies) chAlgoFactory;
+                queryGraph = new QueryGraph(ghStorage.getGraph(CHGraph.class, pch.getWeighting()));
+                queryGraph.lookup(allResults);
+                algo = pch.createManyToMany(queryGraph);
+            } else {
+                queryGraph = new QueryGraph(ghStorage);
+                queryGraph.lookup(allResults);
+                TraversalMode tMode = TraversalMode.fromString(hints.get("traversal_mode", traversalMode.toString()));
+                if (hints.has(Routing.EDGE_BASED))
+                    tMode = hints.getBool(Routing.EDGE_BASED, false) ? TraversalMode.EDGE_BASED_2DIR : TraversalMode.NODE_BASED;
+                algo = new DijkstraManyToMany(queryGraph, createWeighting(hints, encoder, queryGraph), tMode);
+            }
+            algo.setMaxVisitedNodes(maxVisitedNodesForRequest);
+
+            StopWatch sw = new StopWatch().start();
+            DistanceMatrix matrix = algo.calcMatrix(getClosestNodes(fromResults), getClosestNodes(toResults));
+            logger.debug(algo.getName() + " " + matrix + ", visited nodes: " + algo.getVisitedNodes()
+                    + ", took: " + sw.stop().getSeconds() + "s");
+            return matrix;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private List<QueryResult> lookupMatrixPoints(List<GHPoint> points, FlagEncoder encoder, String name) {
+        EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
+        List<QueryResult> results = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            GHPoint point = points.get(i);
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!qr.isValid())
+                throw new PointNotFoundException("Cannot find " + name + " " + i + ": " + point, i);
+
+            results.add(qr);
+        }
+        return results;
+    }
+
+    private static int[] getClosestNodes(List<QueryResult> results) {
+        int[] nodes = new int[results.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = results.get(i).getClosestNode();
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs the specified calculation with the read lock like route and calcMatrix. Calculations
+     * which read the graph or create a weighting via createWeighting outside of these methods, e.g.
+     * isochrones, have to use this, as the edge scores are closed after they were swapped.
+     */
+    public <T> T runLocked(Callable<T> calculation) {
+        if (ghStorage == null || !fullyLoaded)
+            throw new IllegalStateException("Do a successful call to load or importOrLoad before routing");
+
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        try {
+            return calculation.call();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     /**
      * This method applies the changes to the graph specified as feature collection. It does so by locking the routing
      * to avoid concurrent changes which could result in incorrect routing (like when done while a Dijkstra search) or
@@ -1180,6 +1580,8 @@ public class GraphHopper implements GraphHopperAPI {
             throw new IllegalStateException("Cannot initialize locationIndex twice!");
 
         locationIndex = createLocationIndex(ghStorage.getDirectory());
+        if (snapCacheSize > 0)
+            locationIndex = new SnapCache(locationIndex, snapCacheSize, snapCachePrecision);
     }
 
     private boolean isCHPrepared() {
@@ -1236,21 +1638,54 @@ public class GraphHopper implements GraphHopperAPI {
         logger.info("flushing graph " + ghStorage.toString() + ", details:" + ghStorage.toDetailsString() + ", "
                 + getMemInfo() + ")");
         ghStorage.flush();
+        if (edgeScoreStorage != null)
+            edgeScoreStorage.flush();
         logger.info("flushed graph " + getMemInfo() + ")");
         fullyLoaded = true;
     }
 
+    /**
+     * @return the thread pool shared by all requests to evaluate the candidates of the loop
+     * algorithm or null if they are evaluated in the request thread
+     */
+    private synchronized ExecutorService getLoopThreadPool() {
+        if (loopThreads <= 1)
+            return null;
+
+        if (loopThreadPool == null) {
+            loopThreadPool = Executors.newFixedThreadPool(loopThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "loop-candidates");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loopThreadPool;
+    }
+
     /**
      * Releases all associated resources like memory or files. But it does not remove them. To
      * remove the files created in graphhopperLocation you have to call clean().
      */
     public void close() {
+        synchronized (this) {
+            if (loopThreadPool != null) {
+                loopThreadPool.shutdownNow();
+                loopThreadPool = null;
+            }
+        }
+
         if (ghStorage != null)
             ghStorage.close();
 
         if (locationIndex != null)
             locationIndex.close();
 
+        if (edgeScoreStorage != null)
+            edgeScoreStorage.close();
+
         try {
             lockFactory.forceRemove(fileLockName, true);
         } catch (Exception ex) {
@@ -1284,10 +1719,26 @@ public class GraphHopper implements GraphHopperAPI {
         this.nonChMaxWaypointDistance = nonChMaxWaypointDistance;
     }
 
+    /**
+     * Limits the number of from points and of to points of calcMatrix, as a matrix request
+     * allocates and calculates from x to entries.
+     */
+    public GraphHopper setMaxMatrixPoints(int maxMatrixPoints) {
+        if (maxMatrixPoints < 1)
+            throw new IllegalArgumentException("The matrix needs at least one point but the limit was " + maxMatrixPoints);
 
-     public long getOSMWay(int internalEdgeId) {
-        return 0;
-     }
-
+        this.maxMatrixPoints = maxMatrixPoints;
+        return this;
+    }
 
+    /**
+     * @return the OSM way ID of the specified edge or OSMWayIdStorage.NO_WAY if the edge was not
+     * created from an OSM way
+     */
+    public long getOSMWay(int internalEdgeId) {
+        OSMWayIdStorage wayIds = ghStorage.getOSMWayIds();
+        if (wayIds == null)
+            throw new IllegalStateException("OSM way IDs are not stored, enable graph.osm_way_ids");
+        return wayIds.getOSMWayId(internalEdgeId);
+    }
 }
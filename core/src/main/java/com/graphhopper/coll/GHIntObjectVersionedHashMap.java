@@ -0,0 +1,226 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.BitMixer;
+import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int to objects which is cleared in time proportional to its size, so that it can
+ * be reused by many searches without filling its hash table again. Every slot of the hash table
+ * has the version of the map when it was written and a slot of an older version is empty. The
+ * entries are stored in the order of their insertion and the index of an entry, see
+ * {@link #indexOf(int)}, is its position in this order. It does not change until the map is
+ * cleared, so it can be used as element of a heap.
+ * <p>
+ * Only the operations of the searches are supported, e.g. single entries cannot be removed.
+ */
+public class GHIntObjectVersionedHashMap<T> {
+    private static final int MIN_CAPACITY = 16;
+    // the hash table with the index of the entry of every slot
+    private int[] slotKeys;
+    private int[] slotIndices;
+    private int[] slotVersions;
+    private int mask;
+    // the entries in the order of their insertion
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int version = 1;
+
+    public GHIntObjectVersionedHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public GHIntObjectVersionedHashMap(int capacity) {
+        allocate(Math.max(MIN_CAPACITY, capacity));
+    }
+
+    private void allocate(int capacity) {
+        // at most half of the slots are used
+        int slots = Integer.highestOneBit(capacity - 1) << 2;
+        slotKeys = new int[slots];
+        slotIndices = new int[slots];
+        slotVersions = new int[slots];
+        mask = slots - 1;
+        keys = new int[slots >>> 1];
+        values = new Object[slots >>> 1];
+        version = 1;
+    }
+
+    /**
+     * @return the number of entries which can be inserted without growing the arrays
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    private int findSlot(int key) {
+        int slot = BitMixer.mix32(key) & mask;
+        while (slotVersions[slot] == version && slotKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return the index of the entry with the specified key or a negative value which can be
+     * passed to {@link #indexInsert(int, int, Object)} if there is no such entry
+     */
+    public int indexOf(int key) {
+        int slot = findSlot(key);
+        return slotVersions[slot] == version ? slotIndices[slot] : ~slot;
+    }
+
+    public boolean indexExists(int index) {
+        return index >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T indexGet(int index) {
+        return (T) values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T indexReplace(int index, T value) {
+        T old = (T) values[index];
+        values[index] = value;
+        return old;
+    }
+
+    /**
+     * Inserts the entry into the slot returned by {@link #indexOf(int)}. The index of the new entry
+     * is size() - 1.
+     */
+    public void indexInsert(int index, int key, T value) {
+        int slot = ~index;
+        if (size == keys.length) {
+            grow();
+            slot = findSlot(key);
+        }
+        slotKeys[slot] = key;
+        slotIndices[slot] = size;
+        slotVersions[slot] = version;
+        keys[size] = key;
+        values[size] = value;
+        size++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        System.arraycopy(oldKeys, 0, keys, 0, size);
+        System.arraycopy(oldValues, 0, values, 0, size);
+        for (int i = 0; i < size; i++) {
+            int slot = findSlot(keys[i]);
+            slotKeys[slot] = keys[i];
+            slotIndices[slot] = i;
+            slotVersions[slot] = version;
+        }
+    }
+
+    /**
+     * @return the key of the entry with the specified index
+     */
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    public T get(int key) {
+        int index = indexOf(key);
+        return index >= 0 ? indexGet(index) : null;
+    }
+
+    public T put(int key, T value) {
+        int index = indexOf(key);
+        if (index >= 0)
+            return indexReplace(index, value);
+
+        indexInsert(index, key, value);
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries. Only the values are released, i.e. this is proportional to the size and
+     * not to the capacity, and a pooled map does not keep the entries of its last search reachable.
+     */
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        if (version == Integer.MAX_VALUE) {
+            Arrays.fill(slotVersions, 0);
+            version = 0;
+        }
+        version++;
+    }
+
+    /**
+     * Removes all entries and shrinks the arrays to the minimum capacity.
+     */
+    public void release() {
+        size = 0;
+        allocate(MIN_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <P extends IntObjectProcedure<? super T>> P forEach(P procedure) {
+        for (int i = 0; i < size; i++) {
+            procedure.apply(keys[i], (T) values[i]);
+        }
+        return procedure;
+    }
+
+    /**
+     * Calls the predicate for the entries in the order of their insertion until it returns false.
+     */
+    @SuppressWarnings("unchecked")
+    public <P extends IntObjectPredicate<? super T>> P forEach(P predicate) {
+        for (int i = 0; i < size; i++) {
+            if (!predicate.apply(keys[i], (T) values[i]))
+                break;
+        }
+        return predicate;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(keys[i]).append("=>").append(values[i]);
+        }
+        return sb.append("}").toString();
+    }
+}
@@ -25,7 +25,7 @@ import static com.graphhopper.coll.GHIntObjectHashMap.DETERMINISTIC;
 /**
  * @author Peter Karich
  */
-public class GHLongLongHashMap extends LongLongHashMap {
+public class GHLongLongHashMap extends LongLongHashMap implements GHLongLongMap {
     public GHLongLongHashMap() {
         super(10, 0.75, DETERMINISTIC);
     }
@@ -41,4 +41,9 @@ public class GHLongLongHashMap extends LongLongHashMap {
     public GHLongLongHashMap(int capacity, double loadFactor, HashOrderMixingStrategy hashOrderMixer) {
         super(capacity, loadFactor, hashOrderMixer);
     }
+
+    @Override
+    public long getSize() {
+        return size();
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+
+/**
+ * A 4-ary min heap of int IDs with double keys which supports changing the key of an element that
+ * is already in the heap. Compared to a binary heap it is less deep and the children of a node are
+ * next to each other in memory, which makes poll faster while sifting up is still cheap. The IDs
+ * have to be in [0, capacity), where the capacity grows with the largest pushed ID, because the
+ * position of every element is stored in an array indexed by its ID. Clearing the heap is O(1), so
+ * it can be reused by many searches.
+ */
+public class MinHeapWithUpdate {
+    private static final int ARITY_SHIFT = 2;
+    private static final int ARITY = 1 << ARITY_SHIFT;
+    // the IDs in heap order and their keys
+    private int[] tree;
+    private double[] keys;
+    // the position of every ID in the tree, only valid if tree[positions[id]] == id
+    private int[] positions;
+    private int size;
+
+    public MinHeapWithUpdate(int capacity) {
+        capacity = Math.max(capacity, 16);
+        tree = new int[capacity];
+        keys = new double[capacity];
+        positions = new int[capacity];
+    }
+
+    /**
+     * @return the number of IDs which can be used without growing the arrays
+     */
+    public int getCapacity() {
+        return positions.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds the ID, which must not be in the heap already.
+     */
+    public void push(int id, double key) {
+        if (id >= positions.length)
+            ensureCapacity(id + 1);
+        if (size == tree.length) {
+            tree = Arrays.copyOf(tree, tree.length * 2);
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        tree[size] = id;
+        keys[size] = key;
+        positions[id] = size;
+        siftUp(size++);
+    }
+
+    private void ensureCapacity(int capacity) {
+        positions = Arrays.copyOf(positions, Math.max(capacity, positions.length * 2));
+    }
+
+    public boolean contains(int id) {
+        if (id < 0 || id >= positions.length)
+            return false;
+        int position = positions[id];
+        return position < size && tree[position] == id;
+    }
+
+    /**
+     * Changes the key of the ID, which has to be in the heap. The key may increase or decrease.
+     */
+    public void update(int id, double key) {
+        int position = positions[id];
+        double old = keys[position];
+        keys[position] = key;
+        if (key < old)
+            siftUp(position);
+        else
+            siftDown(position);
+    }
+
+    public int peekId() {
+        return tree[0];
+    }
+
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes the element with the smallest key and returns its ID
+     */
+    public int poll() {
+        if (size == 0)
+            throw new IllegalStateException("Cannot poll an empty heap");
+
+        int id = tree[0];
+        size--;
+        if (size > 0) {
+            tree[0] = tree[size];
+            keys[0] = keys[size];
+            positions[tree[0]] = 0;
+            siftDown(0);
+        }
+        return id;
+    }
+
+    /**
+     * Removes all elements in O(1)
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int id = tree[position];
+        double key = keys[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> ARITY_SHIFT;
+            if (!less(key, id, keys[parent], tree[parent]))
+                break;
+            move(parent, position);
+            position = parent;
+        }
+        set(position, id, key);
+    }
+
+    private void siftDown(int position) {
+        int id = tree[position];
+        double key = keys[position];
+        while (true) {
+            int first = (position << ARITY_SHIFT) + 1;
+            if (first >= size)
+                break;
+            int child = first;
+            int last = Math.min(first + ARITY, size);
+            for (int i = first + 1; i < last; i++) {
+                if (less(keys[i], tree[i], keys[child], tree[child]))
+                    child = i;
+            }
+            if (!less(keys[child], tree[child], key, id))
+                break;
+            move(child, position);
+            position = child;
+        }
+        set(position, id, key);
+    }
+
+    /**
+     * Elements with the same key are ordered by their ID, so the order of the polled elements does
+     * not depend on the layout of the heap
+     */
+    private static boolean less(double key1, int id1, double key2, int id2) {
+        return key1 < key2 || key1 == key2 && id1 < id2;
+    }
+
+    private void move(int from, int to) {
+        tree[to] = tree[from];
+        keys[to] = keys[from];
+        positions[tree[to]] = to;
+    }
+
+    private void set(int position, int id, double key) {
+        tree[position] = id;
+        keys[position] = key;
+        positions[id] = position;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A LongIntMap which stores its entries in sorted runs, see {@link SortedRunLongLongMap}. Other
+ * than OSMIDMap the keys can be put in any order.
+ */
+public class SortedRunLongIntMap implements LongIntMap {
+    private final SortedRunLongLongMap map;
+
+    public SortedRunLongIntMap(Directory dir, String name, DAType daType, int noEntryValue) {
+        this(dir, name, daType, noEntryValue, 1 << 21);
+    }
+
+    public SortedRunLongIntMap(Directory dir, String name, DAType daType, int noEntryValue, int bufferSize) {
+        map = new SortedRunLongLongMap(dir, name, daType, 4, noEntryValue, bufferSize);
+    }
+
+    @Override
+    public int put(long key, int value) {
+        return (int) map.put(key, value);
+    }
+
+    @Override
+    public int get(long key) {
+        return (int) map.get(key);
+    }
+
+    @Override
+    public long getSize() {
+        return map.getSize();
+    }
+
+    @Override
+    public void optimize() {
+    }
+
+    /**
+     * @return the memory of the heap and of the runs in MB
+     */
+    @Override
+    public int getMemoryUsage() {
+        return Math.round((map.getHeapUsage() + map.getCapacity()) / Helper.MB);
+    }
+
+    /**
+     * Removes all runs from the directory. This map cannot be used afterwards.
+     */
+    public void close() {
+        map.close();
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.cursors.LongCursor;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from long to long for data sets which do not fit into the heap, like the OSM node IDs of a
+ * continent. New entries are collected in a small on-heap hash map which is written as a sorted
+ * run into two DataAccess objects whenever it is full, e.g. into memory mapped files.
+ * <p>
+ * Like in OSMIDMap the keys of a run are binary searched, but they are stored in blocks of 64
+ * entries: the first key of every block is kept in a sparse on-heap index and the other keys are
+ * stored as variable length deltas. For the dense OSM IDs this needs 1-2 bytes per key plus the
+ * bytes of the value and no object per entry. A key is stored only once, i.e. the value of a key
+ * which is already in a run is updated in place. The newest runs are merged if they have a
+ * similar size, so a lookup has to search only a logarithmic number of runs.
+ * <p>
+ * Several threads can call get at the same time, e.g. the import threads which encode the ways,
+ * as every thread searches the runs with its own reader and cache. Everything else, including a
+ * put which runs concurrently with a get, is not thread safe.
+ */
+public class SortedRunLongLongMap implements GHLongLongMap {
+    private static final int BLOCK_SIZE = 64;
+    // a delta of the unsigned long needs up to 10 bytes
+    private static final int MAX_BLOCK_BYTES = (BLOCK_SIZE - 1) * 10;
+    private final Directory dir;
+    private final String name;
+    private final DAType daType;
+    private final int valueBytes;
+    private final long noEntryValue;
+    private final int bufferSize;
+    private final GHLongLongHashMap buffer;
+    private final List<Run> runs = new ArrayList<>();
+    private final ThreadLocal<Lookup> lookups = new ThreadLocal<Lookup>() {
+        @Override
+        protected Lookup initialValue() {
+            return new Lookup();
+        }
+    };
+    private int runCounter;
+    // incremented whenever the runs change, which invalidates the cached lookups of all threads
+    private int runsVersion;
+    private long size;
+
+    public SortedRunLongLongMap(Directory dir, String name, DAType daType) {
+        this(dir, name, daType, 8, 0, 1 << 21);
+    }
+
+    /**
+     * @param valueBytes 4 if all values are ints, otherwise 8
+     * @param bufferSize the number of entries which are collected on the heap before they are
+     *                   written as a sorted run
+     */
+    public SortedRunLongLongMap(Directory dir, String name, DAType daType, int valueBytes, long noEntryValue,
+                                int bufferSize) {
+        if (valueBytes != 4 && valueBytes != 8)
+            throw new IllegalArgumentException("Values need 4 or 8 bytes but was " + valueBytes);
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("The buffer size has to be positive but was " + bufferSize);
+
+        this.dir = dir;
+        this.name = name;
+        this.daType = daType;
+        this.valueBytes = valueBytes;
+        this.noEntryValue = noEntryValue;
+        this.bufferSize = bufferSize;
+        buffer = new GHLongLongHashMap(bufferSize, 0.75);
+    }
+
+    @Override
+    public long put(long key, long value) {
+        int slot = buffer.indexOf(key);
+        if (buffer.indexExists(slot))
+            return buffer.indexReplace(slot, value);
+
+        Lookup lookup = lookups.get();
+        if (findInRuns(lookup, key)) {
+            long oldValue = getValue(lookup.run.values, lookup.index);
+            setValue(lookup.run.values, lookup.index, value);
+            return oldValue;
+        }
+
+        buffer.indexInsert(slot, key, value);
+        size++;
+        if (buffer.size() >= bufferSize)
+            spill();
+        return noEntryValue;
+    }
+
+    @Override
+    public long get(long key) {
+        int slot = buffer.indexOf(key);
+        if (buffer.indexExists(slot))
+            return buffer.indexGet(slot);
+
+        Lookup lookup = lookups.get();
+        if (findInRuns(lookup, key))
+            return getValue(lookup.run.values, lookup.index);
+        return noEntryValue;
+    }
+
+    /**
+     * Searches the key in all runs and sets the run and index of the lookup if it was found.
+     */
+    private boolean findInRuns(Lookup lookup, long key) {
+        if (lookup.version == runsVersion && lookup.key == key)
+            return lookup.run != null;
+
+        lookup.version = runsVersion;
+        lookup.key = key;
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            Run run = runs.get(i);
+            long index = indexOf(lookup.reader, run, key);
+            if (index >= 0) {
+                lookup.run = run;
+                lookup.index = index;
+                return true;
+            }
+        }
+        lookup.run = null;
+        return false;
+    }
+
+    private long indexOf(BlockReader reader, Run run, long key) {
+        if (run.size == 0 || key < run.blockKeys[0] || key > run.lastKey)
+            return -1;
+
+        int block = Arrays.binarySearch(run.blockKeys, 0, run.blocks, key);
+        if (block >= 0)
+            return (long) block * BLOCK_SIZE;
+
+        // the key can only be in the block before the insertion point
+        block = -block - 2;
+        reader.read(run, block);
+        long index = (long) block * BLOCK_SIZE;
+        long end = Math.min(index + BLOCK_SIZE, run.size);
+        for (index++; index < end; index++) {
+            reader.next();
+            if (reader.key == key)
+                return index;
+            if (reader.key > key)
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the buffer as a new sorted run and merges the newest runs while they have a similar
+     * size.
+     */
+    private void spill() {
+        long[] keys = new long[buffer.size()];
+        int i = 0;
+        for (LongCursor cursor : buffer.keys()) {
+            keys[i++] = cursor.value;
+        }
+        Arrays.sort(keys);
+
+        RunWriter writer = new RunWriter(keys.length);
+        for (long key : keys) {
+            writer.append(key, buffer.get(key));
+        }
+        runs.add(writer.finish());
+        buffer.clear();
+
+        while (runs.size() > 1 && runs.get(runs.size() - 2).size <= 2 * runs.get(runs.size() - 1).size) {
+            Run newer = runs.remove(runs.size() - 1);
+            Run older = runs.remove(runs.size() - 1);
+            runs.add(merge(older, newer));
+        }
+        runsVersion++;
+    }
+
+    private Run merge(Run run1, Run run2) {
+        RunWriter writer = new RunWriter(run1.size + run2.size);
+        RunIterator iter1 = new RunIterator(run1);
+        RunIterator iter2 = new RunIterator(run2);
+        boolean next1 = iter1.next(), next2 = iter2.next();
+        while (next1 || next2) {
+            if (next1 && (!next2 || iter1.key() < iter2.key())) {
+                writer.append(iter1.key(), iter1.value());
+                next1 = iter1.next();
+            } else {
+                writer.append(iter2.key(), iter2.value());
+                next2 = iter2.next();
+            }
+        }
+        remove(run1);
+        remove(run2);
+        return writer.finish();
+    }
+
+    private void remove(Run run) {
+        dir.remove(run.keys);
+        dir.remove(run.values);
+    }
+
+    private void setValue(DataAccess values, long index, long value) {
+        long pointer = index * valueBytes;
+        values.setInt(pointer, (int) value);
+        if (valueBytes == 8)
+            values.setInt(pointer + 4, (int) (value >>> 32));
+    }
+
+    private long getValue(DataAccess values, long index) {
+        long pointer = index * valueBytes;
+        if (valueBytes == 4)
+            return values.getInt(pointer);
+        return (values.getInt(pointer) & 0xFFFFFFFFL) | (long) values.getInt(pointer + 4) << 32;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of runs, i.e. the maximum number of binary searches of a lookup
+     */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * @return the bytes of all runs, stored in DataAccess objects
+     */
+    public long getCapacity() {
+        long capacity = 0;
+        for (Run run : runs) {
+            capacity += run.keys.getCapacity() + run.values.getCapacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * @return the bytes of the buffer and the sparse indices, stored on the heap
+     */
+    public long getHeapUsage() {
+        long bytes = 8L * (buffer.keys.length + buffer.values.length);
+        for (Run run : runs) {
+            bytes += 8L * (run.blockKeys.length + run.blockPointers.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes all runs from the directory. This map cannot be used afterwards.
+     */
+    public void close() {
+        for (Run run : runs) {
+            remove(run);
+        }
+        runs.clear();
+        buffer.clear();
+        runsVersion++;
+    }
+
+    @Override
+    public String toString() {
+        return name + ", size:" + size + ", runs:" + runs.size();
+    }
+
+    private static class Run {
+        private final DataAccess keys;
+        private final DataAccess values;
+        private long size;
+        private long keyBytes;
+        private long lastKey;
+        // the sparse index: the first key and the pointer into keys of every block
+        private long[] blockKeys;
+        private long[] blockPointers;
+        private int blocks;
+
+        Run(DataAccess keys, DataAccess values, long expectedSize) {
+            this.keys = keys;
+            this.values = values;
+            int expectedBlocks = (int) Math.max(1, (expectedSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            blockKeys = new long[expectedBlocks];
+            blockPointers = new long[expectedBlocks];
+        }
+
+        void addBlock(long firstKey) {
+            if (blocks == blockKeys.length) {
+                blockKeys = Arrays.copyOf(blockKeys, blocks * 2);
+                blockPointers = Arrays.copyOf(blockPointers, blocks * 2);
+            }
+            blockKeys[blocks] = firstKey;
+            blockPointers[blocks] = keyBytes;
+            blocks++;
+        }
+
+        long getBlockEnd(int block) {
+            return block + 1 < blocks ? blockPointers[block + 1] : keyBytes;
+        }
+    }
+
+    private class RunWriter {
+        private final Run run;
+        private final byte[] bytes = new byte[MAX_BLOCK_BYTES];
+        private int length;
+
+        RunWriter(long expectedSize) {
+            String runName = name + "_" + runCounter++;
+            DataAccess keys = dir.find(runName + "_keys", daType).create(Math.max(expectedSize * 2, 100));
+            DataAccess values = dir.find(runName + "_values", daType).create(Math.max(expectedSize * valueBytes, 100));
+            run = new Run(keys, values, expectedSize);
+        }
+
+        void append(long key, long value) {
+            if (run.size % BLOCK_SIZE == 0) {
+                writeBlock();
+                run.addBlock(key);
+            } else {
+                // the unsigned difference also works if the keys span more than Long.MAX_VALUE
+                long delta = key - run.lastKey;
+                while ((delta & ~0x7FL) != 0) {
+                    bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                bytes[length++] = (byte) delta;
+            }
+            run.values.ensureCapacity((run.size + 1) * valueBytes);
+            setValue(run.values, run.size, value);
+            run.lastKey = key;
+            run.size++;
+        }
+
+        private void writeBlock() {
+            if (length == 0)
+                return;
+
+            run.keys.ensureCapacity(run.keyBytes + length);
+            run.keys.setBytes(run.keyBytes, bytes, length);
+            run.keyBytes += length;
+            length = 0;
+        }
+
+        Run finish() {
+            writeBlock();
+            return run;
+        }
+    }
+
+    /**
+     * The state of the lookups of one thread. A put usually follows a get of the same key, so it
+     * remembers where the last key was found.
+     */
+    private static class Lookup {
+        private final BlockReader reader = new BlockReader();
+        // -1 is never a version of the runs, so a new lookup is never valid
+        private int version = -1;
+        private long key;
+        private Run run;
+        private long index;
+    }
+
+    /**
+     * Decodes the keys of a block.
+     */
+    private static class BlockReader {
+        private final byte[] bytes = new byte[MAX_BLOCK_BYTES];
+        private int pos;
+        private long key;
+
+        void read(Run run, int block) {
+            long pointer = run.blockPointers[block];
+            int length = (int) (run.getBlockEnd(block) - pointer);
+            if (length > 0)
+                run.keys.getBytes(pointer, bytes, length);
+            pos = 0;
+            key = run.blockKeys[block];
+        }
+
+        void next() {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            key += delta;
+        }
+    }
+
+    private class RunIterator {
+        private final Run run;
+        private final BlockReader blockReader = new BlockReader();
+        private long index = -1;
+
+        RunIterator(Run run) {
+            this.run = run;
+        }
+
+        boolean next() {
+            index++;
+            if (index >= run.size)
+                return false;
+
+            if (index % BLOCK_SIZE == 0)
+                blockReader.read(run, (int) (index / BLOCK_SIZE));
+            else
+                blockReader.next();
+            return true;
+        }
+
+        long key() {
+            return blockReader.key;
+        }
+
+        long value() {
+            return getValue(run.values, index);
+        }
+    }
+}
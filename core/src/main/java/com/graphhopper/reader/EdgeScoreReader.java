@@ -0,0 +1,156 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.storage.EdgeScoreStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.function.IntToLongFunction;
+
+import static com.graphhopper.util.Helper.UTF_CS;
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Reads the running scores from a CSV file with one line per OSM way and joins them via the OSM
+ * way ID into the EdgeScoreStorage. The columns are:
+ * <p>
+ * way_id,(ignored),environment_mindful,support_mindful,safety_mindful,environment_vibrant,support_vibrant,safety_vibrant
+ * <p>
+ * Lines which cannot be parsed like a header are skipped. The file is streamed, i.e. only the
+ * mapping from the OSM way ID to the edges is kept in memory.
+ */
+public class EdgeScoreReader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdgeScoreReader.class);
+    private static final int NO_EDGE = -1;
+    private final EdgeScoreStorage edgeScores;
+    private final int edges;
+    private final IntToLongFunction osmWayIdOfEdge;
+    private boolean delta = false;
+
+    /**
+     * @param edges          the number of edges of the graph
+     * @param osmWayIdOfEdge returns the OSM way ID of the specified edge
+     */
+    public EdgeScoreReader(EdgeScoreStorage edgeScores, int edges, IntToLongFunction osmWayIdOfEdge) {
+        this.edgeScores = edgeScores;
+        this.edges = edges;
+        this.osmWayIdOfEdge = osmWayIdOfEdge;
+    }
+
+    /**
+     * If true only the edges of the ways listed in the file are updated and all other scores are
+     * kept. Otherwise the scores of all other edges are reset to 0 and the score ranges are
+     * calculated from the new scores only.
+     */
+    public EdgeScoreReader setDelta(boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    /**
+     * @return the number of edges with updated scores
+     */
+    public int read(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_CS))) {
+            return read(reader);
+        }
+    }
+
+    public int read(BufferedReader reader) throws IOException {
+        // a linked list of edges per OSM way as there is usually more than one edge per way
+        GHLongLongHashMap osmWayIdToFirstEdge = new GHLongLongHashMap(Math.max(edges / 2, 10), 0.5f);
+        int[] nextEdge = new int[edges];
+        for (int edge = 0; edge < edges; edge++) {
+            long osmWayId = osmWayIdOfEdge.applyAsLong(edge);
+            nextEdge[edge] = (int) osmWayIdToFirstEdge.getOrDefault(osmWayId, NO_EDGE);
+            osmWayIdToFirstEdge.put(osmWayId, edge);
+        }
+
+        float[] scores = new float[EdgeScoreStorage.SCORES];
+        edgeScores.ensureEdgeCount(edges);
+        if (!delta) {
+            // the range of the old scores must not widen the range of the new ones
+            edgeScores.resetScoreRanges();
+            for (int edge = 0; edge < edges; edge++) {
+                edgeScores.setScores(edge, scores);
+            }
+        }
+
+        int lines = 0, skippedLines = 0, updatedEdges = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            long osmWayId;
+            try {
+                osmWayId = parseLine(line, scores);
+            } catch (RuntimeException ex) {
+                skippedLines++;
+                continue;
+            }
+
+            int edge = (int) osmWayIdToFirstEdge.getOrDefault(osmWayId, NO_EDGE);
+            while (edge != NO_EDGE) {
+                edgeScores.setScores(edge, scores);
+                updatedEdges++;
+                edge = nextEdge[edge];
+            }
+        }
+
+        LOGGER.info("read " + nf(lines) + " score lines (" + nf(skippedLines) + " skipped), updated "
+                + nf(updatedEdges) + " of " + nf(edges) + " edges" + (delta ? " (delta)" : ""));
+        return updatedEdges;
+    }
+
+    /**
+     * Parses the specified line into the scores array without splitting it into strings.
+     *
+     * @return the OSM way ID
+     */
+    static long parseLine(String line, float[] scores) {
+        int start = 0;
+        int end = nextComma(line, start);
+        long osmWayId = Long.parseLong(line.substring(start, end).trim());
+        // skip the second column
+        end = nextComma(line, end + 1);
+        for (int i = 0; i < scores.length; i++) {
+            start = end + 1;
+            end = line.indexOf(',', start);
+            if (end < 0) {
+                if (i + 1 < scores.length)
+                    throw new IllegalArgumentException("Too few columns in " + line);
+                end = line.length();
+            }
+            scores[i] = Float.parseFloat(line.substring(start, end));
+        }
+        return osmWayId;
+    }
+
+    private static int nextComma(String line, int from) {
+        int index = line.indexOf(',', from);
+        if (index < 0)
+            throw new IllegalArgumentException("Too few columns in " + line);
+        return index;
+    }
+}
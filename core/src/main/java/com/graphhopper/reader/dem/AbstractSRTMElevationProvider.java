@@ -17,7 +17,7 @@
  */
 package com.graphhopper.reader.dem;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.carrotsearch.hppc.IntObjectHashMap;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Downloader;
@@ -39,8 +39,10 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
     private final int DEFAULT_WIDTH;
     private final int WIDTH_BYTE_INDEX = 0;
     private final int DEGREE = 1;
-    // use a map as an array is not quite useful if we want to hold only parts of the world
-    private final GHIntObjectHashMap<HeightTile> cacheData = new GHIntObjectHashMap<>();
+    // use a map as an array is not quite useful if we want to hold only parts of the world.
+    // The import looks up the elevation from several threads, so a new tile is added to a copy of
+    // the map under the lock, and the lookups read the current map without a lock or boxing
+    private volatile IntObjectHashMap<HeightTile> cacheData = new IntObjectHashMap<>();
     private final double precision = 1e7;
     private final double invPrecision = 1 / precision;
 
@@ -59,7 +61,9 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
 
     @Override
     public void release() {
-        cacheData.clear();
+        synchronized (this) {
+            cacheData = new IntObjectHashMap<>();
+        }
 
         // for memory mapped type we create temporary unpacked files which should be removed
         if (autoRemoveTemporary && dir != null)
@@ -92,54 +96,79 @@ public abstract class AbstractSRTMElevationProvider extends AbstractElevationPro
         lon = (int) (lon * precision) / precision;
         int intKey = calcIntKey(lat, lon);
         HeightTile demProvider = cacheData.get(intKey);
-        if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
+        if (demProvider == null)
+            demProvider = loadTile(lat, lon, intKey);
 
-            int minLat = down(lat);
-            int minLon = down(lon);
+        if (demProvider == null || demProvider.isSeaLevel())
+            return 0;
 
-            String fileName = getFileName(lat, lon);
-            if (fileName == null)
-                return 0;
+        return demProvider.getHeight(lat, lon);
+    }
 
-            DataAccess heights = getDirectory().find("dem" + intKey);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
-            }
+    /**
+     * Loads the tile of the specified coordinates only once, even if called from several threads.
+     * The tile is added to the cache after it is completely loaded.
+     *
+     * @return null if no tile exists for the coordinates
+     */
+    private synchronized HeightTile loadTile(double lat, double lon, int intKey) {
+        HeightTile demProvider = cacheData.get(intKey);
+        if (demProvider != null)
+            return demProvider;
 
-            if (!loadExisting) {
-                try {
-                    updateHeightsFromFile(lat, lon, heights);
-                } catch (FileNotFoundException ex) {
-                    demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
-                    cacheData.put(intKey, demProvider);
-                    demProvider.setHeights(heights);
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.setSegmentSize(100).create(10).
-                            flush();
-                    return 0;
-                }
-            }
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
 
-            int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
-            if (width == 0)
-                width = DEFAULT_WIDTH;
+        int minLat = down(lat);
+        int minLon = down(lon);
 
-            demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
-            cacheData.put(intKey, demProvider);
-            demProvider.setCalcMean(calcMean);
-            demProvider.setHeights(heights);
+        String fileName = getFileName(lat, lon);
+        if (fileName == null)
+            return null;
+
+        DataAccess heights = getDirectory().find("dem" + intKey);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load dem" + intKey + ", error:" + ex.getMessage());
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        if (!loadExisting) {
+            try {
+                updateHeightsFromFile(lat, lon, heights);
+            } catch (FileNotFoundException ex) {
+                demProvider = new HeightTile(minLat, minLon, DEFAULT_WIDTH, DEFAULT_WIDTH, precision, DEGREE, DEGREE);
+                demProvider.setHeights(heights);
+                demProvider.setSeaLevel(true);
+                // use small size on disc and in-memory
+                heights.setSegmentSize(100).create(10).
+                        flush();
+                addTile(intKey, demProvider);
+                return demProvider;
+            }
+        }
 
-        return demProvider.getHeight(lat, lon);
+        int width = (int) (Math.sqrt(heights.getHeader(WIDTH_BYTE_INDEX)) + 0.5);
+        if (width == 0)
+            width = DEFAULT_WIDTH;
+
+        demProvider = new HeightTile(minLat, minLon, width, width, precision, DEGREE, DEGREE);
+        demProvider.setCalcMean(calcMean);
+        demProvider.setHeights(heights);
+        addTile(intKey, demProvider);
+        return demProvider;
+    }
+
+    /**
+     * Publishes a copy of the cache with the specified tile, the current map is never changed.
+     * Called with the lock held, i.e. there are only as many copies as tiles.
+     */
+    private void addTile(int intKey, HeightTile tile) {
+        IntObjectHashMap<HeightTile> copy = new IntObjectHashMap<>(cacheData.size() + 1);
+        copy.putAll(cacheData);
+        copy.put(intKey, tile);
+        cacheData = copy;
     }
 
     private void updateHeightsFromFile(double lat, double lon, DataAccess heights) throws FileNotFoundException {
@@ -24,8 +24,8 @@ import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides basic methods that are usually used in an ElevationProvider that reads tiff files.
@@ -33,7 +33,8 @@ import java.util.Map;
  * @author Robin Boldt
  */
 public abstract class AbstractTiffElevationProvider extends AbstractElevationProvider {
-    private final Map<String, HeightTile> cacheData = new HashMap<>();
+    // concurrent as the import looks up the elevation from several threads
+    private final Map<String, HeightTile> cacheData = new ConcurrentHashMap<>();
     final double precision = 1e7;
 
     private final int WIDTH;
@@ -93,53 +94,66 @@ public abstract class AbstractTiffElevationProvider extends AbstractElevationPro
         lon = (int) (lon * precision) / precision;
         String name = getFileName(lat, lon);
         HeightTile demProvider = cacheData.get(name);
-        if (demProvider == null) {
-            if (!cacheDir.exists())
-                cacheDir.mkdirs();
-
-            int minLat = getMinLatForTile(lat);
-            int minLon = getMinLonForTile(lon);
-            // less restrictive against boundary checking
-            demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
-            demProvider.setCalcMean(calcMean);
-
-            cacheData.put(name, demProvider);
-            DataAccess heights = getDirectory().find(name + ".gh");
-            demProvider.setHeights(heights);
-            boolean loadExisting = false;
-            try {
-                loadExisting = heights.loadExisting();
-            } catch (Exception ex) {
-                logger.warn("cannot load " + name + ", error: " + ex.getMessage());
-            }
+        if (demProvider == null)
+            demProvider = loadTile(lat, lon, name);
 
-            if (!loadExisting) {
-                String zippedURL = getDownloadURL(lat, lon);
-                File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
+        if (demProvider.isSeaLevel())
+            return 0;
 
-                try {
-                    downloadFile(file, zippedURL);
-                } catch (IOException e) {
-                    demProvider.setSeaLevel(true);
-                    // use small size on disc and in-memory
-                    heights.setSegmentSize(100).create(10).
-                            flush();
-                    return 0;
-                }
+        return demProvider.getHeight(lat, lon);
+    }
+
+    /**
+     * Loads the tile of the specified coordinates only once, even if called from several threads.
+     * The tile is added to the cache after it is completely loaded.
+     */
+    private synchronized HeightTile loadTile(double lat, double lon, String name) {
+        HeightTile demProvider = cacheData.get(name);
+        if (demProvider != null)
+            return demProvider;
 
-                // short == 2 bytes
-                heights.create(2 * WIDTH * HEIGHT);
+        if (!cacheDir.exists())
+            cacheDir.mkdirs();
 
-                Raster raster = generateRasterFromFile(file, name + ".tif");
-                fillDataAccessWithElevationData(raster, heights, WIDTH);
+        int minLat = getMinLatForTile(lat);
+        int minLon = getMinLonForTile(lon);
+        // less restrictive against boundary checking
+        demProvider = new HeightTile(minLat, minLon, WIDTH, HEIGHT, LON_DEGREE * precision, LON_DEGREE, LAT_DEGREE);
+        demProvider.setCalcMean(calcMean);
 
-            } // loadExisting
+        DataAccess heights = getDirectory().find(name + ".gh");
+        demProvider.setHeights(heights);
+        boolean loadExisting = false;
+        try {
+            loadExisting = heights.loadExisting();
+        } catch (Exception ex) {
+            logger.warn("cannot load " + name + ", error: " + ex.getMessage());
         }
 
-        if (demProvider.isSeaLevel())
-            return 0;
+        if (!loadExisting) {
+            String zippedURL = getDownloadURL(lat, lon);
+            File file = new File(cacheDir, new File(getFileNameOfLocalFile(lat, lon)).getName());
 
-        return demProvider.getHeight(lat, lon);
+            try {
+                downloadFile(file, zippedURL);
+            } catch (IOException e) {
+                demProvider.setSeaLevel(true);
+                // use small size on disc and in-memory
+                heights.setSegmentSize(100).create(10).
+                        flush();
+                cacheData.put(name, demProvider);
+                return demProvider;
+            }
+
+            // short == 2 bytes
+            heights.create(2 * WIDTH * HEIGHT);
+
+            Raster raster = generateRasterFromFile(file, name + ".tif");
+            fillDataAccessWithElevationData(raster, heights, WIDTH);
+
+        } // loadExisting
+        cacheData.put(name, demProvider);
+        return demProvider;
     }
 
     abstract Raster generateRasterFromFile(File file, String tifName);
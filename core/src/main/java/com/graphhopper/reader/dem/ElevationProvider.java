@@ -53,6 +53,8 @@ public interface ElevationProvider {
     };
 
     /**
+     * This method must be thread safe as the import can look up the elevation from several threads.
+     *
      * @return returns the height in meters or Double.NaN if invalid
      */
     double getEle(double lat, double lon);
@@ -17,7 +17,7 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
@@ -26,8 +26,6 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.util.*;
 
-import java.util.PriorityQueue;
-
 /**
  * This class implements the A* algorithm according to
  * http://en.wikipedia.org/wiki/A*_search_algorithm
@@ -40,8 +38,8 @@ import java.util.PriorityQueue;
 public class AStar extends AbstractRoutingAlgorithm {
     private WeightApproximator weightApprox;
     private int visitedCount;
-    private GHIntObjectHashMap<AStarEntry> fromMap;
-    private PriorityQueue<AStarEntry> prioQueueOpenSet;
+    private SearchState fromState;
+    private GHIntObjectVersionedHashMap<SPTEntry> fromMap;
     private AStarEntry currEdge;
     private int to1 = -1;
 
@@ -63,8 +61,8 @@ public class AStar extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        fromMap = new GHIntObjectHashMap<>();
-        prioQueueOpenSet = new PriorityQueue<>(size);
+        fromState = SearchState.acquire(size);
+        fromMap = fromState.map;
     }
 
     @Override
@@ -78,7 +76,11 @@ public class AStar extends AbstractRoutingAlgorithm {
         if (!traversalMode.isEdgeBased()) {
             fromMap.put(from, currEdge);
         }
-        return runAlgo();
+        try {
+            return runAlgo();
+        } finally {
+            fromState.release();
+        }
     }
 
     private Path runAlgo() {
@@ -104,36 +106,37 @@ public class AStar extends AbstractRoutingAlgorithm {
                     continue;
 
                 int traversalId = traversalMode.createTraversalId(iter, false);
-                AStarEntry ase = fromMap.get(traversalId);
+                int index = fromMap.indexOf(traversalId);
+                AStarEntry ase = index < 0 ? null : (AStarEntry) fromMap.indexGet(index);
                 if (ase == null || ase.weightOfVisitedPath > alreadyVisitedWeight) {
                     int neighborNode = iter.getAdjNode();
                     currWeightToGoal = weightApprox.approximate(neighborNode);
                     estimationFullWeight = alreadyVisitedWeight + currWeightToGoal;
                     if (ase == null) {
                         ase = new AStarEntry(iter.getEdge(), neighborNode, estimationFullWeight, alreadyVisitedWeight);
-                        fromMap.put(traversalId, ase);
+                        ase.parent = currEdge;
+                        fromMap.indexInsert(index, traversalId, ase);
+                        fromState.push(fromMap.size() - 1, ase);
                     } else {
 //                        assert (ase.weight > 0.9999999 * estimationFullWeight) : "Inconsistent distance estimate. It is expected weight >= estimationFullWeight but was "
 //                                + ase.weight + " < " + estimationFullWeight + " (" + ase.weight / estimationFullWeight + "), and weightOfVisitedPath:"
 //                                + ase.weightOfVisitedPath + " vs. alreadyVisitedWeight:" + alreadyVisitedWeight + " (" + ase.weightOfVisitedPath / alreadyVisitedWeight + ")";
 
-                        prioQueueOpenSet.remove(ase);
                         ase.edge = iter.getEdge();
                         ase.weight = estimationFullWeight;
                         ase.weightOfVisitedPath = alreadyVisitedWeight;
+                        ase.parent = currEdge;
+                        fromState.pushOrUpdate(index, ase);
                     }
 
-                    ase.parent = currEdge;
-                    prioQueueOpenSet.add(ase);
-
                     updateBestPath(iter, ase, traversalId);
                 }
             }
 
-            if (prioQueueOpenSet.isEmpty())
+            if (fromState.heap.isEmpty())
                 return createEmptyPath();
 
-            currEdge = prioQueueOpenSet.poll();
+            currEdge = (AStarEntry) fromState.poll();
             if (currEdge == null)
                 throw new AssertionError("Empty edge cannot happen");
         }
@@ -127,34 +127,25 @@ public class AStarBidirection extends AbstractBidirAlgo implements Recalculation
 
     @Override
     public void afterHeuristicChange(boolean forward, boolean backward) {
-        if (forward) {
-
-            // update PQ due to heuristic change (i.e. weight changed)
-            if (!pqOpenSetFrom.isEmpty()) {
-                // copy into temporary array to avoid pointer change of PQ
-                AStarEntry[] entries = pqOpenSetFrom.toArray(new AStarEntry[pqOpenSetFrom.size()]);
-                pqOpenSetFrom.clear();
-                for (AStarEntry value : entries) {
-                    value.weight = value.weightOfVisitedPath + weightApprox.approximate(value.adjNode, false);
-                    // does not work for edge based
-                    // ignoreExplorationFrom.add(value.adjNode);
-
-                    pqOpenSetFrom.add(value);
-                }
-            }
-        }
+        // update PQ due to heuristic change (i.e. weight changed)
+        if (forward)
+            updateHeapWeights(stateFrom, false);
+
+        if (backward)
+            updateHeapWeights(stateTo, true);
+    }
 
-        if (backward) {
-            if (!pqOpenSetTo.isEmpty()) {
-                AStarEntry[] entries = pqOpenSetTo.toArray(new AStarEntry[pqOpenSetTo.size()]);
-                pqOpenSetTo.clear();
-                for (AStarEntry value : entries) {
-                    value.weight = value.weightOfVisitedPath + weightApprox.approximate(value.adjNode, true);
-                    // ignoreExplorationTo.add(value.adjNode);
-
-                    pqOpenSetTo.add(value);
-                }
-            }
+    private void updateHeapWeights(SearchState state, boolean reverse) {
+        // the heap contains the start entry and a subset of the entries in the map
+        for (int heapId = 0; heapId <= state.map.size(); heapId++) {
+            if (!state.heap.contains(heapId))
+                continue;
+
+            AStarEntry value = (AStarEntry) state.get(heapId);
+            value.weight = value.weightOfVisitedPath + weightApprox.approximate(value.adjNode, reverse);
+            // does not work for edge based
+            // ignoreExploration.add(value.adjNode);
+            state.heap.update(heapId, value.weight);
         }
     }
 
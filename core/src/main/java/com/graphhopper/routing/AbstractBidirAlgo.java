@@ -17,8 +17,7 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -28,8 +27,6 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 
-import java.util.PriorityQueue;
-
 /**
  * Common subclass for bidirectional algorithms.
  * <p>
@@ -37,14 +34,14 @@ import java.util.PriorityQueue;
  * @author Peter Karich
  */
 public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> bestWeightMapFrom;
-    protected IntObjectMap<SPTEntry> bestWeightMapTo;
-    protected IntObjectMap<SPTEntry> bestWeightMapOther;
+    protected GHIntObjectVersionedHashMap<SPTEntry> bestWeightMapFrom;
+    protected GHIntObjectVersionedHashMap<SPTEntry> bestWeightMapTo;
+    protected GHIntObjectVersionedHashMap<SPTEntry> bestWeightMapOther;
     protected SPTEntry currFrom;
     protected SPTEntry currTo;
     protected PathBidirRef bestPath;
-    PriorityQueue<SPTEntry> pqOpenSetFrom;
-    PriorityQueue<SPTEntry> pqOpenSetTo;
+    SearchState stateFrom;
+    SearchState stateTo;
     private boolean updateBestPath = true;
     protected boolean finishedFrom;
     protected boolean finishedTo;
@@ -57,12 +54,16 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
         initCollections(size);
     }
 
+    /**
+     * Takes the maps and queues of both directions from the pool of the current thread. They are
+     * returned to the pool when {@link #calcPath(int, int)} is finished.
+     */
     protected void initCollections(int size) {
-        pqOpenSetFrom = new PriorityQueue<>(size);
-        bestWeightMapFrom = new GHIntObjectHashMap<>(size);
+        stateFrom = SearchState.acquire(size);
+        bestWeightMapFrom = stateFrom.map;
 
-        pqOpenSetTo = new PriorityQueue<>(size);
-        bestWeightMapTo = new GHIntObjectHashMap<>(size);
+        stateTo = SearchState.acquire(size);
+        bestWeightMapTo = stateTo.map;
     }
 
     protected abstract SPTEntry createStartEntry(int node, double weight, boolean reverse);
@@ -72,10 +73,23 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
     @Override
     public Path calcPath(int from, int to) {
         checkAlreadyRun();
-        createAndInitPath();
-        init(from, 0, to, 0);
-        runAlgo();
-        return extractPath();
+        try {
+            createAndInitPath();
+            init(from, 0, to, 0);
+            runAlgo();
+            return extractPath();
+        } finally {
+            releaseCollections();
+        }
+    }
+
+    /**
+     * Returns the maps and queues to the pool. The path was already extracted, it only needs the
+     * entries and not the maps.
+     */
+    protected void releaseCollections() {
+        stateFrom.release();
+        stateTo.release();
     }
 
     protected Path createAndInitPath() {
@@ -91,17 +105,20 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
 
     protected void initFrom(int from, double weight) {
         currFrom = createStartEntry(from, weight, false);
-        pqOpenSetFrom.add(currFrom);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapFrom.put(from, currFrom);
-        }
+        initStart(stateFrom, from, currFrom);
     }
 
     protected void initTo(int to, double weight) {
         currTo = createStartEntry(to, weight, true);
-        pqOpenSetTo.add(currTo);
-        if (!traversalMode.isEdgeBased()) {
-            bestWeightMapTo.put(to, currTo);
+        initStart(stateTo, to, currTo);
+    }
+
+    private void initStart(SearchState state, int node, SPTEntry entry) {
+        if (traversalMode.isEdgeBased()) {
+            state.pushStart(entry);
+        } else {
+            state.map.put(node, entry);
+            state.push(state.map.size() - 1, entry);
         }
     }
 
@@ -143,10 +160,10 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
     }
 
     boolean fillEdgesFrom() {
-        if (pqOpenSetFrom.isEmpty()) {
+        if (stateFrom.heap.isEmpty()) {
             return false;
         }
-        currFrom = pqOpenSetFrom.poll();
+        currFrom = stateFrom.poll();
         visitedCountFrom++;
         if (fromEntryCanBeSkipped()) {
             return true;
@@ -155,15 +172,15 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
             return false;
         }
         bestWeightMapOther = bestWeightMapTo;
-        fillEdges(currFrom, pqOpenSetFrom, bestWeightMapFrom, outEdgeExplorer, false);
+        fillEdges(currFrom, stateFrom, outEdgeExplorer, false);
         return true;
     }
 
     boolean fillEdgesTo() {
-        if (pqOpenSetTo.isEmpty()) {
+        if (stateTo.heap.isEmpty()) {
             return false;
         }
-        currTo = pqOpenSetTo.poll();
+        currTo = stateTo.poll();
         visitedCountTo++;
         if (toEntryCanBeSkipped()) {
             return true;
@@ -172,12 +189,12 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
             return false;
         }
         bestWeightMapOther = bestWeightMapFrom;
-        fillEdges(currTo, pqOpenSetTo, bestWeightMapTo, inEdgeExplorer, true);
+        fillEdges(currTo, stateTo, inEdgeExplorer, true);
         return true;
     }
 
-    private void fillEdges(SPTEntry currEdge, PriorityQueue<SPTEntry> prioQueue,
-                           IntObjectMap<SPTEntry> bestWeightMap, EdgeExplorer explorer, boolean reverse) {
+    private void fillEdges(SPTEntry currEdge, SearchState state, EdgeExplorer explorer, boolean reverse) {
+        GHIntObjectVersionedHashMap<SPTEntry> bestWeightMap = state.map;
         EdgeIterator iter = explorer.setBaseNode(currEdge.adjNode);
         while (iter.next()) {
             if (!accept(iter, currEdge, reverse))
@@ -188,17 +205,20 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
             final double weight = calcWeight(iter, currEdge, reverse);
             if (Double.isInfinite(weight))
                 continue;
-            SPTEntry entry = bestWeightMap.get(traversalId);
-            if (entry == null) {
+            SPTEntry entry;
+            int index = bestWeightMap.indexOf(traversalId);
+            if (index < 0) {
                 entry = createEntry(iter, weight, currEdge, reverse);
-                bestWeightMap.put(traversalId, entry);
-                prioQueue.add(entry);
-            } else if (entry.getWeightOfVisitedPath() > weight) {
-                prioQueue.remove(entry);
+                bestWeightMap.indexInsert(index, traversalId, entry);
+                state.push(bestWeightMap.size() - 1, entry);
+            } else {
+                entry = bestWeightMap.indexGet(index);
+                if (entry.getWeightOfVisitedPath() <= weight)
+                    continue;
+
                 updateEntry(entry, iter, weight, currEdge, reverse);
-                prioQueue.add(entry);
-            } else
-                continue;
+                state.pushOrUpdate(index, entry);
+            }
 
             if (updateBestPath)
                 updateBestPath(iter, entry, traversalId, reverse);
@@ -287,15 +307,15 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
         return currTo.weight;
     }
 
-    IntObjectMap<SPTEntry> getBestFromMap() {
+    GHIntObjectVersionedHashMap<SPTEntry> getBestFromMap() {
         return bestWeightMapFrom;
     }
 
-    IntObjectMap<SPTEntry> getBestToMap() {
+    GHIntObjectVersionedHashMap<SPTEntry> getBestToMap() {
         return bestWeightMapTo;
     }
 
-    void setBestOtherMap(IntObjectMap<SPTEntry> other) {
+    void setBestOtherMap(GHIntObjectVersionedHashMap<SPTEntry> other) {
         bestWeightMapOther = other;
     }
 
@@ -313,7 +333,7 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
     }
 
     void setFromDataStructures(AbstractBidirAlgo other) {
-        pqOpenSetFrom = other.pqOpenSetFrom;
+        stateFrom = other.stateFrom;
         bestWeightMapFrom = other.bestWeightMapFrom;
         finishedFrom = other.finishedFrom;
         currFrom = other.currFrom;
@@ -322,7 +342,7 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm {
     }
 
     void setToDataStructures(AbstractBidirAlgo other) {
-        pqOpenSetTo = other.pqOpenSetTo;
+        stateTo = other.stateTo;
         bestWeightMapTo = other.bestWeightMapTo;
         finishedTo = other.finishedTo;
         currTo = other.currTo;
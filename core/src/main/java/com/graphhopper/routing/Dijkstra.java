@@ -17,8 +17,7 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -28,8 +27,6 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Parameters;
 
-import java.util.PriorityQueue;
-
 /**
  * Implements a single source shortest path algorithm
  * http://en.wikipedia.org/wiki/Dijkstra's_algorithm
@@ -38,8 +35,8 @@ import java.util.PriorityQueue;
  * @author Peter Karich
  */
 public class Dijkstra extends AbstractRoutingAlgorithm {
-    protected IntObjectMap<SPTEntry> fromMap;
-    protected PriorityQueue<SPTEntry> fromHeap;
+    protected GHIntObjectVersionedHashMap<SPTEntry> fromMap;
+    SearchState fromState;
     protected SPTEntry currEdge;
     private int visitedNodes;
     private int to = -1;
@@ -51,8 +48,8 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        fromHeap = new PriorityQueue<>(size);
-        fromMap = new GHIntObjectHashMap<>(size);
+        fromState = SearchState.acquire(size);
+        fromMap = fromState.map;
     }
 
     @Override
@@ -63,8 +60,12 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
         if (!traversalMode.isEdgeBased()) {
             fromMap.put(from, currEdge);
         }
-        runAlgo();
-        return extractPath();
+        try {
+            runAlgo();
+            return extractPath();
+        } finally {
+            fromState.release();
+        }
     }
 
     protected void runAlgo() {
@@ -85,28 +86,31 @@ public class Dijkstra extends AbstractRoutingAlgorithm {
                 if (Double.isInfinite(tmpWeight))
                     continue;
 
-                SPTEntry nEdge = fromMap.get(traversalId);
-                if (nEdge == null) {
+                SPTEntry nEdge;
+                int index = fromMap.indexOf(traversalId);
+                if (index < 0) {
                     nEdge = new SPTEntry(iter.getEdge(), iter.getAdjNode(), tmpWeight);
                     nEdge.parent = currEdge;
-                    fromMap.put(traversalId, nEdge);
-                    fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    fromHeap.remove(nEdge);
+                    fromMap.indexInsert(index, traversalId, nEdge);
+                    fromState.push(fromMap.size() - 1, nEdge);
+                } else {
+                    nEdge = fromMap.indexGet(index);
+                    if (nEdge.weight <= tmpWeight)
+                        continue;
+
                     nEdge.edge = iter.getEdge();
                     nEdge.weight = tmpWeight;
                     nEdge.parent = currEdge;
-                    fromHeap.add(nEdge);
-                } else
-                    continue;
+                    fromState.pushOrUpdate(index, nEdge);
+                }
 
                 updateBestPath(iter, nEdge, traversalId);
             }
 
-            if (fromHeap.isEmpty())
+            if (fromState.heap.isEmpty())
                 break;
 
-            currEdge = fromHeap.poll();
+            currEdge = fromState.poll();
             if (currEdge == null)
                 throw new AssertionError("Empty edge cannot happen");
         }
@@ -17,7 +17,7 @@
  */
 package com.graphhopper.routing;
 
-import com.carrotsearch.hppc.IntObjectMap;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
 import com.graphhopper.routing.util.TraversalMode;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
@@ -57,7 +57,7 @@ public class DijkstraBidirectionCH extends DijkstraBidirectionCHNoSOD {
         return getName() + "|" + weighting;
     }
 
-    private boolean entryIsStallable(SPTEntry entry, IntObjectMap<SPTEntry> bestWeightMap, EdgeExplorer edgeExplorer,
+    private boolean entryIsStallable(SPTEntry entry, GHIntObjectVersionedHashMap<SPTEntry> bestWeightMap, EdgeExplorer edgeExplorer,
                                      boolean reverse) {
         // We check for all 'incoming' edges if we can prove that the current node (that is about to be settled) is 
         // reached via a suboptimal path. We do this regardless of the CH level of the adjacent nodes.
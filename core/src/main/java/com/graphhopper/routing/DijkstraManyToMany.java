@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+
+/**
+ * Calculates the matrix without a prepared graph, i.e. with one {@link DijkstraOneToMany} search
+ * per source node which is continued for every target node.
+ */
+public class DijkstraManyToMany implements ManyToManyAlgorithm {
+    private final DijkstraOneToMany algo;
+    private int visitedNodes;
+
+    public DijkstraManyToMany(Graph graph, Weighting weighting, TraversalMode traversalMode) {
+        if (traversalMode.isEdgeBased())
+            throw new IllegalArgumentException("Edge-based traversal is not supported for the matrix, use " + TraversalMode.NODE_BASED);
+
+        algo = new DijkstraOneToMany(graph, weighting, traversalMode);
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix(int[] fromNodes, int[] toNodes) {
+        DistanceMatrix matrix = new DistanceMatrix(fromNodes.length, toNodes.length);
+        visitedNodes = 0;
+        for (int from = 0; from < fromNodes.length; from++) {
+            algo.clear();
+            for (int to = 0; to < toNodes.length; to++) {
+                if (fromNodes[from] == toNodes[to]) {
+                    // the cached search of DijkstraOneToMany cannot return its start node
+                    matrix.set(from, to, 0, 0, 0);
+                    continue;
+                }
+
+                Path path = algo.calcPath(fromNodes[from], toNodes[to]);
+                visitedNodes += algo.getVisitedNodes();
+                if (path.isFound())
+                    matrix.set(from, to, path.getWeight(), path.getDistance(), path.getTime());
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public void setMaxVisitedNodes(int numberOfNodes) {
+        algo.setMaxVisitedNodes(numberOfNodes);
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
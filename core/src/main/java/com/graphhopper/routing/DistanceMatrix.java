@@ -0,0 +1,83 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Arrays;
+
+/**
+ * The result of a {@link ManyToManyAlgorithm}: the weight, the distance in meter and the time in
+ * milliseconds from every source to every target. Pairs without a connection have an infinite
+ * weight.
+ */
+public class DistanceMatrix {
+    private final double[][] weights;
+    private final double[][] distances;
+    private final long[][] times;
+
+    public DistanceMatrix(int fromCount, int toCount) {
+        weights = new double[fromCount][toCount];
+        distances = new double[fromCount][toCount];
+        times = new long[fromCount][toCount];
+        for (int from = 0; from < fromCount; from++) {
+            Arrays.fill(weights[from], Double.POSITIVE_INFINITY);
+            Arrays.fill(distances[from], Double.POSITIVE_INFINITY);
+            Arrays.fill(times[from], Long.MAX_VALUE);
+        }
+    }
+
+    public void set(int from, int to, double weight, double distance, long time) {
+        weights[from][to] = weight;
+        distances[from][to] = distance;
+        times[from][to] = time;
+    }
+
+    public boolean isConnected(int from, int to) {
+        return weights[from][to] < Double.POSITIVE_INFINITY;
+    }
+
+    public double getWeight(int from, int to) {
+        return weights[from][to];
+    }
+
+    /**
+     * @return the distance in meter
+     */
+    public double getDistance(int from, int to) {
+        return distances[from][to];
+    }
+
+    /**
+     * @return the time in milliseconds
+     */
+    public long getTime(int from, int to) {
+        return times[from][to];
+    }
+
+    public int getFromCount() {
+        return weights.length;
+    }
+
+    public int getToCount() {
+        return weights.length == 0 ? 0 : weights[0].length;
+    }
+
+    @Override
+    public String toString() {
+        return "matrix " + getFromCount() + "x" + getToCount();
+    }
+}
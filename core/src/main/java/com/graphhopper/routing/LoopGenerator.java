@@ -0,0 +1,404 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntDoubleHashMap;
+import com.graphhopper.coll.GHIntHashSet;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.AvoidEdgesWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.SPTEntry;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates several round trips of a target distance from one start in a single call. A search
+ * tree bounded by half of the distance is built from the start. The tree nodes between 25% and 50%
+ * of the distance are candidates to turn around, the one closest to 45% in every direction from
+ * the start. For every candidate the way out is taken from the tree and the way back is calculated
+ * with a penalty on the edges of the way out. These searches are independent and run in parallel
+ * if an executor is set.
+ * <p>
+ * A loop costs its relative deviation from the target distance plus the share of the way back
+ * which uses the way out plus its weight per meter relative to the best loop minus one. The last
+ * term prefers edges with high scores for the mindful and vibrant weightings. The loops with the
+ * lowest costs are returned, skipping the ones which share too much distance with a better one.
+ */
+public class LoopGenerator {
+    private static final double MAX_TURNAROUND_FACTOR = 0.5;
+    private static final double MIN_TURNAROUND_FACTOR = 0.25;
+    private static final double PREFERRED_TURNAROUND_FACTOR = 0.45;
+    private final Graph graph;
+    private final RoutingAlgorithmFactory algoFactory;
+    private final AlgorithmOptions algoOpts;
+    private final Weighting weighting;
+    private double distance = 10_000;
+    private int maxPaths = 3;
+    private int candidates = 16;
+    private double maxShareFactor = 0.6;
+    private ExecutorService executor;
+    private int visitedNodes;
+
+    public LoopGenerator(Graph graph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
+        this.graph = graph;
+        this.algoFactory = algoFactory;
+        this.algoOpts = algoOpts;
+        this.weighting = algoOpts.getWeighting();
+    }
+
+    /**
+     * @param distance the target distance of a loop in meter
+     */
+    public LoopGenerator setDistance(double distance) {
+        if (distance <= 0)
+            throw new IllegalArgumentException("The distance of a loop must be positive but was " + distance);
+        this.distance = distance;
+        return this;
+    }
+
+    /**
+     * @param maxPaths the maximum number of loops to return
+     */
+    public LoopGenerator setMaxPaths(int maxPaths) {
+        if (maxPaths < 1)
+            throw new IllegalArgumentException("At least one loop has to be returned but max paths was " + maxPaths);
+        this.maxPaths = maxPaths;
+        return this;
+    }
+
+    /**
+     * @param candidates the number of directions, i.e. the maximum number of evaluated loops
+     */
+    public LoopGenerator setCandidates(int candidates) {
+        if (candidates < 1)
+            throw new IllegalArgumentException("At least one candidate is required but was " + candidates);
+        this.candidates = candidates;
+        return this;
+    }
+
+    /**
+     * @param maxShareFactor a loop is skipped if this share of its distance is used by a better loop
+     */
+    public LoopGenerator setMaxShareFactor(double maxShareFactor) {
+        this.maxShareFactor = maxShareFactor;
+        return this;
+    }
+
+    /**
+     * @param executor evaluates the candidates in parallel or null to evaluate them one after
+     *                 another in the calling thread
+     */
+    public LoopGenerator setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * @return the best loops sorted by their costs, empty if no loop was found
+     */
+    public List<Loop> calcLoops(final int startNode) {
+        LoopTree tree = new LoopTree(graph, weighting, distance * MAX_TURNAROUND_FACTOR);
+        tree.setMaxVisitedNodes(algoOpts.getMaxVisitedNodes());
+        List<SPTEntry> turnarounds = tree.calcTurnarounds(startNode, distance * MIN_TURNAROUND_FACTOR,
+                distance * PREFERRED_TURNAROUND_FACTOR, candidates);
+        visitedNodes += tree.getVisitedNodes();
+
+        List<Loop> loops = new ArrayList<>(turnarounds.size());
+        if (executor == null) {
+            for (SPTEntry turnaround : turnarounds) {
+                loops.add(calcLoop(startNode, turnaround));
+            }
+        } else {
+            List<Callable<Loop>> callables = new ArrayList<>(turnarounds.size());
+            for (final SPTEntry turnaround : turnarounds) {
+                callables.add(new Callable<Loop>() {
+                    @Override
+                    public Loop call() {
+                        return calcLoop(startNode, turnaround);
+                    }
+                });
+            }
+            try {
+                for (Future<Loop> future : executor.invokeAll(callables)) {
+                    loops.add(future.get());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Thread was interrupted", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        List<Loop> found = new ArrayList<>(loops.size());
+        for (Loop loop : loops) {
+            visitedNodes += loop.visitedNodes;
+            if (loop.isFound())
+                found.add(loop);
+        }
+        return selectLoops(found);
+    }
+
+    private Loop calcLoop(int startNode, SPTEntry turnaround) {
+        Path out = new Path(graph, weighting).setWeight(turnaround.weight).setSPTEntry(turnaround).extract();
+        List<EdgeIteratorState> outEdges = out.calcEdges();
+
+        AvoidEdgesWeighting avoidOutWeighting = new AvoidEdgesWeighting(weighting);
+        avoidOutWeighting.setEdgePenaltyFactor(5);
+        avoidOutWeighting.addEdges(outEdges);
+        AlgorithmOptions backOpts = AlgorithmOptions.start(algoOpts).
+                algorithm(Parameters.Algorithms.ASTAR_BI).
+                weighting(avoidOutWeighting).build();
+        backOpts.getHints().put(Parameters.Algorithms.AStarBi.EPSILON, 2);
+        RoutingAlgorithm algo = algoFactory.createAlgo(graph, backOpts);
+        Path back = algo.calcPath(turnaround.adjNode, startNode);
+        return new Loop(turnaround.adjNode, out, outEdges, back, algo.getVisitedNodes());
+    }
+
+    private List<Loop> selectLoops(List<Loop> loops) {
+        double minWeightPerMeter = Double.POSITIVE_INFINITY;
+        for (Loop loop : loops) {
+            loop.init(weighting);
+            minWeightPerMeter = Math.min(minWeightPerMeter, loop.getWeightPerMeter());
+        }
+        for (Loop loop : loops) {
+            loop.cost = Math.abs(loop.distance - distance) / distance + loop.overlap
+                    + loop.getWeightPerMeter() / minWeightPerMeter - 1;
+        }
+        Collections.sort(loops, new Comparator<Loop>() {
+            @Override
+            public int compare(Loop o1, Loop o2) {
+                return Double.compare(o1.cost, o2.cost);
+            }
+        });
+
+        List<Loop> selected = new ArrayList<>(Math.min(maxPaths, loops.size()));
+        for (Loop loop : loops) {
+            if (selected.size() >= maxPaths)
+                break;
+
+            boolean tooSimilar = false;
+            for (Loop better : selected) {
+                if (loop.calcShare(better) > maxShareFactor) {
+                    tooSimilar = true;
+                    break;
+                }
+            }
+            if (!tooSimilar)
+                selected.add(loop);
+        }
+        return selected;
+    }
+
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * A round trip from the start to a turnaround node and back.
+     */
+    public static class Loop {
+        private final int turnaroundNode;
+        private final Path out;
+        private final Path back;
+        private final List<EdgeIteratorState> edges;
+        private final GHIntHashSet edgeIds;
+        private final int visitedNodes;
+        private double distance;
+        private double weight;
+        private double overlap;
+        private double cost;
+
+        Loop(int turnaroundNode, Path out, List<EdgeIteratorState> outEdges, Path back, int visitedNodes) {
+            this.turnaroundNode = turnaroundNode;
+            this.out = out;
+            this.back = back;
+            this.visitedNodes = visitedNodes;
+            this.edges = new ArrayList<>(outEdges);
+            if (back.isFound())
+                edges.addAll(back.calcEdges());
+            this.edgeIds = new GHIntHashSet(edges.size());
+        }
+
+        boolean isFound() {
+            return out.isFound() && back.isFound();
+        }
+
+        /**
+         * Sums the distance and the weight without the penalty of the way back and the distance of
+         * the way back which uses the way out.
+         */
+        void init(Weighting weighting) {
+            int outEdgeCount = out.getEdgeCount();
+            int prevEdge = EdgeIterator.NO_EDGE;
+            for (int i = 0; i < edges.size(); i++) {
+                EdgeIteratorState edge = edges.get(i);
+                distance += edge.getDistance();
+                weight += weighting.calcWeight(edge, false, prevEdge);
+                if (i >= outEdgeCount && edgeIds.contains(edge.getEdge()))
+                    overlap += edge.getDistance();
+                edgeIds.add(edge.getEdge());
+                prevEdge = edge.getEdge();
+            }
+            overlap = distance > 0 ? overlap / distance : 0;
+        }
+
+        /**
+         * @return the share of the distance of this loop which is used by the other loop
+         */
+        double calcShare(Loop other) {
+            double shared = 0;
+            for (EdgeIteratorState edge : edges) {
+                if (other.edgeIds.contains(edge.getEdge()))
+                    shared += edge.getDistance();
+            }
+            return distance > 0 ? shared / distance : 1;
+        }
+
+        public int getTurnaroundNode() {
+            return turnaroundNode;
+        }
+
+        /**
+         * @return the way out and the way back
+         */
+        public List<Path> getPaths() {
+            return Arrays.asList(out, back);
+        }
+
+        /**
+         * @return the distance in meter
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return the weight without the penalty of the way back
+         */
+        public double getWeight() {
+            return weight;
+        }
+
+        double getWeightPerMeter() {
+            return distance > 0 ? weight / distance : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return the share of the distance which is used on the way out and on the way back
+         */
+        public double getOverlap() {
+            return overlap;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return "turnaround:" + turnaroundNode + ", distance:" + Helper.round2(distance) + ", overlap:"
+                    + Helper.round2(overlap) + ", cost:" + Helper.round2(cost);
+        }
+    }
+
+    /**
+     * The shortest path tree from the start, which does not relax edges beyond the maximum
+     * distance.
+     */
+    static class LoopTree extends Dijkstra {
+        private final double maxDistance;
+        private final IntDoubleHashMap distances = new IntDoubleHashMap();
+
+        LoopTree(Graph graph, Weighting weighting, double maxDistance) {
+            super(graph, weighting, TraversalMode.NODE_BASED);
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        protected boolean accept(EdgeIteratorState iter, int prevOrNextEdgeId) {
+            return super.accept(iter, prevOrNextEdgeId)
+                    && distances.get(currEdge.adjNode) + iter.getDistance() <= maxDistance;
+        }
+
+        @Override
+        protected void updateBestPath(EdgeIteratorState edgeState, SPTEntry bestSPTEntry, int traversalId) {
+            distances.put(bestSPTEntry.adjNode, distances.get(currEdge.adjNode) + edgeState.getDistance());
+        }
+
+        /**
+         * Builds the tree and picks the turnaround in every sector of the directions from the
+         * start: the node with a distance of at least minDistance which is closest to
+         * preferredDistance.
+         */
+        List<SPTEntry> calcTurnarounds(int startNode, double minDistance, double preferredDistance, int sectors) {
+            checkAlreadyRun();
+            currEdge = new SPTEntry(startNode, 0);
+            fromMap.put(startNode, currEdge);
+            distances.put(startNode, 0);
+            try {
+                runAlgo();
+
+                SPTEntry[] turnarounds = new SPTEntry[sectors];
+                double[] deviations = new double[sectors];
+                double startLat = nodeAccess.getLatitude(startNode);
+                double startLon = nodeAccess.getLongitude(startNode);
+                for (int index = 0; index < fromMap.size(); index++) {
+                    SPTEntry entry = fromMap.indexGet(index);
+                    double dist = distances.get(entry.adjNode);
+                    if (dist < minDistance)
+                        continue;
+
+                    double azimuth = Helper.ANGLE_CALC.calcAzimuth(startLat, startLon,
+                            nodeAccess.getLatitude(entry.adjNode), nodeAccess.getLongitude(entry.adjNode));
+                    int sector = Math.min(sectors - 1, (int) (azimuth / 360 * sectors));
+                    double deviation = Math.abs(dist - preferredDistance);
+                    if (turnarounds[sector] == null || deviation < deviations[sector]) {
+                        turnarounds[sector] = entry;
+                        deviations[sector] = deviation;
+                    }
+                }
+
+                List<SPTEntry> list = new ArrayList<>(sectors);
+                for (SPTEntry turnaround : turnarounds) {
+                    if (turnaround != null)
+                        list.add(turnaround);
+                }
+                return list;
+            } finally {
+                fromState.release();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "loop_tree";
+        }
+    }
+}
@@ -83,7 +83,8 @@ public class PathBidirRef extends Path {
         setFromNode(currEdge.adjNode);
         reverseOrder();
         currEdge = edgeTo;
-        int prevEdge = nextEdgeValid ? sptEntry.edge : EdgeIterator.NO_EDGE;
+        // the turn at the meeting point is between the last forward and the first backward edge
+        int prevEdge = sptEntry.edge;
         int tmpEdge = currEdge.edge;
         while (EdgeIterator.Edge.isValid(tmpEdge)) {
             currEdge = currEdge.parent;
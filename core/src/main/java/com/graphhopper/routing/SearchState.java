@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
+import com.graphhopper.storage.SPTEntry;
+
+import java.util.ArrayDeque;
+
+/**
+ * The shortest path tree and the open set of one direction of a search. Both are cleared without
+ * filling their arrays again, so a released state is kept for the next search of the same thread
+ * instead of allocating the arrays again for every request. Clearing releases the entries of the
+ * tree, so a pooled state only keeps its arrays. The heap contains the index of an entry in the map plus one, 0
+ * is reserved for the start entry, which is not put into the map for edge based traversal.
+ */
+final class SearchState {
+    // every thread keeps a few states, a bidirectional search needs two of them
+    private static final int MAX_POOLED = 4;
+    // do not keep the states of large searches, like long flexible routes or the landmark
+    // preparation: the arrays of a state of this capacity need about 1.5MB
+    private static final int MAX_POOLED_CAPACITY = 1 << 16;
+    private static final ThreadLocal<ArrayDeque<SearchState>> POOL = new ThreadLocal<ArrayDeque<SearchState>>() {
+        @Override
+        protected ArrayDeque<SearchState> initialValue() {
+            return new ArrayDeque<>(MAX_POOLED);
+        }
+    };
+
+    final GHIntObjectVersionedHashMap<SPTEntry> map;
+    final MinHeapWithUpdate heap;
+    SPTEntry startEntry;
+    private boolean released;
+
+    private SearchState(int size) {
+        map = new GHIntObjectVersionedHashMap<>(size);
+        heap = new MinHeapWithUpdate(size);
+    }
+
+    /**
+     * @return an empty state, from the pool of the current thread if possible
+     */
+    static SearchState acquire(int size) {
+        SearchState state = POOL.get().poll();
+        if (state == null)
+            return new SearchState(size);
+
+        state.released = false;
+        return state;
+    }
+
+    /**
+     * Clears this state and returns it to the pool of the current thread. It must not be used
+     * afterwards.
+     */
+    void release() {
+        if (released)
+            return;
+
+        released = true;
+        map.clear();
+        heap.clear();
+        startEntry = null;
+        ArrayDeque<SearchState> pool = POOL.get();
+        if (pool.size() < MAX_POOLED && map.getCapacity() <= MAX_POOLED_CAPACITY)
+            pool.push(this);
+    }
+
+    SPTEntry get(int heapId) {
+        return heapId == 0 ? startEntry : map.indexGet(heapId - 1);
+    }
+
+    void pushStart(SPTEntry entry) {
+        if (startEntry != null)
+            throw new IllegalStateException("Only one start entry is supported for edge based traversal");
+        startEntry = entry;
+        heap.push(0, entry.weight);
+    }
+
+    void push(int mapIndex, SPTEntry entry) {
+        heap.push(mapIndex + 1, entry.weight);
+    }
+
+    /**
+     * Adds the entry to the heap or changes its key if it is still in the heap
+     */
+    void pushOrUpdate(int mapIndex, SPTEntry entry) {
+        if (heap.contains(mapIndex + 1))
+            heap.update(mapIndex + 1, entry.weight);
+        else
+            heap.push(mapIndex + 1, entry.weight);
+    }
+
+    SPTEntry poll() {
+        return get(heap.poll());
+    }
+}
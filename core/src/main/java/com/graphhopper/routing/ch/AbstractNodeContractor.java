@@ -35,6 +35,8 @@ abstract class AbstractNodeContractor implements NodeContractor {
     CHEdgeExplorer inEdgeExplorer;
     CHEdgeExplorer outEdgeExplorer;
     private final DataAccess originalEdges;
+    // a worker shares the original edge counts of its parent, see NodeBasedNodeContractor.createWorker
+    private final boolean ownsOriginalEdges;
     int maxLevel;
     private int maxEdgesCount;
 
@@ -44,6 +46,15 @@ abstract class AbstractNodeContractor implements NodeContractor {
         this.encoder = weighting.getFlagEncoder();
         originalEdges = dir.find("original_edges_" + AbstractWeighting.weightingToFileName(weighting));
         originalEdges.create(1000);
+        ownsOriginalEdges = true;
+    }
+
+    AbstractNodeContractor(AbstractNodeContractor parent) {
+        this.ghStorage = parent.ghStorage;
+        this.prepareGraph = parent.prepareGraph;
+        this.encoder = parent.encoder;
+        originalEdges = parent.originalEdges;
+        ownsOriginalEdges = false;
     }
 
     @Override
@@ -56,7 +67,8 @@ abstract class AbstractNodeContractor implements NodeContractor {
 
     @Override
     public void close() {
-        originalEdges.close();
+        if (ownsOriginalEdges)
+            originalEdges.close();
     }
 
     boolean isContracted(int node) {
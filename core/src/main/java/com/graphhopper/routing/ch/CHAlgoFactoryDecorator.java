@@ -56,6 +56,8 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     private boolean enabled = true;
     private int preparationThreads;
     private ExecutorService threadPool;
+    private int preparationContractionThreads = 1;
+    private boolean preparationCustomizable = false;
     private int preparationPeriodicUpdates = -1;
     private int preparationLazyUpdates = -1;
     private int preparationNeighborUpdates = -1;
@@ -76,6 +78,8 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
             throw new IllegalStateException("Use " + CH.PREPARE + "weightings and a comma separated list instead of prepare.chWeighting or prepare.chWeightings");
 
         setPreparationThreads(args.getInt(CH.PREPARE + "threads", getPreparationThreads()));
+        setPreparationContractionThreads(args.getInt(CH.PREPARE + "contraction_threads", getPreparationContractionThreads()));
+        setPreparationCustomizable(args.getBool(CH.PREPARE + "customizable", isPreparationCustomizable()));
 
         // default is enabled & fastest
         String chWeightingsStr = args.get(CH.PREPARE + "weightings", "");
@@ -279,6 +283,87 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getPreparationContractionThreads() {
+        return preparationContractionThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to contract the nodes of one weighting, while
+     * the preparation threads are used for different weightings. Default is 1. Every thread needs
+     * its own search with arrays of the size of the graph.
+     *
+     * @see PrepareContractionHierarchies#setContractionThreads(int)
+     */
+    public CHAlgoFactoryDecorator setPreparationContractionThreads(int preparationContractionThreads) {
+        this.preparationContractionThreads = preparationContractionThreads;
+        return this;
+    }
+
+    public boolean isPreparationCustomizable() {
+        return preparationCustomizable;
+    }
+
+    /**
+     * Prepares all weightings customizable, so that the shortcut weights can be recalculated for a
+     * changed weighting via {@link #customize(List)} without a new preparation. Default is false.
+     *
+     * @see PrepareContractionHierarchies#setCustomizable(boolean)
+     */
+    public CHAlgoFactoryDecorator setPreparationCustomizable(boolean preparationCustomizable) {
+        this.preparationCustomizable = preparationCustomizable;
+        return this;
+    }
+
+    /**
+     * @return the preparation whose weighting has the same name and vehicle as the specified one
+     */
+    public PrepareContractionHierarchies getPreparation(Weighting weighting) {
+        for (PrepareContractionHierarchies p : preparations) {
+            if (p.getWeighting().getName().equals(weighting.getName())
+                    && p.getWeighting().getFlagEncoder() == weighting.getFlagEncoder())
+                return p;
+        }
+        throw new IllegalArgumentException("Cannot find CH preparation for " + weighting + " of " + weighting.getFlagEncoder());
+    }
+
+    /**
+     * Calculates the shortcut weights of the customizable preparations for the specified weightings,
+     * see {@link #getPreparation(Weighting)}, with up to the number of preparation threads in
+     * parallel. This must not be called while queries are running.
+     */
+    public void customize(List<Weighting> newWeightings) {
+        List<Callable<Object>> callables = new ArrayList<>(newWeightings.size());
+        for (final Weighting weighting : newWeightings) {
+            final PrepareContractionHierarchies prepare = getPreparation(weighting);
+            callables.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    prepare.customize(weighting);
+                    return null;
+                }
+            });
+        }
+        if (callables.isEmpty())
+            return;
+
+        // the preparation thread pool is already shut down
+        ExecutorService customizationPool = Executors.newFixedThreadPool(Math.min(preparationThreads, callables.size()));
+        try {
+            for (Future<Object> future : customizationPool.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Customization was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            customizationPool.shutdownNow();
+        }
+    }
+
     public void prepare(final StorableProperties properties) {
         ExecutorCompletionService completionService = new ExecutorCompletionService<>(threadPool);
         int counter = 0;
@@ -292,6 +377,7 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
                     Thread.currentThread().setName(name);
                     prepare.doWork();
                     properties.put(CH.PREPARE + "date." + name, createFormatter().format(new Date()));
+                    properties.put(CH.PREPARE + "customizable." + name, prepare.isCustomizable());
                 }
             }, name);
 
@@ -324,7 +410,9 @@ public class CHAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
             tmpPrepareCH.setPeriodicUpdates(preparationPeriodicUpdates).
                     setLazyUpdates(preparationLazyUpdates).
                     setNeighborUpdates(preparationNeighborUpdates).
-                    setLogMessages(preparationLogMessages);
+                    setLogMessages(preparationLogMessages).
+                    setContractionThreads(preparationContractionThreads).
+                    setCustomizable(preparationCustomizable);
 
             addPreparation(tmpPrepareCH);
         }
@@ -0,0 +1,228 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.LongIntHashMap;
+import com.graphhopper.routing.util.AllCHEdgesIterator;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.util.CHEdgeExplorer;
+import com.graphhopper.util.CHEdgeIterator;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Calculates the weights of the shortcuts of a graph which was contracted by the
+ * {@link CustomizableNodeContractor} for a weighting. The nodes are processed from the lowest to
+ * the highest level: the weight of the shortcut from u to w is the lowest weight of the paths
+ * u-v-w over the nodes v with a lower level than u and w. These paths consist of original edges
+ * and shortcuts of lower nodes only, whose weights are already known at this point.
+ * <p>
+ * Shortcuts without a path for the weighting get an infinite weight and are ignored by the
+ * queries.
+ */
+class CHCustomizer {
+    private final CHGraph prepareGraph;
+    private final Weighting weighting;
+    private final FlagEncoder encoder;
+    private final int baseEdges;
+    private final int maxLevel;
+
+    CHCustomizer(CHGraph prepareGraph, int baseEdges, Weighting weighting) {
+        this.prepareGraph = prepareGraph;
+        this.weighting = weighting;
+        this.encoder = weighting.getFlagEncoder();
+        this.baseEdges = baseEdges;
+        this.maxLevel = prepareGraph.getNodes();
+    }
+
+    /**
+     * @return the number of shortcuts with a finite weight
+     */
+    int customize() {
+        int shortcuts = prepareGraph.getAllEdges().length() - baseEdges;
+        // the shortcut IDs by from node << 32 | to node
+        LongIntHashMap shortcutIds = new LongIntHashMap(shortcuts);
+        AllCHEdgesIterator allIter = prepareGraph.getAllEdges();
+        while (allIter.next()) {
+            if (!allIter.isShortcut())
+                continue;
+            if (allIter.isForward(encoder))
+                shortcutIds.put(toKey(allIter.getBaseNode(), allIter.getAdjNode()), allIter.getEdge());
+            if (allIter.isBackward(encoder))
+                shortcutIds.put(toKey(allIter.getAdjNode(), allIter.getBaseNode()), allIter.getEdge());
+        }
+
+        double[] weights = new double[shortcuts];
+        double[] distances = new double[shortcuts];
+        int[] skippedEdges = new int[2 * shortcuts];
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+
+        int[] nodesByLevel = new int[maxLevel];
+        Arrays.fill(nodesByLevel, -1);
+        for (int node = 0; node < maxLevel; node++) {
+            int level = prepareGraph.getLevel(node);
+            if (level < maxLevel)
+                nodesByLevel[level] = node;
+        }
+
+        CHEdgeExplorer explorer = prepareGraph.createEdgeExplorer(DefaultEdgeFilter.allEdges(encoder));
+        UpwardNeighbors neighbors = new UpwardNeighbors();
+        for (int node : nodesByLevel) {
+            if (node < 0)
+                continue;
+
+            int level = prepareGraph.getLevel(node);
+            neighbors.clear();
+            CHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (adjNode == node || prepareGraph.getLevel(adjNode) <= level)
+                    continue;
+
+                int index = neighbors.indexOf(adjNode);
+                double distance;
+                if (iter.isShortcut()) {
+                    int shortcut = iter.getEdge() - baseEdges;
+                    distance = distances[shortcut];
+                    if (iter.isBackward(encoder))
+                        neighbors.updateIn(index, weights[shortcut], iter.getEdge(), distance);
+                    if (iter.isForward(encoder))
+                        neighbors.updateOut(index, weights[shortcut], iter.getEdge(), distance);
+                } else {
+                    distance = iter.getDistance();
+                    if (iter.isBackward(encoder))
+                        neighbors.updateIn(index, weighting.calcWeight(iter, true, EdgeIterator.NO_EDGE), iter.getEdge(), distance);
+                    if (iter.isForward(encoder))
+                        neighbors.updateOut(index, weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE), iter.getEdge(), distance);
+                }
+            }
+
+            for (int i = 0; i < neighbors.size(); i++) {
+                double inWeight = neighbors.inWeights[i];
+                if (Double.isInfinite(inWeight))
+                    continue;
+
+                for (int j = 0; j < neighbors.size(); j++) {
+                    double weight = inWeight + neighbors.outWeights[j];
+                    if (i == j || Double.isInfinite(weight))
+                        continue;
+
+                    int shortcut = shortcutIds.getOrDefault(toKey(neighbors.nodes.get(i), neighbors.nodes.get(j)), -1);
+                    if (shortcut < 0)
+                        throw new IllegalStateException("Missing shortcut from " + neighbors.nodes.get(i) + " to "
+                                + neighbors.nodes.get(j) + " over " + node + ". Was the graph contracted customizable?");
+
+                    shortcut -= baseEdges;
+                    if (weight < weights[shortcut]) {
+                        weights[shortcut] = weight;
+                        distances[shortcut] = neighbors.inDistances[i] + neighbors.outDistances[j];
+                        skippedEdges[2 * shortcut] = neighbors.inEdges[i];
+                        skippedEdges[2 * shortcut + 1] = neighbors.outEdges[j];
+                    }
+                }
+            }
+        }
+
+        int found = 0;
+        allIter = prepareGraph.getAllEdges();
+        while (allIter.next()) {
+            if (!allIter.isShortcut())
+                continue;
+
+            int shortcut = allIter.getEdge() - baseEdges;
+            allIter.setWeight(weights[shortcut]);
+            if (Double.isInfinite(weights[shortcut]))
+                continue;
+
+            allIter.setDistance(distances[shortcut]);
+            allIter.setSkippedEdges(skippedEdges[2 * shortcut], skippedEdges[2 * shortcut + 1]);
+            found++;
+        }
+        return found;
+    }
+
+    private static long toKey(int fromNode, int toNode) {
+        return (long) fromNode << 32 | toNode;
+    }
+
+    /**
+     * The cheapest edges from and to every neighbor with a higher level of one node
+     */
+    private static class UpwardNeighbors {
+        final IntArrayList nodes = new IntArrayList();
+        double[] inWeights = new double[16];
+        double[] outWeights = new double[16];
+        double[] inDistances = new double[16];
+        double[] outDistances = new double[16];
+        int[] inEdges = new int[16];
+        int[] outEdges = new int[16];
+
+        void clear() {
+            nodes.clear();
+        }
+
+        int size() {
+            return nodes.size();
+        }
+
+        /**
+         * @return the index of the specified neighbor, which is added if not yet known
+         */
+        int indexOf(int node) {
+            int index = nodes.indexOf(node);
+            if (index >= 0)
+                return index;
+
+            index = nodes.size();
+            nodes.add(node);
+            if (index == inWeights.length) {
+                int capacity = 2 * index;
+                inWeights = Arrays.copyOf(inWeights, capacity);
+                outWeights = Arrays.copyOf(outWeights, capacity);
+                inDistances = Arrays.copyOf(inDistances, capacity);
+                outDistances = Arrays.copyOf(outDistances, capacity);
+                inEdges = Arrays.copyOf(inEdges, capacity);
+                outEdges = Arrays.copyOf(outEdges, capacity);
+            }
+            inWeights[index] = Double.POSITIVE_INFINITY;
+            outWeights[index] = Double.POSITIVE_INFINITY;
+            return index;
+        }
+
+        void updateIn(int index, double weight, int edge, double distance) {
+            if (weight < inWeights[index]) {
+                inWeights[index] = weight;
+                inEdges[index] = edge;
+                inDistances[index] = distance;
+            }
+        }
+
+        void updateOut(int index, double weight, int edge, double distance) {
+            if (weight < outWeights[index]) {
+                outWeights[index] = weight;
+                outEdges[index] = edge;
+                outDistances[index] = distance;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.coll.GHLongHashSet;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.CHEdgeIterator;
+import com.graphhopper.util.CHEdgeIteratorState;
+
+import java.util.Locale;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * Contracts the nodes without witness searches, so that the shortcuts do not depend on the
+ * weights: every path over the contracted node between two of its uncontracted neighbors gets a
+ * shortcut if the vehicle can access it. The shortcuts are added with an infinite weight, which is
+ * calculated afterwards by the {@link CHCustomizer} and can be recalculated for another weighting
+ * of the same vehicle without a new contraction.
+ * <p>
+ * The nodes which add the least shortcuts are contracted first, similar to a minimum degree
+ * ordering.
+ */
+class CustomizableNodeContractor extends AbstractNodeContractor {
+    // the shortcuts added so far, as from node << 32 | to node
+    private final GHLongHashSet shortcutNodes = new GHLongHashSet();
+    private final IntArrayList inNodes = new IntArrayList();
+    private final IntArrayList inEdges = new IntArrayList();
+    private final IntArrayList outNodes = new IntArrayList();
+    private final IntArrayList outEdges = new IntArrayList();
+    private int addedShortcutsCount;
+
+    CustomizableNodeContractor(Directory dir, GraphHopperStorage ghStorage, CHGraph prepareGraph, Weighting weighting) {
+        super(dir, ghStorage, prepareGraph, weighting);
+    }
+
+    @Override
+    public void prepareContraction() {
+        // no witness search to prepare
+    }
+
+    @Override
+    public float calculatePriority(int node) {
+        int contractedNeighbors = findNeighbors(node);
+        int shortcutsCount = 0;
+        for (int i = 0; i < inNodes.size(); i++) {
+            int fromNode = inNodes.get(i);
+            for (int j = 0; j < outNodes.size(); j++) {
+                int toNode = outNodes.get(j);
+                if (fromNode != toNode && !shortcutNodes.contains(toKey(fromNode, toNode)))
+                    shortcutsCount++;
+            }
+        }
+
+        // like for the NodeBasedNodeContractor, just without the original edges as all shortcuts are kept
+        int edgeDifference = shortcutsCount - inNodes.size() - outNodes.size();
+        return 10 * edgeDifference + contractedNeighbors;
+    }
+
+    @Override
+    public void contractNode(int node) {
+        findNeighbors(node);
+        for (int i = 0; i < inNodes.size(); i++) {
+            int fromNode = inNodes.get(i);
+            for (int j = 0; j < outNodes.size(); j++) {
+                int toNode = outNodes.get(j);
+                if (fromNode == toNode || !shortcutNodes.add(toKey(fromNode, toNode)))
+                    continue;
+
+                // the skipped edges are set by the customization, these are only valid placeholders
+                CHEdgeIteratorState edgeState = prepareGraph.shortcut(fromNode, toNode);
+                edgeState.setFlags(PrepareEncoder.getScFwdDir());
+                edgeState.setWeight(Double.POSITIVE_INFINITY);
+                edgeState.setSkippedEdges(inEdges.get(i), outEdges.get(j));
+                addedShortcutsCount++;
+            }
+        }
+    }
+
+    /**
+     * Collects the uncontracted neighbors which can reach the specified node and which can be
+     * reached from it, every neighbor only once.
+     *
+     * @return the number of shortcuts to uncontracted neighbors
+     */
+    private int findNeighbors(int node) {
+        inNodes.clear();
+        inEdges.clear();
+        outNodes.clear();
+        outEdges.clear();
+        int contractedNeighbors = 0;
+        CHEdgeIterator iter = inEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            int adjNode = iter.getAdjNode();
+            if (adjNode == node || isContracted(adjNode))
+                continue;
+            if (iter.isShortcut())
+                contractedNeighbors++;
+            if (!inNodes.contains(adjNode)) {
+                inNodes.add(adjNode);
+                inEdges.add(iter.getEdge());
+            }
+        }
+
+        iter = outEdgeExplorer.setBaseNode(node);
+        while (iter.next()) {
+            int adjNode = iter.getAdjNode();
+            if (adjNode == node || isContracted(adjNode))
+                continue;
+            if (iter.isShortcut() && !inNodes.contains(adjNode))
+                contractedNeighbors++;
+            if (!outNodes.contains(adjNode)) {
+                outNodes.add(adjNode);
+                outEdges.add(iter.getEdge());
+            }
+        }
+        return contractedNeighbors;
+    }
+
+    private static long toKey(int fromNode, int toNode) {
+        return (long) fromNode << 32 | toNode;
+    }
+
+    @Override
+    public long getAddedShortcutsCount() {
+        return addedShortcutsCount;
+    }
+
+    @Override
+    public String getStatisticsString() {
+        return String.format(Locale.ROOT, "customizable shortcuts: %10s", nf(shortcutNodes.size()));
+    }
+
+    @Override
+    public long getDijkstraCount() {
+        return 0;
+    }
+
+    @Override
+    public float getDijkstraSeconds() {
+        return 0;
+    }
+}
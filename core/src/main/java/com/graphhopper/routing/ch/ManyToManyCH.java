@@ -0,0 +1,280 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.carrotsearch.hppc.DoubleArrayList;
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.IntIntHashMap;
+import com.carrotsearch.hppc.LongArrayList;
+import com.graphhopper.apache.commons.collections.IntDoubleBinaryHeap;
+import com.graphhopper.coll.GHLongLongHashMap;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.ManyToManyAlgorithm;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.CHEdgeIteratorState;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.BitSet;
+
+/**
+ * Calculates the matrix on the contraction hierarchy with one upward search per target and one per
+ * source instead of one query per pair, see "Computing Many-to-Many Shortest Paths Using Highway
+ * Hierarchies" by Knopp et al. The backward searches from the targets store every settled node with
+ * the target, the weight, the distance and the time in the bucket of this node. The forward
+ * searches from the sources then scan the buckets of their settled nodes, where every pair meets
+ * on the highest node of its shortest path.
+ * <p>
+ * The distance is summed up while searching as shortcuts store it. The time is only known for the
+ * original edges, so shortcuts are unpacked once per request and direction.
+ *
+ * @see PrepareContractionHierarchies#createManyToMany(Graph)
+ */
+public class ManyToManyCH implements ManyToManyAlgorithm {
+    private final Graph graph;
+    private final Weighting weighting;
+    private final EdgeFilter levelFilter;
+    private final EdgeExplorer outEdgeExplorer;
+    private final EdgeExplorer inEdgeExplorer;
+    // the time of the already unpacked shortcuts, the key is the edge and the direction
+    private final GHLongLongHashMap shortcutMillis = new GHLongLongHashMap();
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int visitedNodes;
+
+    // the shortest path tree of the current search, node -> slot
+    private final IntIntHashMap slots = new IntIntHashMap();
+    private final IntArrayList slotNodes = new IntArrayList();
+    private final IntArrayList slotEdges = new IntArrayList();
+    private final IntArrayList slotParents = new IntArrayList();
+    private final DoubleArrayList slotWeights = new DoubleArrayList();
+    private final DoubleArrayList slotDistances = new DoubleArrayList();
+    private final LongArrayList slotTimes = new LongArrayList();
+    private final BitSet settled = new BitSet();
+    private final IntArrayList settledSlots = new IntArrayList();
+    private final IntDoubleBinaryHeap heap = new IntDoubleBinaryHeap(1000);
+
+    // the buckets as a linked list per node, node -> first entry
+    private final IntIntHashMap bucketHeads = new IntIntHashMap();
+    private final IntArrayList bucketNext = new IntArrayList();
+    private final IntArrayList bucketTargets = new IntArrayList();
+    private final DoubleArrayList bucketWeights = new DoubleArrayList();
+    private final DoubleArrayList bucketDistances = new DoubleArrayList();
+    private final LongArrayList bucketTimes = new LongArrayList();
+
+    /**
+     * @param graph       the graph to route on, i.e. the CHGraph or a QueryGraph of it
+     * @param weighting   the weighting which also handles shortcuts, see {@link PreparationWeighting}
+     * @param levelFilter the filter which only accepts edges to higher nodes
+     */
+    public ManyToManyCH(Graph graph, Weighting weighting, EdgeFilter levelFilter) {
+        this.graph = graph;
+        this.weighting = weighting;
+        this.levelFilter = levelFilter;
+        outEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(weighting.getFlagEncoder()));
+        inEdgeExplorer = graph.createEdgeExplorer(DefaultEdgeFilter.inEdges(weighting.getFlagEncoder()));
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix(int[] fromNodes, int[] toNodes) {
+        DistanceMatrix matrix = new DistanceMatrix(fromNodes.length, toNodes.length);
+        visitedNodes = 0;
+        clearBuckets();
+        for (int to = 0; to < toNodes.length; to++) {
+            search(toNodes[to], true);
+            for (int i = 0; i < settledSlots.size(); i++) {
+                int slot = settledSlots.get(i);
+                int node = slotNodes.get(slot);
+                int index = bucketHeads.indexOf(node);
+                int entry = bucketTargets.size();
+                if (index >= 0) {
+                    bucketNext.add(bucketHeads.indexGet(index));
+                    bucketHeads.indexReplace(index, entry);
+                } else {
+                    bucketNext.add(-1);
+                    bucketHeads.indexInsert(index, node, entry);
+                }
+                bucketTargets.add(to);
+                bucketWeights.add(slotWeights.get(slot));
+                bucketDistances.add(slotDistances.get(slot));
+                bucketTimes.add(slotTimes.get(slot));
+            }
+        }
+
+        for (int from = 0; from < fromNodes.length; from++) {
+            search(fromNodes[from], false);
+            for (int i = 0; i < settledSlots.size(); i++) {
+                int slot = settledSlots.get(i);
+                int entry = bucketHeads.getOrDefault(slotNodes.get(slot), -1);
+                for (; entry >= 0; entry = bucketNext.get(entry)) {
+                    int to = bucketTargets.get(entry);
+                    double weight = slotWeights.get(slot) + bucketWeights.get(entry);
+                    if (weight < matrix.getWeight(from, to))
+                        matrix.set(from, to, weight, slotDistances.get(slot) + bucketDistances.get(entry),
+                                slotTimes.get(slot) + bucketTimes.get(entry));
+                }
+            }
+        }
+        clearBuckets();
+        return matrix;
+    }
+
+    private void clearBuckets() {
+        bucketHeads.clear();
+        bucketNext.clear();
+        bucketTargets.clear();
+        bucketWeights.clear();
+        bucketDistances.clear();
+        bucketTimes.clear();
+    }
+
+    /**
+     * Settles all nodes reachable via edges to higher nodes. The forward search follows the edges
+     * in travel direction, the backward search against it.
+     */
+    private void search(int startNode, boolean reverse) {
+        slots.clear();
+        slotNodes.clear();
+        slotEdges.clear();
+        slotParents.clear();
+        slotWeights.clear();
+        slotDistances.clear();
+        slotTimes.clear();
+        settled.clear();
+        settledSlots.clear();
+        heap.clear();
+
+        EdgeExplorer explorer = reverse ? inEdgeExplorer : outEdgeExplorer;
+        slots.put(startNode, addSlot(startNode, EdgeIterator.NO_EDGE, -1, 0, 0));
+        heap.insert_(0, 0);
+        int searchVisitedNodes = 0;
+        while (!heap.isEmpty()) {
+            int slot = heap.poll_element();
+            // the heap can contain outdated entries of already settled nodes
+            if (settled.get(slot))
+                continue;
+
+            settle(slot, reverse);
+            if (++searchVisitedNodes > maxVisitedNodes)
+                break;
+
+            int prevEdge = slotEdges.get(slot);
+            EdgeIterator iter = explorer.setBaseNode(slotNodes.get(slot));
+            while (iter.next()) {
+                if (iter.getEdge() == prevEdge || !levelFilter.accept(iter))
+                    continue;
+
+                double weight = slotWeights.get(slot) + weighting.calcWeight(iter, reverse, prevEdge);
+                if (Double.isInfinite(weight))
+                    continue;
+
+                double distance = slotDistances.get(slot) + iter.getDistance();
+                int adjNode = iter.getAdjNode();
+                int index = slots.indexOf(adjNode);
+                int adjSlot;
+                if (index >= 0) {
+                    adjSlot = slots.indexGet(index);
+                    if (settled.get(adjSlot) || slotWeights.get(adjSlot) <= weight)
+                        continue;
+
+                    slotEdges.set(adjSlot, iter.getEdge());
+                    slotParents.set(adjSlot, slot);
+                    slotWeights.set(adjSlot, weight);
+                    slotDistances.set(adjSlot, distance);
+                } else {
+                    adjSlot = addSlot(adjNode, iter.getEdge(), slot, weight, distance);
+                    slots.indexInsert(index, adjNode, adjSlot);
+                }
+                heap.insert_(weight, adjSlot);
+            }
+        }
+        visitedNodes += searchVisitedNodes;
+    }
+
+    private int addSlot(int node, int edge, int parent, double weight, double distance) {
+        slotNodes.add(node);
+        slotEdges.add(edge);
+        slotParents.add(parent);
+        slotWeights.add(weight);
+        slotDistances.add(distance);
+        slotTimes.add(0);
+        return slotNodes.size() - 1;
+    }
+
+    /**
+     * Marks the slot as settled and calculates its time from the edge to the parent. The backward
+     * search travels from the node to its parent.
+     */
+    private void settle(int slot, boolean reverse) {
+        settled.set(slot);
+        settledSlots.add(slot);
+        int parent = slotParents.get(slot);
+        if (parent < 0)
+            return;
+
+        // the base node of this edge is the parent
+        CHEdgeIteratorState edge = (CHEdgeIteratorState) graph.getEdgeIteratorState(slotEdges.get(slot), slotNodes.get(slot));
+        slotTimes.set(slot, slotTimes.get(parent) + calcMillis(edge, reverse));
+    }
+
+    /**
+     * Calculates the time of the specified edge in the direction from the base to the adjacent node
+     * or the other way around if reverse is true. Shortcuts are unpacked like in {@link Path4CH}.
+     */
+    private long calcMillis(CHEdgeIteratorState edge, boolean reverse) {
+        if (!edge.isShortcut())
+            return weighting.calcMillis(edge, reverse, EdgeIterator.NO_EDGE);
+
+        long key = (long) edge.getEdge() << 1 | (reverse ? 1 : 0);
+        int index = shortcutMillis.indexOf(key);
+        if (index >= 0)
+            return shortcutMillis.indexGet(index);
+
+        int from = reverse ? edge.getAdjNode() : edge.getBaseNode();
+        int to = reverse ? edge.getBaseNode() : edge.getAdjNode();
+        // the skipped edges are not ordered, so try which one is adjacent to the start
+        CHEdgeIteratorState first = (CHEdgeIteratorState) graph.getEdgeIteratorState(edge.getSkippedEdge1(), from);
+        int secondEdge = edge.getSkippedEdge2();
+        if (first == null) {
+            first = (CHEdgeIteratorState) graph.getEdgeIteratorState(edge.getSkippedEdge2(), from);
+            secondEdge = edge.getSkippedEdge1();
+        }
+        CHEdgeIteratorState second = (CHEdgeIteratorState) graph.getEdgeIteratorState(secondEdge, to);
+        // the first edge ends in the start, i.e. it is traveled from its adjacent to its base node
+        long millis = calcMillis(first, true) + calcMillis(second, false);
+        shortcutMillis.put(key, millis);
+        return millis;
+    }
+
+    @Override
+    public void setMaxVisitedNodes(int numberOfNodes) {
+        maxVisitedNodes = numberOfNodes;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getVisitedNodes() {
+        return visitedNodes;
+    }
+}
@@ -23,15 +23,15 @@ import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
 
 import static com.graphhopper.util.Helper.nf;
 
 class NodeBasedNodeContractor extends AbstractNodeContractor {
     private final PreparationWeighting prepareWeighting;
+    // the contractor which created this worker or null
+    private final NodeBasedNodeContractor parent;
+    private final List<NodeBasedNodeContractor> workers = new ArrayList<>();
     private final Map<Shortcut, Shortcut> shortcuts = new HashMap<>();
     private final AddShortcutHandler addScHandler = new AddShortcutHandler();
     private final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
@@ -48,6 +48,26 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
     NodeBasedNodeContractor(Directory dir, GraphHopperStorage ghStorage, CHGraph prepareGraph, Weighting weighting) {
         super(dir, ghStorage, prepareGraph, weighting);
         this.prepareWeighting = new PreparationWeighting(weighting);
+        this.parent = null;
+    }
+
+    private NodeBasedNodeContractor(NodeBasedNodeContractor parent) {
+        super(parent);
+        this.prepareWeighting = parent.prepareWeighting;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a contractor with its own explorers and witness search for another thread. A worker
+     * only reads the graph: it calculates priorities and collects the shortcuts of a node, which are
+     * then added by this contractor, see {@link #collectShortcuts(int)}. Must be called after
+     * initFromGraph and while no shortcuts are added.
+     */
+    NodeBasedNodeContractor createWorker() {
+        NodeBasedNodeContractor worker = new NodeBasedNodeContractor(this);
+        worker.initFromGraph();
+        workers.add(worker);
+        return worker;
     }
 
     @Override
@@ -79,6 +99,10 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
     public void close() {
         super.close();
         prepareAlgo.close();
+        for (NodeBasedNodeContractor worker : workers) {
+            worker.close();
+        }
+        workers.clear();
     }
 
     /**
@@ -133,6 +157,23 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
         meanDegree = (meanDegree * 2 + degree) / 3;
     }
 
+    /**
+     * Finds the shortcuts which are required to contract the specified node without changing the
+     * graph. Unlike contractNode this can be called from several workers at the same time.
+     */
+    NodeShortcuts collectShortcuts(int node) {
+        long degree = findShortcuts(addScHandler.setNode(node));
+        return new NodeShortcuts(node, degree, new ArrayList<>(shortcuts.keySet()));
+    }
+
+    /**
+     * Adds the shortcuts collected for a node, which completes its contraction like contractNode.
+     */
+    void addShortcuts(NodeShortcuts nodeShortcuts) {
+        addedShortcutsCount += addShortcuts(nodeShortcuts.shortcuts);
+        meanDegree = (meanDegree * 2 + nodeShortcuts.degree) / 3;
+    }
+
     @Override
     public String getStatisticsString() {
         return String.format(Locale.ROOT, "meanDegree: %.2f, dijkstras: %10s, mem: %10s",
@@ -289,18 +330,31 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
 
     @Override
     public long getDijkstraCount() {
-        return dijkstraCount;
+        long count = dijkstraCount;
+        for (NodeBasedNodeContractor worker : workers) {
+            count += worker.dijkstraCount;
+        }
+        return count;
     }
 
+    /**
+     * @return the time of the witness searches, summed over all workers
+     */
     @Override
     public float getDijkstraSeconds() {
-        return dijkstraSW.getCurrentSeconds();
+        float seconds = dijkstraSW.getCurrentSeconds();
+        for (NodeBasedNodeContractor worker : workers) {
+            seconds += worker.dijkstraSW.getCurrentSeconds();
+        }
+        return seconds;
     }
 
     private int getMaxVisitedNodesEstimate() {
+        // a worker uses the mean degree of its parent, which is only changed between the rounds of workers
+        double degree = parent == null ? meanDegree : parent.meanDegree;
         // todo: we return 0 here if meanDegree is < 1, which is not really what we want, but changing this changes
         // the node contraction order and requires re-optimizing the parameters of the graph contraction
-        return (int) meanDegree * 100;
+        return (int) degree * 100;
     }
 
     private static class Shortcut {
@@ -433,6 +487,21 @@ class NodeBasedNodeContractor extends AbstractNodeContractor {
         }
     }
 
+    /**
+     * The shortcuts of a node which is not yet contracted
+     */
+    static class NodeShortcuts {
+        final int node;
+        final long degree;
+        final List<Shortcut> shortcuts;
+
+        NodeShortcuts(int node, long degree, List<Shortcut> shortcuts) {
+            this.node = node;
+            this.degree = degree;
+            this.shortcuts = shortcuts;
+        }
+    }
+
     private static class CalcShortcutsResult {
         int originalEdgesCount;
         int shortcutsCount;
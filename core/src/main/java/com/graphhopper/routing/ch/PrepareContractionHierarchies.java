@@ -17,6 +17,9 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
+import com.graphhopper.coll.GHIntHashSet;
 import com.graphhopper.coll.GHTreeMapComposed;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.*;
@@ -29,8 +32,9 @@ import com.graphhopper.util.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.graphhopper.util.Helper.nf;
 import static com.graphhopper.util.Parameters.Algorithms.ASTAR_BI;
@@ -50,10 +54,13 @@ import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
  * @author Peter Karich
  */
 public class PrepareContractionHierarchies extends AbstractAlgoPreparation implements RoutingAlgorithmFactory {
+    // the number of nodes a worker handles before it takes the next ones in the parallel mode
+    private static final int CHUNK_SIZE = 64;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Directory dir;
-    private final PreparationWeighting prepareWeighting;
-    private final Weighting weighting;
+    // both are replaced by a customization
+    private volatile PreparationWeighting prepareWeighting;
+    private volatile Weighting weighting;
     private final TraversalMode traversalMode;
     private final GraphHopperStorage ghStorage;
     private final CHGraphImpl prepareGraph;
@@ -77,6 +84,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private double logMessagesPercentage = 20;
     private int initSize;
     private int checkCounter;
+    private int contractionThreads = 1;
+    private boolean customizable;
 
     public PrepareContractionHierarchies(Directory dir, GraphHopperStorage ghStorage, CHGraph chGraph,
                                          Weighting weighting, TraversalMode traversalMode) {
@@ -160,11 +169,48 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return this;
     }
 
+    /**
+     * Contracts the nodes of this single weighting with the specified number of threads. With more
+     * than one thread the nodes are contracted in rounds: every round contracts the nodes whose
+     * priority is lower than the one of all uncontracted nodes at most two edges away. Such nodes
+     * have no common neighbors, so their witness searches run in parallel, each worker on its own
+     * search, while the graph is not changed. Afterwards the shortcuts are added by one thread and
+     * the priorities of the neighbors are updated in parallel. Lazy and periodic updates are not
+     * used in this mode. Every thread needs its own witness search with arrays of the size of the
+     * graph.
+     */
+    public PrepareContractionHierarchies setContractionThreads(int contractionThreads) {
+        if (contractionThreads < 1)
+            throw new IllegalArgumentException("contractionThreads has to be at least 1 but was " + contractionThreads);
+
+        this.contractionThreads = contractionThreads;
+        return this;
+    }
+
+    /**
+     * Contracts the nodes without witness searches, so that the shortcuts do not depend on the
+     * weighting but only on the accessible edges of the vehicle. The shortcut weights are then
+     * calculated by {@link #customize(Weighting)}, which can be repeated for another weighting of
+     * the same vehicle, e.g. after changed edge scores, and takes seconds instead of a new
+     * preparation. Queries are slower than for a normal preparation as there are more shortcuts.
+     * The contraction is always done by one thread in this mode.
+     */
+    public PrepareContractionHierarchies setCustomizable(boolean customizable) {
+        this.customizable = customizable;
+        return this;
+    }
+
+    public boolean isCustomizable() {
+        return customizable;
+    }
+
     @Override
     public void doSpecificWork() {
         allSW.start();
         initFromGraph();
         runGraphContraction();
+        if (customizable)
+            customize(weighting);
 
         logger.info("took:" + (int) allSW.stop().getSeconds() + "s "
                 + ", new shortcuts: " + nf(nodeContractor.getAddedShortcutsCount())
@@ -183,6 +229,12 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     }
 
     protected void runGraphContraction() {
+        if (contractionThreads > 1 && !customizable) {
+            if (prepareGraph.getNodes() > 0)
+                contractNodesInParallel();
+            return;
+        }
+
         if (!prepareNodes())
             return;
         contractNodes();
@@ -196,6 +248,14 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return algo;
     }
 
+    /**
+     * Creates the algorithm to calculate a matrix on the specified graph, which is the prepared
+     * graph or a QueryGraph of it.
+     */
+    public ManyToManyAlgorithm createManyToMany(Graph graph) {
+        return new ManyToManyCH(graph, prepareWeighting, new LevelEdgeFilter(prepareGraph));
+    }
+
     private AbstractBidirAlgo doCreateAlgo(Graph graph, AlgorithmOptions opts) {
         if (ASTAR_BI.equals(opts.getAlgorithm())) {
             return new AStarBidirectionCH(graph, prepareWeighting, traversalMode)
@@ -226,7 +286,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         //   but we need the additional oldPriorities array to keep the old value which is necessary for the update method
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new float[prepareGraph.getNodes()];
-        nodeContractor = new NodeBasedNodeContractor(dir, ghStorage, prepareGraph, weighting);
+        if (customizable)
+            nodeContractor = new CustomizableNodeContractor(dir, ghStorage, prepareGraph, weighting);
+        else
+            nodeContractor = new NodeBasedNodeContractor(dir, ghStorage, prepareGraph, weighting);
         nodeContractor.initFromGraph();
     }
 
@@ -296,7 +359,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             }
 
             if (checkCounter % logSize == 0) {
-                logStats(updateCounter);
+                logStats(sortedNodes.getSize(), updateCounter);
             }
 
             checkCounter++;
@@ -350,13 +413,306 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             }
         }
 
-        logStats(updateCounter);
+        logStats(sortedNodes.getSize(), updateCounter);
 
         // Preparation works only once so we can release temporary data.
         // The preparation object itself has to be intact to create the algorithm.
         close();
     }
 
+    private void contractNodesInParallel() {
+        final NodeBasedNodeContractor contractor = (NodeBasedNodeContractor) nodeContractor;
+        final int nodes = prepareGraph.getNodes();
+        IntArrayList remaining = new IntArrayList(nodes);
+        for (int node = 0; node < nodes; node++) {
+            prepareGraph.setLevel(node, maxLevel);
+            remaining.add(node);
+        }
+
+        ContractionWorker[] workers = new ContractionWorker[contractionThreads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new ContractionWorker(contractor.createWorker());
+        }
+        ExecutorService threadPool = Executors.newFixedThreadPool(contractionThreads);
+        try {
+            periodicUpdateSW.start();
+            updatePriorities(threadPool, workers, remaining);
+            periodicUpdateSW.stop();
+
+            contractor.prepareContraction();
+            initSize = nodes;
+            checkCounter = 0;
+            long logSize = Math.round(Math.max(10, initSize / 100d * logMessagesPercentage));
+            if (logMessagesPercentage == 0)
+                logSize = Integer.MAX_VALUE;
+            long nextLog = logSize;
+            long nodesToAvoidContract = Math.round((100 - nodesContractedPercentage) / 100d * nodes);
+            boolean neighborUpdate = neighborUpdatePercentage > 0;
+            final boolean[] selected = new boolean[nodes];
+            GHIntHashSet neighbors = new GHIntHashSet();
+            int level = 0;
+            int rounds = 0;
+            while (!remaining.isEmpty() && remaining.size() > nodesToAvoidContract) {
+                IntArrayList batch = selectIndependentNodes(threadPool, workers, remaining, selected);
+                if (remaining.size() - batch.size() < nodesToAvoidContract)
+                    batch = keepLowestPriorities(batch, (int) (remaining.size() - nodesToAvoidContract));
+
+                contractionSW.start();
+                NodeBasedNodeContractor.NodeShortcuts[] shortcuts = collectShortcuts(threadPool, workers, batch);
+                // the graph is changed by this thread only, while no worker reads it
+                for (NodeBasedNodeContractor.NodeShortcuts nodeShortcuts : shortcuts) {
+                    int node = nodeShortcuts.node;
+                    contractor.addShortcuts(nodeShortcuts);
+                    prepareGraph.setLevel(node, level);
+                    level++;
+
+                    CHEdgeIterator iter = vehicleAllExplorer.setBaseNode(node);
+                    while (iter.next()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new RuntimeException("Thread was interrupted");
+                        }
+
+                        int nn = iter.getAdjNode();
+                        if (prepareGraph.getLevel(nn) != maxLevel)
+                            continue;
+
+                        neighbors.add(nn);
+                        prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
+                    }
+                }
+                contractionSW.stop();
+                checkCounter += batch.size();
+                rounds++;
+
+                IntArrayList next = new IntArrayList(remaining.size() - batch.size());
+                for (IntCursor cursor : remaining) {
+                    if (prepareGraph.getLevel(cursor.value) == maxLevel)
+                        next.add(cursor.value);
+                }
+                remaining = next;
+
+                if (neighborUpdate && !neighbors.isEmpty()) {
+                    neighborUpdateSW.start();
+                    IntArrayList neighborList = new IntArrayList(neighbors.size());
+                    for (IntCursor cursor : neighbors) {
+                        neighborList.add(cursor.value);
+                    }
+                    updatePriorities(threadPool, workers, neighborList);
+                    neighborUpdateSW.stop();
+                }
+                neighbors.clear();
+
+                if (checkCounter >= nextLog) {
+                    logStats(remaining.size(), rounds);
+                    nextLog += logSize;
+                }
+            }
+            logStats(remaining.size(), rounds);
+        } finally {
+            threadPool.shutdownNow();
+        }
+
+        close();
+    }
+
+    private void updatePriorities(ExecutorService threadPool, ContractionWorker[] workers, IntArrayList nodes) {
+        runInParallel(threadPool, workers, nodes, new NodeTask() {
+            @Override
+            public void run(ContractionWorker worker, int index, int node) {
+                oldPriorities[node] = worker.contractor.calculatePriority(node);
+            }
+        });
+    }
+
+    /**
+     * @return the uncontracted nodes whose priority is lower than the one of all uncontracted nodes
+     * at most two edges away, ordered by ID
+     */
+    private IntArrayList selectIndependentNodes(ExecutorService threadPool, ContractionWorker[] workers,
+                                                IntArrayList remaining, final boolean[] selected) {
+        runInParallel(threadPool, workers, remaining, new NodeTask() {
+            @Override
+            public void run(ContractionWorker worker, int index, int node) {
+                selected[node] = worker.isLocalMinimum(node);
+            }
+        });
+
+        IntArrayList batch = new IntArrayList();
+        for (IntCursor cursor : remaining) {
+            if (selected[cursor.value]) {
+                batch.add(cursor.value);
+                selected[cursor.value] = false;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * @return the specified number of nodes with the lowest priorities, ordered by priority
+     */
+    private IntArrayList keepLowestPriorities(IntArrayList batch, int count) {
+        // a max heap of the nodes with the lowest priorities so far, the root is contracted last
+        int[] heap = new int[count];
+        int size = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            int node = batch.get(i);
+            if (size < count) {
+                heap[size] = node;
+                siftUp(heap, size);
+                size++;
+            } else if (isBefore(node, heap[0])) {
+                heap[0] = node;
+                siftDown(heap, 0, size);
+            }
+        }
+
+        // move the root behind the remaining heap until it is empty, which orders the nodes by priority
+        for (int end = size - 1; end > 0; end--) {
+            swap(heap, 0, end);
+            siftDown(heap, 0, end);
+        }
+        IntArrayList result = new IntArrayList(size);
+        result.add(heap, 0, size);
+        return result;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBefore(heap[parent], heap[index]))
+                return;
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int index, int size) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                return;
+            if (child + 1 < size && isBefore(heap[child], heap[child + 1]))
+                child++;
+            if (!isBefore(heap[index], heap[child]))
+                return;
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    private NodeBasedNodeContractor.NodeShortcuts[] collectShortcuts(ExecutorService threadPool, ContractionWorker[] workers,
+                                                                     IntArrayList batch) {
+        final NodeBasedNodeContractor.NodeShortcuts[] shortcuts = new NodeBasedNodeContractor.NodeShortcuts[batch.size()];
+        runInParallel(threadPool, workers, batch, new NodeTask() {
+            @Override
+            public void run(ContractionWorker worker, int index, int node) {
+                shortcuts[index] = worker.contractor.collectShortcuts(node);
+            }
+        });
+        return shortcuts;
+    }
+
+    /**
+     * Runs the task for all specified nodes, every worker in its own thread. The workers take the
+     * nodes in chunks, so that a worker with cheap nodes takes more of them.
+     */
+    private void runInParallel(ExecutorService threadPool, ContractionWorker[] workers, final IntArrayList nodes,
+                               final NodeTask task) {
+        if (nodes.size() <= CHUNK_SIZE) {
+            // not worth to wake up the other threads, e.g. for the last rounds
+            for (int i = 0; i < nodes.size(); i++) {
+                task.run(workers[0], i, nodes.get(i));
+            }
+            return;
+        }
+
+        final AtomicInteger nextChunk = new AtomicInteger();
+        List<Callable<Object>> callables = new ArrayList<>(workers.length);
+        for (final ContractionWorker worker : workers) {
+            callables.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    int start;
+                    while ((start = nextChunk.getAndAdd(CHUNK_SIZE)) < nodes.size()) {
+                        int end = Math.min(start + CHUNK_SIZE, nodes.size());
+                        for (int i = start; i < end; i++) {
+                            task.run(worker, i, nodes.get(i));
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            for (Future<Object> future : threadPool.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Lower priorities are contracted first, equal priorities are ordered by the node ID
+     */
+    private boolean isBefore(int node1, int node2) {
+        float priority1 = oldPriorities[node1], priority2 = oldPriorities[node2];
+        return priority1 < priority2 || priority1 == priority2 && node1 < node2;
+    }
+
+    private interface NodeTask {
+        void run(ContractionWorker worker, int index, int node);
+    }
+
+    /**
+     * The explorers and the witness search of one thread of the parallel mode
+     */
+    private class ContractionWorker {
+        final NodeBasedNodeContractor contractor;
+        private final CHEdgeExplorer explorer;
+        private final CHEdgeExplorer neighborExplorer;
+
+        ContractionWorker(NodeBasedNodeContractor contractor) {
+            this.contractor = contractor;
+            EdgeFilter allFilter = DefaultEdgeFilter.allEdges(prepareWeighting.getFlagEncoder());
+            explorer = prepareGraph.createEdgeExplorer(allFilter);
+            neighborExplorer = prepareGraph.createEdgeExplorer(allFilter);
+        }
+
+        boolean isLocalMinimum(int node) {
+            CHEdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next()) {
+                int adjNode = iter.getAdjNode();
+                if (adjNode == node || prepareGraph.getLevel(adjNode) != maxLevel)
+                    continue;
+                if (isBefore(adjNode, node))
+                    return false;
+
+                CHEdgeIterator neighborIter = neighborExplorer.setBaseNode(adjNode);
+                while (neighborIter.next()) {
+                    int secondNode = neighborIter.getAdjNode();
+                    if (secondNode == node || prepareGraph.getLevel(secondNode) != maxLevel)
+                        continue;
+                    if (isBefore(secondNode, node))
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+
     private void close() {
         nodeContractor.close();
         sortedNodes = null;
@@ -387,6 +743,35 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return prepareGraph.getWeighting();
     }
 
+    /**
+     * @return the weighting of the last customization, otherwise the one of the preparation. The
+     * queries of this preparation calculate the weights of the original edges with it.
+     */
+    public Weighting getCustomizedWeighting() {
+        return weighting;
+    }
+
+    /**
+     * Calculates the weights of all shortcuts for the specified weighting, which has to be of the
+     * same vehicle, and uses it for all following queries. Requires a customizable preparation,
+     * see {@link #setCustomizable(boolean)}. This must not be called while queries are running.
+     */
+    public void customize(Weighting weighting) {
+        if (!customizable)
+            throw new IllegalStateException("Only a customizable preparation can be customized, " + getWeighting()
+                    + " was not");
+        if (weighting.getFlagEncoder() != getWeighting().getFlagEncoder())
+            throw new IllegalArgumentException("Cannot customize the preparation of " + getWeighting().getFlagEncoder()
+                    + " with the weighting " + weighting + " of " + weighting.getFlagEncoder());
+
+        StopWatch sw = new StopWatch().start();
+        int shortcuts = new CHCustomizer(prepareGraph, ghStorage.getAllEdges().length(), weighting).customize();
+        this.weighting = weighting;
+        prepareWeighting = new PreparationWeighting(weighting);
+        logger.info("customized " + weighting + " in " + sw.stop().getSeconds() + "s, shortcuts with a path: "
+                + nf(shortcuts) + " of " + nf(prepareGraph.getAllEdges().length() - ghStorage.getAllEdges().length()));
+    }
+
     private String getTimesAsString() {
         float totalTime = allSW.getCurrentSeconds();
         float periodicUpdateTime = periodicUpdateSW.getCurrentSeconds();
@@ -410,10 +795,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return "prepare|dijkstrabi|ch";
     }
 
-    private void logStats(int updateCounter) {
+    private void logStats(int nodes, int updateCounter) {
         logger.info(String.format(Locale.ROOT,
-                "nodes: %10s, shortcuts: %10s, updates: %2d, checked-nodes: %10s, %s, %s, %s",
-                nf(sortedNodes.getSize()),
+                "nodes: %10s, shortcuts: %10s, " + (contractionThreads > 1 && !customizable ? "rounds" : "updates") + ": %2d, checked-nodes: %10s, %s, %s, %s",
+                nf(nodes),
                 nf(nodeContractor.getAddedShortcutsCount()),
                 updateCounter,
                 nf(checkCounter),
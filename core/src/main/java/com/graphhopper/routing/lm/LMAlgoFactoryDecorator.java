@@ -25,6 +25,7 @@ import com.graphhopper.routing.RoutingAlgorithmFactory;
 import com.graphhopper.routing.RoutingAlgorithmFactoryDecorator;
 import com.graphhopper.routing.util.HintsMap;
 import com.graphhopper.routing.weighting.AbstractWeighting;
+import com.graphhopper.routing.weighting.RunningWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphHopperStorage;
@@ -68,6 +69,8 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     private final List<String> lmSuggestionsLocations = new ArrayList<>(5);
     private int preparationThreads;
     private ExecutorService threadPool;
+    private int preparationLandmarkThreads = 1;
+    private int preparationWeightBits = 16;
     private boolean logDetails = false;
 
     public LMAlgoFactoryDecorator() {
@@ -77,6 +80,8 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
     @Override
     public void init(CmdArgs args) {
         setPreparationThreads(args.getInt(Parameters.Landmark.PREPARE + "threads", getPreparationThreads()));
+        setPreparationLandmarkThreads(args.getInt(Landmark.PREPARE + "landmark_threads", getPreparationLandmarkThreads()));
+        setPreparationWeightBits(args.getInt(Landmark.PREPARE + "weight_bits", getPreparationWeightBits()));
 
         landmarkCount = args.getInt(Parameters.Landmark.COUNT, landmarkCount);
         activeLandmarkCount = args.getInt(Landmark.ACTIVE_COUNT_DEFAULT, Math.min(8, landmarkCount));
@@ -138,6 +143,39 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
         this.threadPool = java.util.concurrent.Executors.newFixedThreadPool(preparationThreads);
     }
 
+    public int getPreparationLandmarkThreads() {
+        return preparationLandmarkThreads;
+    }
+
+    /**
+     * This method changes the number of threads used to calculate the landmark weights of one
+     * weighting, while the preparation threads are used for different weightings. Default is 1.
+     * Every thread needs its own search with arrays of the size of the graph.
+     *
+     * @see LandmarkStorage#setLandmarkThreads(int)
+     */
+    public LMAlgoFactoryDecorator setPreparationLandmarkThreads(int preparationLandmarkThreads) {
+        this.preparationLandmarkThreads = preparationLandmarkThreads;
+        return this;
+    }
+
+    public int getPreparationWeightBits() {
+        return preparationWeightBits;
+    }
+
+    /**
+     * This method changes the bits of the stored landmark weights, 16 or 8. Default is 16.
+     *
+     * @see LandmarkStorage#setWeightBits(int)
+     */
+    public LMAlgoFactoryDecorator setPreparationWeightBits(int preparationWeightBits) {
+        if (preparationWeightBits != 16 && preparationWeightBits != 8)
+            throw new IllegalArgumentException("weight bits have to be 16 or 8 but were " + preparationWeightBits);
+
+        this.preparationWeightBits = preparationWeightBits;
+        return this;
+    }
+
     /**
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      *
@@ -235,6 +273,12 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
                 return new LMRAFactory(p, defaultAlgoFactory);
         }
 
+        // the landmarks of a running profile stay admissible for other hyperparameters, see PrepareLandmarks.getFactor
+        for (final PrepareLandmarks p : preparations) {
+            if (p.getWeighting() instanceof RunningWeighting && ((RunningWeighting) p.getWeighting()).matchesProfile(map))
+                return new LMRAFactory(p, defaultAlgoFactory);
+        }
+
         // if the initial encoder&weighting has certain properties we could cross query it but for now avoid this
         return defaultAlgoFactory;
     }
@@ -336,6 +380,8 @@ public class LMAlgoFactoryDecorator implements RoutingAlgorithmFactoryDecorator
                     weighting, landmarkCount, activeLandmarkCount).
                     setLandmarkSuggestions(lmSuggestions).
                     setMaximumWeight(maximumWeight).
+                    setLandmarkThreads(preparationLandmarkThreads).
+                    setWeightBits(preparationWeightBits).
                     setLogDetails(logDetails);
             if (minNodes > 1)
                 tmpPrepareLM.setMinimumNodes(minNodes);
@@ -21,6 +21,7 @@ import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.routing.weighting.BeelineWeightApproximator;
 import com.graphhopper.routing.weighting.WeightApproximator;
+import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIteratorState;
 
@@ -48,6 +49,9 @@ public class LMApproximator implements WeightApproximator {
     // store weights as int
     private int[] activeFromIntWeights;
     private int[] activeToIntWeights;
+    // the upper bounds of the weights, which differ only for 8 bit landmark weights
+    private int[] activeFromUpperIntWeights;
+    private int[] activeToUpperIntWeights;
     private double epsilon = 1;
     private int to = -1;
     // do activate landmark recalculation
@@ -56,12 +60,22 @@ public class LMApproximator implements WeightApproximator {
     private final boolean reverse;
     private final int maxBaseNodes;
     private final Graph graph;
+    private final Weighting weighting;
     private final WeightApproximator fallBackApproximation;
     private boolean fallback = false;
     private final GHIntObjectHashMap<VirtEntry> virtNodeMap;
 
     public LMApproximator(Graph graph, int maxBaseNodes, LandmarkStorage lms, int activeCount,
                           double factor, boolean reverse) {
+        this(graph, maxBaseNodes, lms, activeCount, factor, lms.getWeighting(), reverse);
+    }
+
+    /**
+     * @param weighting the weighting of the query which is used for the approximation if no landmarks are available.
+     *                  The weights of the landmark storage multiplied with the factor must not exceed its weights.
+     */
+    public LMApproximator(Graph graph, int maxBaseNodes, LandmarkStorage lms, int activeCount,
+                          double factor, Weighting weighting, boolean reverse) {
         this.reverse = reverse;
         this.lms = lms;
         this.factor = factor;
@@ -73,9 +87,12 @@ public class LMApproximator implements WeightApproximator {
         Arrays.fill(activeLandmarks, -1);
         activeFromIntWeights = new int[activeCount];
         activeToIntWeights = new int[activeCount];
+        activeFromUpperIntWeights = new int[activeCount];
+        activeToUpperIntWeights = new int[activeCount];
 
         this.graph = graph;
-        this.fallBackApproximation = new BeelineWeightApproximator(graph.getNodeAccess(), lms.getWeighting());
+        this.weighting = weighting;
+        this.fallBackApproximation = new BeelineWeightApproximator(graph.getNodeAccess(), weighting);
         this.maxBaseNodes = maxBaseNodes;
         int idxVirtNode = maxBaseNodes;
         virtNodeMap = new GHIntObjectHashMap(graph.getNodes() - idxVirtNode, 0.5f);
@@ -141,9 +158,14 @@ public class LMApproximator implements WeightApproximator {
                 fallback = true;
                 return fallBackApproximation.approximate(queryNode);
             }
+            for (int i = 0; i < activeLandmarks.length; i++) {
+                activeFromUpperIntWeights[i] = lms.getFromWeightUpperBound(activeLandmarks[i], to);
+                activeToUpperIntWeights[i] = lms.getToWeightUpperBound(activeLandmarks[i], to);
+            }
         }
 
-        int maxWeightInt = getMaxWeight(node, virtEdgeWeightInt, activeLandmarks, activeFromIntWeights, activeToIntWeights);
+        int maxWeightInt = getMaxWeight(node, virtEdgeWeightInt, activeLandmarks, activeFromIntWeights, activeToIntWeights,
+                activeFromUpperIntWeights, activeToUpperIntWeights);
         if (maxWeightInt < 0) {
             // allow negative weight for now until we have more precise approximation (including query graph)
             return 0;
@@ -155,7 +177,8 @@ public class LMApproximator implements WeightApproximator {
         return maxWeightInt * factor * epsilon;
     }
 
-    int getMaxWeight(int node, int virtEdgeWeightInt, int[] activeLandmarks, int[] activeFromIntWeights, int[] activeToIntWeights) {
+    int getMaxWeight(int node, int virtEdgeWeightInt, int[] activeLandmarks, int[] activeFromIntWeights, int[] activeToIntWeights,
+                     int[] activeFromUpperIntWeights, int[] activeToUpperIntWeights) {
         int maxWeightInt = -1;
         for (int activeLMIdx = 0; activeLMIdx < activeLandmarks.length; activeLMIdx++) {
             int landmarkIndex = activeLandmarks[activeLMIdx];
@@ -167,14 +190,17 @@ public class LMApproximator implements WeightApproximator {
             // 2. for the case a->v the sign is reverse as we need to know the vector av not va => if(reverse) "-weight"
             // 3. as weight is the full edge weight for now (and not the precise weight to the virt node) we can only add it to the subtrahend
             //    to avoid overestimating (keep the result strictly lower)
-            int fromWeightInt = activeFromIntWeights[activeLMIdx] - (lms.getFromWeight(landmarkIndex, node) + virtEdgeWeightInt);
-            int toWeightInt = lms.getToWeight(landmarkIndex, node) - activeToIntWeights[activeLMIdx];
+            // 4. the stored weights are only bounds of the real weights, so the lower bound is used for the minuend
+            //    and the upper bound for the subtrahend
+            int fromWeightInt;
+            int toWeightInt;
             if (reverse) {
-                fromWeightInt = -fromWeightInt;
+                fromWeightInt = -(activeFromUpperIntWeights[activeLMIdx] - (lms.getFromWeight(landmarkIndex, node) + virtEdgeWeightInt));
                 // we need virtEntryWeight for the minuend
-                toWeightInt = -toWeightInt - virtEdgeWeightInt;
+                toWeightInt = -(lms.getToWeightUpperBound(landmarkIndex, node) - activeToIntWeights[activeLMIdx]) - virtEdgeWeightInt;
             } else {
-                toWeightInt -= virtEdgeWeightInt;
+                fromWeightInt = activeFromIntWeights[activeLMIdx] - (lms.getFromWeightUpperBound(landmarkIndex, node) + virtEdgeWeightInt);
+                toWeightInt = lms.getToWeight(landmarkIndex, node) - activeToUpperIntWeights[activeLMIdx] - virtEdgeWeightInt;
             }
 
             int tmpMaxWeightInt = Math.max(fromWeightInt, toWeightInt);
@@ -205,7 +231,7 @@ public class LMApproximator implements WeightApproximator {
 
     @Override
     public WeightApproximator reverse() {
-        return new LMApproximator(graph, maxBaseNodes, lms, activeLandmarks.length, factor, !reverse);
+        return new LMApproximator(graph, maxBaseNodes, lms, activeLandmarks.length, factor, weighting, !reverse);
     }
 
     /**
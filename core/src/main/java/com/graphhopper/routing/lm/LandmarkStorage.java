@@ -19,9 +19,9 @@ package com.graphhopper.routing.lm;
 
 import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntHashSet;
-import com.carrotsearch.hppc.IntObjectMap;
 import com.carrotsearch.hppc.predicates.IntObjectPredicate;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
 import com.graphhopper.coll.MapEntry;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.subnetwork.SubnetworkStorage;
@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -60,9 +61,12 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
     private static final int UNCLEAR_SUBNETWORK = 0;
     // one node has an associated landmark information ('one landmark row'): the forward and backward weight
     private long LM_ROW_LENGTH;
+    // the bytes of one landmark in a row: the 'from' and the 'to' weight
+    private int LM_COLUMN_LENGTH;
     private int landmarks;
-    private final int FROM_OFFSET;
-    private final int TO_OFFSET;
+    private int FROM_OFFSET;
+    private int TO_OFFSET;
+    private int weightBits = 16;
     private final DataAccess landmarkWeightDA;
     /* every subnetwork has its own landmark mapping but the count of landmarks is always the same */
     private final List<int[]> landmarkIDs;
@@ -79,6 +83,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
     private List<LandmarkSuggestion> landmarkSuggestions = Collections.emptyList();
     private SpatialRuleLookup ruleLookup;
     private boolean logDetails = false;
+    private int landmarkThreads = 1;
     /**
      * 'to' and 'from' fit into 32 bit => 16 bit for each of them => 65536
      */
@@ -115,10 +120,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         this.landmarkWeightDA = dir.find("landmarks_" + name);
 
         this.landmarks = landmarks;
-        // one short per landmark and two directions => 2*2 byte
-        this.LM_ROW_LENGTH = landmarks * 4;
-        this.FROM_OFFSET = 0;
-        this.TO_OFFSET = 2;
+        initRowLength();
         this.landmarkIDs = new ArrayList<>();
         this.subnetworkStorage = new SubnetworkStorage(dir, "landmarks_" + name);
     }
@@ -141,6 +143,46 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         return this;
     }
 
+    /**
+     * Specifies the bits of one stored weight, 16 or 8. With 16 bits the weights are stored linearly
+     * via the factor. With 8 bits the weights are stored on a logarithmic scale: the small weights
+     * stay exact and the bigger ones only keep a lower and an upper bound with a relative
+     * difference of about 3.5%, from which the {@link LMApproximator} still calculates a lower
+     * bound. This halves the storage of the landmark weights but makes the approximation weaker,
+     * so that queries visit more nodes. Default is 16.
+     */
+    public LandmarkStorage setWeightBits(int weightBits) {
+        if (weightBits != 16 && weightBits != 8)
+            throw new IllegalArgumentException("weightBits has to be 16 or 8 but was " + weightBits);
+        if (isInitialized())
+            throw new IllegalStateException("Cannot change the weight bits after the landmark storage was initialized");
+
+        this.weightBits = weightBits;
+        initRowLength();
+        return this;
+    }
+
+    public int getWeightBits() {
+        return weightBits;
+    }
+
+    private void initRowLength() {
+        if (weightBits == 8) {
+            // one short per landmark for both directions => 2*1 byte
+            LM_COLUMN_LENGTH = 2;
+            FROM_OFFSET = 0;
+            TO_OFFSET = 1;
+        } else {
+            // one short per landmark and two directions => 2*2 byte
+            LM_COLUMN_LENGTH = 4;
+            FROM_OFFSET = 0;
+            TO_OFFSET = 2;
+        }
+        // every row starts at an int, so that the columns sharing an int are always the same, see
+        // calcLandmarkWeightsInParallel
+        LM_ROW_LENGTH = (landmarks * LM_COLUMN_LENGTH + 3) / 4 * 4;
+    }
+
     /**
      * By default do not log many details.
      */
@@ -148,6 +190,20 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         this.logDetails = logDetails;
     }
 
+    /**
+     * Calculates the weights from and to the landmarks of a subnetwork with the specified number of
+     * threads, while the landmarks themselves are still selected one after another. Every thread
+     * writes the weights of its landmarks only, so the stored weights do not depend on the number
+     * of threads. Default is 1.
+     */
+    public LandmarkStorage setLandmarkThreads(int landmarkThreads) {
+        if (landmarkThreads < 1)
+            throw new IllegalArgumentException("landmarkThreads has to be at least 1 but was " + landmarkThreads);
+
+        this.landmarkThreads = landmarkThreads;
+        return this;
+    }
+
     /**
      * This method forces the landmark preparation to skip the landmark search and uses the specified landmark list instead.
      * Useful for manual tuning of larger areas to safe import time or improve quality.
@@ -297,10 +353,11 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
 
         int subnetworkCount = landmarkIDs.size();
         // store all landmark node IDs and one int for the factor itself.
-        this.landmarkWeightDA.ensureCapacity(maxBytes /* landmark weights */ + subnetworkCount * landmarks /* landmark mapping per subnetwork */);
+        long idsPointer = getLandmarkIDsPointer(maxBytes);
+        this.landmarkWeightDA.ensureCapacity(idsPointer /* landmark weights */ + subnetworkCount * landmarks * 4L /* landmark mapping per subnetwork */);
 
         // calculate offset to point into landmark mapping
-        long bytePos = maxBytes;
+        long bytePos = idsPointer;
         for (int[] landmarks : landmarkIDs) {
             for (int lmNodeId : landmarks) {
                 landmarkWeightDA.setInt(bytePos, lmNodeId);
@@ -314,6 +371,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         if (factor * DOUBLE_MLTPL > Integer.MAX_VALUE)
             throw new UnsupportedOperationException("landmark weight factor cannot be bigger than Integer.MAX_VALUE " + factor * DOUBLE_MLTPL);
         landmarkWeightDA.setHeader(3 * 4, (int) Math.round(factor * DOUBLE_MLTPL));
+        landmarkWeightDA.setHeader(4 * 4, weightBits);
 
         // serialize fast byte[] into DataAccess
         subnetworkStorage.create(graph.getNodes());
@@ -400,37 +458,18 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         }
 
         // 2) calculate weights for all landmarks -> 'from' and 'to' weight
-        for (int lmIdx = 0; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new RuntimeException("Thread was interrupted");
-            }
-            int lmNodeId = tmpLandmarkNodeIds[lmIdx];
-            LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, true);
-            explorer.setStartNode(lmNodeId);
-            explorer.setFilter(blockedEdges, false, true);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, FROM_OFFSET);
-
-            // set subnetwork id to all explored nodes, but do this only for the first landmark
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
-            }
-
-            explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, false);
-            explorer.setStartNode(lmNodeId);
-            explorer.setFilter(blockedEdges, true, false);
-            explorer.runAlgo();
-            explorer.initLandmarkWeights(lmIdx, lmNodeId, LM_ROW_LENGTH, TO_OFFSET);
+        // set subnetwork id to all explored nodes, but do this only for the first landmark
+        if (!calcLandmarkWeights(0, tmpLandmarkNodeIds[0], blockedEdges, subnetworks, subnetworkId))
+            return false;
+        logWeightsProgress(0, tmpLandmarkNodeIds.length, logOffset);
 
-            if (lmIdx == 0) {
-                if (explorer.setSubnetworks(subnetworks, subnetworkId))
-                    return false;
+        if (landmarkThreads > 1 && tmpLandmarkNodeIds.length > 2) {
+            calcLandmarkWeightsInParallel(tmpLandmarkNodeIds, blockedEdges, logOffset);
+        } else {
+            for (int lmIdx = 1; lmIdx < tmpLandmarkNodeIds.length; lmIdx++) {
+                calcLandmarkWeights(lmIdx, tmpLandmarkNodeIds[lmIdx], blockedEdges, null, subnetworkId);
+                logWeightsProgress(lmIdx, tmpLandmarkNodeIds.length, logOffset);
             }
-
-            if (logDetails && lmIdx % logOffset == 0)
-                LOGGER.info("Set landmarks weights [" + weighting + "]. "
-                        + "Progress " + (int) (100.0 * lmIdx / tmpLandmarkNodeIds.length) + "%");
         }
 
         // TODO set weight to SHORT_MAX if entry has either no 'from' or no 'to' entry
@@ -438,6 +477,82 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         return true;
     }
 
+    /**
+     * Calculates the 'from' and 'to' weights of the specified landmark, which are stored in its own
+     * column of every row.
+     *
+     * @param subnetworks if not null the explored nodes are assigned to the specified subnetwork
+     * @return false if an explored node already belongs to another subnetwork
+     */
+    private boolean calcLandmarkWeights(int lmIdx, int lmNodeId, IntHashSet blockedEdges, byte[] subnetworks, int subnetworkId) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Thread was interrupted");
+        }
+        LandmarkExplorer explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, true);
+        explorer.setStartNode(lmNodeId);
+        explorer.setFilter(blockedEdges, false, true);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, FROM_OFFSET);
+        if (subnetworks != null && explorer.setSubnetworks(subnetworks, subnetworkId))
+            return false;
+
+        explorer = new LandmarkExplorer(graph, this, weighting, traversalMode, false);
+        explorer.setStartNode(lmNodeId);
+        explorer.setFilter(blockedEdges, true, false);
+        explorer.runAlgo();
+        explorer.initLandmarkWeights(lmIdx, lmNodeId, TO_OFFSET);
+        return subnetworks == null || !explorer.setSubnetworks(subnetworks, subnetworkId);
+    }
+
+    /**
+     * Calculates the weights of all but the first landmark with the landmark threads. The storage
+     * has its final capacity at this point, so every thread can write its own columns. A
+     * DataAccess like RAMIntDataAccess writes a short by reading and writing the whole int, so
+     * the landmarks whose columns share an int are calculated by the same thread.
+     */
+    private void calcLandmarkWeightsInParallel(final int[] landmarkNodeIds, final IntHashSet blockedEdges, final int logOffset) {
+        int landmarksPerInt = 4 / LM_COLUMN_LENGTH;
+        List<Callable<Object>> callables = new ArrayList<>(landmarkNodeIds.length - 1);
+        for (int i = 1; i < landmarkNodeIds.length; ) {
+            // the first landmark is already calculated
+            final int fromIdx = i;
+            final int toIdx = Math.min((i / landmarksPerInt + 1) * landmarksPerInt, landmarkNodeIds.length);
+            callables.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (int lmIdx = fromIdx; lmIdx < toIdx; lmIdx++) {
+                        calcLandmarkWeights(lmIdx, landmarkNodeIds[lmIdx], blockedEdges, null, 0);
+                        logWeightsProgress(lmIdx, landmarkNodeIds.length, logOffset);
+                    }
+                    return null;
+                }
+            });
+            i = toIdx;
+        }
+
+        ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(landmarkThreads, callables.size()));
+        try {
+            for (Future<Object> future : threadPool.invokeAll(callables)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Thread was interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private void logWeightsProgress(int lmIdx, int landmarkCount, int logOffset) {
+        if (logDetails && lmIdx % logOffset == 0)
+            LOGGER.info("Set landmarks weights [" + weighting + "]. "
+                    + "Progress " + (int) (100.0 * lmIdx / landmarkCount) + "%");
+    }
+
     /**
      * This method specifies the polygons which should be used to split the world wide area to improve performance and
      * quality in this scenario.
@@ -479,38 +594,106 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
      * a node ID but the internal index of the landmark array.
      */
     int getFromWeight(int landmarkIndex, int node) {
-        int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4 + FROM_OFFSET)
-                & 0x0000FFFF;
+        int res = getCode(getPointer(landmarkIndex, node, FROM_OFFSET));
         assert res >= 0 : "Negative to weight " + res + ", landmark index:" + landmarkIndex + ", node:" + node;
-        if (res == SHORT_INFINITY)
-            // TODO can happen if endstanding oneway
-            // we should set a 'from' value to SHORT_MAX if the 'to' value was already set to find real bugs
-            // and what to return? Integer.MAX_VALUE i.e. convert to Double.pos_infinity upstream?
-            return SHORT_MAX;
-        // throw new IllegalStateException("Do not call getFromWeight for wrong landmark[" + landmarkIndex + "]=" + landmarkIDs[landmarkIndex] + " and node " + node);
+        // TODO infinity can happen if endstanding oneway
+        // we should set a 'from' value to SHORT_MAX if the 'to' value was already set to find real bugs
+        // and what to return? Integer.MAX_VALUE i.e. convert to Double.pos_infinity upstream?
         // TODO if(res == MAX) fallback to beeline approximation!?
-
-        return res;
+        return decodeLowerBound(res);
     }
 
     /**
      * @return the weight from the specified node to the landmark (specified *as index*)
      */
     int getToWeight(int landmarkIndex, int node) {
-        int res = (int) landmarkWeightDA.getShort((long) node * LM_ROW_LENGTH + landmarkIndex * 4 + TO_OFFSET)
-                & 0x0000FFFF;
+        int res = getCode(getPointer(landmarkIndex, node, TO_OFFSET));
         assert res >= 0 : "Negative to weight " + res + ", landmark index:" + landmarkIndex + ", node:" + node;
-        if (res == SHORT_INFINITY)
-            return SHORT_MAX;
-//            throw new IllegalStateException("Do not call getToWeight for wrong landmark[" + landmarkIndex + "]=" + landmarkIDs[landmarkIndex] + " and node " + node);
+        return decodeLowerBound(res);
+    }
 
-        return res;
+    /**
+     * @return the upper bound of the weight from the landmark to the specified node, which differs
+     * from {@link #getFromWeight(int, int)} only for 8 weight bits.
+     */
+    int getFromWeightUpperBound(int landmarkIndex, int node) {
+        return decodeUpperBound(getCode(getPointer(landmarkIndex, node, FROM_OFFSET)));
+    }
+
+    /**
+     * @return the upper bound of the weight from the specified node to the landmark
+     * @see #getFromWeightUpperBound(int, int)
+     */
+    int getToWeightUpperBound(int landmarkIndex, int node) {
+        return decodeUpperBound(getCode(getPointer(landmarkIndex, node, TO_OFFSET)));
+    }
+
+    private long getPointer(int landmarkIndex, int node, int offset) {
+        return (long) node * LM_ROW_LENGTH + landmarkIndex * LM_COLUMN_LENGTH + offset;
     }
 
     // Short.MAX_VALUE = 2^15-1 but we have unsigned short so we need 2^16-1
     private static final int SHORT_INFINITY = Short.MAX_VALUE * 2 + 1;
     // We have large values that do not fit into a short, use a specific maximum value
     private static final int SHORT_MAX = SHORT_INFINITY - 1;
+    private static final int BYTE_INFINITY = 255;
+    private static final int BYTE_MAX = BYTE_INFINITY - 1;
+    // the smallest weight (in units of the factor) of every 8 bit code, BYTE_MAX is SHORT_MAX
+    private static final int[] BYTE_LOWER_BOUNDS = createByteLowerBounds();
+
+    /**
+     * The weights below 32 are stored exactly and the bigger weights on a logarithmic scale up to
+     * SHORT_MAX, i.e. the 8 bit codes cover the same weights as the 16 bit values.
+     */
+    static int[] createByteLowerBounds() {
+        int linear = 32;
+        int[] bounds = new int[BYTE_MAX + 1];
+        double ratio = Math.pow((double) SHORT_MAX / linear, 1.0 / (BYTE_MAX - linear));
+        for (int code = 0; code < BYTE_MAX; code++) {
+            bounds[code] = code <= linear ? code : Math.max(bounds[code - 1] + 1, (int) (linear * Math.pow(ratio, code - linear)));
+        }
+        bounds[BYTE_MAX] = SHORT_MAX;
+        return bounds;
+    }
+
+    /**
+     * @return the largest 8 bit code whose lower bound does not exceed the specified weight
+     */
+    static int encodeByte(int weight) {
+        int index = Arrays.binarySearch(BYTE_LOWER_BOUNDS, weight);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int getCode(long pointer) {
+        if (weightBits == 8)
+            return (landmarkWeightDA.getShort(pointer & ~1L) >>> ((pointer & 1) * 8)) & 0xFF;
+        return (int) landmarkWeightDA.getShort(pointer) & 0x0000FFFF;
+    }
+
+    private void setCode(long pointer, int code) {
+        if (weightBits == 8) {
+            // the 'from' and the 'to' code of a landmark share one short and two landmarks share one int, which is
+            // only written by one thread, see calcLandmarkWeightsInParallel
+            long shortPointer = pointer & ~1L;
+            int shift = (int) (pointer & 1) * 8;
+            int value = landmarkWeightDA.getShort(shortPointer) & ~(0xFF << shift);
+            landmarkWeightDA.setShort(shortPointer, (short) (value | code << shift));
+        } else {
+            landmarkWeightDA.setShort(pointer, (short) code);
+        }
+    }
+
+    private int decodeLowerBound(int code) {
+        if (weightBits == 8)
+            return code == BYTE_INFINITY ? SHORT_MAX : BYTE_LOWER_BOUNDS[code];
+        return code == SHORT_INFINITY ? SHORT_MAX : code;
+    }
+
+    private int decodeUpperBound(int code) {
+        if (weightBits == 8)
+            return code >= BYTE_MAX ? SHORT_MAX : BYTE_LOWER_BOUNDS[code + 1] - 1;
+        return code == SHORT_INFINITY ? SHORT_MAX : code;
+    }
 
     /**
      * @return false if the value capacity was reached and instead of the real value the SHORT_MAX was stored.
@@ -521,16 +704,16 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             throw new UnsupportedOperationException("Cannot store infinity explicitely, pointer=" + pointer + ", value: " + value);
 
         if (tmpVal >= SHORT_MAX) {
-            landmarkWeightDA.setShort(pointer, (short) SHORT_MAX);
+            setCode(pointer, weightBits == 8 ? BYTE_MAX : SHORT_MAX);
             return false;
         } else {
-            landmarkWeightDA.setShort(pointer, (short) tmpVal);
+            setCode(pointer, weightBits == 8 ? encodeByte((int) tmpVal) : (int) tmpVal);
             return true;
         }
     }
 
     boolean isInfinity(long pointer) {
-        return ((int) landmarkWeightDA.getShort(pointer) & 0x0000FFFF) == SHORT_INFINITY;
+        return getCode(pointer) == (weightBits == 8 ? BYTE_INFINITY : SHORT_INFINITY);
     }
 
     int calcWeight(EdgeIteratorState edge, boolean reverse) {
@@ -667,9 +850,12 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             landmarks = landmarkWeightDA.getHeader(1 * 4);
             int subnetworks = landmarkWeightDA.getHeader(2 * 4);
             factor = landmarkWeightDA.getHeader(3 * 4) / DOUBLE_MLTPL;
-            LM_ROW_LENGTH = landmarks * 4;
+            // files written before the weight bits were configurable have 16 bits
+            int storedWeightBits = landmarkWeightDA.getHeader(4 * 4);
+            weightBits = storedWeightBits == 0 ? 16 : storedWeightBits;
+            initRowLength();
             long maxBytes = LM_ROW_LENGTH * nodes;
-            long bytePos = maxBytes;
+            long bytePos = getLandmarkIDsPointer(maxBytes);
 
             // in the first subnetwork 0 there are no landmark IDs stored
             for (int j = 0; j < subnetworks; j++) {
@@ -687,6 +873,14 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
         return false;
     }
 
+    /**
+     * The landmark IDs are stored as ints behind the weights, aligned to 4 bytes as the rows of 8
+     * bit weights can have an odd number of shorts.
+     */
+    private static long getLandmarkIDsPointer(long maxBytes) {
+        return (maxBytes + 3) / 4 * 4;
+    }
+
     @Override
     public LandmarkStorage create(long byteCount) {
         throw new IllegalStateException("Do not call LandmarkStore.create directly");
@@ -782,7 +976,7 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
                 throw new IllegalStateException("Too many subnetworks " + subnetworkId);
 
             final AtomicBoolean failed = new AtomicBoolean(false);
-            IntObjectMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
+            GHIntObjectVersionedHashMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
             map.forEach(new IntObjectPredicate<SPTEntry>() {
                 @Override
                 public boolean apply(int nodeId, SPTEntry value) {
@@ -805,15 +999,15 @@ public class LandmarkStorage implements Storable<LandmarkStorage> {
             return failed.get();
         }
 
-        public void initLandmarkWeights(final int lmIdx, int lmNodeId, final long rowSize, final int offset) {
-            IntObjectMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
+        public void initLandmarkWeights(final int lmIdx, int lmNodeId, final int offset) {
+            GHIntObjectVersionedHashMap<SPTEntry> map = from ? bestWeightMapFrom : bestWeightMapTo;
             final AtomicInteger maxedout = new AtomicInteger(0);
             final Map.Entry<Double, Double> finalMaxWeight = new MapEntry<>(0d, 0d);
 
             map.forEach(new IntObjectProcedure<SPTEntry>() {
                 @Override
                 public void apply(int nodeId, SPTEntry b) {
-                    if (!lms.setWeight(nodeId * rowSize + lmIdx * 4 + offset, b.weight)) {
+                    if (!lms.setWeight(lms.getPointer(lmIdx, nodeId, offset), b.weight)) {
                         maxedout.incrementAndGet();
                         finalMaxWeight.setValue(Math.max(b.weight, finalMaxWeight.getValue()));
                     }
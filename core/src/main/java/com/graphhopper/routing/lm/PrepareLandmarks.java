@@ -20,6 +20,7 @@ package com.graphhopper.routing.lm;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.AbstractAlgoPreparation;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookup;
+import com.graphhopper.routing.weighting.RunningWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
@@ -100,6 +101,22 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
         lms.setMinimumNodes(nodes);
     }
 
+    /**
+     * @see LandmarkStorage#setLandmarkThreads(int)
+     */
+    public PrepareLandmarks setLandmarkThreads(int landmarkThreads) {
+        lms.setLandmarkThreads(landmarkThreads);
+        return this;
+    }
+
+    /**
+     * @see LandmarkStorage#setWeightBits(int)
+     */
+    public PrepareLandmarks setWeightBits(int weightBits) {
+        lms.setWeightBits(weightBits);
+        return this;
+    }
+
     public PrepareLandmarks setLogDetails(boolean logDetails) {
         lms.setLogDetails(logDetails);
         return this;
@@ -135,6 +152,18 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
                 + ", nodes:" + graph.getNodes() + ", " + Helper.getMemInfo());
     }
 
+    /**
+     * The landmarks of a running weighting can be used for other hyperparameters of the same profile if their
+     * weights are scaled down so that they stay a lower bound.
+     */
+    double getFactor(Weighting queryWeighting) {
+        Weighting weighting = lms.getWeighting();
+        if (weighting != queryWeighting && weighting instanceof RunningWeighting && queryWeighting instanceof RunningWeighting)
+            return lms.getFactor() * ((RunningWeighting) weighting).calcLowerBoundFactor((RunningWeighting) queryWeighting);
+
+        return lms.getFactor();
+    }
+
     public RoutingAlgorithm getDecoratedAlgorithm(Graph qGraph, RoutingAlgorithm algo, AlgorithmOptions opts) {
         int activeLM = Math.max(1, opts.getHints().getInt(Landmark.ACTIVE_COUNT, defaultActiveLandmarks));
         if (algo instanceof AStar) {
@@ -143,7 +172,7 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
 
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStar.EPSILON, 1);
             AStar astar = (AStar) algo;
-            astar.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, lms.getFactor(), false).
+            astar.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, getFactor(opts.getWeighting()), opts.getWeighting(), false).
                     setEpsilon(epsilon));
             return algo;
         } else if (algo instanceof AStarBidirection) {
@@ -152,7 +181,7 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
 
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStarBi.EPSILON, 1);
             AStarBidirection astarbi = (AStarBidirection) algo;
-            astarbi.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, lms.getFactor(), false).
+            astarbi.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, getFactor(opts.getWeighting()), opts.getWeighting(), false).
                     setEpsilon(epsilon));
             return algo;
         } else if (algo instanceof AlternativeRoute) {
@@ -161,7 +190,7 @@ public class PrepareLandmarks extends AbstractAlgoPreparation {
 
             double epsilon = opts.getHints().getDouble(Parameters.Algorithms.AStarBi.EPSILON, 1);
             AlternativeRoute altRoute = (AlternativeRoute) algo;
-            altRoute.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, lms.getFactor(), false).
+            altRoute.setApproximation(new LMApproximator(qGraph, this.graph.getNodes(), lms, activeLM, getFactor(opts.getWeighting()), opts.getWeighting(), false).
                     setEpsilon(epsilon));
             // landmark algorithm follows good compromise between fast response and exploring 'interesting' paths so we
             // can decrease this exploration factor further (1->dijkstra, 0.8->bidir. A*)
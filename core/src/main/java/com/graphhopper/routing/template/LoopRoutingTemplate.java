@@ -0,0 +1,154 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.template;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.Parameters.Algorithms.Loop;
+import com.graphhopper.util.PathMerger;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.Translation;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.exceptions.PointNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Implementation of calculating several round trips of a target distance from one start point
+ * with one search tree, see {@link LoopGenerator}. Every loop is a separate path in the response.
+ */
+public class LoopRoutingTemplate extends AbstractRoutingTemplate implements RoutingTemplate {
+    private final GHRequest ghRequest;
+    private final GHResponse ghResponse;
+    private final LocationIndex locationIndex;
+    private final ExecutorService executor;
+    private double maxDistance = Double.MAX_VALUE;
+    private int maxCandidates = Integer.MAX_VALUE;
+    private NodeAccess nodeAccess;
+    private List<LoopGenerator.Loop> loops;
+
+    /**
+     * @param executor evaluates the loop candidates in parallel, can be null
+     */
+    public LoopRoutingTemplate(GHRequest request, GHResponse ghRsp, LocationIndex locationIndex, ExecutorService executor) {
+        this.ghRequest = request;
+        this.ghResponse = ghRsp;
+        this.locationIndex = locationIndex;
+        this.executor = executor;
+    }
+
+    /**
+     * Limits the loop.distance of a request, as a longer loop needs a larger search tree.
+     */
+    public LoopRoutingTemplate setMaxDistance(double maxDistance) {
+        this.maxDistance = maxDistance;
+        return this;
+    }
+
+    /**
+     * Limits the loop.candidates of a request, as every candidate is a search on the shared
+     * executor.
+     */
+    public LoopRoutingTemplate setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        return this;
+    }
+
+    @Override
+    public List<QueryResult> lookup(List<GHPoint> points, FlagEncoder encoder) {
+        if (points.size() != 1 || ghRequest.getPoints().size() != 1)
+            throw new IllegalArgumentException("For loop calculation exactly one point is required");
+
+        double distance = ghRequest.getHints().getDouble(Loop.DISTANCE, 10000);
+        if (distance > maxDistance)
+            throw new IllegalArgumentException("The " + Loop.DISTANCE + " parameter has to be below or equal to:" + maxDistance);
+        int candidates = ghRequest.getHints().getInt(Loop.CANDIDATES, 16);
+        if (candidates > maxCandidates)
+            throw new IllegalArgumentException("The " + Loop.CANDIDATES + " parameter has to be below or equal to:" + maxCandidates);
+
+        GHPoint start = points.get(0);
+        QueryResult startQR = locationIndex.findClosest(start.lat, start.lon, DefaultEdgeFilter.allEdges(encoder));
+        if (!startQR.isValid())
+            throw new PointNotFoundException("Cannot find point 0: " + start, 0);
+
+        queryResults = new ArrayList<>(1);
+        queryResults.add(startQR);
+        return queryResults;
+    }
+
+    @Override
+    public List<Path> calcPaths(QueryGraph queryGraph, RoutingAlgorithmFactory algoFactory, AlgorithmOptions algoOpts) {
+        LoopGenerator generator = new LoopGenerator(queryGraph, algoFactory, algoOpts).
+                setDistance(ghRequest.getHints().getDouble(Loop.DISTANCE, 10000)).
+                setMaxPaths(ghRequest.getHints().getInt(Loop.MAX_PATHS, 3)).
+                setCandidates(ghRequest.getHints().getInt(Loop.CANDIDATES, 16)).
+                setMaxShareFactor(ghRequest.getHints().getDouble(Loop.MAX_SHARE, 0.6)).
+                setExecutor(executor);
+        nodeAccess = queryGraph.getNodeAccess();
+        loops = generator.calcLoops(queryResults.get(0).getClosestNode());
+
+        int visitedNodes = generator.getVisitedNodes();
+        ghResponse.getHints().put("visited_nodes.sum", visitedNodes);
+        ghResponse.getHints().put("visited_nodes.average", (float) visitedNodes / Math.max(1, loops.size()));
+
+        List<Path> pathList = new ArrayList<>(2 * loops.size());
+        for (LoopGenerator.Loop loop : loops) {
+            pathList.addAll(loop.getPaths());
+        }
+        return pathList;
+    }
+
+    @Override
+    public boolean isReady(PathMerger pathMerger, Translation tr) {
+        if (loops.isEmpty()) {
+            ghResponse.addError(new ConnectionNotFoundException("No loop found for the point " + ghRequest.getPoints().get(0),
+                    Collections.<String, Object>emptyMap()));
+            return true;
+        }
+
+        GHPoint start = queryResults.get(0).getSnappedPoint();
+        for (LoopGenerator.Loop loop : loops) {
+            PointList wpList = new PointList(3, true);
+            wpList.add(start);
+            wpList.add(nodeAccess, loop.getTurnaroundNode());
+            wpList.add(start);
+
+            PathWrapper loopResponse = new PathWrapper();
+            loopResponse.setWaypoints(wpList);
+            ghResponse.add(loopResponse);
+            pathMerger.doWork(loopResponse, loop.getPaths(), tr);
+        }
+        return true;
+    }
+
+    @Override
+    public int getMaxRetries() {
+        return 1;
+    }
+}
@@ -24,6 +24,7 @@ import com.graphhopper.routing.*;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.index.SnapBatch;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.Parameters.Routing;
 import com.graphhopper.util.PathMerger;
@@ -45,6 +46,7 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
     protected final GHResponse ghResponse;
     protected final PathWrapper altResponse = new PathWrapper();
     private final LocationIndex locationIndex;
+    private SnapBatch snapBatch;
     // result from route
     protected List<Path> pathList;
 
@@ -54,6 +56,15 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
         this.ghResponse = ghRsp;
     }
 
+    /**
+     * Looks up the points which are part of the specified batch in the batch instead of the
+     * location index, e.g. for the routes of a bulk request.
+     */
+    public ViaRoutingTemplate setSnapBatch(SnapBatch snapBatch) {
+        this.snapBatch = snapBatch;
+        return this;
+    }
+
     @Override
     public List<QueryResult> lookup(List<GHPoint> points, FlagEncoder encoder) {
         if (points.size() < 2)
@@ -66,6 +77,8 @@ public class ViaRoutingTemplate extends AbstractRoutingTemplate implements Routi
             QueryResult qr = null;
             if (ghRequest.hasPointHints())
                 qr = locationIndex.findClosest(point.lat, point.lon, new NameSimilarityEdgeFilter(edgeFilter, ghRequest.getPointHints().get(placeIndex)));
+            else if (snapBatch != null)
+                qr = snapBatch.lookup(point, edgeFilter);
             if (qr == null || !qr.isValid())
                 qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
             if (!qr.isValid())
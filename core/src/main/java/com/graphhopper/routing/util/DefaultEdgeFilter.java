@@ -63,6 +63,20 @@ public class DefaultEdgeFilter implements EdgeFilter {
         return fwd;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass())
+            return false;
+
+        DefaultEdgeFilter other = (DefaultEdgeFilter) obj;
+        return encoder.equals(other.encoder) && fwd == other.fwd && bwd == other.bwd;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * encoder.hashCode() + (fwd ? 2 : 0) + (bwd ? 1 : 0);
+    }
+
     @Override
     public String toString() {
         return encoder.toString() + ", bwd:" + bwd + ", fwd:" + fwd;
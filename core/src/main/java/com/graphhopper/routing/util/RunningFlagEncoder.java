@@ -13,14 +13,11 @@ public class RunningFlagEncoder extends FootFlagEncoder {
 
     // Encoders
     protected EncodedValue highwayTypeEncoder;
-    protected EncodedValue OSMWayIdEncoder;
 
 
     protected Set<String> sidewalkTypes;
 
     private final Map<String, Integer> highwayMap = new HashMap<>();
-    private final Map<Long, Long> idx2OSMWayId = new HashMap<>();
-    private long idx = 0;
 
     public RunningFlagEncoder(PMap configuration) {
         super(configuration);
@@ -111,9 +108,6 @@ public class RunningFlagEncoder extends FootFlagEncoder {
         highwayTypeEncoder = new EncodedValue("highway", shift, 5, 1, 0, highwayMap.size(), true);
         shift += highwayTypeEncoder.getBits();
 
-        OSMWayIdEncoder = new EncodedValue("wayid", shift, 24, 1, 0, 8388608);
-        shift += OSMWayIdEncoder.getBits();
-
         return shift;
     }
 
@@ -170,11 +164,6 @@ public class RunningFlagEncoder extends FootFlagEncoder {
         int hwValue = getHighwayType(way);
         flags = highwayTypeEncoder.setValue(flags, hwValue);
 
-        // WAYID
-        idx2OSMWayId.put(new Long(idx), new Long(way.getId()));
-        flags = OSMWayIdEncoder.setValue(flags, idx);
-        idx++;
-
         return flags;
     }
 
@@ -240,13 +229,6 @@ public class RunningFlagEncoder extends FootFlagEncoder {
     }
 
 
-    public long getOSMWayId(EdgeIteratorState edge) {
-        long flags = edge.getFlags();
-        long current = OSMWayIdEncoder.getValue(flags);
-        return current;
-//        return idx2OSMWayId.get(current);
-    }
-
     public String getHighwayTypeString(Integer code){
 
         String key= null;
@@ -0,0 +1,178 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.storage.EdgeScoreStorage;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.PMap;
+
+/**
+ * Base class of the running weightings. The fastest weight of an edge is divided by
+ * <p>
+ * 0.5 + 0.5 * street_score + 0.5 * (beta1 * environment + beta2 * support + beta3 * safety)
+ * <p>
+ * where the street score is the priority of the edge and environment, support and safety are the
+ * scores of the profile in the EdgeScoreStorage. The hyperparameters beta1, beta2 and beta3 are
+ * read from the request and default to 1/3. As CH and LM are prepared with the default
+ * hyperparameters only requests with the default hyperparameters match a prepared weighting.
+ * Requests with other hyperparameters can still use the landmarks of the profile, see
+ * {@link #calcLowerBoundFactor(RunningWeighting)}.
+ */
+public abstract class RunningWeighting extends FastestWeighting {
+    public static final int KEY = PriorityWeighting.KEY;
+    public static final double DEFAULT_BETA = 1d / 3;
+    protected final EdgeScoreStorage edgeScores;
+    protected final double beta1;
+    protected final double beta2;
+    protected final double beta3;
+    // the betas folded with the factor 0.5 of the formula, so calcWeight needs no further multiplication
+    private final double environmentFactor;
+    private final double supportFactor;
+    private final double safetyFactor;
+    private final int environmentScore;
+    private final int supportScore;
+    private final int safetyScore;
+
+    protected RunningWeighting(HintsMap hintsMap, FlagEncoder flagEncoder, EdgeScoreStorage edgeScores, PMap pMap,
+                               int environmentScore, int supportScore, int safetyScore) {
+        super(flagEncoder, pMap);
+        if (edgeScores == null)
+            throw new IllegalArgumentException("Weighting " + getName() + " requires the edge scores of the running vehicle");
+
+        this.edgeScores = edgeScores;
+        this.environmentScore = environmentScore;
+        this.supportScore = supportScore;
+        this.safetyScore = safetyScore;
+        beta1 = hintsMap.getDouble("beta1", DEFAULT_BETA);
+        beta2 = hintsMap.getDouble("beta2", DEFAULT_BETA);
+        beta3 = hintsMap.getDouble("beta3", DEFAULT_BETA);
+        environmentFactor = 0.5 * beta1;
+        supportFactor = 0.5 * beta2;
+        safetyFactor = 0.5 * beta3;
+    }
+
+    public double getEnvironment(int edgeId) {
+        return edgeScores.getScore(edgeId, environmentScore);
+    }
+
+    public double getSupport(int edgeId) {
+        return edgeScores.getScore(edgeId, supportScore);
+    }
+
+    public double getSafety(int edgeId) {
+        return edgeScores.getScore(edgeId, safetyScore);
+    }
+
+    protected final double calcDivisor(double streetScore, double environment, double support, double safety) {
+        return 0.5 + 0.5 * streetScore + environmentFactor * environment + supportFactor * support + safetyFactor * safety;
+    }
+
+    /**
+     * This method is called for every relaxed edge and must not allocate, i.e. it reads the scores
+     * via the edge ID only and never decodes the name or other properties of the edge.
+     */
+    @Override
+    public final double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+        double weight = super.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+        if (Double.isInfinite(weight))
+            return Double.POSITIVE_INFINITY;
+
+        int edgeId = edgeState.getEdge();
+        if (edgeId >= edgeScores.getEdgeCount()) {
+            // Virtual edges have no scores, use the ones of the original edge. The explorer of a
+            // QueryGraph passes its iterator, whose detach returns the current edge without copying.
+            EdgeIteratorState virtualEdge = edgeState instanceof VirtualEdgeIteratorState ? edgeState : edgeState.detach(false);
+            if (virtualEdge instanceof VirtualEdgeIteratorState)
+                edgeId = GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) virtualEdge).getOriginalTraversalKey());
+        }
+        double streetScore = flagEncoder.getDouble(edgeState.getFlags(), KEY);
+        return weight / calcDivisor(streetScore, edgeScores.getScore(edgeId, environmentScore),
+                edgeScores.getScore(edgeId, supportScore), edgeScores.getScore(edgeId, safetyScore));
+    }
+
+    @Override
+    public double getMinWeight(double distance) {
+        // the score ranges are only known after the import, so do not cache the divisor
+        double maxRunningScore = maxTerm(beta1, environmentScore) + maxTerm(beta2, supportScore)
+                + maxTerm(beta3, safetyScore);
+        double maxStreetScore = 1; // BEST / BEST
+        return super.getMinWeight(distance) / (0.5 + 0.5 * maxStreetScore + 0.5 * maxRunningScore);
+    }
+
+    private double maxTerm(double beta, int score) {
+        return Math.max(beta * edgeScores.getMinScore(score), beta * edgeScores.getMaxScore(score));
+    }
+
+    /**
+     * Returns a factor so that factor * weight of this weighting is a lower bound of the weight of
+     * the specified weighting for every edge of the graph. This makes the landmarks prepared for this
+     * weighting admissible for requests with other hyperparameters. Returns 0 if no such factor
+     * exists, e.g. if the scores allow non-positive weights.
+     */
+    public double calcLowerBoundFactor(RunningWeighting other) {
+        if (!matchesProfile(other))
+            return 0;
+        if (beta1 == other.beta1 && beta2 == other.beta2 && beta3 == other.beta3)
+            return 1;
+
+        // The ratio of both weights of an edge is divisor / other.divisor. This is a linear fractional
+        // function of the street score and the three scores which takes its minimum on a corner of the
+        // box spanned by their ranges, as long as both divisors are positive in the whole box.
+        double factor = Double.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 16; corner++) {
+            double streetScore = (corner & 1) == 0 ? 0 : 1;
+            double environment = cornerScore(environmentScore, corner & 2);
+            double support = cornerScore(supportScore, corner & 4);
+            double safety = cornerScore(safetyScore, corner & 8);
+            double divisor = calcDivisor(streetScore, environment, support, safety);
+            double otherDivisor = other.calcDivisor(streetScore, environment, support, safety);
+            if (divisor <= 0 || otherDivisor <= 0)
+                return 0;
+            factor = Math.min(factor, divisor / otherDivisor);
+        }
+        return factor;
+    }
+
+    private double cornerScore(int score, int bit) {
+        return bit == 0 ? edgeScores.getMinScore(score) : edgeScores.getMaxScore(score);
+    }
+
+    /**
+     * Same as {@link #matches(HintsMap)} but ignores the hyperparameters.
+     */
+    public boolean matchesProfile(HintsMap reqMap) {
+        return super.matches(reqMap);
+    }
+
+    private boolean matchesProfile(RunningWeighting other) {
+        return getName().equals(other.getName()) && flagEncoder == other.flagEncoder
+                && edgeScores == other.edgeScores;
+    }
+
+    @Override
+    public boolean matches(HintsMap reqMap) {
+        return super.matches(reqMap)
+                && beta1 == reqMap.getDouble("beta1", DEFAULT_BETA)
+                && beta2 == reqMap.getDouble("beta2", DEFAULT_BETA)
+                && beta3 == reqMap.getDouble("beta3", DEFAULT_BETA);
+    }
+}
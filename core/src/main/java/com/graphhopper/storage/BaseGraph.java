@@ -57,7 +57,10 @@ class BaseGraph implements Graph {
     final EdgeAccess edgeAccess;
     // length | nodeA | nextNode | ... | nodeB
     // as we use integer index in 'egdes' area => 'geometry' area is limited to 4GB (we use pos&neg values!)
+    // The compact format stores: byte length | count | delta to nodeA | delta to previous pillar | ...
+    // with zig-zag encoded variable-length values and a 64 bit geo ref (the byte position).
     private final DataAccess wayGeometry;
+    private static final int COMPACT_GEOMETRY = 1;
     private final Directory dir;
     private final InternalGraphEventListener listener;
     /**
@@ -85,6 +88,7 @@ class BaseGraph implements Graph {
     private GHBitSet removedNodes;
     private int edgeEntryIndex, nodeEntryIndex;
     private long maxGeoRef;
+    private boolean compactGeometry = false;
     private boolean frozen = false;
 
     public BaseGraph(Directory dir, final EncodingManager encodingManager, boolean withElevation,
@@ -217,9 +221,25 @@ class BaseGraph implements Graph {
     protected int setWayGeometryHeader() {
         wayGeometry.setHeader(0, bitUtil.getIntLow(maxGeoRef));
         wayGeometry.setHeader(4, bitUtil.getIntHigh(maxGeoRef));
+        wayGeometry.setHeader(2 * 4, compactGeometry ? COMPACT_GEOMETRY : 0);
         return 1;
     }
 
+    /**
+     * Stores the pillar nodes with variable length as zig-zag encoded deltas, the first one to the
+     * tower node of the edge, which makes the geometry 2-3 times smaller. The geo refs have 64 bit
+     * and so the edges 4 bytes more. The latitude and longitude of the tower nodes must not change
+     * after a geometry is set. Call this before create; loadExisting uses the stored format.
+     */
+    void setCompactGeometry(boolean compactGeometry) {
+        checkInit();
+        this.compactGeometry = compactGeometry;
+    }
+
+    boolean isCompactGeometry() {
+        return compactGeometry;
+    }
+
     void initStorage() {
         edgeEntryIndex = 0;
         nodeEntryIndex = 0;
@@ -232,7 +252,7 @@ class BaseGraph implements Graph {
                 nextEdgeEntryIndex(encodingManager.getBytesForFlags()),
                 flagsSizeIsLong);
 
-        E_GEO = nextEdgeEntryIndex(4);
+        E_GEO = nextEdgeEntryIndex(compactGeometry ? 8 : 4);
         E_NAME = nextEdgeEntryIndex(4);
         if (extStorage.isRequireEdgeField())
             E_ADDITIONAL = nextEdgeEntryIndex(4);
@@ -448,6 +468,8 @@ class BaseGraph implements Graph {
 
         if (!wayGeometry.loadExisting())
             throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
+        // the format defines the size of the edges and so it is read before initStorage
+        compactGeometry = wayGeometry.getHeader(2 * 4) == COMPACT_GEOMETRY;
 
         if (!nameIndex.loadExisting())
             throw new IllegalStateException("Cannot load name index. corrupt file or directory? " + dir);
@@ -727,10 +749,13 @@ class BaseGraph implements Graph {
             int linkA = edgeAccess.getEdgeRef(nodeA, nodeB, edgePointer);
             int linkB = edgeAccess.getEdgeRef(nodeB, nodeA, edgePointer);
             long flags = edgeAccess.getFlags_(edgePointer, false);
+            // fetch the geometry before the nodes change as the compact geometry is relative to nodeA
+            PointList pillarNodes = updatedA < updatedB != nodeA < nodeB
+                    ? fetchWayGeometry_(edgePointer, true, 0, -1, -1) : null;
             edgeAccess.writeEdge(edgeId, updatedA, updatedB, linkA, linkB);
             edgeAccess.setFlags_(edgePointer, updatedA > updatedB, flags);
-            if (updatedA < updatedB != nodeA < nodeB)
-                setWayGeometry_(fetchWayGeometry_(edgePointer, true, 0, -1, -1), edgePointer, false);
+            if (pillarNodes != null)
+                setWayGeometry_(pillarNodes, edgePointer, false);
         }
 
         if (removeNodeCount >= nodeCount)
@@ -796,7 +821,12 @@ class BaseGraph implements Graph {
                 throw new IllegalArgumentException("Cannot use pointlist which is " + pillarNodes.getDimension()
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
-            long existingGeoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+            if (compactGeometry) {
+                setCompactWayGeometry(pillarNodes, edgePointer, reverse);
+                return;
+            }
+
+            long existingGeoRef = getGeoRef(edgePointer);
 
             int len = pillarNodes.getSize();
             int dim = nodeAccess.getDimension();
@@ -811,7 +841,85 @@ class BaseGraph implements Graph {
             long nextGeoRef = nextGeoRef(len * dim);
             setWayGeometryAtGeoRef(pillarNodes, edgePointer, reverse, nextGeoRef);
         } else {
-            edges.setInt(edgePointer + E_GEO, 0);
+            setGeoRef(edgePointer, 0);
+        }
+    }
+
+    private long getGeoRef(long edgePointer) {
+        if (compactGeometry)
+            return bitUtil.combineIntsToLong(edges.getInt(edgePointer + E_GEO), edges.getInt(edgePointer + E_GEO + 4));
+        return Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+    }
+
+    private void setGeoRef(long edgePointer, long geoRef) {
+        if (compactGeometry) {
+            edges.setInt(edgePointer + E_GEO, bitUtil.getIntLow(geoRef));
+            edges.setInt(edgePointer + E_GEO + 4, bitUtil.getIntHigh(geoRef));
+        } else {
+            edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
+        }
+    }
+
+    private void setCompactWayGeometry(PointList pillarNodes, long edgePointer, boolean reverse) {
+        VLongStorage storage = createCompactWayGeometry(pillarNodes, edgePointer, reverse);
+        int length = (int) storage.getPosition();
+        if (length > 0xFFFF)
+            throw new IllegalArgumentException("Too many pillar nodes for the compact geometry: " + pillarNodes.getSize());
+
+        long geoRef = getGeoRef(edgePointer);
+        if (geoRef == 0 || (wayGeometry.getShort(geoRef) & 0xFFFF) < length) {
+            geoRef = maxGeoRef;
+            // keep the entries at even positions, so that the length does not span two segments
+            maxGeoRef += 2 + length + (length & 1);
+        }
+        ensureGeometry(geoRef, 2 + length);
+        wayGeometry.setShort(geoRef, (short) length);
+        wayGeometry.setBytes(geoRef + 2, storage.getBytes(), length);
+        setGeoRef(edgePointer, geoRef);
+    }
+
+    private VLongStorage createCompactWayGeometry(PointList pillarNodes, long edgePointer, boolean reverse) {
+        int len = pillarNodes.getSize();
+        boolean is3D = nodeAccess.is3D();
+        // a varint of an int needs at most 5 bytes
+        VLongStorage storage = new VLongStorage(5 + len * nodeAccess.getDimension() * 5);
+        storage.writeVLong(len);
+        long nodePointer = (long) edges.getInt(edgePointer + edgeAccess.E_NODEA) * nodeEntryBytes;
+        int prevLat = nodes.getInt(nodePointer + N_LAT);
+        int prevLon = nodes.getInt(nodePointer + N_LON);
+        int prevEle = 0;
+        for (int i = 0; i < len; i++) {
+            int index = reverse ? len - 1 - i : i;
+            int lat = Helper.degreeToInt(pillarNodes.getLatitude(index));
+            int lon = Helper.degreeToInt(pillarNodes.getLongitude(index));
+            storage.writeZLong((long) lat - prevLat);
+            storage.writeZLong((long) lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+            if (is3D) {
+                int ele = Helper.eleToInt(pillarNodes.getElevation(index));
+                storage.writeZLong((long) ele - prevEle);
+                prevEle = ele;
+            }
+        }
+        return storage;
+    }
+
+    private void addCompactPillarNodes(PointList pillarNodes, VLongStorage storage, int count, long edgePointer) {
+        long nodePointer = (long) edges.getInt(edgePointer + edgeAccess.E_NODEA) * nodeEntryBytes;
+        int lat = nodes.getInt(nodePointer + N_LAT);
+        int lon = nodes.getInt(nodePointer + N_LON);
+        int ele = 0;
+        boolean is3D = nodeAccess.is3D();
+        for (int i = 0; i < count; i++) {
+            lat += (int) storage.readZLong();
+            lon += (int) storage.readZLong();
+            if (is3D) {
+                ele += (int) storage.readZLong();
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+            } else {
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+            }
         }
     }
 
@@ -823,7 +931,7 @@ class BaseGraph implements Graph {
         ensureGeometry(geoRefPosition, totalLen);
         byte[] wayGeometryBytes = createWayGeometryBytes(pillarNodes, reverse);
         wayGeometry.setBytes(geoRefPosition, wayGeometryBytes, wayGeometryBytes.length);
-        edges.setInt(edgePointer + E_GEO, Helper.toSignedInt(geoRef));
+        setGeoRef(edgePointer, geoRef);
     }
 
     private byte[] createWayGeometryBytes(PointList pillarNodes, boolean reverse) {
@@ -853,10 +961,16 @@ class BaseGraph implements Graph {
     }
 
     private PointList fetchWayGeometry_(long edgePointer, boolean reverse, int mode, int baseNode, int adjNode) {
-        long geoRef = Helper.toUnsignedLong(edges.getInt(edgePointer + E_GEO));
+        long geoRef = getGeoRef(edgePointer);
         int count = 0;
         byte[] bytes = null;
-        if (geoRef > 0) {
+        VLongStorage compactBytes = null;
+        if (geoRef > 0 && compactGeometry) {
+            bytes = new byte[wayGeometry.getShort(geoRef) & 0xFFFF];
+            wayGeometry.getBytes(geoRef + 2, bytes, bytes.length);
+            compactBytes = new VLongStorage(bytes);
+            count = (int) compactBytes.readVLong();
+        } else if (geoRef > 0) {
             geoRef *= 4L;
             count = wayGeometry.getInt(geoRef);
 
@@ -873,17 +987,21 @@ class BaseGraph implements Graph {
         } else if ((mode & 1) != 0)
             pillarNodes.add(nodeAccess, baseNode);
 
-        int index = 0;
-        for (int i = 0; i < count; i++) {
-            double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
-            index += 4;
-            if (nodeAccess.is3D()) {
-                pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
+        if (compactBytes != null) {
+            addCompactPillarNodes(pillarNodes, compactBytes, count, edgePointer);
+        } else {
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                double lat = Helper.intToDegree(bitUtil.toInt(bytes, index));
                 index += 4;
-            } else {
-                pillarNodes.add(lat, lon);
+                double lon = Helper.intToDegree(bitUtil.toInt(bytes, index));
+                index += 4;
+                if (nodeAccess.is3D()) {
+                    pillarNodes.add(lat, lon, Helper.intToEle(bitUtil.toInt(bytes, index)));
+                    index += 4;
+                } else {
+                    pillarNodes.add(lat, lon);
+                }
             }
         }
 
@@ -54,7 +54,9 @@ public class DAType {
      */
     public static final DAType MMAP_RO = new DAType(MemRef.MMAP, true, false, false);
     /**
-     * Experimental API. Do not use yet.
+     * The DA object is hold in one contiguous region of native memory outside of the JVM heap,
+     * which is addressed without segments. It will load from disc and flush to it like RAM_STORE.
+     * See UnsafeDataAccess.
      */
     public static final DAType UNSAFE_STORE = new DAType(MemRef.UNSAFE, true, false, true);
     private final MemRef memRef;
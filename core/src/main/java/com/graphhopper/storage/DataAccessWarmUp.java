@@ -0,0 +1,141 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the memory mapped DataAccess files of a directory into physical memory before they are
+ * read by the first requests, e.g. nodes, edges, geometry, location_index and the CH shortcuts.
+ * Otherwise every request page-faults into the files for some minutes after a start. The
+ * segments are loaded one after another, so the files are read sequentially, see
+ * {@link java.nio.MappedByteBuffer#load()}. Other DataAccess types are already in memory and are
+ * skipped.
+ * <p>
+ * The progress can be read from other threads while the warm up runs. A file which is closed
+ * while the warm up runs, e.g. replaced edge scores, is skipped from the next segment on.
+ */
+public class DataAccessWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataAccessWarmUp.class);
+    // the edge scores can be replaced and closed at any time by a score reload
+    private static final String SWAPPABLE = "edge_scores";
+    private final List<String> names;
+    private final AtomicLong loadedBytes = new AtomicLong();
+    private volatile long totalBytes = -1;
+    private volatile boolean finished;
+
+    /**
+     * @param names the names of the DataAccess files to load, or "all" for every file of the
+     *              directory except the edge scores
+     */
+    public DataAccessWarmUp(List<String> names) {
+        this.names = new ArrayList<>(names);
+    }
+
+    /**
+     * Loads the selected files of the specified directory. Stops early if the thread is
+     * interrupted.
+     */
+    public void warmUp(Directory dir) {
+        List<MMapDataAccess> mmapDAs = new ArrayList<>();
+        long bytes = 0;
+        for (DataAccess da : select(dir.getAll())) {
+            if (da instanceof MMapDataAccess && !da.isClosed()) {
+                mmapDAs.add((MMapDataAccess) da);
+                bytes += da.getCapacity();
+            }
+        }
+        totalBytes = bytes;
+
+        StopWatch sw = new StopWatch().start();
+        for (MMapDataAccess da : mmapDAs) {
+            for (int segment = 0; segment < da.getSegments(); segment++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOGGER.info("warm up interrupted after " + getLoadedBytes() / Helper.MB + "MB");
+                    return;
+                }
+                if (da.isClosed()) {
+                    LOGGER.info("skipped the warm up of " + da.getName() + ", it was closed");
+                    break;
+                }
+                loadedBytes.addAndGet(da.loadSegment(segment));
+            }
+        }
+        finished = true;
+        LOGGER.info("warmed up " + mmapDAs.size() + " memory mapped files with " + bytes / Helper.MB + "MB in "
+                + sw.stop().getSeconds() + "s");
+    }
+
+    private Collection<DataAccess> select(Collection<DataAccess> all) {
+        if (names.contains("all")) {
+            List<DataAccess> selected = new ArrayList<>(all.size());
+            for (DataAccess da : all) {
+                if (!SWAPPABLE.equals(da.getName()))
+                    selected.add(da);
+            }
+            return selected;
+        }
+
+        List<DataAccess> selected = new ArrayList<>();
+        for (String name : names) {
+            DataAccess found = null;
+            for (DataAccess da : all) {
+                if (da.getName().equals(name))
+                    found = da;
+            }
+            if (found == null)
+                LOGGER.warn("Cannot warm up " + name + ", no such file in the graph");
+            else
+                selected.add(found);
+        }
+        return selected;
+    }
+
+    /**
+     * @return true if all selected files were loaded
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getLoadedBytes() {
+        return loadedBytes.get();
+    }
+
+    /**
+     * @return the loaded fraction of the selected files between 0 and 1
+     */
+    public double getProgress() {
+        if (finished)
+            return 1;
+        long total = totalBytes;
+        return total <= 0 ? 0 : (double) loadedBytes.get() / total;
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Stores the running scores (environment, support and safety for the mindful and the vibrant
+ * profile) of every edge. The scores are joined once at import time via the OSM way ID and read
+ * while routing via the internal edge ID, so no hashing or boxing is necessary.
+ */
+public class EdgeScoreStorage implements Storable<EdgeScoreStorage> {
+    public static final int ENVIRONMENT_MINDFUL = 0;
+    public static final int SUPPORT_MINDFUL = 1;
+    public static final int SAFETY_MINDFUL = 2;
+    public static final int ENVIRONMENT_VIBRANT = 3;
+    public static final int SUPPORT_VIBRANT = 4;
+    public static final int SAFETY_VIBRANT = 5;
+    public static final int SCORES = 6;
+    private static final int BYTES_PER_EDGE = SCORES * 4;
+    private final DataAccess da;
+    // the range of every score column over all edges, used to bound the weights for CH and LM
+    private final float[] minScores = new float[SCORES];
+    private final float[] maxScores = new float[SCORES];
+    private int edgeCount;
+
+    public EdgeScoreStorage(Directory dir) {
+        da = dir.find("edge_scores");
+    }
+
+    /**
+     * @return the score of the specified column for the specified edge. Scores of edges without an
+     * entry are 0, this includes edges outside of [0, getEdgeCount()).
+     */
+    public float getScore(int edgeId, int score) {
+        if (edgeId < 0 || edgeId >= edgeCount)
+            return 0;
+        return Float.intBitsToFloat(da.getInt((long) edgeId * BYTES_PER_EDGE + score * 4));
+    }
+
+    /**
+     * Sets all scores of the specified edge.
+     *
+     * @param scores the values in the order of the score constants of this class
+     */
+    public void setScores(int edgeId, float[] scores) {
+        if (scores.length != SCORES)
+            throw new IllegalArgumentException("Expected " + SCORES + " scores but was " + scores.length);
+
+        ensureEdgeCount(edgeId + 1);
+        long pointer = (long) edgeId * BYTES_PER_EDGE;
+        for (int i = 0; i < SCORES; i++) {
+            da.setInt(pointer + i * 4, Float.floatToRawIntBits(scores[i]));
+            minScores[i] = Math.min(minScores[i], scores[i]);
+            maxScores[i] = Math.max(maxScores[i], scores[i]);
+        }
+    }
+
+    /**
+     * @return a lower bound of the specified score column over all edges. As edges without an entry
+     * have a score of 0 this is never greater than 0.
+     */
+    public float getMinScore(int score) {
+        return minScores[score];
+    }
+
+    /**
+     * @return an upper bound of the specified score column over all edges, never smaller than 0
+     */
+    public float getMaxScore(int score) {
+        return maxScores[score];
+    }
+
+    /**
+     * Resets the range of all score columns to 0, e.g. before the scores of all edges are
+     * replaced. Otherwise the range is only widened by setScores.
+     */
+    public void resetScoreRanges() {
+        Arrays.fill(minScores, 0);
+        Arrays.fill(maxScores, 0);
+    }
+
+    /**
+     * Makes sure that scores can be read for the specified number of edges. Scores of new edges
+     * are 0.
+     */
+    public void ensureEdgeCount(int edges) {
+        if (edges <= edgeCount)
+            return;
+
+        da.ensureCapacity((long) edges * BYTES_PER_EDGE);
+        edgeCount = edges;
+    }
+
+    /**
+     * @return the number of edges this storage can return scores for
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Copies all scores including the score ranges into the specified storage, which has to be
+     * created before.
+     */
+    public EdgeScoreStorage copyTo(EdgeScoreStorage other) {
+        da.copyTo(other.da);
+        other.edgeCount = edgeCount;
+        System.arraycopy(minScores, 0, other.minScores, 0, SCORES);
+        System.arraycopy(maxScores, 0, other.maxScores, 0, SCORES);
+        return other;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!da.loadExisting())
+            return false;
+
+        if (da.getHeader(0) != Constants.VERSION_EDGE_SCORES)
+            throw new IllegalStateException("incorrect edge scores version " + da.getHeader(0)
+                    + ", expected:" + Constants.VERSION_EDGE_SCORES + ". Please run import-scores again");
+
+        edgeCount = da.getHeader(4);
+        for (int i = 0; i < SCORES; i++) {
+            minScores[i] = Float.intBitsToFloat(da.getHeader(8 + i * 8));
+            maxScores[i] = Float.intBitsToFloat(da.getHeader(12 + i * 8));
+        }
+        return true;
+    }
+
+    /**
+     * Creates the storage for the specified number of edges. Scores of all edges are 0.
+     */
+    @Override
+    public EdgeScoreStorage create(long edges) {
+        da.create(Math.max(edges, 1) * BYTES_PER_EDGE);
+        edgeCount = (int) edges;
+        resetScoreRanges();
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        da.setHeader(0, Constants.VERSION_EDGE_SCORES);
+        da.setHeader(4, edgeCount);
+        for (int i = 0; i < SCORES; i++) {
+            da.setHeader(8 + i * 8, Float.floatToRawIntBits(minScores[i]));
+            da.setHeader(12 + i * 8, Float.floatToRawIntBits(maxScores[i]));
+        }
+        da.flush();
+    }
+
+    @Override
+    public void close() {
+        da.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return da.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return da.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "edge_scores";
+    }
+}
@@ -23,6 +23,7 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.util.EdgeExplorer;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
 
 import java.util.ArrayList;
@@ -48,6 +49,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
     private final BaseGraph baseGraph;
     // same flush order etc
     private final Collection<CHGraphImpl> chGraphs = new ArrayList<>(5);
+    private OSMWayIdStorage osmWayIds;
 
     public GraphHopperStorage(Directory dir, EncodingManager encodingManager, boolean withElevation, GraphExtension extendedStorage) {
         this(Collections.<Weighting>emptyList(), dir, encodingManager, withElevation, extendedStorage);
@@ -134,6 +136,35 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         return list;
     }
 
+    /**
+     * Enables the optional column with the OSM way ID of every edge. Call this before create or
+     * loadExisting.
+     */
+    public GraphHopperStorage setOSMWayIdsEnabled(boolean enabled) {
+        osmWayIds = enabled ? new OSMWayIdStorage(dir) : null;
+        return this;
+    }
+
+    /**
+     * Stores the way geometry delta encoded with variable length, see BaseGraph. Call this before
+     * create, loadExisting uses the stored format.
+     */
+    public GraphHopperStorage setCompactGeometry(boolean compactGeometry) {
+        baseGraph.setCompactGeometry(compactGeometry);
+        return this;
+    }
+
+    public boolean isCompactGeometry() {
+        return baseGraph.isCompactGeometry();
+    }
+
+    /**
+     * @return the OSM way ID of every edge or null if not enabled
+     */
+    public OSMWayIdStorage getOSMWayIds() {
+        return osmWayIds;
+    }
+
     /**
      * @return the directory where this graph is stored.
      */
@@ -177,6 +208,9 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
             cg.create(byteCount);
         }
 
+        if (osmWayIds != null)
+            osmWayIds.create(initSize);
+
         properties.put("graph.ch.weightings", getCHWeightings().toString());
         return this;
     }
@@ -258,6 +292,10 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
                     throw new IllegalStateException("Cannot load " + cg);
             }
 
+            if (osmWayIds != null && !osmWayIds.loadExisting())
+                throw new IllegalStateException("Cannot load the OSM way IDs, the graph was imported without them. "
+                        + "Disable them or delete " + dir.getLocation());
+
             return true;
         }
         return false;
@@ -270,6 +308,9 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
             cg.flush();
         }
 
+        if (osmWayIds != null)
+            osmWayIds.flush();
+
         baseGraph.flush();
         properties.flush();
     }
@@ -282,6 +323,9 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         for (CHGraphImpl cg : chGraphs) {
             cg.close();
         }
+
+        if (osmWayIds != null)
+            osmWayIds.close();
     }
 
     @Override
@@ -296,6 +340,9 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
         for (CHGraphImpl cg : chGraphs) {
             cnt += cg.getCapacity();
         }
+
+        if (osmWayIds != null)
+            cnt += osmWayIds.getCapacity();
         return cnt;
     }
 
@@ -319,6 +366,9 @@ public final class GraphHopperStorage implements GraphStorage, Graph {
             str += ", " + cg.toDetailsString();
         }
 
+        if (osmWayIds != null)
+            str += ", way_ids: " + Helper.nf(osmWayIds.getEdgeCount()) + " (" + osmWayIds.getCapacity() / Helper.MB + "MB)";
+
         return str;
     }
 
@@ -48,7 +48,10 @@ import java.util.StringTokenizer;
  * synchronized.
  *
  * This class itself is intended to be as thread-safe as other DataAccess
- * implementations are.
+ * implementations are. If the file is mapped read-only the buffers cannot change,
+ * so the reads use only absolute methods of the ByteBuffer, which do not change
+ * its position, and need no synchronization. This avoids that query threads
+ * contend on the monitors of frequently read segments.
  *
  * The exact behavior of memory-mapping is reported to be wildly platform-dependent.
  *
@@ -326,7 +329,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
         super.close();
         close(true);
     }
@@ -335,7 +338,7 @@ public final class MMapDataAccess extends AbstractDataAccess {
      * @param forceClean if true the clean hack (system.gc) will be executed and forces the system
      *                   to cleanup the mmap resources. Set false if you need to close many MMapDataAccess objects.
      */
-    void close(boolean forceClean) {
+    synchronized void close(boolean forceClean) {
         clean(0, segments.size());
         segments.clear();
         Helper.close(raFile);
@@ -358,6 +361,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (bytePos >> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
         ByteBuffer byteBuffer = segments.get(bufferIndex);
+        if (!allowWrites)
+            return byteBuffer.getInt(index);
+
         synchronized (byteBuffer) {
             return byteBuffer.getInt(index);
         }
@@ -378,6 +384,9 @@ public final class MMapDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
         ByteBuffer byteBuffer = segments.get(bufferIndex);
+        if (!allowWrites)
+            return byteBuffer.getShort(index);
+
         synchronized (byteBuffer) {
             return byteBuffer.getShort(index);
         }
@@ -415,6 +424,17 @@ public final class MMapDataAccess extends AbstractDataAccess {
         int index = (int) (bytePos & indexDivisor);
         int delta = index + length - segmentSizeInBytes;
         final ByteBuffer bb1 = segments.get(bufferIndex);
+        if (!allowWrites) {
+            if (delta > 0) {
+                length -= delta;
+                getBytesAbsolute(bb1, index, values, 0, length);
+                getBytesAbsolute(segments.get(bufferIndex + 1), 0, values, length, delta);
+            } else {
+                getBytesAbsolute(bb1, index, values, 0, length);
+            }
+            return;
+        }
+
         synchronized (bb1) {
             bb1.position(index);
             if (delta > 0) {
@@ -433,13 +453,22 @@ public final class MMapDataAccess extends AbstractDataAccess {
         }
     }
 
+    /**
+     * Reads the bytes without the position of the buffer, so that the buffer is not changed and
+     * concurrent reads of read-only buffers need no synchronization.
+     */
+    private static void getBytesAbsolute(ByteBuffer bb, int index, byte[] values, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            values[offset + i] = bb.get(index + i);
+        }
+    }
+
     @Override
     public long getCapacity() {
         long cap = 0;
         for (ByteBuffer bb : segments) {
-            synchronized (bb) {
-                cap += bb.capacity();
-            }
+            // the capacity of a buffer never changes
+            cap += bb.capacity();
         }
         return cap;
     }
@@ -449,6 +478,22 @@ public final class MMapDataAccess extends AbstractDataAccess {
         return segments.size();
     }
 
+    /**
+     * Loads the specified segment into physical memory, which does not change the buffer. Close
+     * waits until the segment is loaded, as touching an unmapped buffer can crash the JVM.
+     *
+     * @return the bytes of the segment or 0 if this DataAccess was closed
+     */
+    synchronized long loadSegment(int segment) {
+        if (isClosed() || segment >= segments.size())
+            return 0;
+
+        ByteBuffer bb = segments.get(segment);
+        if (bb instanceof MappedByteBuffer)
+            ((MappedByteBuffer) bb).load();
+        return bb.capacity();
+    }
+
     /**
      * Cleans up MappedByteBuffers. Be sure you bring the segments list in a consistent state
      * afterwards.
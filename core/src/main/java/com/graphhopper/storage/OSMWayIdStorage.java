@@ -0,0 +1,246 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Constants;
+
+/**
+ * Stores the OSM way ID of every edge. As consecutive edges are usually created from the same way
+ * the IDs are stored in blocks of 32 edges: every block has a small dictionary of its distinct way
+ * IDs, stored relative to the smallest ID, and the index into this dictionary for every edge with
+ * as few bits as possible. A block of a single way needs no indices at all. An additional index
+ * entry per block points to its data, so every ID is read in constant time. Typically this needs
+ * 1-2 bytes per edge instead of 8.
+ * <p>
+ * The IDs have to be set in the order of the edge IDs, which is the case for the import.
+ *
+ * @see GraphHopperStorage#setOSMWayIdsEnabled(boolean)
+ */
+public class OSMWayIdStorage implements Storable<OSMWayIdStorage> {
+    /**
+     * The ID of edges which were not created from an OSM way
+     */
+    public static final long NO_WAY = -1;
+    private static final int BLOCK_SHIFT = 5;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    // per block: the smallest way ID (2 ints), the pointer to the data and the format
+    private static final int BYTES_PER_BLOCK = 16;
+    private final DataAccess index;
+    private final DataAccess data;
+    // the IDs of the current block, which is not yet complete
+    private final long[] blockIds = new long[BLOCK_SIZE];
+    private final long[] dictionary = new long[BLOCK_SIZE];
+    private int edgeCount;
+    // the data of all complete blocks ends here
+    private long dataPointer;
+
+    public OSMWayIdStorage(Directory dir) {
+        index = dir.find("way_ids_index");
+        data = dir.find("way_ids");
+    }
+
+    /**
+     * Sets the OSM way ID of the specified edge. Edges between the last set edge and this edge get
+     * {@link #NO_WAY}.
+     */
+    public void setOSMWayId(int edgeId, long osmWayId) {
+        if (edgeId < edgeCount)
+            throw new IllegalArgumentException("The OSM way IDs have to be set in the order of the edges. Edge "
+                    + edgeId + " but already set " + edgeCount + " edges");
+
+        while (edgeCount < edgeId) {
+            append(NO_WAY);
+        }
+        append(osmWayId);
+    }
+
+    private void append(long osmWayId) {
+        int indexInBlock = edgeCount & (BLOCK_SIZE - 1);
+        blockIds[indexInBlock] = osmWayId;
+        edgeCount++;
+        if (indexInBlock == BLOCK_SIZE - 1)
+            writeBlock(edgeCount - 1, BLOCK_SIZE);
+    }
+
+    /**
+     * Writes the current block at the end of the data. Only complete blocks move the end of the
+     * data, so an incomplete block is overwritten once it is complete.
+     */
+    private void writeBlock(int edgeId, int count) {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        int dictionarySize = 0;
+        for (int i = 0; i < count; i++) {
+            min = Math.min(min, blockIds[i]);
+            max = Math.max(max, blockIds[i]);
+            if (indexOf(blockIds[i], dictionarySize) < 0)
+                dictionary[dictionarySize++] = blockIds[i];
+        }
+
+        // two's complement difference, i.e. also fine for an overflow of max - min
+        int width = max - min >= 0 && max - min <= 0xFFFFFFFFL ? 4 : 8;
+        int bits = dictionarySize == 1 ? 0 : dictionarySize <= 4 ? 2 : dictionarySize <= 16 ? 4 : 8;
+        long bytes = dictionarySize * width + bits * BLOCK_SIZE / 8;
+        data.ensureCapacity(dataPointer + bytes);
+        long pointer = dataPointer;
+        for (int i = 0; i < dictionarySize; i++) {
+            long offset = dictionary[i] - min;
+            data.setInt(pointer, (int) offset);
+            if (width == 8)
+                data.setInt(pointer + 4, (int) (offset >>> 32));
+            pointer += width;
+        }
+
+        if (bits > 0) {
+            int perInt = 32 / bits;
+            for (int i = 0; i < count; i += perInt) {
+                int value = 0;
+                for (int j = 0; j < perInt && i + j < count; j++) {
+                    value |= indexOf(blockIds[i + j], dictionarySize) << (j * bits);
+                }
+                data.setInt(pointer, value);
+                pointer += 4;
+            }
+        }
+
+        long indexPointer = (long) (edgeId >>> BLOCK_SHIFT) * BYTES_PER_BLOCK;
+        index.ensureCapacity(indexPointer + BYTES_PER_BLOCK);
+        index.setInt(indexPointer, (int) min);
+        index.setInt(indexPointer + 4, (int) (min >>> 32));
+        index.setInt(indexPointer + 8, (int) dataPointer);
+        index.setInt(indexPointer + 12, dictionarySize << 8 | width << 4 | bits);
+        if (count == BLOCK_SIZE)
+            dataPointer += bytes;
+    }
+
+    private int indexOf(long osmWayId, int dictionarySize) {
+        for (int i = 0; i < dictionarySize; i++) {
+            if (dictionary[i] == osmWayId)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the OSM way ID of the specified edge or {@link #NO_WAY}. This is also correct before
+     * flush, i.e. while the IDs are set.
+     */
+    public long getOSMWayId(int edgeId) {
+        if (edgeId >= edgeCount)
+            return NO_WAY;
+
+        // the current block is only written on flush and overwritten if more IDs are appended
+        if (edgeId >= (edgeCount & ~(BLOCK_SIZE - 1)))
+            return blockIds[edgeId & (BLOCK_SIZE - 1)];
+
+        return readOSMWayId(edgeId);
+    }
+
+    private long readOSMWayId(int edgeId) {
+        long indexPointer = (long) (edgeId >>> BLOCK_SHIFT) * BYTES_PER_BLOCK;
+        long min = (index.getInt(indexPointer) & 0xFFFFFFFFL) | (long) index.getInt(indexPointer + 4) << 32;
+        long pointer = index.getInt(indexPointer + 8) & 0xFFFFFFFFL;
+        int format = index.getInt(indexPointer + 12);
+        int dictionarySize = format >>> 8;
+        int width = (format >>> 4) & 0xF;
+        int bits = format & 0xF;
+
+        int dictionaryIndex = 0;
+        if (bits > 0) {
+            int perInt = 32 / bits;
+            int indexInBlock = edgeId & (BLOCK_SIZE - 1);
+            int value = data.getInt(pointer + dictionarySize * width + (indexInBlock / perInt) * 4);
+            dictionaryIndex = (value >>> ((indexInBlock % perInt) * bits)) & ((1 << bits) - 1);
+        }
+
+        long offsetPointer = pointer + dictionaryIndex * width;
+        long offset = data.getInt(offsetPointer) & 0xFFFFFFFFL;
+        if (width == 8)
+            offset |= (long) data.getInt(offsetPointer + 4) << 32;
+        return min + offset;
+    }
+
+    /**
+     * @return the number of edges with an OSM way ID
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!index.loadExisting() || !data.loadExisting())
+            return false;
+
+        if (index.getHeader(0) != Constants.VERSION_OSM_WAY_IDS)
+            throw new IllegalStateException("incorrect OSM way IDs version " + index.getHeader(0)
+                    + ", expected:" + Constants.VERSION_OSM_WAY_IDS);
+
+        edgeCount = index.getHeader(4);
+        dataPointer = (index.getHeader(8) & 0xFFFFFFFFL) | (long) index.getHeader(12) << 32;
+        // restore the incomplete block so that further IDs can be appended
+        int lastBlockStart = edgeCount & ~(BLOCK_SIZE - 1);
+        for (int edge = lastBlockStart; edge < edgeCount; edge++) {
+            blockIds[edge - lastBlockStart] = readOSMWayId(edge);
+        }
+        return true;
+    }
+
+    @Override
+    public OSMWayIdStorage create(long initBytes) {
+        index.create(Math.max(initBytes / BLOCK_SIZE, BYTES_PER_BLOCK));
+        data.create(Math.max(initBytes, 4));
+        edgeCount = 0;
+        dataPointer = 0;
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        int count = edgeCount & (BLOCK_SIZE - 1);
+        if (count > 0)
+            writeBlock(edgeCount - 1, count);
+
+        index.setHeader(0, Constants.VERSION_OSM_WAY_IDS);
+        index.setHeader(4, edgeCount);
+        index.setHeader(8, (int) dataPointer);
+        index.setHeader(12, (int) (dataPointer >>> 32));
+        index.flush();
+        data.flush();
+    }
+
+    @Override
+    public void close() {
+        index.close();
+        data.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return index.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return index.getCapacity() + data.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "way_ids";
+    }
+}
@@ -86,6 +86,13 @@ public class StorableProperties implements Storable<StorableProperties> {
         return this;
     }
 
+    /**
+     * Puts all properties of this object into the specified properties.
+     */
+    public synchronized StorableProperties copyTo(StorableProperties other) {
+        return other.putAll(map);
+    }
+
     public synchronized StorableProperties put(String key, String val) {
         map.put(key, val);
         return this;
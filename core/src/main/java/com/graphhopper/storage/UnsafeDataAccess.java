@@ -30,12 +30,17 @@ import java.nio.ByteOrder;
  * RAMDataAccess is roughly 10% due to index calculations and BitUtil overhead in RAMDataAccess.
  * Notes:
  * <p>
- * 1. Highly experimental. Still some bugs and access through file/MMAP should work at some point
+ * 1. The data is one contiguous region outside of the heap, which is addressed with 64 bit
+ * without a segment lookup, also for files bigger than 2GB. The segment size only defines the
+ * steps in which the region grows and the chunks for loading and flushing.
  * <p>
  * 2. Compared to MMAP no syncDAWrapper is need to make it read and write safe from multiple threads
  * <p>
  * 3. Cannot be used on Android as no memory allocation methods are available there
  * <p>
+ * 4. The values are stored in the native byte order, which has to be the byte order of the
+ * stored files, i.e. little endian for files of the RAMDataAccess on most platforms.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -57,6 +62,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
         }
     }
 
+    private static final long BYTE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
     private long address;
     private long capacity;
 
@@ -85,7 +91,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
             return false;
 
         // avoid frequent increase of allocation area, instead increase by segment size
-        int allSegments = (int) (bytes / segmentSizeInBytes);
+        long allSegments = bytes / segmentSizeInBytes;
         if (bytes % segmentSizeInBytes != 0)
             allSegments++;
         capacity = allSegments * segmentSizeInBytes;
@@ -105,8 +111,11 @@ public class UnsafeDataAccess extends AbstractDataAccess {
     @Override
     public DataAccess copyTo(DataAccess da) {
         if (da instanceof UnsafeDataAccess) {
-            // TODO unsafe.copyMemory(address, da.address, capacity);
-            // return this;
+            UnsafeDataAccess unsafeDA = (UnsafeDataAccess) da;
+            copyHeader(unsafeDA);
+            unsafeDA.ensureCapacity(capacity, false);
+            UNSAFE.copyMemory(address, unsafeDA.address, capacity);
+            return da;
         }
         return super.copyTo(da);
     }
@@ -139,8 +148,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
                     if (read <= 0)
                         throw new IllegalStateException("segment " + s + " is empty? " + toString());
 
-                    // is there a faster method?
-                    setBytes(s * segmentSizeInBytes, bytes, segmentSizeInBytes);
+                    setBytes((long) s * segmentSizeInBytes, bytes, segmentSizeInBytes);
                 }
                 return true;
             } finally {
@@ -165,7 +173,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
                 byte bytes[] = new byte[segmentSizeInBytes];
                 int segs = getSegments();
                 for (int s = 0; s < segs; s++) {
-                    getBytes(s * segmentSizeInBytes, bytes, segmentSizeInBytes);
+                    getBytes((long) s * segmentSizeInBytes, bytes, segmentSizeInBytes);
                     raFile.write(bytes);
                 }
             } finally {
@@ -180,6 +188,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
     public void close() {
         super.close();
         UNSAFE.freeMemory(address);
+        address = 0;
     }
 
     @Override
@@ -204,17 +213,13 @@ public class UnsafeDataAccess extends AbstractDataAccess {
 
     @Override
     public final void setBytes(long bytePos, byte[] values, int length) {
-        for (int offset = 0; offset < length; offset++) {
-            UNSAFE.putByte(address + bytePos + offset, values[offset]);
-        }
+        UNSAFE.copyMemory(values, BYTE_ARRAY_OFFSET, null, address + bytePos, length);
     }
 
     @Override
     public final void getBytes(long bytePos, byte[] values, int length) {
         assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
-        for (int offset = 0; offset < length; offset++) {
-            values[offset] = UNSAFE.getByte(address + bytePos + offset);
-        }
+        UNSAFE.copyMemory(null, address + bytePos, values, BYTE_ARRAY_OFFSET, length);
     }
 
     @Override
@@ -232,7 +237,7 @@ public class UnsafeDataAccess extends AbstractDataAccess {
         if (bytes > this.capacity)
             throw new IllegalStateException("Use ensureCapacity to increase capacity!");
 
-        int allSegments = (int) (bytes / segmentSizeInBytes);
+        long allSegments = bytes / segmentSizeInBytes;
         if (bytes % segmentSizeInBytes != 0)
             allSegments++;
         if (allSegments <= 0)
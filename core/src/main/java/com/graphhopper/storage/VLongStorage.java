@@ -146,6 +146,24 @@ public class VLongStorage {
         throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
     }
 
+    /**
+     * Writes a long which can be negative in a zig-zag encoded variable-length format, so that
+     * values close to zero take fewer bytes.
+     * <p>
+     * See DataOutput writeZLong of Lucene
+     */
+    public final void writeZLong(long i) {
+        writeVLong((i >> 63) ^ (i << 1));
+    }
+
+    /**
+     * Reads a long stored in the zig-zag encoded variable-length format of writeZLong.
+     */
+    public long readZLong() {
+        long i = readVLong();
+        return (i >>> 1) ^ -(i & 1);
+    }
+
     public void trimToSize() {
         if (bytes.length > pointer) {
             byte[] tmp = new byte[pointer];
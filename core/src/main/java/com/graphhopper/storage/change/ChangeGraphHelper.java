@@ -27,6 +27,7 @@ import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphEdgeIdFinder;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.EdgeIteratorState;
 
 import java.util.Collection;
@@ -48,11 +49,13 @@ import java.util.Map;
 public class ChangeGraphHelper {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Graph graph;
+    private final LocationIndex locationIndex;
     private final GraphEdgeIdFinder graphBrowser;
     private boolean enableLogging = false;
 
     public ChangeGraphHelper(Graph graph, LocationIndex locationIndex) {
         this.graph = graph;
+        this.locationIndex = locationIndex;
         this.graphBrowser = new GraphEdgeIdFinder(graph, locationIndex);
     }
 
@@ -61,7 +64,8 @@ public class ChangeGraphHelper {
     }
 
     /**
-     * This method applies changes to the graph, specified by the json features.
+     * This method applies changes to the graph, specified by the json features. A {@link SnapCache}
+     * used as location index is cleared if an edge was changed.
      *
      * @return number of successfully applied edge changes
      */
@@ -86,6 +90,10 @@ public class ChangeGraphHelper {
             }
         }
 
+        // the access changes decide which edges the edge filters accept, so cached snaps can be wrong now
+        if (updates > 0 && locationIndex instanceof SnapCache)
+            ((SnapCache) locationIndex).clear();
+
         return updates;
     }
 
@@ -161,6 +161,29 @@ public class QueryResult {
             snappedPoint = new GHPoint3D(tmpLat, tmpLon, tmpEle);
     }
 
+    /**
+     * Creates a copy of this result. A QueryGraph changes the results it looks up, so every
+     * QueryGraph needs its own copy of a result which is reused.
+     */
+    public QueryResult copy() {
+        return copy(queryPoint.lat, queryPoint.lon);
+    }
+
+    /**
+     * Creates a copy of this result for a different query point, e.g. one which is close enough to
+     * reuse the result. The query distance and the snapped point are the ones of this result.
+     */
+    public QueryResult copy(double queryLat, double queryLon) {
+        QueryResult copy = new QueryResult(queryLat, queryLon);
+        copy.queryDistance = queryDistance;
+        copy.wayIndex = wayIndex;
+        copy.closestNode = closestNode;
+        copy.closestEdge = closestEdge;
+        copy.snappedPoint = snappedPoint;
+        copy.snappedPosition = snappedPosition;
+        return copy;
+    }
+
     @Override
     public String toString() {
         if (closestEdge != null)
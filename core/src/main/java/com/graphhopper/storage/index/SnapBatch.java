@@ -0,0 +1,81 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.GHUtility;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.*;
+
+/**
+ * Snaps many points with one pass over the location index, e.g. for a bulk of routes which share
+ * many of their points. Every distinct point is snapped only once and in the order of a Hilbert
+ * curve, so that points close to each other read the same cells of the index. Afterwards the
+ * routes look up their points in this batch, see {@link #lookup(GHPoint, EdgeFilter)}, and only
+ * the other points in the location index.
+ */
+public class SnapBatch {
+    private final EdgeFilter edgeFilter;
+    private final Map<GHPoint, QueryResult> results;
+
+    public SnapBatch(LocationIndex index, BBox bounds, Collection<GHPoint> points, EdgeFilter edgeFilter) {
+        this.edgeFilter = edgeFilter;
+        Set<GHPoint> distinct = new HashSet<>(points);
+        GHPoint[] sorted = distinct.toArray(new GHPoint[distinct.size()]);
+        long[] keys = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            // the index on the curve in the upper bits and the position in the array in the lower bits
+            keys[i] = GHUtility.calcHilbertIndex(bounds, sorted[i].lat, sorted[i].lon) << 31 | i;
+        }
+        Arrays.sort(keys);
+        results = new HashMap<>(sorted.length * 2);
+        for (long key : keys) {
+            GHPoint point = sorted[(int) (key & Integer.MAX_VALUE)];
+            results.put(point, index.findClosest(point.lat, point.lon, edgeFilter));
+        }
+    }
+
+    /**
+     * @return the number of distinct points of this batch
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @return the result for the specified point or null if it is not part of this batch. The
+     * result must not be changed, use {@link #lookup(GHPoint, EdgeFilter)} instead.
+     */
+    public QueryResult get(GHPoint point) {
+        return results.get(point);
+    }
+
+    /**
+     * @return a copy of the result for the specified point, as a QueryGraph changes the results it
+     * looks up, or null if the point is not part of this batch or was snapped with another filter
+     */
+    public QueryResult lookup(GHPoint point, EdgeFilter edgeFilter) {
+        if (!this.edgeFilter.equals(edgeFilter))
+            return null;
+
+        QueryResult result = results.get(point);
+        return result == null ? null : result.copy();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of a location index for points which are looked up again and again, e.g. the
+ * start points of many routes. The points are quantized to a grid, so a point is answered from the
+ * cache if a point in the same cell was looked up before with an equal edge filter. A copy of the
+ * stored result is returned, as a QueryGraph changes the results it looks up.
+ * <p>
+ * The cache is bounded and split into stripes, each a small LRU map with its own lock, so that
+ * concurrent requests rarely wait for each other. Lookups with an edge filter which cannot be
+ * compared, e.g. with a name hint, are passed to the original index. The cache has to be cleared
+ * when the graph changes, see {@link com.graphhopper.storage.change.ChangeGraphHelper}. The heading
+ * of a point is not part of the key, as it is applied to the result later by the QueryGraph.
+ */
+public class SnapCache implements LocationIndex {
+    private static final int STRIPES = 16;
+    // a smaller cell would overflow the int key of a longitude of 180 degrees
+    private static final double MIN_PRECISION = 1e-7;
+    private final LocationIndex index;
+    private final double precision;
+    private final Stripe[] stripes;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxSize   the maximum number of cached results
+     * @param precision the size of a grid cell in degrees, at least 1e-7
+     */
+    public SnapCache(LocationIndex index, int maxSize, double precision) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("The size of the snap cache has to be positive but was " + maxSize);
+        if (!(precision >= MIN_PRECISION))
+            throw new IllegalArgumentException("The precision of the snap cache has to be at least " + MIN_PRECISION
+                    + " but was " + precision);
+
+        this.index = index;
+        this.precision = precision;
+        stripes = new Stripe[STRIPES];
+        int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    public LocationIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public QueryResult findClosest(double lat, double lon, EdgeFilter edgeFilter) {
+        if (edgeFilter != EdgeFilter.ALL_EDGES && !(edgeFilter instanceof DefaultEdgeFilter))
+            return index.findClosest(lat, lon, edgeFilter);
+
+        Key key = new Key((int) Math.floor(lat / precision), (int) Math.floor(lon / precision), edgeFilter);
+        Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        QueryResult result;
+        synchronized (stripe) {
+            result = stripe.get(key);
+        }
+        if (result != null) {
+            hits.incrementAndGet();
+            return result.copy(lat, lon);
+        }
+
+        misses.incrementAndGet();
+        int gen = generation.get();
+        result = index.findClosest(lat, lon, edgeFilter);
+        synchronized (stripe) {
+            // do not store a result of the graph before a change
+            if (gen == generation.get())
+                stripe.put(key, result.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Removes all results, e.g. after the graph was changed.
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the share of the lookups which were answered from the cache or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.get(), total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public LocationIndex setResolution(int resolution) {
+        index.setResolution(resolution);
+        return this;
+    }
+
+    @Override
+    public LocationIndex prepareIndex() {
+        index.prepareIndex();
+        clear();
+        return this;
+    }
+
+    @Override
+    public LocationIndex setApproximation(boolean approxDist) {
+        index.setApproximation(approxDist);
+        clear();
+        return this;
+    }
+
+    @Override
+    public void setSegmentSize(int bytes) {
+        index.setSegmentSize(bytes);
+    }
+
+    @Override
+    public boolean loadExisting() {
+        return index.loadExisting();
+    }
+
+    @Override
+    public LocationIndex create(long byteCount) {
+        index.create(byteCount);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        index.flush();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        index.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return index.isClosed();
+    }
+
+    @Override
+    public long getCapacity() {
+        return index.getCapacity();
+    }
+
+    @Override
+    public String toString() {
+        return "snap cache of " + index + ", size: " + size() + ", hit rate: " + getHitRate();
+    }
+
+    private static class Stripe extends LinkedHashMap<Key, QueryResult> {
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, QueryResult> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private static class Key {
+        private final int lat;
+        private final int lon;
+        private final EdgeFilter edgeFilter;
+
+        Key(int lat, int lon, EdgeFilter edgeFilter) {
+            this.lat = lat;
+            this.lon = lon;
+            this.edgeFilter = edgeFilter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return lat == other.lat && lon == other.lon && edgeFilter.equals(other.edgeFilter);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * lat + lon) * 31 + edgeFilter.hashCode();
+        }
+    }
+}
@@ -73,6 +73,8 @@ public class Constants {
     public static final int VERSION_GEOMETRY = 4;
     public static final int VERSION_LOCATION_IDX = 3;
     public static final int VERSION_NAME_IDX = 3;
+    public static final int VERSION_EDGE_SCORES = 2;
+    public static final int VERSION_OSM_WAY_IDS = 1;
     /**
      * The version without the snapshot string
      */
@@ -39,6 +39,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Peter Karich
  */
 public class GHUtility {
+    private static final int HILBERT_BITS = 16;
+    private static final int HILBERT_MAX = (1 << HILBERT_BITS) - 1;
+
     /**
      * This method could throw exception if uncatched problems like index out of bounds etc
      */
@@ -234,32 +237,143 @@ public class GHUtility {
         return createSortedGraph(g, sortedGraph, list);
     }
 
-    static Graph createSortedGraph(Graph fromGraph, Graph toSortedGraph, final IntIndexedContainer oldToNewNodeList) {
-        AllEdgesIterator eIter = fromGraph.getAllEdges();
-        while (eIter.next()) {
-            int base = eIter.getBaseNode();
-            int newBaseIndex = oldToNewNodeList.get(base);
-            int adj = eIter.getAdjNode();
-            int newAdjIndex = oldToNewNodeList.get(adj);
+    /**
+     * Sorts the graph along a Hilbert curve over the coordinates of the nodes, see
+     * {@link #createHilbertOrder(Graph)}.
+     */
+    public static Graph sortHilbert(Graph g, Graph sortedGraph) {
+        return createSortedGraph(g, sortedGraph, createHilbertOrder(g));
+    }
 
-            // ignore empty entries
-            if (newBaseIndex < 0 || newAdjIndex < 0)
-                continue;
+    /**
+     * Creates a node order along a Hilbert curve over the bounds of the graph. Nodes which are
+     * close are mostly close in this order too and, unlike for a depth-first search, this holds
+     * for all directions, so the nodes and edges a query explores are stored in few segments.
+     *
+     * @return the new ID of every node
+     */
+    public static GHIntArrayList createHilbertOrder(Graph g) {
+        int nodes = g.getNodes();
+        NodeAccess na = g.getNodeAccess();
+        BBox bounds = g.getBounds();
+        // the index on the curve in the upper bits and the node in the lower 31 bits, so that
+        // sorting the primitive array keeps the original order for nodes with the same index
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            keys[node] = calcHilbertIndex(bounds, na.getLatitude(node), na.getLongitude(node)) << 31 | node;
+        }
+        Arrays.sort(keys);
+
+        GHIntArrayList list = new GHIntArrayList(nodes);
+        list.fill(nodes, -1);
+        for (int i = 0; i < nodes; i++) {
+            list.set((int) (keys[i] & Integer.MAX_VALUE), i);
+        }
+        return list;
+    }
+
+    /**
+     * @return the index of the specified coordinate on a Hilbert curve through 2^16 x 2^16 cells
+     * which cover the specified bounds
+     */
+    public static long calcHilbertIndex(BBox bounds, double lat, double lon) {
+        double latFactor = bounds.maxLat > bounds.minLat ? HILBERT_MAX / (bounds.maxLat - bounds.minLat) : 0;
+        double lonFactor = bounds.maxLon > bounds.minLon ? HILBERT_MAX / (bounds.maxLon - bounds.minLon) : 0;
+        int x = (int) Math.max(0, Math.min(HILBERT_MAX, (lon - bounds.minLon) * lonFactor));
+        int y = (int) Math.max(0, Math.min(HILBERT_MAX, (lat - bounds.minLat) * latFactor));
+        return calcHilbertIndex(x, y);
+    }
 
-            eIter.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+    /**
+     * @return the index of the specified cell on a Hilbert curve through 2^16 x 2^16 cells
+     */
+    static long calcHilbertIndex(int x, int y) {
+        long index = 0;
+        for (int s = 1 << (HILBERT_BITS - 1); s > 0; s >>>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant, only the lower bits are used afterwards
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
         }
+        return index;
+    }
+
+    static Graph createSortedGraph(Graph fromGraph, Graph toSortedGraph, final IntIndexedContainer oldToNewNodeList) {
+        copySorted(fromGraph, toSortedGraph, oldToNewNodeList);
+        return toSortedGraph;
+    }
 
+    /**
+     * Copies the graph with the specified node order. The edges are ordered by their first node
+     * in the new order, so that the edges of nearby nodes are stored close to each other too.
+     * Every edge keeps its direction, i.e. its base and adjacent node.
+     *
+     * @return the old ID of every new edge, e.g. to copy data which is stored per edge
+     */
+    public static GHIntArrayList copySorted(Graph fromGraph, Graph toSortedGraph, final IntIndexedContainer oldToNewNodeList) {
         int nodes = fromGraph.getNodes();
+        int[] newToOldNodes = new int[nodes];
+        Arrays.fill(newToOldNodes, -1);
+        for (int old = 0; old < nodes; old++) {
+            int newIndex = oldToNewNodeList.get(old);
+            if (newIndex >= 0)
+                newToOldNodes[newIndex] = old;
+        }
+
+        // the nodes are copied first as the compact geometry is stored relative to them
         NodeAccess na = fromGraph.getNodeAccess();
         NodeAccess sna = toSortedGraph.getNodeAccess();
         for (int old = 0; old < nodes; old++) {
             int newIndex = oldToNewNodeList.get(old);
+            if (newIndex < 0)
+                continue;
+
             if (sna.is3D())
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old), na.getElevation(old));
             else
                 sna.setNode(newIndex, na.getLatitude(old), na.getLongitude(old));
         }
-        return toSortedGraph;
+
+        int edges = fromGraph.getAllEdges().length();
+        GHIntArrayList newToOldEdges = new GHIntArrayList(edges);
+        GHBitSet copiedEdges = new GHBitSetImpl(edges);
+        EdgeExplorer explorer = fromGraph.createEdgeExplorer();
+        for (int newNode = 0; newNode < nodes; newNode++) {
+            int old = newToOldNodes[newNode];
+            if (old < 0)
+                continue;
+
+            EdgeIterator iter = explorer.setBaseNode(old);
+            while (iter.next()) {
+                int edge = iter.getEdge();
+                if (copiedEdges.contains(edge))
+                    continue;
+                copiedEdges.add(edge);
+
+                // the state of the stored direction
+                EdgeIteratorState edgeState = fromGraph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                int newBaseIndex = oldToNewNodeList.get(edgeState.getBaseNode());
+                int newAdjIndex = oldToNewNodeList.get(edgeState.getAdjNode());
+
+                // ignore empty entries
+                if (newBaseIndex < 0 || newAdjIndex < 0)
+                    continue;
+
+                edgeState.copyPropertiesTo(toSortedGraph.edge(newBaseIndex, newAdjIndex));
+                newToOldEdges.add(edge);
+            }
+        }
+
+        return newToOldEdges;
     }
 
     /**
@@ -267,13 +381,7 @@ public class GHUtility {
      */
     // TODO very similar to createSortedGraph -> use a 'int map(int)' interface
     public static Graph copyTo(Graph fromGraph, Graph toGraph) {
-        AllEdgesIterator eIter = fromGraph.getAllEdges();
-        while (eIter.next()) {
-            int base = eIter.getBaseNode();
-            int adj = eIter.getAdjNode();
-            eIter.copyPropertiesTo(toGraph.edge(base, adj));
-        }
-
+        // the nodes are copied first as the compact geometry is stored relative to them
         NodeAccess fna = fromGraph.getNodeAccess();
         NodeAccess tna = toGraph.getNodeAccess();
         int nodes = fromGraph.getNodes();
@@ -283,6 +391,13 @@ public class GHUtility {
             else
                 tna.setNode(node, fna.getLatitude(node), fna.getLongitude(node));
         }
+
+        AllEdgesIterator eIter = fromGraph.getAllEdges();
+        while (eIter.next()) {
+            int base = eIter.getBaseNode();
+            int adj = eIter.getAdjNode();
+            eIter.copyPropertiesTo(toGraph.edge(base, adj));
+        }
         return toGraph;
     }
 
@@ -299,12 +414,21 @@ public class GHUtility {
      * Create a new storage from the specified one without copying the data.
      */
     public static GraphHopperStorage newStorage(GraphHopperStorage store) {
-        Directory outdir = guessDirectory(store);
+        return newStorage(store, guessDirectory(store));
+    }
+
+    /**
+     * Create a new storage in the specified directory from the specified one without copying the
+     * data.
+     */
+    public static GraphHopperStorage newStorage(GraphHopperStorage store, Directory outdir) {
         boolean is3D = store.getNodeAccess().is3D();
 
-        return new GraphHopperStorage(store.getCHWeightings(), outdir, store.getEncodingManager(),
-                is3D, store.getExtension()).
-                create(store.getNodes());
+        GraphHopperStorage newStore = new GraphHopperStorage(store.getCHWeightings(), outdir, store.getEncodingManager(),
+                is3D, store.getExtension());
+        newStore.setOSMWayIdsEnabled(store.getOSMWayIds() != null);
+        newStore.setCompactGeometry(store.isCompactGeometry());
+        return newStore.create(store.getNodes());
     }
 
     public static int getAdjNode(Graph g, int edge, int adjNode) {
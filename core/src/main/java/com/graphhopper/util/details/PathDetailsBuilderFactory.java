@@ -19,6 +19,7 @@ package com.graphhopper.util.details;
 
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.OSMWayIdStorage;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +33,16 @@ import static com.graphhopper.util.Parameters.DETAILS.*;
  */
 public class PathDetailsBuilderFactory {
 
+    private OSMWayIdStorage osmWayIds;
+
+    /**
+     * The way IDs are required for the WAYID details, which are not available otherwise.
+     */
+    public PathDetailsBuilderFactory setOSMWayIds(OSMWayIdStorage osmWayIds) {
+        this.osmWayIds = osmWayIds;
+        return this;
+    }
+
     public List<PathDetailsBuilder> createPathDetailsBuilders(List<String> requestedPathDetails, FlagEncoder encoder, Weighting weighting) {
         List<PathDetailsBuilder> builders = new ArrayList<>();
 
@@ -53,8 +64,8 @@ public class PathDetailsBuilderFactory {
         if (requestedPathDetails.contains(HIGHWAY))
             builders.add(new HighwayDetails(encoder));
 
-        if (requestedPathDetails.contains(WAYID))
-            builders.add(new WayidDetails(encoder));
+        if (requestedPathDetails.contains(WAYID) && osmWayIds != null)
+            builders.add(new WayidDetails(osmWayIds));
 
         if (requestedPathDetails.size() != builders.size()) {
             throw new IllegalArgumentException("You requested the details " + requestedPathDetails + " but we could only find " + builders);
@@ -1,35 +1,47 @@
 package com.graphhopper.util.details;
 
-import com.graphhopper.routing.util.FlagEncoder;
-import com.graphhopper.routing.util.RunningFlagEncoder;
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.storage.OSMWayIdStorage;
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
 
 import static com.graphhopper.util.Parameters.DETAILS.WAYID;
 
+/**
+ * Calculate the OSM way ID segments of a Path
+ */
 public class WayidDetails extends AbstractPathDetailsBuilder {
 
-    private long wayid = -1;
-    private final RunningFlagEncoder encoder;
-
-    public WayidDetails(FlagEncoder encoder) {
+    private long wayid = OSMWayIdStorage.NO_WAY;
+    private boolean first = true;
+    private final OSMWayIdStorage osmWayIds;
 
+    public WayidDetails(OSMWayIdStorage osmWayIds) {
         super(WAYID);
-        this.encoder = (RunningFlagEncoder) encoder;
+        this.osmWayIds = osmWayIds;
     }
 
     @Override
     public boolean isEdgeDifferentToLastEdge(EdgeIteratorState edge) {
-        long current = encoder.getOSMWayId(edge);
-
-        if (wayid == -1 || wayid!=current) {
+        long current = osmWayIds.getOSMWayId(edgeId(edge));
+        if (first || wayid != current) {
+            first = false;
             wayid = current;
             return true;
         }
         return false;
     }
 
+    private int edgeId(EdgeIteratorState edge) {
+        if (edge instanceof VirtualEdgeIteratorState) {
+            return GHUtility.getEdgeFromEdgeKey(((VirtualEdgeIteratorState) edge).getOriginalTraversalKey());
+        } else {
+            return edge.getEdge();
+        }
+    }
+
     @Override
     public Object getCurrentValue() {
         return wayid;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.carrotsearch.hppc.predicates.IntObjectPredicate;
+import com.carrotsearch.hppc.procedures.IntObjectProcedure;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GHIntObjectVersionedHashMapTest {
+    @Test
+    public void testPutAndGet() {
+        GHIntObjectVersionedHashMap<String> map = new GHIntObjectVersionedHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(3, "a"));
+        assertNull(map.put(-7, "b"));
+        assertEquals("a", map.put(3, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(3));
+        assertEquals("b", map.get(-7));
+        assertNull(map.get(4));
+        assertTrue(map.containsKey(-7));
+        assertFalse(map.containsKey(0));
+    }
+
+    @Test
+    public void testIndex() {
+        GHIntObjectVersionedHashMap<String> map = new GHIntObjectVersionedHashMap<>();
+        map.put(10, "a");
+        int index = map.indexOf(20);
+        assertTrue(index < 0);
+        map.indexInsert(index, 20, "b");
+        assertEquals(1, map.indexOf(20));
+        assertEquals(20, map.getKey(1));
+        assertEquals("b", map.indexReplace(1, "c"));
+        assertEquals("c", map.get(20));
+        assertEquals(0, map.indexOf(10));
+    }
+
+    @Test
+    public void testClearAndGrow() {
+        GHIntObjectVersionedHashMap<Integer> map = new GHIntObjectVersionedHashMap<>(4);
+        Random rand = new Random(1);
+        for (int round = 0; round < 5; round++) {
+            map.clear();
+            assertTrue(map.isEmpty());
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < 1000; i++) {
+                int key = rand.nextInt(2000);
+                map.put(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+            for (int key = 0; key < 2000; key++) {
+                assertEquals(expected.get(key), map.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void testIterationInInsertionOrder() {
+        GHIntObjectVersionedHashMap<String> map = new GHIntObjectVersionedHashMap<>();
+        map.put(5, "a");
+        map.put(1, "b");
+        map.put(3, "c");
+        final StringBuilder sb = new StringBuilder();
+        map.forEach(new IntObjectProcedure<String>() {
+            @Override
+            public void apply(int key, String value) {
+                sb.append(key).append(value);
+            }
+        });
+        assertEquals("5a1b3c", sb.toString());
+
+        sb.setLength(0);
+        map.forEach(new IntObjectPredicate<String>() {
+            @Override
+            public boolean apply(int key, String value) {
+                sb.append(value);
+                return key != 1;
+            }
+        });
+        assertEquals("ab", sb.toString());
+    }
+
+    @Test
+    public void testClearReleasesValues() {
+        GHIntObjectVersionedHashMap<Object> map = new GHIntObjectVersionedHashMap<>();
+        Object value = new Object();
+        WeakReference<Object> ref = new WeakReference<>(value);
+        map.put(1, value);
+        map.put(2, new Object());
+        value = null;
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+
+        // the value is not reachable from the cleared map anymore
+        for (int i = 0; i < 10 && ref.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(ref.get());
+
+        map.put(1, "a");
+        assertEquals("a", map.get(1));
+        assertEquals(1, map.size());
+    }
+}
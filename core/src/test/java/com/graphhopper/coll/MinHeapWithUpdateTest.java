@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MinHeapWithUpdateTest {
+    @Test
+    public void testPushAndPoll() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(4);
+        heap.push(3, 2.5);
+        heap.push(20, 1.5);
+        heap.push(7, 3.5);
+        assertEquals(3, heap.size());
+        assertTrue(heap.contains(20));
+        assertFalse(heap.contains(4));
+        assertFalse(heap.contains(100));
+        assertEquals(20, heap.peekId());
+        assertEquals(1.5, heap.peekKey(), 1e-10);
+        assertEquals(20, heap.poll());
+        assertFalse(heap.contains(20));
+        assertEquals(3, heap.poll());
+        assertEquals(7, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testUpdate() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(16);
+        heap.push(0, 5);
+        heap.push(1, 6);
+        heap.push(2, 7);
+        heap.update(2, 1);
+        heap.update(0, 10);
+        assertEquals(2, heap.poll());
+        assertEquals(1, heap.poll());
+        assertEquals(0, heap.poll());
+    }
+
+    @Test
+    public void testSameKeysAreOrderedById() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(16);
+        for (int id : new int[]{7, 3, 9, 0, 12, 5, 1}) {
+            heap.push(id, 2);
+        }
+        heap.push(4, 1);
+        heap.update(12, 1);
+        assertEquals(4, heap.poll());
+        assertEquals(12, heap.poll());
+        for (int id : new int[]{0, 1, 3, 5, 7, 9}) {
+            assertEquals(id, heap.poll());
+        }
+    }
+
+    @Test
+    public void testClear() {
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(16);
+        heap.push(1, 1);
+        heap.push(2, 2);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(1));
+        heap.push(2, 3);
+        assertEquals(2, heap.poll());
+    }
+
+    @Test
+    public void testRandom() {
+        Random rand = new Random(42);
+        MinHeapWithUpdate heap = new MinHeapWithUpdate(16);
+        double[] keys = new double[1000];
+        for (int id = 0; id < keys.length; id++) {
+            keys[id] = rand.nextDouble();
+            heap.push(id, keys[id]);
+        }
+        for (int i = 0; i < 2000; i++) {
+            int id = rand.nextInt(keys.length);
+            keys[id] = rand.nextDouble();
+            heap.update(id, keys[id]);
+        }
+
+        PriorityQueue<Double> expected = new PriorityQueue<>();
+        for (double key : keys) {
+            expected.add(key);
+        }
+        while (!heap.isEmpty()) {
+            double key = heap.peekKey();
+            int id = heap.poll();
+            assertEquals(expected.poll(), key, 0);
+            assertEquals(keys[id], key, 0);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SortedRunLongLongMapTest {
+
+    @Test
+    public void testPutAndGet() {
+        SortedRunLongLongMap map = new SortedRunLongLongMap(new RAMDirectory(), "map", DAType.RAM, 8, -1, 3);
+        assertEquals(-1, map.put(10, 1));
+        assertEquals(-1, map.put(5, 2));
+        assertEquals(-1, map.put(7, Long.MAX_VALUE));
+        assertEquals(1, map.getRuns());
+        assertEquals(-1, map.put(-Long.MAX_VALUE, Long.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, map.put(7, 3));
+        assertEquals(4, map.getSize());
+
+        assertEquals(2, map.get(5));
+        assertEquals(3, map.get(7));
+        assertEquals(1, map.get(10));
+        assertEquals(Long.MIN_VALUE, map.get(-Long.MAX_VALUE));
+        assertEquals(-1, map.get(6));
+        assertEquals(-1, map.get(11));
+        assertEquals(-1, map.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRandomKeys() {
+        Random rand = new Random(123);
+        RAMDirectory dir = new RAMDirectory();
+        SortedRunLongLongMap map = new SortedRunLongLongMap(dir, "map", DAType.RAM, 4, -1, 100);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            // mostly dense keys like OSM IDs, but some are far away
+            long key = rand.nextInt(10) == 0 ? rand.nextLong() : rand.nextInt(50_000);
+            long value = rand.nextInt();
+            Long oldValue = expected.put(key, value);
+            assertEquals(oldValue == null ? -1 : oldValue, map.put(key, value));
+        }
+        assertEquals(expected.size(), map.getSize());
+        // similar runs are merged
+        assertTrue(map.getRuns() < 20);
+
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals((long) entry.getValue(), map.get(entry.getKey()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            long key = 50_000 + rand.nextInt(50_000);
+            assertEquals(expected.containsKey(key) ? expected.get(key) : -1, map.get(key));
+        }
+
+        assertTrue(map.getCapacity() > 0);
+        map.close();
+        assertEquals(0, map.getCapacity());
+    }
+
+    @Test
+    public void testLongIntMap() {
+        SortedRunLongIntMap map = new SortedRunLongIntMap(new RAMDirectory(), "map", DAType.RAM, -1, 10);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 7 % 1000, -i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(-i, map.get(i * 7 % 1000));
+        }
+        assertEquals(-1, map.get(1000));
+        assertEquals(1000, map.getSize());
+    }
+
+    @Test
+    public void testConcurrentGet() throws Exception {
+        final SortedRunLongLongMap map = new SortedRunLongLongMap(new RAMDirectory(), "map", DAType.RAM, 8, -1, 100);
+        final int keys = 50_000;
+        for (int i = 0; i < keys; i++) {
+            map.put(3L * i, i);
+        }
+        assertTrue(map.getRuns() > 1);
+
+        // like the import threads which encode the ways every thread looks up different keys
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final Random rand = new Random(t);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int errors = 0;
+                        for (int i = 0; i < 200_000; i++) {
+                            long key = rand.nextInt(3 * keys);
+                            long expected = key % 3 == 0 ? key / 3 : -1;
+                            if (map.get(key) != expected)
+                                errors++;
+                        }
+                        return errors;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(0, (int) future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.storage.EdgeScoreStorage;
+import com.graphhopper.storage.RAMDirectory;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class EdgeScoreReaderTest {
+
+    // edge 0 and 2 belong to way 10, edge 1 to way 20 and edge 3 to way 30
+    private final long[] osmWayIds = {10, 20, 10, 30};
+
+    private int read(EdgeScoreStorage storage, String csv, boolean delta) throws IOException {
+        return new EdgeScoreReader(storage, osmWayIds.length, edge -> osmWayIds[edge]).
+                setDelta(delta).read(new BufferedReader(new StringReader(csv)));
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        int updated = read(storage, "way_id,name,a,b,c,d,e,f\n"
+                + "10,x,0.1,0.2,0.3,0.4,0.5,0.6\n"
+                + "20,y,1,2,3\n"
+                + "40,z,1,1,1,1,1,1\n", false);
+        // the header and the broken line are skipped, way 40 has no edge
+        assertEquals(2, updated);
+        assertEquals(4, storage.getEdgeCount());
+        assertEquals(0.1f, storage.getScore(0, EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(0.6f, storage.getScore(2, EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+        assertEquals(0, storage.getScore(1, EdgeScoreStorage.SUPPORT_MINDFUL), 1e-6);
+    }
+
+    @Test
+    public void testDelta() throws IOException {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        read(storage, "10,x,1,1,1,1,1,1\n30,x,3,3,3,3,3,3\n", false);
+        assertEquals(1, read(storage, "30,x,4,4,4,4,4,4\n", true));
+        assertEquals(1, storage.getScore(2, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+        assertEquals(4, storage.getScore(3, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+
+        // a full import resets the scores of all ways not listed
+        read(storage, "30,x,5,5,5,5,5,5\n", false);
+        assertEquals(0, storage.getScore(2, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+        assertEquals(5, storage.getScore(3, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+    }
+
+    @Test
+    public void testScoreRanges() throws IOException {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        read(storage, "10,x,-2,1,1,1,1,1\n30,x,5,5,5,5,5,5\n", false);
+        assertEquals(-2, storage.getMinScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(5, storage.getMaxScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+
+        // a delta import only widens the range
+        read(storage, "30,x,3,3,3,3,3,3\n", true);
+        assertEquals(-2, storage.getMinScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(5, storage.getMaxScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+
+        // a full import calculates the range from the new scores
+        read(storage, "10,x,-1,1,1,1,1,1\n30,x,2,2,2,2,2,2\n", false);
+        assertEquals(-1, storage.getMinScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(2, storage.getMaxScore(EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(2, storage.getMaxScore(EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+    }
+
+    @Test
+    public void testParseLine() {
+        float[] scores = new float[EdgeScoreStorage.SCORES];
+        assertEquals(123, EdgeScoreReader.parseLine("123,,1,2,3,4,5,6,ignored", scores));
+        assertArrayEquals(new float[]{1, 2, 3, 4, 5, 6}, scores, 1e-6f);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.carrotsearch.hppc.IntArrayList;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.Parameters;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class LoopGeneratorTest {
+    private static final int SIZE = 7;
+    private final FlagEncoder carFE = new CarFlagEncoder();
+    private final EncodingManager em = new EncodingManager(carFE);
+    private GraphHopperStorage graph;
+    private AlgorithmOptions algoOpts;
+
+    @Before
+    public void setUp() {
+        // a grid with roughly 111m between neighbouring nodes, node 24 is in the center
+        graph = new GraphBuilder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                na.setNode(row * SIZE + col, 0.001 * row, 0.001 * col);
+            }
+        }
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                int node = row * SIZE + col;
+                if (col + 1 < SIZE)
+                    connect(node, node + 1);
+                if (row + 1 < SIZE)
+                    connect(node, node + SIZE);
+            }
+        }
+        algoOpts = new AlgorithmOptions(Parameters.Algorithms.LOOP, new FastestWeighting(carFE), TraversalMode.NODE_BASED);
+    }
+
+    private void connect(int a, int b) {
+        NodeAccess na = graph.getNodeAccess();
+        graph.edge(a, b, Helper.DIST_EARTH.calcDist(na.getLatitude(a), na.getLongitude(a),
+                na.getLatitude(b), na.getLongitude(b)), true);
+    }
+
+    private LoopGenerator createGenerator() {
+        return new LoopGenerator(graph, new RoutingAlgorithmFactorySimple(), algoOpts).
+                setDistance(1600).setMaxPaths(3).setCandidates(8);
+    }
+
+    @Test
+    public void testLoopsStartAndEndAtStart() {
+        LoopGenerator generator = createGenerator();
+        List<LoopGenerator.Loop> loops = generator.calcLoops(24);
+        assertEquals(3, loops.size());
+        assertTrue(generator.getVisitedNodes() > 0);
+
+        double prevCost = -1;
+        for (LoopGenerator.Loop loop : loops) {
+            List<Path> paths = loop.getPaths();
+            assertEquals(2, paths.size());
+            IntArrayList outNodes = paths.get(0).calcNodes();
+            IntArrayList backNodes = paths.get(1).calcNodes();
+            assertEquals(24, outNodes.get(0));
+            assertEquals(loop.getTurnaroundNode(), outNodes.get(outNodes.size() - 1));
+            assertEquals(loop.getTurnaroundNode(), backNodes.get(0));
+            assertEquals(24, backNodes.get(backNodes.size() - 1));
+
+            assertEquals(paths.get(0).getDistance() + paths.get(1).getDistance(), loop.getDistance(), 1e-6);
+            assertEquals(1600, loop.getDistance(), 800);
+            assertTrue(loop.getOverlap() >= 0 && loop.getOverlap() <= 1);
+            assertTrue(loop.getCost() >= prevCost);
+            prevCost = loop.getCost();
+        }
+    }
+
+    @Test
+    public void testMaxPaths() {
+        List<LoopGenerator.Loop> loops = createGenerator().setMaxPaths(1).calcLoops(24);
+        assertEquals(1, loops.size());
+        assertEquals(createGenerator().calcLoops(24).get(0).getTurnaroundNode(), loops.get(0).getTurnaroundNode());
+    }
+
+    @Test
+    public void testMaxShareFactor() {
+        // every loop shares nearly nothing with the better ones
+        List<LoopGenerator.Loop> loops = createGenerator().setMaxPaths(8).setMaxShareFactor(0.1).calcLoops(24);
+        assertFalse(loops.isEmpty());
+        for (int i = 1; i < loops.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                assertTrue(loops.get(i).calcShare(loops.get(j)) <= 0.1);
+            }
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        List<LoopGenerator.Loop> expected = createGenerator().calcLoops(24);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<LoopGenerator.Loop> loops = createGenerator().setExecutor(executor).calcLoops(24);
+            assertEquals(expected.size(), loops.size());
+            for (int i = 0; i < loops.size(); i++) {
+                assertEquals(expected.get(i).getTurnaroundNode(), loops.get(i).getTurnaroundNode());
+                assertEquals(expected.get(i).getCost(), loops.get(i).getCost(), 1e-6);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNoLoop() {
+        // the tree never reaches the minimum distance of a turnaround
+        assertTrue(createGenerator().setDistance(10_000_000).calcLoops(24).isEmpty());
+
+        // an isolated start
+        graph.getNodeAccess().setNode(SIZE * SIZE, 0.01, 0.01);
+        assertTrue(createGenerator().calcLoops(SIZE * SIZE).isEmpty());
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.FastestWeighting;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
+import static org.junit.Assert.*;
+
+public class ManyToManyCHTest {
+    private final CarFlagEncoder carEncoder = new CarFlagEncoder();
+    private final EncodingManager encodingManager = new EncodingManager(carEncoder);
+    private final Weighting weighting = new FastestWeighting(carEncoder);
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+
+    // a grid with random speeds and some one-way and missing edges
+    private GraphHopperStorage createRandomGraph(Random rand, int size) {
+        GraphHopperStorage graph = new GraphBuilder(encodingManager).setCHGraph(weighting).create();
+        NodeAccess na = graph.getNodeAccess();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                na.setNode(y * size + x, 50 + y * 0.001 + rand.nextDouble() * 0.0005, 10 + x * 0.001 + rand.nextDouble() * 0.0005);
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size && rand.nextDouble() < 0.9)
+                    addEdge(graph, rand, node, node + 1);
+                if (y + 1 < size && rand.nextDouble() < 0.9)
+                    addEdge(graph, rand, node, node + size);
+            }
+        }
+        return graph;
+    }
+
+    private void addEdge(GraphHopperStorage graph, Random rand, int from, int to) {
+        boolean forward = true, backward = true;
+        if (rand.nextDouble() < 0.2) {
+            forward = rand.nextBoolean();
+            backward = !forward;
+        }
+        double distance = 50 + rand.nextInt(100);
+        graph.edge(from, to).setDistance(distance).setFlags(carEncoder.setProperties(10 + rand.nextInt(12) * 10, forward, backward));
+    }
+
+    private int[] createRandomNodes(Random rand, int count, int nodes) {
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = rand.nextInt(nodes);
+        }
+        return result;
+    }
+
+    private void assertSameMatrix(DistanceMatrix expected, DistanceMatrix matrix) {
+        assertEquals(expected.getFromCount(), matrix.getFromCount());
+        assertEquals(expected.getToCount(), matrix.getToCount());
+        for (int from = 0; from < expected.getFromCount(); from++) {
+            for (int to = 0; to < expected.getToCount(); to++) {
+                String pair = from + "->" + to;
+                assertEquals(pair, expected.isConnected(from, to), matrix.isConnected(from, to));
+                if (!expected.isConnected(from, to))
+                    continue;
+
+                // the weight of shortcuts is stored with a limited precision
+                assertEquals(pair, expected.getWeight(from, to), matrix.getWeight(from, to), 1e-4 * expected.getWeight(from, to));
+                // different paths with almost the same weight are possible
+                if (Math.abs(expected.getDistance(from, to) - matrix.getDistance(from, to)) < 1e-3)
+                    assertEquals(pair, expected.getTime(from, to), matrix.getTime(from, to), 1);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomGraphMatchesDijkstra() {
+        Random rand = new Random(42);
+        GraphHopperStorage graph = createRandomGraph(rand, 30);
+        CHGraph chGraph = graph.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new RAMDirectory(), graph, chGraph, weighting, tMode);
+        prepare.doWork();
+
+        int[] fromNodes = createRandomNodes(rand, 20, graph.getNodes());
+        int[] toNodes = createRandomNodes(rand, 30, graph.getNodes());
+        DistanceMatrix expected = new DijkstraManyToMany(graph, weighting, tMode).calcMatrix(fromNodes, toNodes);
+        ManyToManyAlgorithm algo = prepare.createManyToMany(chGraph);
+        assertSameMatrix(expected, algo.calcMatrix(fromNodes, toNodes));
+        assertTrue(algo.getVisitedNodes() > 0);
+
+        // the time of shortcuts is cached, which must not change the next matrix
+        assertSameMatrix(expected, algo.calcMatrix(fromNodes, toNodes));
+        assertEquals(0, algo.calcMatrix(fromNodes, fromNodes).getWeight(3, 3), 1e-10);
+    }
+
+    @Test
+    public void testQueryGraph() {
+        Random rand = new Random(123);
+        GraphHopperStorage graph = createRandomGraph(rand, 20);
+        CHGraph chGraph = graph.getGraph(CHGraph.class);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new RAMDirectory(), graph, chGraph, weighting, tMode);
+        prepare.doWork();
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        List<QueryResult> fromResults = new ArrayList<>();
+        List<QueryResult> toResults = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            fromResults.add(index.findClosest(50 + rand.nextDouble() * 0.02, 10 + rand.nextDouble() * 0.02, DefaultEdgeFilter.allEdges(carEncoder)));
+            toResults.add(index.findClosest(50 + rand.nextDouble() * 0.02, 10 + rand.nextDouble() * 0.02, DefaultEdgeFilter.allEdges(carEncoder)));
+        }
+        List<QueryResult> allResults = new ArrayList<>(fromResults);
+        allResults.addAll(toResults);
+        QueryGraph queryGraph = new QueryGraph(chGraph);
+        queryGraph.lookup(allResults);
+        int[] fromNodes = getClosestNodes(fromResults);
+        int[] toNodes = getClosestNodes(toResults);
+
+        // compare with the route of every pair
+        DistanceMatrix matrix = prepare.createManyToMany(queryGraph).calcMatrix(fromNodes, toNodes);
+        for (int from = 0; from < fromNodes.length; from++) {
+            for (int to = 0; to < toNodes.length; to++) {
+                RoutingAlgorithm algo = prepare.createAlgo(queryGraph, new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode));
+                Path path = algo.calcPath(fromNodes[from], toNodes[to]);
+                assertEquals(path.isFound(), matrix.isConnected(from, to));
+                if (path.isFound()) {
+                    assertEquals(path.getWeight(), matrix.getWeight(from, to), 1e-3);
+                    assertEquals(path.getDistance(), matrix.getDistance(from, to), 1e-3);
+                    assertEquals(path.getTime(), matrix.getTime(from, to), 1);
+                }
+            }
+        }
+    }
+
+    private static int[] getClosestNodes(List<QueryResult> results) {
+        int[] nodes = new int[results.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = results.get(i).getClosestNode();
+        }
+        return nodes;
+    }
+}
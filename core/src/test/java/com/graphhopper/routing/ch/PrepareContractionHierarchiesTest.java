@@ -34,6 +34,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static com.graphhopper.util.Parameters.Algorithms.DIJKSTRA_BI;
 import static org.junit.Assert.*;
@@ -478,6 +479,114 @@ public class PrepareContractionHierarchiesTest {
         checkPath(ghStorage, bikeWeighting, 9, 5, IntArrayList.from(new int[]{3, 10, 14, 16, 13, 12}));
     }
 
+    @Test
+    public void testParallelContraction_shortcutsGraph() {
+        GraphHopperStorage g = createGHStorage();
+        CHGraph lg = g.getGraph(CHGraph.class);
+        initShortcutsGraph(g);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, g, lg, weighting, tMode).
+                setContractionThreads(4);
+        prepare.doWork();
+        for (int node = 0; node < g.getNodes(); node++) {
+            assertNotEquals(g.getNodes(), lg.getLevel(node));
+        }
+        RoutingAlgorithm algo = prepare.createAlgo(lg, new AlgorithmOptions(DIJKSTRA_BI, weighting, tMode));
+        Path p = algo.calcPath(3, 12);
+        assertEquals(5, p.getDistance(), 1e-5);
+        assertEquals(IntArrayList.from(new int[]{3, 9, 14, 16, 13, 12}), p.calcNodes());
+    }
+
+    @Test
+    public void testParallelContractionMatchesDijkstra() {
+        long parallelShortcuts = -1;
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            GraphHopperStorage g = createGHStorage();
+            CHGraph lg = g.getGraph(CHGraph.class);
+            initRandomGrid(g, 40, new Random(42));
+            PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, g, lg, weighting, tMode).
+                    setContractionThreads(threads);
+            prepare.doWork();
+            assertTrue(prepare.getShortcuts() > 0);
+            assertSamePaths(g, lg, prepare, weighting, new Random(threads));
+
+            // the rounds do not depend on the number of threads
+            if (threads > 1) {
+                if (parallelShortcuts < 0)
+                    parallelShortcuts = prepare.getShortcuts();
+                assertEquals("threads: " + threads, parallelShortcuts, prepare.getShortcuts());
+            }
+        }
+    }
+
+    /**
+     * Creates a grid with random distances and some one-way and missing edges.
+     */
+    private void initRandomGrid(Graph g, int size, Random rand) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size && rand.nextDouble() < 0.9)
+                    g.edge(node, node + 1, 10 + rand.nextInt(90), rand.nextDouble() < 0.8);
+                if (y + 1 < size && rand.nextDouble() < 0.9)
+                    g.edge(node, node + size, 10 + rand.nextInt(90), rand.nextDouble() < 0.8);
+            }
+        }
+    }
+
+    @Test
+    public void testCustomizableMatchesDijkstra() {
+        Random rand = new Random(42);
+        GraphHopperStorage g = createGHStorage();
+        CHGraph lg = g.getGraph(CHGraph.class);
+        initRandomGrid(g, 30, rand);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, g, lg, weighting, tMode).
+                setCustomizable(true);
+        prepare.doWork();
+        assertTrue(prepare.getShortcuts() > 0);
+        assertSamePaths(g, lg, prepare, weighting, rand);
+
+        // penalize some edges, the shortcuts are the same but their weights change
+        Weighting penalizing = new ShortestWeighting(carEncoder) {
+            @Override
+            public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+                double weight = super.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+                return edgeState.getEdge() % 3 == 0 ? 5 * weight : weight;
+            }
+        };
+        long shortcuts = lg.getAllEdges().length();
+        prepare.customize(penalizing);
+        assertEquals(shortcuts, lg.getAllEdges().length());
+        assertSame(penalizing, prepare.getCustomizedWeighting());
+        assertSamePaths(g, lg, prepare, penalizing, rand);
+
+        // and back again
+        prepare.customize(weighting);
+        assertSamePaths(g, lg, prepare, weighting, rand);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCustomizeRequiresCustomizable() {
+        GraphHopperStorage g = createGHStorage();
+        CHGraph lg = g.getGraph(CHGraph.class);
+        initShortcutsGraph(lg);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, g, lg, weighting, tMode);
+        prepare.doWork();
+        prepare.customize(new ShortestWeighting(carEncoder));
+    }
+
+    private void assertSamePaths(Graph g, CHGraph lg, PrepareContractionHierarchies prepare, Weighting w, Random rand) {
+        for (int i = 0; i < 200; i++) {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new Dijkstra(g, w, tMode).calcPath(from, to);
+            Path path = prepare.createAlgo(lg, new AlgorithmOptions(DIJKSTRA_BI, w, tMode)).calcPath(from, to);
+            String pair = from + "->" + to;
+            assertEquals(pair, expected.isFound(), path.isFound());
+            // shortcut weights are stored with a precision of 1e-3
+            assertEquals(pair, expected.getWeight(), path.getWeight(), 1e-1);
+        }
+    }
+
     void checkPath(GraphHopperStorage ghStorage, Weighting w, int expShortcuts, double expDistance, IntIndexedContainer expNodes) {
         CHGraph lg = ghStorage.getGraph(CHGraph.class, w);
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(dir, ghStorage, lg, w, tMode);
@@ -34,6 +34,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -107,6 +108,54 @@ public class LandmarkStorageTest {
         assertFalse(lms.isInfinity(0));
     }
 
+    @Test
+    public void testSetGetWeightWithEightBits() {
+        ghStorage.edge(0, 1, 40, true);
+        Directory dir = new RAMDirectory();
+        DataAccess da = dir.find("landmarks_fastest_car");
+        da.create(2000);
+
+        LandmarkStorage lms = new LandmarkStorage(ghStorage, dir, new FastestWeighting(encoder), 4).
+                setMaximumWeight(LandmarkStorage.PRECISION).
+                setWeightBits(8);
+        // small weights are exact
+        lms.setWeight(0, 20);
+        assertEquals(20, lms.getFromWeight(0, 0));
+        assertEquals(20, lms.getFromWeightUpperBound(0, 0));
+
+        // the 'to' weight shares the short with the 'from' weight
+        lms.setWeight(1, 1000);
+        assertEquals(20, lms.getFromWeight(0, 0));
+        assertTrue(lms.getToWeight(0, 0) <= 1000);
+        assertTrue(lms.getToWeightUpperBound(0, 0) >= 1000);
+        assertTrue(lms.getToWeightUpperBound(0, 0) - lms.getToWeight(0, 0) < 1000 * 0.04);
+
+        lms.setWeight(1, 79999);
+        assertEquals(65534, lms.getToWeight(0, 0));
+        assertEquals(65534, lms.getToWeightUpperBound(0, 0));
+        assertEquals(20, lms.getFromWeight(0, 0));
+
+        da.setInt(0, -1);
+        assertTrue(lms.isInfinity(0));
+        assertTrue(lms.isInfinity(1));
+        lms.setWeight(0, 79999);
+        assertFalse(lms.isInfinity(0));
+        assertTrue(lms.isInfinity(1));
+    }
+
+    @Test
+    public void testByteLowerBounds() {
+        int[] bounds = LandmarkStorage.createByteLowerBounds();
+        assertEquals(255, bounds.length);
+        assertEquals(0, bounds[0]);
+        assertEquals(65534, bounds[254]);
+        for (int code = 1; code < bounds.length; code++) {
+            assertTrue(bounds[code] > bounds[code - 1]);
+            assertEquals(code, LandmarkStorage.encodeByte(bounds[code]));
+            assertEquals(code - 1, LandmarkStorage.encodeByte(bounds[code] - 1));
+        }
+    }
+
     @Test
     public void testWithSubnetworks() {
         ghStorage.edge(0, 1, 10, true);
@@ -141,6 +190,84 @@ public class LandmarkStorageTest {
         assertEquals("[4, 0]", Arrays.toString(storage.getLandmarks(1)));
     }
 
+    @Test
+    public void testLandmarkThreadsDoNotChangeWeights() {
+        // a grid with random distances and some missing edges
+        Random rand = new Random(42);
+        int size = 20;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size && rand.nextDouble() < 0.9)
+                    ghStorage.edge(node, node + 1, 10 + rand.nextInt(90), true);
+                if (y + 1 < size && rand.nextDouble() < 0.9)
+                    ghStorage.edge(node, node + size, 10 + rand.nextInt(90), true);
+            }
+        }
+
+        assertSameWeights(8, 16);
+        assertSameWeights(8, 8);
+        // the columns of two landmarks share an int, even the ones of different rows
+        assertSameWeights(7, 8);
+    }
+
+    private void assertSameWeights(int landmarks, int weightBits) {
+        LandmarkStorage sequential = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), landmarks).
+                setWeightBits(weightBits);
+        sequential.setMinimumNodes(2);
+        sequential.createLandmarks();
+        // RAM_INT writes a short by reading and writing the whole int
+        LandmarkStorage parallel = new LandmarkStorage(ghStorage, new GHDirectory("", DAType.RAM_INT), new FastestWeighting(encoder), landmarks).
+                setWeightBits(weightBits).setLandmarkThreads(4);
+        parallel.setMinimumNodes(2);
+        parallel.createLandmarks();
+
+        assertEquals(sequential.getSubnetworksWithLandmarks(), parallel.getSubnetworksWithLandmarks());
+        assertArrayEquals(sequential.getLandmarks(1), parallel.getLandmarks(1));
+        for (int node = 0; node < ghStorage.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < landmarks; lmIdx++) {
+                assertEquals(sequential.getFromWeight(lmIdx, node), parallel.getFromWeight(lmIdx, node));
+                assertEquals(sequential.getToWeight(lmIdx, node), parallel.getToWeight(lmIdx, node));
+            }
+        }
+    }
+
+    @Test
+    public void testEightWeightBitsBoundTheWeights() {
+        Random rand = new Random(42);
+        int size = 20;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size)
+                    ghStorage.edge(node, node + 1, 10 + rand.nextInt(2000), true);
+                if (y + 1 < size)
+                    ghStorage.edge(node, node + size, 10 + rand.nextInt(2000), true);
+            }
+        }
+
+        LandmarkStorage shorts = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 4);
+        shorts.setMinimumNodes(2);
+        shorts.createLandmarks();
+        LandmarkStorage bytes = new LandmarkStorage(ghStorage, new RAMDirectory(), new FastestWeighting(encoder), 4).
+                setWeightBits(8);
+        bytes.setMinimumNodes(2);
+        bytes.createLandmarks();
+
+        assertEquals(shorts.getFactor(), bytes.getFactor(), 1e-6);
+        assertArrayEquals(shorts.getLandmarks(1), bytes.getLandmarks(1));
+        for (int node = 0; node < ghStorage.getNodes(); node++) {
+            for (int lmIdx = 0; lmIdx < 4; lmIdx++) {
+                int from = shorts.getFromWeight(lmIdx, node);
+                assertTrue(bytes.getFromWeight(lmIdx, node) <= from);
+                assertTrue(bytes.getFromWeightUpperBound(lmIdx, node) >= from);
+                int to = shorts.getToWeight(lmIdx, node);
+                assertTrue(bytes.getToWeight(lmIdx, node) <= to);
+                assertTrue(bytes.getToWeightUpperBound(lmIdx, node) >= to);
+            }
+        }
+    }
+
     @Test
     public void testWithOnewaySubnetworks() {
         // should not happen with subnetwork preparation
@@ -97,7 +97,7 @@ public class PrepareLandmarksTest
         // landmarks should be the 4 corners of the grid:
         int[] intList = store.getLandmarks(1);
         Arrays.sort(intList);
-        assertEquals("[0, 14, 70, 182, 224]", Arrays.toString(intList));
+        assertEquals("[0, 14, 112, 210, 224]", Arrays.toString(intList));
         // two landmarks: one for subnetwork 0 (all empty) and one for subnetwork 1
         assertEquals(2, store.getSubnetworksWithLandmarks());
 
@@ -126,7 +126,7 @@ public class PrepareLandmarksTest
             list.add(store.getLandmarks(1)[idx]);
         }
         // TODO should better select 0 and 224?
-        assertEquals(Arrays.asList(224, 70), list);
+        assertEquals(Arrays.asList(112, 224), list);
 
         AlgorithmOptions opts = AlgorithmOptions.start().weighting(weighting).traversalMode(tm).
                 build();
@@ -144,7 +144,7 @@ public class PrepareLandmarksTest
 
         assertEquals(expectedPath.getWeight(), path.getWeight(), .1);
         assertEquals(expectedPath.calcNodes(), path.calcNodes());
-        assertEquals(expectedAlgo.getVisitedNodes(), oneDirAlgoWithLandmarks.getVisitedNodes() + 142);
+        assertEquals(expectedAlgo.getVisitedNodes(), oneDirAlgoWithLandmarks.getVisitedNodes() + 125);
 
         // landmarks with bidir A*
         opts.getHints().put("lm.recalc_count", 50);
@@ -153,7 +153,7 @@ public class PrepareLandmarksTest
         path = biDirAlgoWithLandmarks.calcPath(41, 183);
         assertEquals(expectedPath.getWeight(), path.getWeight(), .1);
         assertEquals(expectedPath.calcNodes(), path.calcNodes());
-        assertEquals(expectedAlgo.getVisitedNodes(), biDirAlgoWithLandmarks.getVisitedNodes() + 164);
+        assertEquals(expectedAlgo.getVisitedNodes(), biDirAlgoWithLandmarks.getVisitedNodes() + 168);
 
         // landmarks with A* and a QueryGraph. We expect slightly less optimal as two more cycles needs to be traversed
         // due to the two more virtual nodes but this should not harm in practise
@@ -169,7 +169,7 @@ public class PrepareLandmarksTest
         expectedPath = expectedAlgo.calcPath(fromQR.getClosestNode(), toQR.getClosestNode());
         assertEquals(expectedPath.getWeight(), path.getWeight(), .1);
         assertEquals(expectedPath.calcNodes(), path.calcNodes());
-        assertEquals(expectedAlgo.getVisitedNodes(), qGraphOneDirAlgo.getVisitedNodes() + 133);
+        assertEquals(expectedAlgo.getVisitedNodes(), qGraphOneDirAlgo.getVisitedNodes() + 122);
     }
 
     @Test
@@ -203,4 +203,71 @@ public class PrepareLandmarksTest
 
         Helper.removeDir(new File(fileStr));
     }
+
+    @Test
+    public void testEightWeightBitsRouting() {
+        Random rand = new Random(0);
+        int width = 15, height = 15;
+        for (int hIndex = 0; hIndex < height; hIndex++) {
+            for (int wIndex = 0; wIndex < width; wIndex++) {
+                int node = wIndex + hIndex * width;
+                if (wIndex + 1 < width)
+                    graph.edge(node, node + 1).setFlags(encoder.setProperties(20 + rand.nextDouble() * 30, true, true));
+                if (hIndex + 1 < height)
+                    graph.edge(node, node + width).setFlags(encoder.setProperties(20 + rand.nextDouble() * 30, true, true));
+                AbstractRoutingAlgorithmTester.updateDistancesFor(graph, node, -hIndex / 50.0, wIndex / 50.0);
+            }
+        }
+
+        Weighting weighting = new FastestWeighting(encoder);
+        PrepareLandmarks prepare = new PrepareLandmarks(new RAMDirectory(), graph, weighting, 4, 2).setWeightBits(8);
+        prepare.setMinimumNodes(2);
+        prepare.doWork();
+        assertEquals(8, prepare.getLandmarkStorage().getWeightBits());
+
+        AlgorithmOptions opts = AlgorithmOptions.start().weighting(weighting).traversalMode(tm).build();
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(graph.getNodes());
+            int to = rand.nextInt(graph.getNodes());
+            Path expectedPath = new Dijkstra(graph, weighting, tm).calcPath(from, to);
+
+            RoutingAlgorithm oneDirAlgo = prepare.getDecoratedAlgorithm(graph, new AStar(graph, weighting, tm), opts);
+            assertEquals(expectedPath.getWeight(), oneDirAlgo.calcPath(from, to).getWeight(), .1);
+
+            RoutingAlgorithm biDirAlgo = prepare.getDecoratedAlgorithm(graph, new AStarBidirection(graph, weighting, tm), opts);
+            assertEquals(expectedPath.getWeight(), biDirAlgo.calcPath(from, to).getWeight(), .1);
+        }
+    }
+
+    @Test
+    public void testStoreAndLoadEightWeightBits() {
+        graph.edge(0, 1, 80_000, true);
+        graph.edge(1, 2, 80_000, true);
+        String fileStr = "./target/tmp-lm";
+        Helper.removeDir(new File(fileStr));
+
+        // 3 landmarks with 8 bits lead to rows of 3 shorts, the landmark IDs have to be aligned
+        Directory dir = new RAMDirectory(fileStr, true).create();
+        Weighting weighting = new FastestWeighting(encoder);
+        PrepareLandmarks plm = new PrepareLandmarks(dir, graph, weighting, 3, 2).setWeightBits(8);
+        plm.setMinimumNodes(2);
+        plm.doWork();
+
+        LandmarkStorage expected = plm.getLandmarkStorage();
+        String expectedLandmarks = Arrays.toString(expected.getLandmarks(1));
+        int expectedWeight = expected.getFromWeight(0, 1);
+        int expectedUpperBound = expected.getFromWeightUpperBound(0, 1);
+        assertTrue(expectedWeight > 0);
+
+        dir = new RAMDirectory(fileStr, true);
+        // the weight bits are loaded from the storage
+        plm = new PrepareLandmarks(dir, graph, weighting, 3, 2);
+        assertTrue(plm.loadExisting());
+        assertEquals(8, plm.getLandmarkStorage().getWeightBits());
+        assertEquals(expectedLandmarks, Arrays.toString(plm.getLandmarkStorage().getLandmarks(1)));
+        assertEquals(expectedWeight, plm.getLandmarkStorage().getFromWeight(0, 1));
+        assertEquals(expectedUpperBound, plm.getLandmarkStorage().getFromWeightUpperBound(0, 1));
+
+        Helper.removeDir(new File(fileStr));
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.weighting;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.storage.EdgeScoreStorage;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RunningWeightingTest {
+    private final EncodingManager em = new EncodingManager("running", 8);
+    private final FlagEncoder encoder = em.getEncoder("running");
+    private GraphHopperStorage graph;
+    private EdgeScoreStorage edgeScores;
+
+    @Before
+    public void setUp() {
+        graph = new GraphBuilder(em).create();
+        edgeScores = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        Random rand = new Random(42);
+        float[] scores = new float[EdgeScoreStorage.SCORES];
+        for (int i = 0; i < 100; i++) {
+            EdgeIteratorState edge = graph.edge(i, i + 1, 10 + rand.nextInt(100), true);
+            edge.setFlags(encoder.setProperties(5, true, true));
+            for (int j = 0; j < scores.length; j++) {
+                scores[j] = rand.nextFloat() * 2 - 0.5f;
+            }
+            edgeScores.setScores(edge.getEdge(), scores);
+        }
+    }
+
+    private HintsMap createHints(double beta1, double beta2, double beta3) {
+        return new HintsMap("mindful").setVehicle("running").
+                put("beta1", beta1).put("beta2", beta2).put("beta3", beta3);
+    }
+
+    @Test
+    public void testMatches() {
+        RunningWeighting weighting = new MindfulWeighting(new HintsMap(), encoder, edgeScores);
+        assertTrue(weighting.matches(new HintsMap("mindful").setVehicle("running")));
+        assertTrue(weighting.matches(createHints(1d / 3, 1d / 3, 1d / 3)));
+        assertFalse(weighting.matches(createHints(0.5, 0.2, 0.3)));
+        assertTrue(weighting.matchesProfile(createHints(0.5, 0.2, 0.3)));
+        assertFalse(weighting.matchesProfile(new HintsMap("vibrant").setVehicle("running")));
+    }
+
+    @Test
+    public void testMinWeight() {
+        RunningWeighting weighting = new MindfulWeighting(createHints(0.8, 0.1, 0.1), encoder, edgeScores);
+        for (int edge = 0; edge < graph.getAllEdges().length(); edge++) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertTrue(weighting.getMinWeight(edgeState.getDistance())
+                    <= weighting.calcWeight(edgeState, false, EdgeIterator.NO_EDGE));
+        }
+    }
+
+    @Test
+    public void testVirtualEdgeUsesScoresOfOriginalEdge() {
+        RunningWeighting weighting = new VibrantWeighting(createHints(0.2, 0.3, 0.5), encoder, edgeScores);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(7, 0, 0.001);
+        na.setNode(8, 0, 0.002);
+        EdgeIteratorState edge = graph.getEdgeIteratorState(7, 8);
+        double edgeWeight = weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE);
+
+        // snap in the middle of edge 7, the query graph splits it into virtual edges
+        QueryResult qr = new QueryResult(0.0001, 0.0015);
+        qr.setClosestEdge(edge);
+        qr.setWayIndex(0);
+        qr.setSnappedPosition(QueryResult.Position.EDGE);
+        qr.calcSnappedPoint(Helper.DIST_PLANE);
+        QueryGraph queryGraph = new QueryGraph(graph);
+        queryGraph.lookup(Collections.singletonList(qr));
+
+        int count = 0;
+        EdgeIterator iter = queryGraph.createEdgeExplorer().setBaseNode(qr.getClosestNode());
+        while (iter.next()) {
+            assertTrue(iter.getEdge() >= edgeScores.getEdgeCount());
+            assertEquals(edgeWeight * iter.getDistance() / edge.getDistance(),
+                    weighting.calcWeight(iter, false, EdgeIterator.NO_EDGE), 1e-10);
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    @Test
+    public void testLowerBoundFactor() {
+        RunningWeighting prepared = new MindfulWeighting(new HintsMap(), encoder, edgeScores);
+        assertEquals(1, prepared.calcLowerBoundFactor(new MindfulWeighting(new HintsMap(), encoder, edgeScores)), 1e-10);
+        assertEquals(0, prepared.calcLowerBoundFactor(new VibrantWeighting(new HintsMap(), encoder, edgeScores)), 1e-10);
+
+        RunningWeighting query = new MindfulWeighting(createHints(0.9, 0, 0.1), encoder, edgeScores);
+        double factor = prepared.calcLowerBoundFactor(query);
+        assertTrue(factor > 0 && factor < 1);
+        for (int edge = 0; edge < graph.getAllEdges().length(); edge++) {
+            EdgeIteratorState edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+            assertTrue(factor * prepared.calcWeight(edgeState, false, EdgeIterator.NO_EDGE)
+                    <= query.calcWeight(edgeState, false, EdgeIterator.NO_EDGE) + 1e-10);
+        }
+
+        // a negative divisor is possible for these hyperparameters
+        assertEquals(0, prepared.calcLowerBoundFactor(new MindfulWeighting(createHints(-3, 0, 0), encoder, edgeScores)), 1e-10);
+    }
+}
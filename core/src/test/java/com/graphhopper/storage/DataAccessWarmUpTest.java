@@ -0,0 +1,98 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DataAccessWarmUpTest {
+    private final File folder = new File("./target/tmp/warmup");
+    private Directory dir;
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(folder);
+        dir = new GHDirectory(folder.getAbsolutePath(), DAType.MMAP).create();
+        dir.find("nodes").setSegmentSize(128).create(1000);
+        dir.find("edges").setSegmentSize(128).create(300);
+        dir.find("geometry", DAType.RAM_STORE).create(300);
+        dir.find("edge_scores").setSegmentSize(128).create(300);
+    }
+
+    @After
+    public void tearDown() {
+        dir.clear();
+        Helper.removeDir(folder);
+    }
+
+    @Test
+    public void testWarmUpSelectedFiles() {
+        DataAccessWarmUp warmUp = new DataAccessWarmUp(Arrays.asList("nodes", "geometry", "unknown"));
+        assertFalse(warmUp.isFinished());
+        assertEquals(0, warmUp.getProgress(), 1e-6);
+
+        warmUp.warmUp(dir);
+        assertTrue(warmUp.isFinished());
+        assertEquals(1, warmUp.getProgress(), 1e-6);
+        // the RAM file is already in memory
+        assertEquals(dir.find("nodes").getCapacity(), warmUp.getLoadedBytes());
+    }
+
+    @Test
+    public void testWarmUpAll() {
+        DataAccessWarmUp warmUp = new DataAccessWarmUp(Collections.singletonList("all"));
+        warmUp.warmUp(dir);
+        assertTrue(warmUp.isFinished());
+        assertEquals(dir.find("nodes").getCapacity() + dir.find("edges").getCapacity(), warmUp.getLoadedBytes());
+    }
+
+    @Test
+    public void testSkipClosedFiles() {
+        MMapDataAccess nodes = (MMapDataAccess) dir.find("nodes");
+        nodes.close();
+        assertEquals(0, nodes.loadSegment(0));
+
+        DataAccessWarmUp warmUp = new DataAccessWarmUp(Arrays.asList("nodes", "edge_scores"));
+        warmUp.warmUp(dir);
+        assertTrue(warmUp.isFinished());
+        // the edge scores are only loaded if selected by name
+        assertEquals(dir.find("edge_scores").getCapacity(), warmUp.getLoadedBytes());
+    }
+
+    @Test
+    public void testInterrupted() {
+        DataAccessWarmUp warmUp = new DataAccessWarmUp(Collections.singletonList("all"));
+        Thread.currentThread().interrupt();
+        try {
+            warmUp.warmUp(dir);
+        } finally {
+            // clear the interrupt flag
+            Thread.interrupted();
+        }
+        assertFalse(warmUp.isFinished());
+        assertEquals(0, warmUp.getLoadedBytes());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class EdgeScoreStorageTest {
+    private final String location = "./target/edge-scores-test";
+
+    @Before
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSetAndGet() {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        storage.setScores(3, new float[]{0.1f, 0.2f, 0.3f, 0.4f, 0.5f, -0.6f});
+        assertEquals(4, storage.getEdgeCount());
+        assertEquals(0.2f, storage.getScore(3, EdgeScoreStorage.SUPPORT_MINDFUL), 1e-6);
+        assertEquals(-0.6f, storage.getScore(3, EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+        assertEquals(-0.6f, storage.getMinScore(EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+        // edges without an entry
+        assertEquals(0, storage.getScore(1, EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+
+        // edges outside of the storage are never read
+        assertEquals(0, storage.getScore(4, EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+        assertEquals(0, storage.getScore(1 << 24, EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+        assertEquals(0, storage.getScore(-1, EdgeScoreStorage.ENVIRONMENT_MINDFUL), 1e-6);
+
+        storage.ensureEdgeCount(10);
+        assertEquals(10, storage.getEdgeCount());
+        assertEquals(0, storage.getScore(9, EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+        storage.close();
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory(location, true).create()).create(0);
+        storage.setScores(1, new float[]{1, 2, 3, 4, 5, 6});
+        storage.flush();
+        storage.close();
+
+        storage = new EdgeScoreStorage(new MMapDirectory(location).create());
+        assertTrue(storage.loadExisting());
+        assertEquals(2, storage.getEdgeCount());
+        assertEquals(4, storage.getScore(1, EdgeScoreStorage.ENVIRONMENT_VIBRANT), 1e-6);
+        // the score ranges include the 0 of edges without an entry
+        assertEquals(0, storage.getMinScore(EdgeScoreStorage.SUPPORT_MINDFUL), 1e-6);
+        assertEquals(2, storage.getMaxScore(EdgeScoreStorage.SUPPORT_MINDFUL), 1e-6);
+        storage.close();
+    }
+
+    @Test
+    public void testCopyTo() {
+        EdgeScoreStorage storage = new EdgeScoreStorage(new RAMDirectory()).create(0);
+        storage.setScores(2, new float[]{1, 2, 3, 4, 5, -6});
+        EdgeScoreStorage copy = storage.copyTo(new EdgeScoreStorage(new RAMDirectory()).create(0));
+        assertEquals(3, copy.getEdgeCount());
+        assertEquals(5, copy.getScore(2, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+        assertEquals(-6, copy.getMinScore(EdgeScoreStorage.SAFETY_VIBRANT), 1e-6);
+
+        // the copy is independent
+        copy.setScores(2, new float[6]);
+        assertEquals(5, storage.getScore(2, EdgeScoreStorage.SUPPORT_VIBRANT), 1e-6);
+        storage.close();
+        copy.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongScoreCount() {
+        new EdgeScoreStorage(new RAMDirectory()).create(0).setScores(0, new float[2]);
+    }
+}
@@ -21,6 +21,7 @@ import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 
 import static org.junit.Assert.*;
@@ -214,6 +215,102 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester {
         }
     }
 
+    @Test
+    public void testOSMWayIds() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).setOSMWayIdsEnabled(true).create(defaultSize);
+        graph.edge(0, 1, 10, true);
+        graph.getOSMWayIds().setOSMWayId(graph.edge(1, 2, 10, true).getEdge(), 123);
+        graph.flush();
+        graph.close();
+
+        graph = newGHStorage(new MMapDirectory(defaultGraphLoc), false).setOSMWayIdsEnabled(true);
+        assertTrue(graph.loadExisting());
+        assertEquals(OSMWayIdStorage.NO_WAY, graph.getOSMWayIds().getOSMWayId(0));
+        assertEquals(123, graph.getOSMWayIds().getOSMWayId(1));
+        graph.close();
+
+        // the OSM way IDs are required if enabled
+        Helper.removeDir(new File(defaultGraphLoc));
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false);
+        graph.create(1000);
+        graph.flush();
+        graph.close();
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).setOSMWayIdsEnabled(true);
+        try {
+            graph.loadExisting();
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testCompactGeometry() {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), true).setCompactGeometry(true);
+        graph.setSegmentSize(128);
+        graph.create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        na.setNode(2, -12, -170, 0.4);
+
+        EdgeIteratorState edge01 = graph.edge(0, 1, 100, true).setWayGeometry(Helper.createPointList3D(10.5, 11, 0, 10.6, 12, 0.2));
+        // stored in the direction of node 0
+        EdgeIteratorState edge20 = graph.edge(2, 0, 200, true).setWayGeometry(Helper.createPointList3D(-11, 150, 2, 5, -3, 1000));
+        graph.edge(1, 2, 120, false);
+        PointList many = new PointList(100, true);
+        for (int i = 0; i < 100; i++) {
+            many.add(11 + i * 0.001, 20 - i * 0.002, i * 0.5);
+        }
+        EdgeIteratorState edge21 = graph.edge(2, 1, 100, true).setWayGeometry(many);
+
+        assertEquals(Helper.createPointList3D(10.5, 11, 0, 10.6, 12, 0.2), edge01.fetchWayGeometry(0));
+        assertEquals(Helper.createPointList3D(-12, -170, 0.4, -11, 150, 2, 5, -3, 1000, 10, 10, 0), edge20.fetchWayGeometry(3));
+        assertEquals(Helper.createPointList3D(10, 10, 0, 5, -3, 1000, -11, 150, 2, -12, -170, 0.4),
+                GHUtility.getEdge(graph, 0, 2).fetchWayGeometry(3));
+        assertEquals(many, edge21.fetchWayGeometry(0));
+
+        // overwrite with a shorter and a longer geometry
+        edge01.setWayGeometry(Helper.createPointList3D(10.5, 11, 0));
+        assertEquals(Helper.createPointList3D(10.5, 11, 0), edge01.fetchWayGeometry(0));
+        edge01.setWayGeometry(Helper.createPointList3D(10.5, 11, 0, 10.6, 12, 0.2, 10.7, 13, 0.3));
+        assertEquals(Helper.createPointList3D(10.5, 11, 0, 10.6, 12, 0.2, 10.7, 13, 0.3), edge01.fetchWayGeometry(0));
+        assertEquals(many, edge21.fetchWayGeometry(0));
+        graph.flush();
+        graph.close();
+
+        // the format is loaded from the file
+        graph = newGHStorage(new MMapDirectory(defaultGraphLoc), true);
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isCompactGeometry());
+        assertEquals(Helper.createPointList3D(10.5, 11, 0, 10.6, 12, 0.2, 10.7, 13, 0.3),
+                graph.getEdgeIteratorState(edge01.getEdge(), 1).fetchWayGeometry(0));
+        assertEquals(many, graph.getEdgeIteratorState(edge21.getEdge(), 1).fetchWayGeometry(0));
+        assertEquals(Helper.createPointList3D(-11, 150, 2, 5, -3, 1000),
+                graph.getEdgeIteratorState(edge20.getEdge(), 0).fetchWayGeometry(0));
+    }
+
+    @Test
+    public void testCompactGeometryIsSmaller() {
+        long[] maxGeoRefs = new long[2];
+        for (int i = 0; i < 2; i++) {
+            GraphHopperStorage g = newGHStorage(new RAMDirectory(), true).setCompactGeometry(i == 1).create(defaultSize);
+            g.getNodeAccess().setNode(0, 50, 10, 100);
+            g.getNodeAccess().setNode(1, 50.01, 10.01, 110);
+            PointList pillarNodes = new PointList(10, true);
+            for (int j = 1; j <= 10; j++) {
+                pillarNodes.add(50 + j * 0.0009, 10 + j * 0.0009, 100 + j);
+            }
+            g.edge(0, 1, 1500, true).setWayGeometry(pillarNodes);
+            assertEquals(pillarNodes, g.getEdgeIteratorState(0, 1).fetchWayGeometry(0));
+            maxGeoRefs[i] = ((BaseGraph) g.getGraph(Graph.class)).getMaxGeoRef();
+            g.close();
+        }
+        // both start at 4, the legacy geo ref counts ints and the compact one bytes
+        long legacyBytes = (maxGeoRefs[0] - 4) * 4;
+        long compactBytes = maxGeoRefs[1] - 4;
+        assertTrue(legacyBytes + " vs. " + compactBytes, compactBytes * 1.5 < legacyBytes);
+    }
+
     @Test
     public void testIdentical() {
         GraphHopperStorage store = new GraphHopperStorage(new RAMDirectory(), encodingManager, true, new GraphExtension.NoOpExtension());
@@ -17,8 +17,13 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.util.BitUtil;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
 import static org.junit.Assert.*;
 
 /**
@@ -59,4 +64,50 @@ public class MMapDataAccessTest extends DataAccessTest {
         assertEquals(123, da.getInt(7 * 4));
         da.close();
     }
+
+    @Test
+    public void testReadOnlyWithoutLocking() throws Exception {
+        DataAccess da = createDataAccess(name);
+        da.create(1000);
+        for (int i = 0; i < 250; i++) {
+            da.setInt(i * 4, i * 31);
+        }
+        byte[] bytes = BitUtil.BIG.fromInt(Integer.MAX_VALUE / 3);
+        // crosses the segment boundary at 128
+        da.setBytes(126, bytes, bytes.length);
+        da.flush();
+        da.close();
+
+        final DataAccess readOnly = new MMapDataAccess(name, directory, defaultOrder, false).setSegmentSize(128);
+        assertTrue(readOnly.loadExisting());
+        bytes = new byte[4];
+        readOnly.getBytes(126, bytes, bytes.length);
+        assertEquals(Integer.MAX_VALUE / 3, BitUtil.BIG.toInt(bytes));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    byte[] tmpBytes = new byte[4];
+                    for (int run = 0; run < 1000; run++) {
+                        for (int i = 0; i < 250; i++) {
+                            if (i >= 31 && i <= 32)
+                                continue;
+                            assertEquals(i * 31, readOnly.getInt(i * 4));
+                        }
+                        readOnly.getBytes(126, tmpBytes, tmpBytes.length);
+                        assertEquals(Integer.MAX_VALUE / 3, BitUtil.BIG.toInt(tmpBytes));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        readOnly.close();
+    }
 }
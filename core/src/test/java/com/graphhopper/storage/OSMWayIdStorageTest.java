@@ -0,0 +1,152 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OSMWayIdStorageTest {
+    private final String location = "./target/way-ids-test";
+
+    @Before
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    private long[] createWayIds(int edges, long seed) {
+        Random rand = new Random(seed);
+        long[] wayIds = new long[edges];
+        long wayId = 4_000_000_000L;
+        for (int i = 0; i < edges; i++) {
+            if (rand.nextInt(5) == 0)
+                wayId += rand.nextInt(1000) - 200;
+            wayIds[i] = i % 97 == 0 ? rand.nextLong() : wayId;
+        }
+        return wayIds;
+    }
+
+    @Test
+    public void testSetAndGet() {
+        OSMWayIdStorage storage = new OSMWayIdStorage(new RAMDirectory()).create(0);
+        long[] wayIds = createWayIds(1000, 1);
+        for (int i = 0; i < wayIds.length; i++) {
+            storage.setOSMWayId(i, wayIds[i]);
+            // the current block is not yet written
+            if (i % 32 == 31)
+                assertEquals(wayIds[i], storage.getOSMWayId(i));
+        }
+        storage.flush();
+        assertEquals(1000, storage.getEdgeCount());
+        for (int i = 0; i < wayIds.length; i++) {
+            assertEquals("edge " + i, wayIds[i], storage.getOSMWayId(i));
+        }
+        assertEquals(OSMWayIdStorage.NO_WAY, storage.getOSMWayId(1000));
+        storage.close();
+    }
+
+    @Test
+    public void testGetBeforeFlush() {
+        OSMWayIdStorage storage = new OSMWayIdStorage(new RAMDirectory()).create(0);
+        long[] wayIds = createWayIds(1000, 3);
+        for (int i = 0; i < wayIds.length; i++) {
+            storage.setOSMWayId(i, wayIds[i]);
+            assertEquals("edge " + i, wayIds[i], storage.getOSMWayId(i));
+        }
+        // 1000 % 32 = 8 edges of the last block are not yet written
+        for (int i = 0; i < wayIds.length; i++) {
+            assertEquals("edge " + i, wayIds[i], storage.getOSMWayId(i));
+        }
+
+        // the flushed partial block is still read correctly when it is extended and flushed again
+        storage.flush();
+        storage.setOSMWayId(1000, 123);
+        assertEquals(wayIds[999], storage.getOSMWayId(999));
+        assertEquals(123, storage.getOSMWayId(1000));
+        storage.flush();
+        assertEquals(wayIds[992], storage.getOSMWayId(992));
+        assertEquals(123, storage.getOSMWayId(1000));
+        storage.close();
+    }
+
+    @Test
+    public void testBlockWithDistinctWays() {
+        OSMWayIdStorage storage = new OSMWayIdStorage(new RAMDirectory()).create(0);
+        for (int i = 0; i < 64; i++) {
+            storage.setOSMWayId(i, i < 32 ? 100 + i : 7);
+        }
+        for (int i = 0; i < 64; i++) {
+            assertEquals(i < 32 ? 100 + i : 7, storage.getOSMWayId(i));
+        }
+        storage.close();
+    }
+
+    @Test
+    public void testGaps() {
+        OSMWayIdStorage storage = new OSMWayIdStorage(new RAMDirectory()).create(0);
+        storage.setOSMWayId(2, 5);
+        storage.setOSMWayId(40, 6);
+        storage.flush();
+        assertEquals(OSMWayIdStorage.NO_WAY, storage.getOSMWayId(0));
+        assertEquals(5, storage.getOSMWayId(2));
+        assertEquals(OSMWayIdStorage.NO_WAY, storage.getOSMWayId(39));
+        assertEquals(6, storage.getOSMWayId(40));
+
+        try {
+            storage.setOSMWayId(40, 7);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+        storage.close();
+    }
+
+    @Test
+    public void testStoreAndLoadReadOnly() {
+        OSMWayIdStorage storage = new OSMWayIdStorage(new RAMDirectory(location, true).create()).create(0);
+        long[] wayIds = createWayIds(100, 2);
+        for (int i = 0; i < 50; i++) {
+            storage.setOSMWayId(i, wayIds[i]);
+        }
+        storage.flush();
+        storage.close();
+
+        // append to the incomplete last block of the loaded storage
+        storage = new OSMWayIdStorage(new RAMDirectory(location, true));
+        assertTrue(storage.loadExisting());
+        for (int i = 50; i < wayIds.length; i++) {
+            storage.setOSMWayId(i, wayIds[i]);
+        }
+        storage.flush();
+        storage.close();
+
+        storage = new OSMWayIdStorage(new GHDirectory(location, DAType.MMAP_RO));
+        assertTrue(storage.loadExisting());
+        assertEquals(100, storage.getEdgeCount());
+        for (int i = 0; i < wayIds.length; i++) {
+            assertEquals(wayIds[i], storage.getOSMWayId(i));
+        }
+        storage.close();
+    }
+}
@@ -23,6 +23,8 @@ import org.junit.Test;
 import java.nio.ByteOrder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -67,4 +69,24 @@ public class UnsafeDataAccessTest extends DataAccessTest {
         assertEquals(val, tmp);
         UnsafeDataAccess.UNSAFE.freeMemory(address);
     }
+
+    @Test
+    public void testMixRAM2Unsafe() {
+        DataAccess da = new RAMDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+        assertFalse(da.loadExisting());
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        byte[] bytes = BitUtil.BIG.fromInt(Integer.MAX_VALUE / 3);
+        da.setBytes(126, bytes, bytes.length);
+        da.flush();
+        da.close();
+
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        bytes = new byte[4];
+        da.getBytes(126, bytes, bytes.length);
+        assertEquals(Integer.MAX_VALUE / 3, BitUtil.BIG.toInt(bytes));
+        da.close();
+    }
 }
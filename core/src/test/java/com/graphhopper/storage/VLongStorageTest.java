@@ -60,4 +60,27 @@ public class VLongStorageTest {
         assertEquals(7L, store.readVLong());
         assertEquals(777666555L, store.readVLong());
     }
+
+    @Test
+    public void testWriteZLong() {
+        VLongStorage store = new VLongStorage();
+        store.writeZLong(0);
+        store.writeZLong(-1);
+        store.writeZLong(63);
+        store.writeZLong(-64);
+        assertEquals(4, store.getPosition());
+        store.writeZLong(64);
+        assertEquals(6, store.getPosition());
+        store.writeZLong(Integer.MIN_VALUE);
+        store.writeZLong(Integer.MAX_VALUE);
+
+        store.seek(0);
+        assertEquals(0L, store.readZLong());
+        assertEquals(-1L, store.readZLong());
+        assertEquals(63L, store.readZLong());
+        assertEquals(-64L, store.readZLong());
+        assertEquals(64L, store.readZLong());
+        assertEquals(Integer.MIN_VALUE, store.readZLong());
+        assertEquals(Integer.MAX_VALUE, store.readZLong());
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SnapBatchTest {
+    private final EncodingManager em = new EncodingManager("car");
+    private final FlagEncoder encoder = em.getEncoder("car");
+    private GraphHopperStorage graph;
+    private LocationIndex index;
+
+    @Before
+    public void setUp() {
+        //  0------\
+        // /|       \
+        // |1----3-\|
+        // |____/   4
+        // 2-------/
+        graph = new GraphBuilder(em).create();
+        long flags = encoder.setProperties(50, true, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0.5, -0.5);
+        na.setNode(1, -0.5, -0.5);
+        na.setNode(2, -1, -1);
+        na.setNode(3, -0.4, 0.9);
+        na.setNode(4, -0.6, 1.6);
+        graph.edge(0, 1, 1, true).setFlags(flags);
+        graph.edge(0, 2, 1, true).setFlags(flags);
+        graph.edge(0, 4, 1, true).setFlags(flags);
+        graph.edge(1, 3, 1, true).setFlags(flags);
+        graph.edge(2, 3, 1, true).setFlags(flags);
+        graph.edge(2, 4, 1, true).setFlags(flags);
+        graph.edge(3, 4, 1, true).setFlags(flags);
+        index = new LocationIndexTree(graph, new RAMDirectory()).setResolution(500000).prepareIndex();
+    }
+
+    @Test
+    public void testSameResultsAsIndex() {
+        List<GHPoint> points = Arrays.asList(new GHPoint(-0.2, 0.3), new GHPoint(0.4, -0.4),
+                new GHPoint(-0.2, 0.3), new GHPoint(-0.9, 1.2), new GHPoint(0.4, -0.4));
+        EdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
+        SnapBatch batch = new SnapBatch(index, graph.getBounds(), points, filter);
+        assertEquals(3, batch.size());
+        for (GHPoint point : points) {
+            QueryResult expected = index.findClosest(point.lat, point.lon, filter);
+            QueryResult result = batch.lookup(point, DefaultEdgeFilter.allEdges(encoder));
+            assertNotSame(batch.get(point), result);
+            assertEquals(expected.getClosestNode(), result.getClosestNode());
+            assertEquals(expected.getClosestEdge().getEdge(), result.getClosestEdge().getEdge());
+            assertEquals(expected.getSnappedPosition(), result.getSnappedPosition());
+            assertEquals(expected.getSnappedPoint(), result.getSnappedPoint());
+            assertEquals(expected.getQueryDistance(), result.getQueryDistance(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testQueryGraphDoesNotChangeBatch() {
+        GHPoint point = new GHPoint(-0.2, 0.3);
+        SnapBatch batch = new SnapBatch(index, graph.getBounds(), Collections.singletonList(point),
+                DefaultEdgeFilter.allEdges(encoder));
+        int closestNode = batch.get(point).getClosestNode();
+        QueryResult result = batch.lookup(point, DefaultEdgeFilter.allEdges(encoder));
+        new QueryGraph(graph).lookup(Collections.singletonList(result));
+        // the snapped point is on the edge, so the copy now points to a virtual node
+        assertEquals(graph.getNodes(), result.getClosestNode());
+        assertEquals(closestNode, batch.get(point).getClosestNode());
+        assertEquals(QueryResult.Position.EDGE, batch.get(point).getSnappedPosition());
+    }
+
+    @Test
+    public void testOtherLookups() {
+        // points which are not part of the batch and points of another filter have to be looked up in the index
+        GHPoint point = new GHPoint(-0.2, 0.3);
+        SnapBatch batch = new SnapBatch(index, graph.getBounds(), Collections.singletonList(point),
+                DefaultEdgeFilter.outEdges(encoder));
+        assertNull(batch.get(new GHPoint(0.4, -0.4)));
+        assertNull(batch.lookup(new GHPoint(0.4, -0.4), DefaultEdgeFilter.outEdges(encoder)));
+        assertNull(batch.lookup(point, EdgeFilter.ALL_EDGES));
+        assertNotNull(batch.lookup(point, DefaultEdgeFilter.outEdges(encoder)));
+    }
+}
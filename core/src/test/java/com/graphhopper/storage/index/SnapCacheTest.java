@@ -0,0 +1,174 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.json.geo.JsonFeature;
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.change.ChangeGraphHelper;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.shapes.BBox;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SnapCacheTest {
+    private final EncodingManager em = new EncodingManager("car");
+    private final FlagEncoder encoder = em.getEncoder("car");
+    private GraphHopperStorage graph;
+    private LocationIndex index;
+
+    @Before
+    public void setUp() {
+        //  0------\
+        // /|       \
+        // |1----3-\|
+        // |____/   4
+        // 2-------/
+        graph = new GraphBuilder(em).create();
+        long flags = encoder.setProperties(50, true, true);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0.5, -0.5);
+        na.setNode(1, -0.5, -0.5);
+        na.setNode(2, -1, -1);
+        na.setNode(3, -0.4, 0.9);
+        na.setNode(4, -0.6, 1.6);
+        graph.edge(0, 1, 1, true).setFlags(flags);
+        graph.edge(0, 2, 1, true).setFlags(flags);
+        graph.edge(0, 4, 1, true).setFlags(flags);
+        graph.edge(1, 3, 1, true).setFlags(flags);
+        graph.edge(2, 3, 1, true).setFlags(flags);
+        graph.edge(2, 4, 1, true).setFlags(flags);
+        graph.edge(3, 4, 1, true).setFlags(flags);
+        index = new LocationIndexTree(graph, new RAMDirectory()).setResolution(500000).prepareIndex();
+    }
+
+    @Test
+    public void testSameResultsAsIndex() {
+        SnapCache cache = new SnapCache(index, 100, 1e-5);
+        EdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
+        QueryResult expected = index.findClosest(-0.200005, 0.300005, filter);
+        for (int i = 0; i < 3; i++) {
+            QueryResult result = cache.findClosest(-0.200005, 0.300005, DefaultEdgeFilter.allEdges(encoder));
+            assertEquals(expected.getClosestNode(), result.getClosestNode());
+            assertEquals(expected.getClosestEdge().getEdge(), result.getClosestEdge().getEdge());
+            assertEquals(expected.getSnappedPosition(), result.getSnappedPosition());
+            assertEquals(expected.getSnappedPoint(), result.getSnappedPoint());
+            assertEquals(expected.getQueryDistance(), result.getQueryDistance(), 1e-6);
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(2 / 3d, cache.getHitRate(), 1e-6);
+
+        // same cell but the query point of the caller
+        QueryResult result = cache.findClosest(-0.200002, 0.300008, filter);
+        assertEquals(3, cache.getHits());
+        assertEquals(-0.200002, result.getQueryPoint().lat, 1e-9);
+        assertEquals(expected.getClosestNode(), result.getClosestNode());
+
+        // another filter is another entry
+        cache.findClosest(-0.200005, 0.300005, DefaultEdgeFilter.outEdges(encoder));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testQueryGraphDoesNotChangeCache() {
+        SnapCache cache = new SnapCache(index, 100, 1e-5);
+        EdgeFilter filter = DefaultEdgeFilter.allEdges(encoder);
+        QueryResult first = cache.findClosest(-0.2, 0.3, filter);
+        int closestNode = first.getClosestNode();
+        new QueryGraph(graph).lookup(Collections.singletonList(first));
+        // the snapped point is on the edge, so the result now points to a virtual node
+        assertEquals(graph.getNodes(), first.getClosestNode());
+
+        QueryResult second = cache.findClosest(-0.2, 0.3, filter);
+        assertNotSame(first, second);
+        assertEquals(closestNode, second.getClosestNode());
+        assertEquals(QueryResult.Position.EDGE, second.getSnappedPosition());
+    }
+
+    @Test
+    public void testBounded() {
+        SnapCache cache = new SnapCache(index, 16, 1e-5);
+        for (int i = 0; i < 200; i++) {
+            cache.findClosest(-0.9 + i * 0.005, 0.1, EdgeFilter.ALL_EDGES);
+        }
+        assertTrue(cache.size() <= 16);
+        assertEquals(200, cache.getMisses());
+    }
+
+    @Test
+    public void testOtherFiltersUseIndex() {
+        SnapCache cache = new SnapCache(index, 100, 1e-5);
+        EdgeFilter filter = new EdgeFilter() {
+            @Override
+            public boolean accept(EdgeIteratorState edgeState) {
+                return true;
+            }
+        };
+        assertEquals(index.findClosest(0.4, -0.4, filter).getClosestNode(),
+                cache.findClosest(0.4, -0.4, filter).getClosestNode());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testClearedByGraphChange() {
+        SnapCache cache = new SnapCache(index, 100, 1e-5);
+        cache.findClosest(-0.2, 0.3, DefaultEdgeFilter.allEdges(encoder));
+        assertEquals(1, cache.size());
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("access", false);
+        JsonFeature feature = new JsonFeature("1", "bbox", new BBox(-2, 2, -2, 2), null, props);
+        long updates = new ChangeGraphHelper(graph, cache).applyChanges(em, Collections.singletonList(feature));
+        assertTrue(updates > 0);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPrecision() {
+        for (double precision : new double[]{0, -1e-5, 1e-8, Double.NaN}) {
+            try {
+                new SnapCache(index, 100, precision);
+                fail("precision " + precision + " accepted");
+            } catch (IllegalArgumentException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("at least 1.0E-7"));
+            }
+        }
+
+        SnapCache cache = new SnapCache(index, 100, 1e-7);
+        cache.findClosest(-0.2, 0.3, DefaultEdgeFilter.allEdges(encoder));
+        cache.findClosest(-0.2, 0.3000001, DefaultEdgeFilter.allEdges(encoder));
+        assertEquals(2, cache.size());
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.util;
 
+import com.carrotsearch.hppc.IntIndexedContainer;
 import com.graphhopper.coll.GHIntLongHashMap;
 import com.graphhopper.routing.util.CarFlagEncoder;
 import com.graphhopper.routing.util.EncodingManager;
@@ -25,6 +26,8 @@ import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.storage.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -92,6 +95,54 @@ public class GHUtilityTest {
         assertEquals(4.6, na.getLatitude(3), 1e-4); // 8        
     }
 
+    @Test
+    public void testSortHilbert() {
+        Graph g = initUnsorted(createGraph());
+        g.edge(6, 6, 1, true);
+        IntIndexedContainer order = GHUtility.createHilbertOrder(g);
+        Graph newG = createGraph();
+        IntIndexedContainer newToOldEdges = GHUtility.copySorted(g, newG, order);
+        assertEquals(g.getNodes(), newG.getNodes());
+        assertEquals(g.getAllEdges().length(), newG.getAllEdges().length());
+        for (int node = 0; node < g.getNodes(); node++) {
+            assertEquals(g.getNodeAccess().getLat(node), newG.getNodeAccess().getLat(order.get(node)), 1e-6);
+        }
+
+        int lastNode = 0;
+        for (int edge = 0; edge < newToOldEdges.size(); edge++) {
+            EdgeIteratorState oldEdge = g.getEdgeIteratorState(newToOldEdges.get(edge), Integer.MIN_VALUE);
+            EdgeIteratorState newEdge = newG.getEdgeIteratorState(edge, order.get(oldEdge.getAdjNode()));
+            assertEquals(order.get(oldEdge.getBaseNode()), newEdge.getBaseNode());
+            assertEquals(order.get(oldEdge.getAdjNode()), newEdge.getAdjNode());
+            assertEquals(oldEdge.getFlags(), newEdge.getFlags());
+            assertEquals(oldEdge.getDistance(), newEdge.getDistance(), 1e-6);
+            // the edges are ordered by their first node
+            int node = Math.min(newEdge.getBaseNode(), newEdge.getAdjNode());
+            assertTrue(node >= lastNode);
+            lastNode = node;
+        }
+    }
+
+    @Test
+    public void testHilbertIndex() {
+        // the first 16 indices fill the lower left 4x4 cells and every step moves to a neighbor
+        int[] xs = new int[16];
+        int[] ys = new int[16];
+        Arrays.fill(xs, -1);
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                int index = (int) GHUtility.calcHilbertIndex(x, y);
+                assertEquals(-1, xs[index]);
+                xs[index] = x;
+                ys[index] = y;
+            }
+        }
+        for (int i = 1; i < 16; i++) {
+            assertEquals(1, Math.abs(xs[i] - xs[i - 1]) + Math.abs(ys[i] - ys[i - 1]));
+        }
+        assertEquals((1L << 32) - 1, GHUtility.calcHilbertIndex((1 << 16) - 1, 0));
+    }
+
     @Test
     public void testSortDirected() {
         Graph g = createGraph();
@@ -19,6 +19,7 @@ function printBashUsage {
   echo "Usage:"
   echo "-a | --action <action>    must be one the following actions:"
   echo "     --action import      creates the graph cache only, used for later faster starts"
+  echo "     --action import-scores joins the running scores of the --scores CSV file into the graph cache"
   echo "     --action web         starts a local server for user access at localhost:8989 and API access at localhost:8989/route"
   echo "     --action build       creates the graphhopper web JAR"
   echo "     --action clean       removes all JARs, necessary if you need to use the latest source (e.g. after switching the branch etc)"
@@ -33,6 +34,8 @@ function printBashUsage {
   echo "--jar <file>              specify the jar file (useful if you want to reuse this script for custom builds)"
   echo "-o | --graph-cache <dir>  directory for graph cache output"
   echo "-p | --profiles <string>  comma separated list of vehicle profiles"
+  echo "--scores <file>           CSV file with the running scores per OSM way, used for import-scores"
+  echo "--scores-delta            replace only the scores of the ways listed in the --scores file"
   echo "--port <port>             start web server at specific port"
   echo "-v | --version            print version"
 }
@@ -54,6 +57,8 @@ while [ ! -z $1 ]; do
     -o|--graph-cache) GRAPH="$2"; shift 2;;
     -p|--profiles) GH_WEB_OPTS="$GH_WEB_OPTS -Dgraphhopper.graph.flag_encoders=$2"; shift 2;;
     --port) GH_WEB_OPTS="$GH_WEB_OPTS -Ddw.server.applicationConnectors[0].port=$2"; shift 2;;
+    --scores) SCORES="$2"; shift 2;;
+    --scores-delta) SCORES_DELTA="--delta"; shift 1;;
     -v|--version) echo $VERSION
     	exit 2;;
     # forward VM options, here we assume no spaces ie. just one parameter!?
@@ -264,6 +269,10 @@ elif [ "$ACTION" = "import" ]; then
   "$JAVA" $JAVA_OPTS -Dgraphhopper.datareader.file="$OSM_FILE" -Dgraphhopper.graph.location="$GRAPH" \
          $GH_IMPORT_OPTS -jar "$JAR" import $CONFIG
 
+elif [ "$ACTION" = "import-scores" ]; then
+  "$JAVA" $JAVA_OPTS -Dgraphhopper.datareader.file="$OSM_FILE" -Dgraphhopper.graph.location="$GRAPH" \
+         $GH_IMPORT_OPTS -jar "$JAR" import-scores --scores "$SCORES" $SCORES_DELTA $CONFIG
+
 elif [ "$ACTION" = "torture" ]; then
   execMvn --projects tools -am -DskipTests clean package
   JAR=tools/target/graphhopper-tools-$VERSION-jar-with-dependencies.jar
@@ -17,9 +17,9 @@
  */
 package com.graphhopper.isochrone.algorithm;
 
-import com.carrotsearch.hppc.IntObjectHashMap;
 import com.carrotsearch.hppc.procedures.IntObjectProcedure;
-import com.graphhopper.coll.GHIntObjectHashMap;
+import com.graphhopper.coll.GHIntObjectVersionedHashMap;
+import com.graphhopper.coll.MinHeapWithUpdate;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.util.TraversalMode;
@@ -60,8 +60,9 @@ public class Isochrone extends AbstractRoutingAlgorithm {
         }
     }
 
-    private IntObjectHashMap<IsoLabel> fromMap;
-    private PriorityQueue<IsoLabel> fromHeap;
+    private GHIntObjectVersionedHashMap<IsoLabel> fromMap;
+    // contains the indices of the labels in fromMap
+    private MinHeapWithUpdate fromHeap;
     private IsoLabel currEdge;
     private int visitedNodes;
     private double limit = -1;
@@ -71,8 +72,8 @@ public class Isochrone extends AbstractRoutingAlgorithm {
 
     public Isochrone(Graph g, Weighting weighting, boolean reverseFlow) {
         super(g, weighting, TraversalMode.NODE_BASED);
-        fromHeap = new PriorityQueue<>(1000);
-        fromMap = new GHIntObjectHashMap<>(1000);
+        fromHeap = new MinHeapWithUpdate(1000);
+        fromMap = new GHIntObjectVersionedHashMap<>(1000);
         this.reverseFlow = reverseFlow;
     }
 
@@ -201,20 +202,25 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 double tmpDistance = iter.getDistance() + currEdge.distance;
                 long tmpTime = weighting.calcMillis(iter, reverseFlow, currEdge.edge) + currEdge.time;
                 int tmpNode = iter.getAdjNode();
-                IsoLabel nEdge = fromMap.get(tmpNode);
-                if (nEdge == null) {
-                    nEdge = new IsoLabel(iter.getEdge(), tmpNode, tmpWeight, tmpTime, tmpDistance);
+                int index = fromMap.indexOf(tmpNode);
+                if (index < 0) {
+                    IsoLabel nEdge = new IsoLabel(iter.getEdge(), tmpNode, tmpWeight, tmpTime, tmpDistance);
                     nEdge.parent = currEdge;
-                    fromMap.put(tmpNode, nEdge);
-                    fromHeap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    fromHeap.remove(nEdge);
-                    nEdge.edge = iter.getEdge();
-                    nEdge.weight = tmpWeight;
-                    nEdge.distance = tmpDistance;
-                    nEdge.time = tmpTime;
-                    nEdge.parent = currEdge;
-                    fromHeap.add(nEdge);
+                    fromMap.indexInsert(index, tmpNode, nEdge);
+                    fromHeap.push(fromMap.size() - 1, tmpWeight);
+                } else {
+                    IsoLabel nEdge = fromMap.indexGet(index);
+                    if (nEdge.weight > tmpWeight) {
+                        nEdge.edge = iter.getEdge();
+                        nEdge.weight = tmpWeight;
+                        nEdge.distance = tmpDistance;
+                        nEdge.time = tmpTime;
+                        nEdge.parent = currEdge;
+                        if (fromHeap.contains(index))
+                            fromHeap.update(index, tmpWeight);
+                        else
+                            fromHeap.push(index, tmpWeight);
+                    }
                 }
             }
 
@@ -222,10 +228,7 @@ public class Isochrone extends AbstractRoutingAlgorithm {
                 break;
             }
 
-            currEdge = fromHeap.poll();
-            if (currEdge == null) {
-                throw new AssertionError("Empty edge cannot happen");
-            }
+            currEdge = fromMap.indexGet(fromHeap.poll());
         }
     }
 
@@ -1,13 +1,14 @@
 package com.graphhopper.isochrone.algorithm;
 
+import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.routing.weighting.AbstractAdjustedWeighting;
 import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.Weighting;
-import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.GraphExtension;
-import com.graphhopper.storage.GraphHopperStorage;
-import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.*;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 import org.junit.After;
 import org.junit.Before;
@@ -16,8 +17,9 @@ import org.junit.Test;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.*;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * @author Peter Karich
@@ -83,4 +85,110 @@ public class IsochroneTest {
         res = instance.search(0, 5);
         assertEquals("[[0], [4], [], [6], [1, 7]]", res.toString());
     }
+
+    @Test
+    public void testReloadScoresWhileRunning() throws Exception {
+        EncodingManager runningEM = new EncodingManager("running");
+        final FlagEncoder runningEncoder = runningEM.getEncoder("running");
+        final GraphHopperStorage runningGraph = new GraphHopperStorage(Collections.<Weighting>emptyList(),
+                new RAMDirectory(), runningEM, false, new GraphExtension.NoOpExtension());
+        runningGraph.create(1000);
+        for (int node = 0; node < 10; node++) {
+            runningGraph.edge(node, node + 1).setDistance(100).setFlags(runningEncoder.setProperties(10, true, true));
+        }
+        final GraphHopper hopper = new LoadedGraphHopper(runningEM, runningGraph);
+        EdgeScoreStorage oldScores = hopper.getEdgeScoreStorage();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Set<Integer>>> isochrone = executor.submit(new Callable<List<Set<Integer>>>() {
+                @Override
+                public List<Set<Integer>> call() {
+                    return hopper.runLocked(new Callable<List<Set<Integer>>>() {
+                        @Override
+                        public List<Set<Integer>> call() throws Exception {
+                            Weighting weighting = hopper.createWeighting(new HintsMap("mindful").setVehicle("running"),
+                                    runningEncoder, runningGraph);
+                            Isochrone instance = new Isochrone(runningGraph, new BlockingWeighting(weighting, started, proceed), false);
+                            instance.setDistanceLimit(1000);
+                            return instance.search(0, 1);
+                        }
+                    });
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            final EdgeScoreStorage newScores = new EdgeScoreStorage(new RAMDirectory()).create(runningGraph.getAllEdges().length());
+            Future<?> reload = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    hopper.swapEdgeScoreStorage(newScores);
+                }
+            });
+            // the swap waits for the running isochrone and does not free the scores it reads
+            try {
+                reload.get(200, TimeUnit.MILLISECONDS);
+                fail("scores were swapped while the isochrone was running");
+            } catch (TimeoutException ex) {
+                // expected
+            }
+            assertFalse(oldScores.isClosed());
+
+            proceed.countDown();
+            assertFalse(isochrone.get(10, TimeUnit.SECONDS).get(0).isEmpty());
+            reload.get(10, TimeUnit.SECONDS);
+            assertTrue(oldScores.isClosed());
+            assertSame(newScores, hopper.getEdgeScoreStorage());
+        } finally {
+            proceed.countDown();
+            executor.shutdownNow();
+            hopper.close();
+        }
+    }
+
+    private static class LoadedGraphHopper extends GraphHopper {
+        LoadedGraphHopper(EncodingManager em, GraphHopperStorage graph) {
+            setStoreOnFlush(false);
+            setEncodingManager(em);
+            setCHEnabled(false);
+            loadGraph(graph);
+        }
+    }
+
+    /**
+     * Blocks the search at its first edge until it may proceed.
+     */
+    private static class BlockingWeighting extends AbstractAdjustedWeighting {
+        private final CountDownLatch started;
+        private final CountDownLatch proceed;
+
+        BlockingWeighting(Weighting superWeighting, CountDownLatch started, CountDownLatch proceed) {
+            super(superWeighting);
+            this.started = started;
+            this.proceed = proceed;
+        }
+
+        @Override
+        public double getMinWeight(double distance) {
+            return superWeighting.getMinWeight(distance);
+        }
+
+        @Override
+        public double calcWeight(EdgeIteratorState edgeState, boolean reverse, int prevOrNextEdgeId) {
+            started.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            return superWeighting.calcWeight(edgeState, reverse, prevOrNextEdgeId);
+        }
+
+        @Override
+        public String getName() {
+            return "blocking";
+        }
+    }
 }
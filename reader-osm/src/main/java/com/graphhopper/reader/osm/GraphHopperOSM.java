@@ -22,7 +22,9 @@ import com.graphhopper.json.geo.JsonFeatureCollection;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.lm.PrepareLandmarks;
 import com.graphhopper.routing.util.spatialrules.*;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.shapes.Polygon;
 
 import java.util.List;
@@ -35,6 +37,8 @@ import java.util.List;
 public class GraphHopperOSM extends GraphHopper {
 
     private final JsonFeatureCollection landmarkSplittingFeatureCollection;
+    private int importThreads = 1;
+    private DAType nodeMapDAType;
 
     public GraphHopperOSM() {
         this(null);
@@ -45,9 +49,42 @@ public class GraphHopperOSM extends GraphHopper {
         this.landmarkSplittingFeatureCollection = landmarkSplittingFeatureCollection;
     }
 
+    @Override
+    public GraphHopper init(CmdArgs args) {
+        super.init(args);
+        importThreads = args.getInt("datareader.import_threads", importThreads);
+        String nodeMapDATypeStr = args.get("datareader.node_map.dataaccess", "");
+        if (!nodeMapDATypeStr.isEmpty())
+            nodeMapDAType = DAType.fromString(nodeMapDATypeStr);
+        return this;
+    }
+
     @Override
     protected DataReader createReader(GraphHopperStorage ghStorage) {
-        return initDataReader(new OSMReader(ghStorage));
+        OSMReader reader = new OSMReader(ghStorage).setImportThreads(importThreads);
+        if (nodeMapDAType != null)
+            reader.setNodeMapDAType(nodeMapDAType);
+        return initDataReader(reader);
+    }
+
+    /**
+     * Sets the number of threads which encode the ways, simplify their geometries and look up the
+     * elevation while importing. The imported graph is the same for every number of threads.
+     */
+    public GraphHopperOSM setImportThreads(int importThreads) {
+        ensureNotLoaded();
+        this.importThreads = importThreads;
+        return this;
+    }
+
+    /**
+     * Keeps the OSM node IDs in sorted runs of the specified type while importing, e.g. MMAP to
+     * import large files with a small heap. By default they are kept on the heap.
+     */
+    public GraphHopperOSM setNodeMapDAType(DAType nodeMapDAType) {
+        ensureNotLoaded();
+        this.nodeMapDAType = nodeMapDAType;
+        return this;
     }
 
     public String getOSMFile() {
@@ -38,6 +38,11 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
 import static com.graphhopper.util.Helper.nf;
 
@@ -62,6 +67,11 @@ import static com.graphhopper.util.Helper.nf;
  * When creating an edge the pillar node information from the intermediate data structure will be
  * stored in the way geometry of that edge.
  * <p>
+ * With more than one import thread the elements are processed in batches: the filtering and tag
+ * encoding of the ways, the elevation lookup of the nodes and the simplification of the way
+ * geometries run in parallel, while only the changes of the node maps and the graph are done by
+ * the reading thread in the original order. So the graph is identical to a single threaded import.
+ * <p>
  *
  * @author Peter Karich
  */
@@ -72,9 +82,12 @@ public class OSMReader implements DataReader {
     // tower node is <= -3
     protected static final int TOWER_NODE = -2;
     private static final Logger LOGGER = LoggerFactory.getLogger(OSMReader.class);
+    private static final int BATCH_SIZE = 10_000;
     private final GraphStorage ghStorage;
     private final Graph graph;
     private final NodeAccess nodeAccess;
+    // null if the graph does not store the OSM way ID of every edge
+    private final OSMWayIdStorage osmWayIds;
     private final LongIndexedContainer barrierNodeIds = new LongArrayList();
     private final DistanceCalc distCalc = Helper.DIST_EARTH;
     private final DistanceCalc3D distCalc3D = Helper.DIST_3D;
@@ -89,6 +102,12 @@ public class OSMReader implements DataReader {
     private long skippedLocations;
     private final EncodingManager encodingManager;
     private int workerThreads = 2;
+    private int importThreads = 1;
+    // null for a single threaded import
+    private ExecutorService importExecutor;
+    // the edges and geometries created by the current batch, simplified and stored after the batch
+    private List<EdgeIteratorState> pendingEdges;
+    private List<PointList> pendingGeometries;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
     // very slow: new SparseLongLongArray
@@ -97,9 +116,10 @@ public class OSMReader implements DataReader {
     // memory overhead due to open addressing and full rehash:
     //        nodeOsmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
     // smaller memory overhead for bigger data sets because of avoiding a "rehash"
+    // no heap per entry for continent sized data sets, but slower: sorted runs, see setNodeMapDAType
     // remember how many times a node was used to identify tower nodes
     private LongIntMap osmNodeIdToInternalNodeMap;
-    private GHLongLongHashMap osmNodeIdToNodeFlagsMap;
+    private GHLongLongMap osmNodeIdToNodeFlagsMap;
     private GHLongLongHashMap osmWayIdToRouteWeightMap;
     // stores osm way ids used by relations to identify which edge ids needs to be mapped later
     private GHLongHashSet osmWayIdSet = new GHLongHashSet();
@@ -119,6 +139,7 @@ public class OSMReader implements DataReader {
         this.graph = ghStorage;
         this.nodeAccess = graph.getNodeAccess();
         this.encodingManager = ghStorage.getEncodingManager();
+        this.osmWayIds = ghStorage.getOSMWayIds();
 
         osmNodeIdToInternalNodeMap = new GHLongIntBTree(200);
         osmNodeIdToNodeFlagsMap = new GHLongLongHashMap(200, .5f);
@@ -137,13 +158,24 @@ public class OSMReader implements DataReader {
         if (!osmFile.exists())
             throw new IllegalStateException("Your specified OSM file does not exist:" + osmFile.getAbsolutePath());
 
-        StopWatch sw1 = new StopWatch().start();
-        preProcess(osmFile);
-        sw1.stop();
+        if (importThreads > 1)
+            importExecutor = Executors.newFixedThreadPool(importThreads);
 
-        StopWatch sw2 = new StopWatch().start();
-        writeOsm2Graph(osmFile);
-        sw2.stop();
+        StopWatch sw1 = new StopWatch().start();
+        StopWatch sw2 = new StopWatch();
+        try {
+            preProcess(osmFile);
+            sw1.stop();
+
+            sw2.start();
+            writeOsm2Graph(osmFile);
+            sw2.stop();
+        } finally {
+            if (importExecutor != null) {
+                importExecutor.shutdownNow();
+                importExecutor = null;
+            }
+        }
 
         LOGGER.info("time pass1:" + (int) sw1.getSeconds() + "s, "
                 + "pass2:" + (int) sw2.getSeconds() + "s, "
@@ -158,23 +190,16 @@ public class OSMReader implements DataReader {
         try (OSMInput in = openOsmInputFile(osmFile)) {
             long tmpWayCounter = 1;
             long tmpRelationCounter = 1;
+            List<ReaderWay> wayBatch = new ArrayList<>();
             ReaderElement item;
             while ((item = in.getNext()) != null) {
-                if (item.isType(ReaderElement.WAY)) {
-                    final ReaderWay way = (ReaderWay) item;
-                    boolean valid = filterWay(way);
-                    if (valid) {
-                        LongIndexedContainer wayNodes = way.getNodes();
-                        int s = wayNodes.size();
-                        for (int index = 0; index < s; index++) {
-                            prepareHighwayNode(wayNodes.get(index));
-                        }
+                if (!item.isType(ReaderElement.WAY) && !wayBatch.isEmpty())
+                    tmpWayCounter = preProcessWays(wayBatch, tmpWayCounter);
 
-                        if (++tmpWayCounter % 10_000_000 == 0) {
-                            LOGGER.info(nf(tmpWayCounter) + " (preprocess), osmIdMap:" + nf(getNodeMap().getSize()) + " ("
-                                    + getNodeMap().getMemoryUsage() + "MB) " + Helper.getMemInfo());
-                        }
-                    }
+                if (item.isType(ReaderElement.WAY)) {
+                    wayBatch.add((ReaderWay) item);
+                    if (importExecutor == null || wayBatch.size() >= BATCH_SIZE)
+                        tmpWayCounter = preProcessWays(wayBatch, tmpWayCounter);
                 } else if (item.isType(ReaderElement.RELATION)) {
                     final ReaderRelation relation = (ReaderRelation) item;
                     if (!relation.isMetaRelation() && relation.hasTag("type", "route"))
@@ -193,11 +218,76 @@ public class OSMReader implements DataReader {
                 }
 
             }
+            preProcessWays(wayBatch, tmpWayCounter);
         } catch (Exception ex) {
             throw new RuntimeException("Problem while parsing file", ex);
         }
     }
 
+    /**
+     * Filters the specified ways in parallel and marks the nodes of the accepted ways in order.
+     */
+    private long preProcessWays(List<ReaderWay> ways, long tmpWayCounter) {
+        final boolean[] valid = new boolean[ways.size()];
+        runParallel(ways.size(), i -> valid[i] = filterWay(ways.get(i)));
+        for (int i = 0; i < valid.length; i++) {
+            if (!valid[i])
+                continue;
+
+            LongIndexedContainer wayNodes = ways.get(i).getNodes();
+            int s = wayNodes.size();
+            for (int index = 0; index < s; index++) {
+                prepareHighwayNode(wayNodes.get(index));
+            }
+
+            if (++tmpWayCounter % 10_000_000 == 0) {
+                LOGGER.info(nf(tmpWayCounter) + " (preprocess), osmIdMap:" + nf(getNodeMap().getSize()) + " ("
+                        + getNodeMap().getMemoryUsage() + "MB) " + Helper.getMemInfo());
+            }
+        }
+        ways.clear();
+        return tmpWayCounter;
+    }
+
+    /**
+     * Runs the task for all indices from 0 to size-1 in the import threads and waits until all are
+     * finished. Without import threads the task runs in the calling thread. The task may only read
+     * the node maps: concurrent gets are safe for all of them, puts are not.
+     */
+    private void runParallel(int size, IntConsumer task) {
+        if (importExecutor == null || size < 2 * importThreads) {
+            for (int i = 0; i < size; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+
+        // smaller chunks than threads to balance ways of different complexity
+        int chunk = Math.max(1, size / (4 * importThreads));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < size; from += chunk) {
+            final int start = from, end = Math.min(size, from + chunk);
+            futures.add(importExecutor.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    task.accept(i);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
     private void prepareRestrictionRelation(ReaderRelation relation) {
         OSMTurnRelation turnRelation = createTurnRelation(relation);
         if (turnRelation != null) {
@@ -253,13 +343,30 @@ public class OSMReader implements DataReader {
         long counter = 1;
         try (OSMInput in = openOsmInputFile(osmFile)) {
             LongIntMap nodeFilter = getNodeMap();
+            // without elevation there is nothing to do in parallel for nodes
+            boolean batchNodes = importExecutor != null && eleProvider != ElevationProvider.NOOP;
+            boolean batchWays = importExecutor != null;
+            List<ReaderNode> nodeBatch = new ArrayList<>();
+            List<ReaderWay> wayBatch = new ArrayList<>();
 
             ReaderElement item;
             while ((item = in.getNext()) != null) {
+                // keep the order of the elements
+                if (item.getType() != ReaderElement.NODE && !nodeBatch.isEmpty())
+                    processNodes(nodeBatch);
+                if (item.getType() != ReaderElement.WAY && !wayBatch.isEmpty())
+                    processWays(wayBatch);
+
                 switch (item.getType()) {
                     case ReaderElement.NODE:
                         if (nodeFilter.get(item.getId()) != EMPTY_NODE) {
-                            processNode((ReaderNode) item);
+                            if (batchNodes) {
+                                nodeBatch.add((ReaderNode) item);
+                                if (nodeBatch.size() >= BATCH_SIZE)
+                                    processNodes(nodeBatch);
+                            } else {
+                                processNode((ReaderNode) item);
+                            }
                         }
                         break;
 
@@ -268,7 +375,13 @@ public class OSMReader implements DataReader {
                             LOGGER.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((ReaderWay) item);
+                        if (batchWays) {
+                            wayBatch.add((ReaderWay) item);
+                            if (wayBatch.size() >= BATCH_SIZE)
+                                processWays(wayBatch);
+                        } else {
+                            processWay((ReaderWay) item);
+                        }
                         break;
                     case ReaderElement.RELATION:
                         if (relationStart < 0) {
@@ -286,6 +399,8 @@ public class OSMReader implements DataReader {
                     LOGGER.info(nf(counter) + ", locs:" + nf(locations) + " (" + skippedLocations + ") " + Helper.getMemInfo());
                 }
             }
+            processNodes(nodeBatch);
+            processWays(wayBatch);
 
             if (in.getUnprocessedElements() > 0)
                 throw new IllegalStateException("Still unprocessed elements in reader queue " + in.getUnprocessedElements());
@@ -308,18 +423,68 @@ public class OSMReader implements DataReader {
      * Process properties, encode flags and create edges for the way.
      */
     void processWay(ReaderWay way) {
-        if (way.getNodes().size() < 2)
+        long wayFlags = encodeWay(way);
+        if (wayFlags == 0)
             return;
 
+        for (EdgeIteratorState edge : addWay(way, wayFlags)) {
+            encodingManager.applyWayTags(way, edge);
+        }
+    }
+
+    /**
+     * Same as processWay for every way of the batch. The tags are encoded and the geometries are
+     * simplified in parallel, the edges are added in order.
+     */
+    private void processWays(List<ReaderWay> ways) {
+        final long[] wayFlags = new long[ways.size()];
+        runParallel(ways.size(), i -> wayFlags[i] = encodeWay(ways.get(i)));
+
+        pendingEdges = new ArrayList<>();
+        pendingGeometries = new ArrayList<>();
+        List<Collection<EdgeIteratorState>> wayEdges = new ArrayList<>(ways.size());
+        try {
+            for (int i = 0; i < wayFlags.length; i++) {
+                wayEdges.add(wayFlags[i] == 0 ? Collections.<EdgeIteratorState>emptyList() : addWay(ways.get(i), wayFlags[i]));
+            }
+
+            final List<PointList> geometries = pendingGeometries;
+            if (doSimplify)
+                runParallel(geometries.size(), i -> simplifyAlgo.simplify(geometries.get(i)));
+            // same order of the geometries as for a single threaded import
+            for (int i = 0; i < geometries.size(); i++) {
+                pendingEdges.get(i).setWayGeometry(geometries.get(i));
+            }
+        } finally {
+            pendingEdges = null;
+            pendingGeometries = null;
+        }
+
+        for (int i = 0; i < wayEdges.size(); i++) {
+            for (EdgeIteratorState edge : wayEdges.get(i)) {
+                encodingManager.applyWayTags(ways.get(i), edge);
+            }
+        }
+        ways.clear();
+    }
+
+    /**
+     * Encodes the tags of the way. This only reads the node maps and can be called from several
+     * threads as long as no nodes or edges are added.
+     *
+     * @return the flags of the way or 0 if the way is not used
+     */
+    private long encodeWay(ReaderWay way) {
+        if (way.getNodes().size() < 2)
+            return 0;
+
         // ignore multipolygon geometry
         if (!way.hasTags())
-            return;
-
-        long wayOsmId = way.getId();
+            return 0;
 
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
-            return;
+            return 0;
 
         long relationFlags = getRelFlagsMap().get(way.getId());
 
@@ -349,10 +514,15 @@ public class OSMReader implements DataReader {
             }
         }
 
-        long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
-        if (wayFlags == 0)
-            return;
+        return encodingManager.handleWayTags(way, includeWay, relationFlags);
+    }
 
+    /**
+     * Creates the edges of the way, including the edges of its barriers.
+     */
+    private List<EdgeIteratorState> addWay(ReaderWay way, long wayFlags) {
+        long wayOsmId = way.getId();
+        LongArrayList osmNodeIds = way.getNodes();
         List<EdgeIteratorState> createdEdges = new ArrayList<>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -406,10 +576,7 @@ public class OSMReader implements DataReader {
             // no barriers - simply add the whole way
             createdEdges.addAll(addOSMWay(way.getNodes(), wayFlags, wayOsmId));
         }
-
-        for (EdgeIteratorState edge : createdEdges) {
-            encodingManager.applyWayTags(way, edge);
-        }
+        return createdEdges;
     }
 
     public void processRelation(ReaderRelation relation) throws XMLStreamException {
@@ -515,28 +682,60 @@ public class OSMReader implements DataReader {
     private void processNode(ReaderNode node) {
         if (isInBounds(node)) {
             addNode(node);
-
-            // analyze node tags for barriers
-            if (node.hasTags()) {
-                long nodeFlags = encodingManager.handleNodeTags(node);
-                if (nodeFlags != 0)
-                    getNodeFlagsMap().put(node.getId(), nodeFlags);
-            }
-
+            processNodeTags(node);
             locations++;
         } else {
             skippedLocations++;
         }
     }
 
+    /**
+     * Same as processNode for every node of the batch, but the elevation is looked up in parallel.
+     */
+    private void processNodes(List<ReaderNode> nodes) {
+        final double[] eles = new double[nodes.size()];
+        runParallel(nodes.size(), i -> {
+            ReaderNode node = nodes.get(i);
+            if (isInBounds(node))
+                eles[i] = getElevation(node);
+        });
+
+        for (int i = 0; i < eles.length; i++) {
+            ReaderNode node = nodes.get(i);
+            if (isInBounds(node)) {
+                int nodeType = getNodeMap().get(node.getId());
+                if (nodeType != EMPTY_NODE)
+                    addNode(node, nodeType, eles[i]);
+                processNodeTags(node);
+                locations++;
+            } else {
+                skippedLocations++;
+            }
+        }
+        nodes.clear();
+    }
+
+    private void processNodeTags(ReaderNode node) {
+        // analyze node tags for barriers
+        if (node.hasTags()) {
+            long nodeFlags = encodingManager.handleNodeTags(node);
+            if (nodeFlags != 0)
+                getNodeFlagsMap().put(node.getId(), nodeFlags);
+        }
+    }
+
     boolean addNode(ReaderNode node) {
         int nodeType = getNodeMap().get(node.getId());
         if (nodeType == EMPTY_NODE)
             return false;
 
+        addNode(node, nodeType, getElevation(node));
+        return true;
+    }
+
+    private void addNode(ReaderNode node, int nodeType, double ele) {
         double lat = node.getLat();
         double lon = node.getLon();
-        double ele = getElevation(node);
         if (nodeType == TOWER_NODE) {
             addTowerNode(node.getId(), lat, lon, ele);
         } else if (nodeType == PILLAR_NODE) {
@@ -544,9 +743,11 @@ public class OSMReader implements DataReader {
             getNodeMap().put(node.getId(), nextPillarId + 3);
             nextPillarId++;
         }
-        return true;
     }
 
+    /**
+     * Called from several threads if more than one import thread is used.
+     */
     protected double getElevation(ReaderNode node) {
         return eleProvider.getEle(node.getLat(), node.getLon());
     }
@@ -731,19 +932,29 @@ public class OSMReader implements DataReader {
         EdgeIteratorState iter = graph.edge(fromIndex, toIndex).setDistance(towerNodeDistance).setFlags(flags);
 
         if (nodes > 2) {
-            if (doSimplify)
-                simplifyAlgo.simplify(pillarNodes);
-
-            iter.setWayGeometry(pillarNodes);
+            if (pendingGeometries != null) {
+                // simplified and stored in parallel after the batch
+                pendingEdges.add(iter);
+                pendingGeometries.add(pillarNodes);
+            } else {
+                if (doSimplify)
+                    simplifyAlgo.simplify(pillarNodes);
+
+                iter.setWayGeometry(pillarNodes);
+            }
         }
         storeOsmWayID(iter.getEdge(), wayOsmId);
         return iter;
     }
 
     /**
-     * Stores only osmWayIds which are required for relations
+     * Stores the osmWayId of every edge if the graph has the OSM way ID column, otherwise only the
+     * osmWayIds which are required for relations
      */
     protected void storeOsmWayID(int edgeId, long osmWayId) {
+        if (osmWayIds != null)
+            osmWayIds.setOSMWayId(edgeId, osmWayId);
+
         if (getOsmWayIdSet().contains(osmWayId)) {
             getEdgeIdToOsmWayIdMap().put(edgeId, osmWayId);
         }
@@ -777,6 +988,10 @@ public class OSMReader implements DataReader {
         printInfo("way");
         pillarInfo.clear();
         eleProvider.release();
+        if (osmNodeIdToInternalNodeMap instanceof SortedRunLongIntMap)
+            ((SortedRunLongIntMap) osmNodeIdToInternalNodeMap).close();
+        if (osmNodeIdToNodeFlagsMap instanceof SortedRunLongLongMap)
+            ((SortedRunLongLongMap) osmNodeIdToNodeFlagsMap).close();
         osmNodeIdToInternalNodeMap = null;
         osmNodeIdToNodeFlagsMap = null;
         osmWayIdToRouteWeightMap = null;
@@ -866,7 +1081,7 @@ public class OSMReader implements DataReader {
         return osmNodeIdToInternalNodeMap;
     }
 
-    protected LongLongMap getNodeFlagsMap() {
+    protected GHLongLongMap getNodeFlagsMap() {
         return osmNodeIdToNodeFlagsMap;
     }
 
@@ -893,6 +1108,30 @@ public class OSMReader implements DataReader {
         return this;
     }
 
+    /**
+     * Sets the number of threads which process the ways and nodes of the OSM file, in addition to
+     * the worker threads which only decode PBF blobs. The created graph does not depend on it.
+     */
+    public OSMReader setImportThreads(int importThreads) {
+        if (importThreads < 1)
+            throw new IllegalArgumentException("At least one import thread is required but was " + importThreads);
+
+        this.importThreads = importThreads;
+        return this;
+    }
+
+    /**
+     * Keeps the maps of the OSM node IDs in sorted runs stored in the specified type of DataAccess
+     * instead of on the heap, e.g. for MMAP the heap needs less than a byte per node. Lookups are
+     * slower, so this is only useful for imports which do not fit into the heap otherwise.
+     */
+    public OSMReader setNodeMapDAType(DAType daType) {
+        Directory dir = ghStorage.getDirectory();
+        osmNodeIdToInternalNodeMap = new SortedRunLongIntMap(dir, "osm_node_map", daType, EMPTY_NODE);
+        osmNodeIdToNodeFlagsMap = new SortedRunLongLongMap(dir, "osm_node_flags", daType);
+        return this;
+    }
+
     @Override
     public OSMReader setElevationProvider(ElevationProvider eleProvider) {
         if (eleProvider == null)
@@ -914,7 +1153,7 @@ public class OSMReader implements DataReader {
     private void printInfo(String str) {
         LOGGER.info("finished " + str + " processing." + " nodes: " + graph.getNodes()
                 + ", osmIdMap.size:" + getNodeMap().getSize() + ", osmIdMap:" + getNodeMap().getMemoryUsage() + "MB"
-                + ", nodeFlagsMap.size:" + getNodeFlagsMap().size() + ", relFlagsMap.size:" + getRelFlagsMap().size()
+                + ", nodeFlagsMap.size:" + getNodeFlagsMap().getSize() + ", relFlagsMap.size:" + getRelFlagsMap().size()
                 + ", zeroCounter:" + zeroCounter
                 + " " + Helper.getMemInfo());
     }
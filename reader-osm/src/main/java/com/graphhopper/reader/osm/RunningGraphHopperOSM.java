@@ -1,99 +1,122 @@
 package com.graphhopper.reader.osm;
 
+import com.graphhopper.GraphHopper;
 import com.graphhopper.json.geo.JsonFeatureCollection;
-import com.graphhopper.storage.DataAccess;
-import com.graphhopper.storage.Directory;
-import com.graphhopper.storage.WeightsStorage;
-import com.graphhopper.util.BitUtil;
 import com.graphhopper.reader.DataReader;
-import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.reader.EdgeScoreReader;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.EdgeScoreStorage;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
 
-public class RunningGraphHopperOSM extends GraphHopperOSM {
-
-    private static RunningGraphHopperOSM INSTANCE;
 
-    // mapping of internal edge ID to OSM way ID
-    private DataAccess edgeMapping;
-    private BitUtil bitUtil;
+public class RunningGraphHopperOSM extends GraphHopperOSM {
 
-    private final JsonFeatureCollection landmarkSplittingFeatureCollection;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private String edgeScoresFile = "data/weighting/wayid2weights.csv";
 
-    private RunningGraphHopperOSM() {
+    public RunningGraphHopperOSM() {
         this(null);
     }
 
-    private RunningGraphHopperOSM(JsonFeatureCollection landmarkSplittingFeatureCollection) {
-        super();
-        this.landmarkSplittingFeatureCollection = landmarkSplittingFeatureCollection;
-
-        System.out.println("\n\n\nRunningGraphHopperOSM: init\n\n\n");
-
+    public RunningGraphHopperOSM(JsonFeatureCollection landmarkSplittingFeatureCollection) {
+        super(landmarkSplittingFeatureCollection);
     }
 
-    public static RunningGraphHopperOSM getInstance() {
-        if(INSTANCE == null) {
-            INSTANCE = new RunningGraphHopperOSM();
-        }
-        return INSTANCE;
+    @Override
+    public GraphHopper init(CmdArgs args) {
+        super.init(args);
+        edgeScoresFile = args.get("graph.edge_scores.file", edgeScoresFile);
+        return this;
     }
 
-    public static RunningGraphHopperOSM getInstance(JsonFeatureCollection landmarkSplittingFeatureCollection) {
-        if(INSTANCE == null) {
-            INSTANCE = new RunningGraphHopperOSM(landmarkSplittingFeatureCollection);
-        }
-        return INSTANCE;
+    /**
+     * @return the CSV file with the scores per OSM way
+     */
+    public String getEdgeScoresFile() {
+        return edgeScoresFile;
     }
 
     @Override
-    public boolean load(String graphHopperFolder) {
-        boolean loaded = super.load(graphHopperFolder);
-
-        Directory dir = getGraphHopperStorage().getDirectory();
-        bitUtil = BitUtil.get(dir.getByteOrder());
-        edgeMapping = dir.find("edge_mapping");
-
-        if (loaded) {
-            edgeMapping.loadExisting();
+    protected DataReader importData() throws IOException {
+        DataReader reader = super.importData();
+        // the scores have to be available before the CH and LM preparation
+        if (getEdgeScoreStorage() != null) {
+            File file = new File(edgeScoresFile);
+            if (file.exists())
+                readEdgeScores(file, false);
+            else
+                logger.warn("Edge scores file " + file + " not found, using 0 for all edges. Use import-scores later");
         }
-
-        return loaded;
+        return reader;
     }
 
-    @Override
-    protected DataReader createReader(GraphHopperStorage ghStorage) {
-        OSMReader reader = new OSMReader(ghStorage) {
-
-            {
-                edgeMapping.create(1000);
-            }
-
-            // this method is only in >0.6 protected, before it was private
-            @Override
-            protected void storeOsmWayID(int edgeId, long osmWayId) {
-                super.storeOsmWayID(edgeId, osmWayId);
-
-                long pointer = 8L * edgeId;
-                edgeMapping.ensureCapacity(pointer + 8L);
-
-                edgeMapping.setInt(pointer, bitUtil.getIntLow(osmWayId));
-                edgeMapping.setInt(pointer + 4, bitUtil.getIntHigh(osmWayId));
-            }
-
-            @Override
-            protected void finishedReading() {
-                super.finishedReading();
-
-                edgeMapping.flush();
-            }
-        };
-
-        return initDataReader(reader);
+    /**
+     * Joins the scores of the specified CSV file via the OSM way IDs into the edge scores of the
+     * loaded graph and flushes them. This is a lot faster than a new import as no OSM data needs
+     * to be read and the graph itself is unchanged. Customizable CH preparations of the mindful and
+     * vibrant weightings are customized for the new scores and flushed as well.
+     *
+     * @param delta if true only the scores of the ways listed in the file are replaced
+     * @return the number of updated edges
+     */
+    public int importEdgeScores(File file, boolean delta) throws IOException {
+        ensureWriteAccess();
+        if (getEdgeScoreStorage() == null)
+            throw new IllegalStateException("Edge scores require the running encoder but was " + getEncodingManager());
+        ensureEdgeScoresNotPrepared();
+
+        int updatedEdges = readEdgeScores(file, delta);
+        if (customizeCH())
+            getGraphHopperStorage().flush();
+        getEdgeScoreStorage().flush();
+        getGraphHopperStorage().getProperties().flush();
+        return updatedEdges;
     }
 
-    public long getOSMWay(int internalEdgeId) {
-        long pointer = 8L * internalEdgeId;
-        return bitUtil.combineIntsToLong(edgeMapping.getInt(pointer), edgeMapping.getInt(pointer + 4L));
+    /**
+     * Reads the scores of the specified CSV file into a new off-heap storage which replaces the
+     * current scores via swapEdgeScoreStorage. Unlike importEdgeScores this can be called while
+     * requests are served, as neither the graph nor the current scores are changed.
+     *
+     * @param delta if true the scores of the ways which are not listed in the file are copied from
+     *              the current scores
+     */
+    public EdgeScoreStorage readEdgeScoreSnapshot(File file, boolean delta) throws IOException {
+        EdgeScoreStorage current = getEdgeScoreStorage();
+        if (current == null)
+            throw new IllegalStateException("Edge scores require the running encoder but was " + getEncodingManager());
+        ensureEdgeScoresNotPrepared();
+
+        // same location and name as the current scores so that a flush after the swap persists them
+        EdgeScoreStorage edgeScores = new EdgeScoreStorage(new GHDirectory(getGraphHopperLocation(), DAType.UNSAFE_STORE)).
+                create(0);
+        try {
+            if (delta)
+                current.copyTo(edgeScores);
+
+            int edges = getGraphHopperStorage().getAllEdges().length();
+            new EdgeScoreReader(edgeScores, edges, this::getOSMWay).setDelta(delta).read(file);
+            return edgeScores;
+        } catch (IOException | RuntimeException ex) {
+            // free the off-heap memory
+            edgeScores.close();
+            throw ex;
+        }
     }
 
+    private int readEdgeScores(File file, boolean delta) throws IOException {
+        int edges = getGraphHopperStorage().getAllEdges().length();
+        int updatedEdges = new EdgeScoreReader(getEdgeScoreStorage(), edges, this::getOSMWay).
+                setDelta(delta).read(file);
+        getGraphHopperStorage().getProperties().put("edge_scores.import.date", Helper.createFormatter().format(new Date()));
+        return updatedEdges;
+    }
 }
@@ -19,8 +19,12 @@ package com.graphhopper;
 
 import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.DistanceMatrix;
 import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.storage.index.SnapBatch;
 import com.graphhopper.util.*;
+import com.graphhopper.util.Parameters.Algorithms.Loop;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.Parameters.Routing;
@@ -895,6 +899,68 @@ public class GraphHopperIT {
         assertEquals(63, pw.getPoints().size());
     }
 
+    @Test
+    public void testLoop() {
+        GraphHopper tmpHopper = new GraphHopperOSM().init(new CmdArgs().
+                put("datareader.file", osmFile).
+                put("graph.flag_encoders", "car").
+                put(CH.PREPARE + "weightings", "fastest").
+                put(CH.INIT_DISABLING_ALLOWED, true).
+                put(Loop.INIT_MAX_DISTANCE, 5000).
+                put(Loop.INIT_MAX_CANDIDATES, 32)).
+                setStoreOnFlush(true).
+                setGraphHopperLocation(tmpGraphFile);
+        tmpHopper.importOrLoad();
+
+        GHPoint start = new GHPoint(43.741069, 7.426854);
+        GHRequest rq = new GHRequest().addPoint(start).setVehicle("car").setAlgorithm(LOOP);
+        rq.getHints().put(Loop.DISTANCE, 2000);
+
+        // the loops need the flexible mode
+        GHResponse rsp = tmpHopper.route(rq);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains("not supported for CH"));
+
+        rq.getHints().put(CH.DISABLE, true);
+        rsp = tmpHopper.route(rq);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.getAll().size() >= 1 && rsp.getAll().size() <= 3);
+        for (PathWrapper loop : rsp.getAll()) {
+            assertEquals(2000, loop.getDistance(), 1000);
+            PointList points = loop.getPoints();
+            assertEquals(points.getLat(0), points.getLat(points.size() - 1), 1e-6);
+            assertEquals(points.getLon(0), points.getLon(points.size() - 1), 1e-6);
+            assertEquals(3, loop.getWaypoints().size());
+        }
+
+        rq.getHints().put(Loop.MAX_PATHS, 1);
+        assertEquals(1, tmpHopper.route(rq).getAll().size());
+
+        // the request parameters are limited
+        rq.getHints().put(Loop.MAX_PATHS, 0);
+        rsp = tmpHopper.route(rq);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains("max paths"));
+
+        rq.getHints().put(Loop.MAX_PATHS, 3);
+        rq.getHints().put(Loop.CANDIDATES, 100);
+        rsp = tmpHopper.route(rq);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains(Loop.CANDIDATES));
+
+        rq.getHints().put(Loop.CANDIDATES, 16);
+        rq.getHints().put(Loop.DISTANCE, 10000);
+        rsp = tmpHopper.route(rq);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains(Loop.DISTANCE));
+
+        // an additional point is an error
+        rq.getHints().put(Loop.DISTANCE, 2000);
+        rq.addPoint(new GHPoint(43.727687, 7.418737));
+        assertTrue(tmpHopper.route(rq).hasErrors());
+        tmpHopper.close();
+    }
+
     @Test
     public void testPathDetails1216() {
         GraphHopper tmpHopper = new GraphHopperOSM().
@@ -1024,6 +1090,58 @@ public class GraphHopperIT {
         assertEquals(1044, rsp.getBest().getDistance(), 1);
     }
 
+    @Test
+    public void testMatrix() {
+        GraphHopper tmpHopper = new GraphHopperOSM().
+                setOSMFile(osmFile).
+                setStoreOnFlush(true).
+                setGraphHopperLocation(tmpGraphFile).
+                setEncodingManager(new EncodingManager("car"));
+        tmpHopper.getCHFactoryDecorator().setDisablingAllowed(true);
+        tmpHopper.importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(43.727687, 7.418737), new GHPoint(43.74958, 7.436566),
+                new GHPoint(43.729057, 7.41251), new GHPoint(43.740298, 7.423561));
+        DistanceMatrix matrix = tmpHopper.calcMatrix(points, points, new HintsMap("fastest").setVehicle("car"));
+        HintsMap flexHints = new HintsMap("fastest").setVehicle("car").put(CH.DISABLE, true);
+        DistanceMatrix flexMatrix = tmpHopper.calcMatrix(points, points, flexHints);
+        for (int from = 0; from < points.size(); from++) {
+            for (int to = 0; to < points.size(); to++) {
+                PathWrapper path = tmpHopper.route(new GHRequest(points.get(from), points.get(to)).setVehicle("car")).getBest();
+                assertEquals(from + "->" + to, path.getDistance(), matrix.getDistance(from, to), 1);
+                assertEquals(from + "->" + to, path.getTime(), matrix.getTime(from, to), 1);
+                assertEquals(from + "->" + to, path.getRouteWeight(), matrix.getWeight(from, to), 1e-2);
+                assertEquals(from + "->" + to, flexMatrix.getDistance(from, to), matrix.getDistance(from, to), 1);
+            }
+        }
+        assertEquals(3587, matrix.getDistance(0, 1), 1);
+    }
+
+    @Test
+    public void testRouteWithSnapBatch() {
+        GraphHopper tmpHopper = new GraphHopperOSM().
+                setOSMFile(osmFile).
+                setStoreOnFlush(true).
+                setGraphHopperLocation(tmpGraphFile).
+                setEncodingManager(new EncodingManager("car"));
+        tmpHopper.importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(43.727687, 7.418737), new GHPoint(43.74958, 7.436566),
+                new GHPoint(43.729057, 7.41251), new GHPoint(43.740298, 7.423561));
+        SnapBatch snapBatch = tmpHopper.snap(points, "car");
+        assertEquals(4, snapBatch.size());
+        for (int from = 0; from < points.size(); from++) {
+            for (int to = 0; to < points.size(); to++) {
+                GHRequest request = new GHRequest(points.get(from), points.get(to)).setVehicle("car");
+                PathWrapper expected = tmpHopper.route(request).getBest();
+                GHResponse rsp = tmpHopper.route(request, snapBatch);
+                assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+                assertEquals(from + "->" + to, expected.getDistance(), rsp.getBest().getDistance(), 1e-6);
+                assertEquals(from + "->" + to, expected.getPoints(), rsp.getBest().getPoints());
+            }
+        }
+    }
+
     @Test
     public void testCHAndTurnCostsWithFlexmode() {
         GraphHopper tmpHopper = new GraphHopperOSM().
@@ -316,6 +316,64 @@ public class GraphHopperOSMTest {
         assertEquals("route method should not change instance field", old, instance.isEnableInstructions());
     }
 
+    @Test
+    public void testSortedGraph_loadCH() {
+        instance = new GraphHopperOSM().setStoreOnFlush(true).
+                setSortGraph(true).
+                setEncodingManager(new EncodingManager("car")).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile(testOsm);
+        instance.importOrLoad();
+        PathWrapper rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)).getBest();
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        instance.close();
+
+        // the sorted graph is not sorted again, so the prepared CH graph can be loaded
+        instance = new GraphHopperOSM().setStoreOnFlush(true).
+                setSortGraph(true).
+                setEncodingManager(new EncodingManager("car"));
+        assertTrue(instance.load(ghLoc));
+        assertEquals("hilbert", instance.getGraphHopperStorage().getProperties().get("graph.sorted"));
+        PathWrapper loadedRsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)).getBest();
+        assertFalse(loadedRsp.hasErrors());
+        assertEquals(rsp.getPoints(), loadedRsp.getPoints());
+        assertEquals(rsp.getDistance(), loadedRsp.getDistance(), 1e-3);
+    }
+
+    @Test
+    public void testSortedGraph_keepsDataAccessType() {
+        instance = new GraphHopperOSM().setUnsafeMemory().
+                setSortGraph(true).
+                setEncodingManager(new EncodingManager("car")).setCHEnabled(false).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile(testOsm);
+        instance.importOrLoad();
+        GraphHopperStorage storage = instance.getGraphHopperStorage();
+        assertEquals("hilbert", storage.getProperties().get("graph.sorted"));
+        assertEquals(DAType.UNSAFE_STORE, storage.getDirectory().getDefaultType());
+        assertEquals(DAType.UNSAFE_STORE, storage.getDirectory().find("edges").getType());
+        PathWrapper rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).
+                setAlgorithm(DIJKSTRA_BI)).getBest();
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+    }
+
+    @Test
+    public void testSortedGraph_memoryMapped() {
+        instance = new GraphHopperOSM().setMemoryMapped().
+                setSortGraph(true).
+                setEncodingManager(new EncodingManager("car")).setCHEnabled(false).
+                setGraphHopperLocation(ghLoc).
+                setDataReaderFile(testOsm);
+        try {
+            instance.importOrLoad();
+            fail("sorting a memory mapped graph should fail");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Sorting a memory mapped graph is not possible"));
+        }
+    }
+
     @Test
     public void testFootAndCar() {
         // now all ways are imported
@@ -665,6 +665,62 @@ public class OSMReaderTest {
                 edge.fetchWayGeometry(3));
     }
 
+    @Test
+    public void testImportThreadsCreateSameGraph() throws IOException {
+        assertSameGraph(importWithThreads(1), importWithThreads(4));
+    }
+
+    @Test
+    public void testNodeMapInSortedRunsCreatesSameGraph() throws IOException {
+        GraphHopperStorage graph = importWithThreads(1);
+        GraphHopperStorage sortedRunsGraph = newGraph(dir, new EncodingManager("car,foot"), true, false);
+        OSMReader reader = new OSMReader(sortedRunsGraph) {
+            @Override
+            protected double getElevation(ReaderNode node) {
+                return (node.getLat() + node.getLon()) * 10;
+            }
+        }.setNodeMapDAType(DAType.RAM);
+        reader.setElevationProvider(new SRTMProvider(dir));
+        reader.setFile(new File("../core/files/monaco.osm.gz"));
+        reader.readGraph();
+        assertSameGraph(graph, sortedRunsGraph);
+    }
+
+    private void assertSameGraph(GraphHopperStorage graph, GraphHopperStorage other) {
+        assertEquals(graph.getNodes(), other.getNodes());
+        assertEquals(graph.getAllEdges().length(), other.getAllEdges().length());
+        for (int node = 0; node < graph.getNodes(); node++) {
+            assertEquals(graph.getNodeAccess().getLat(node), other.getNodeAccess().getLat(node), 1e-7);
+            assertEquals(graph.getNodeAccess().getEle(node), other.getNodeAccess().getEle(node), 1e-2);
+        }
+
+        AllEdgesIterator iter = graph.getAllEdges();
+        AllEdgesIterator otherIter = other.getAllEdges();
+        while (iter.next()) {
+            assertTrue(otherIter.next());
+            assertEquals(iter.getBaseNode(), otherIter.getBaseNode());
+            assertEquals(iter.getAdjNode(), otherIter.getAdjNode());
+            assertEquals(iter.getFlags(), otherIter.getFlags());
+            assertEquals(iter.getDistance(), otherIter.getDistance(), 1e-3);
+            assertEquals(iter.getName(), otherIter.getName());
+            assertEquals(iter.fetchWayGeometry(3), otherIter.fetchWayGeometry(3));
+        }
+    }
+
+    private GraphHopperStorage importWithThreads(int importThreads) throws IOException {
+        GraphHopperStorage graph = newGraph(dir, new EncodingManager("car,foot"), true, false);
+        OSMReader reader = new OSMReader(graph) {
+            @Override
+            protected double getElevation(ReaderNode node) {
+                return (node.getLat() + node.getLon()) * 10;
+            }
+        }.setImportThreads(importThreads);
+        reader.setElevationProvider(new SRTMProvider(dir));
+        reader.setFile(new File("../core/files/monaco.osm.gz"));
+        reader.readGraph();
+        return graph;
+    }
+
     /**
      * Tests the combination of different turn cost flags by different encoders.
      */
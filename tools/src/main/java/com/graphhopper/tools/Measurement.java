@@ -17,35 +17,49 @@
  */
 package com.graphhopper.tools;
 
+import com.carrotsearch.hppc.IntIndexedContainer;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.coll.GHBitSet;
 import com.graphhopper.coll.GHBitSetImpl;
+import com.graphhopper.coll.GHIntObjectHashMap;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.reader.osm.GraphHopperOSM;
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.ch.CHAlgoFactoryDecorator;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
+import com.graphhopper.routing.weighting.FastestWeighting;
 import com.graphhopper.routing.weighting.Weighting;
 import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.SPTEntry;
 import com.graphhopper.storage.index.LocationIndex;
 import com.graphhopper.util.*;
 import com.graphhopper.util.Parameters.Algorithms;
 import com.graphhopper.util.Parameters.CH;
 import com.graphhopper.util.Parameters.Landmark;
 import com.graphhopper.util.shapes.BBox;
+import com.sun.management.ThreadMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -104,6 +118,8 @@ public class Measurement {
                 StopWatch sw = new StopWatch().start();
                 super.loadOrPrepareLM();
                 put(Parameters.Landmark.PREPARE + "time", sw.stop().getMillis());
+                // compare the routingLM query times of measurements with different weight bits
+                put(Parameters.Landmark.PREPARE + "weight_bits", getLMFactoryDecorator().getPreparationWeightBits());
             }
 
             @Override
@@ -136,7 +152,17 @@ public class Measurement {
             boolean isLM = false;
             GHBitSet allowedEdges = printGraphDetails(g, vehicleStr);
             printMiscUnitPerfTests(g, isCH, encoder, count * 100, allowedEdges);
+            if (hopper.getEdgeScoreStorage() != null) {
+                printRunningWeightingPerfTest(hopper, g, encoder, "mindful", count * 100);
+                printRunningWeightingPerfTest(hopper, g, encoder, "vibrant", count * 100);
+            }
             printLocationIndexQuery(g, hopper.getLocationIndex(), count);
+            if (args.getBool("measurement.compare_sorted", false))
+                printSortedGraphComparison(g, encoder, count / 20);
+            if (args.getBool("measurement.compare_heaps", false))
+                printHeapComparison(g, encoder, count / 20);
+            if (args.getBool("measurement.compare_data_access", false))
+                printDataAccessComparison(graphLocation, count * 1000);
             printTimeOfRouteQuery(hopper, isCH, isLM, count / 20, "routing", vehicleStr, true, -1, true);
 
             if (hopper.getLMFactoryDecorator().isEnabled()) {
@@ -165,6 +191,8 @@ public class Measurement {
                 System.gc();
                 Weighting weighting = hopper.getCHFactoryDecorator().getWeightings().get(0);
                 CHGraph lg = g.getGraph(CHGraph.class, weighting);
+                if (args.getBool("measurement.compare_contraction_threads", false))
+                    printContractionThreadsComparison(hopper, weighting);
                 fillAllowedEdges(lg.getAllEdges(), allowedEdges);
                 printMiscUnitPerfTests(lg, isCH, encoder, count * 100, allowedEdges);
                 printTimeOfRouteQuery(hopper, isCH, isLM, count, "routingCH", vehicleStr, true, -1, true);
@@ -234,6 +262,151 @@ public class Measurement {
         print("location_index", miniPerf);
     }
 
+    /**
+     * Compares queries on the graph in its current order with queries on a copy which is sorted
+     * along a Hilbert curve. Both graphs are kept in memory, so this needs twice the memory.
+     */
+    private void printSortedGraphComparison(GraphHopperStorage g, FlagEncoder encoder, int count) {
+        GraphHopperStorage sortedGraph = new GraphBuilder(g.getEncodingManager()).set3D(g.getNodeAccess().is3D()).create();
+        StopWatch sw = new StopWatch().start();
+        IntIndexedContainer order = GHUtility.createHilbertOrder(g);
+        GHUtility.copySorted(g, sortedGraph, order);
+        put("sort.hilbert.time", sw.stop().getMillis());
+
+        printSortedGraphQuery(g, null, encoder, count, "sort.unsorted");
+        printSortedGraphQuery(sortedGraph, order, encoder, count, "sort.hilbert");
+        sortedGraph.close();
+    }
+
+    /**
+     * Prepares CH again on copies of the imported graph with an increasing number of contraction
+     * threads and records the preparation time and the shortcuts of every run.
+     */
+    private void printContractionThreadsComparison(GraphHopper hopper, Weighting weighting) {
+        GraphHopperStorage g = hopper.getGraphHopperStorage();
+        CHAlgoFactoryDecorator chDecorator = hopper.getCHFactoryDecorator();
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        long singleThreadMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            GraphHopperStorage copy = new GraphBuilder(g.getEncodingManager()).set3D(g.getNodeAccess().is3D()).
+                    setCHGraph(weighting).create();
+            g.copyTo(copy);
+            PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                    copy, copy.getGraph(CHGraph.class, weighting), weighting, TraversalMode.NODE_BASED).
+                    setPeriodicUpdates(chDecorator.getPreparationPeriodicUpdates()).
+                    setLazyUpdates(chDecorator.getPreparationLazyUpdates()).
+                    setNeighborUpdates(chDecorator.getPreparationNeighborUpdates()).
+                    setLogMessages(chDecorator.getPreparationLogMessages()).
+                    setContractionThreads(threads);
+            System.gc();
+            StopWatch sw = new StopWatch().start();
+            prepare.doWork();
+            long millis = sw.stop().getMillis();
+            if (threads == 1)
+                singleThreadMillis = millis;
+
+            String prefix = CH.PREPARE + "contraction_threads_" + threads;
+            logger.info(prefix + ": " + millis + "ms, " + nf(prepare.getShortcuts()) + " shortcuts");
+            put(prefix + ".time", millis);
+            put(prefix + ".shortcuts", prepare.getShortcuts());
+            put(prefix + ".speedup", (double) singleThreadMillis / Math.max(1, millis));
+            copy.close();
+        }
+    }
+
+    private void printSortedGraphQuery(final Graph graph, final IntIndexedContainer order, FlagEncoder encoder,
+                                       int count, String prefix) {
+        // the same seed for both graphs, i.e. the same queries
+        final Random rand = new Random(seed);
+        final RoutingAlgorithmFactory factory = new RoutingAlgorithmFactorySimple();
+        final AlgorithmOptions opts = AlgorithmOptions.start().algorithm(DIJKSTRA_BI).
+                weighting(new FastestWeighting(encoder)).traversalMode(TraversalMode.NODE_BASED).build();
+        MiniPerfTest miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                int from = rand.nextInt(maxNode);
+                int to = rand.nextInt(maxNode);
+                if (order != null) {
+                    from = order.get(from);
+                    to = order.get(to);
+                }
+                RoutingAlgorithm algo = factory.createAlgo(graph, opts);
+                algo.calcPath(from, to);
+                return algo.getVisitedNodes();
+            }
+        }.setIterations(count).start();
+        print(prefix + ".routing", miniPerf);
+    }
+
+    /**
+     * Compares Dijkstra with its MinHeapWithUpdate queue to the same search with a PriorityQueue, as
+     * it was used before, where an updated entry is removed and added again. Both run the same
+     * queries on the same graph.
+     */
+    private void printHeapComparison(final Graph graph, FlagEncoder encoder, int count) {
+        final Weighting weighting = new FastestWeighting(encoder);
+        final EdgeExplorer explorer = graph.createEdgeExplorer(DefaultEdgeFilter.outEdges(encoder));
+        Random rand = new Random(seed);
+        final int[] froms = new int[count], tos = new int[count];
+        for (int i = 0; i < count; i++) {
+            froms[i] = rand.nextInt(maxNode);
+            tos[i] = rand.nextInt(maxNode);
+        }
+
+        MiniPerfTest miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                Dijkstra dijkstra = new Dijkstra(graph, weighting, TraversalMode.NODE_BASED);
+                dijkstra.calcPath(froms[run], tos[run]);
+                return dijkstra.getVisitedNodes();
+            }
+        }.setIterations(count).start();
+        print("heap.min_heap_with_update", miniPerf);
+
+        miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                return calcWithPriorityQueue(explorer, weighting, froms[run], tos[run]);
+            }
+        }.setIterations(count).start();
+        print("heap.priority_queue", miniPerf);
+    }
+
+    private static int calcWithPriorityQueue(EdgeExplorer explorer, Weighting weighting, int from, int to) {
+        GHIntObjectHashMap<SPTEntry> map = new GHIntObjectHashMap<>();
+        PriorityQueue<SPTEntry> heap = new PriorityQueue<>();
+        SPTEntry curr = new SPTEntry(from, 0);
+        map.put(from, curr);
+        int visited = 0;
+        while (curr.adjNode != to) {
+            visited++;
+            EdgeIterator iter = explorer.setBaseNode(curr.adjNode);
+            while (iter.next()) {
+                double weight = weighting.calcWeight(iter, false, curr.edge) + curr.weight;
+                if (Double.isInfinite(weight))
+                    continue;
+
+                SPTEntry entry = map.get(iter.getAdjNode());
+                if (entry == null) {
+                    entry = new SPTEntry(iter.getEdge(), iter.getAdjNode(), weight);
+                    entry.parent = curr;
+                    map.put(iter.getAdjNode(), entry);
+                    heap.add(entry);
+                } else if (entry.weight > weight) {
+                    heap.remove(entry);
+                    entry.edge = iter.getEdge();
+                    entry.weight = weight;
+                    entry.parent = curr;
+                    heap.add(entry);
+                }
+            }
+            if (heap.isEmpty())
+                break;
+            curr = heap.poll();
+        }
+        return visited;
+    }
+
     private void printMiscUnitPerfTests(final Graph graph, boolean isCH, final FlagEncoder encoder,
                                         int count, final GHBitSet allowedEdges) {
         final Random rand = new Random(seed);
@@ -302,6 +475,44 @@ public class Measurement {
         print("unit_tests" + description + ".get_edge_state", miniPerf);
     }
 
+    private void printRunningWeightingPerfTest(GraphHopper hopper, final Graph graph, FlagEncoder encoder,
+                                               String weightingStr, int count) {
+        // use non-default betas like most requests do
+        HintsMap hints = new HintsMap(weightingStr).setVehicle(encoder.toString()).
+                put("beta1", 0.5).put("beta2", 0.3).put("beta3", 0.2);
+        final Weighting weighting = hopper.createWeighting(hints, encoder, graph);
+        final Random rand = new Random(seed);
+        final int maxEdgesId = graph.getAllEdges().length();
+        final EdgeIteratorState[] edges = new EdgeIteratorState[1000];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = graph.getEdgeIteratorState(rand.nextInt(maxEdgesId), Integer.MIN_VALUE);
+        }
+
+        MiniPerfTest miniPerf = new MiniPerfTest() {
+            @Override
+            public int doCalc(boolean warmup, int run) {
+                double weight = weighting.calcWeight(edges[run % edges.length], false, EdgeIterator.NO_EDGE);
+                return Double.isInfinite(weight) ? 0 : (int) weight;
+            }
+        }.setIterations(count).start();
+        print("unit_tests." + weightingStr + "_calc_weight", miniPerf);
+
+        // the weighting is called for every relaxed edge, so it must not create garbage
+        // the HotSpot ThreadMXBean extends the one of ManagementFactory by the allocated bytes
+        if (ManagementFactory.getThreadMXBean() instanceof ThreadMXBean) {
+            ThreadMXBean allocBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            double sum = 0;
+            long before = allocBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < count; i++) {
+                sum += weighting.calcWeight(edges[i % edges.length], false, EdgeIterator.NO_EDGE);
+            }
+            long allocated = allocBean.getThreadAllocatedBytes(threadId) - before;
+            logger.info(weightingStr + " calcWeight allocated " + allocated + " bytes for " + count + " calls, sum:" + sum);
+            put("unit_tests." + weightingStr + "_calc_weight.allocated_bytes_per_call", (double) allocated / count);
+        }
+    }
+
     private void compareRouting(final GraphHopper hopper, String vehicle, int count) {
         logger.info("Comparing " + count + " routes. Differences will be printed to stderr.");
         String algo = Algorithms.ASTAR_BI;
@@ -503,6 +714,88 @@ public class Measurement {
         print(prefix, miniPerf);
     }
 
+    /**
+     * Compares the random reads of the DataAccess implementations from several threads, like the
+     * edge iterators of concurrent queries do. The data is written once and loaded by every type.
+     */
+    private void printDataAccessComparison(String graphLocation, int readsPerThread) {
+        File folder = new File(graphLocation, "measurement_data_access");
+        Helper.removeDir(folder);
+        String location = folder.getAbsolutePath();
+        int ints = 4 * 1024 * 1024;
+        DataAccess da = new GHDirectory(location, DAType.RAM_STORE).create().find("ints");
+        da.create(ints * 4L);
+        Random rand = new Random(seed);
+        for (int i = 0; i < ints; i++) {
+            da.setInt(i * 4L, rand.nextInt());
+        }
+        da.flush();
+        da.close();
+
+        Map<String, DAType> types = new LinkedHashMap<>();
+        types.put("ram", DAType.RAM_STORE);
+        types.put("unsafe", DAType.UNSAFE_STORE);
+        types.put("mmap_ro", DAType.MMAP_RO);
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (Entry<String, DAType> type : types.entrySet()) {
+            DataAccess readDA = new GHDirectory(location, type.getValue()).find("ints");
+            if (!readDA.loadExisting())
+                throw new IllegalStateException("Cannot load " + location + " as " + type.getKey());
+
+            // warmup
+            readConcurrently(readDA, ints, readsPerThread / 10, 1);
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double seconds = readConcurrently(readDA, ints, readsPerThread, threads);
+                String prefix = "data_access." + type.getKey() + ".threads_" + threads;
+                logger.info(prefix + ": " + nf((long) (readsPerThread * threads / seconds)) + " reads/s");
+                put(prefix + ".reads_per_second", readsPerThread * threads / seconds);
+            }
+            readDA.close();
+        }
+        Helper.removeDir(folder);
+    }
+
+    /**
+     * @return the seconds until all threads have read the ints at random positions
+     */
+    private double readConcurrently(final DataAccess da, final int ints, final int readsPerThread, int threads) {
+        List<Callable<Integer>> callables = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final long threadSeed = seed + t;
+            callables.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    // cheap xorshift so that the reads are not measured together with a Random
+                    long x = threadSeed * 0x9E3779B97F4A7C15L | 1;
+                    int sum = 0;
+                    for (int i = 0; i < readsPerThread; i++) {
+                        x ^= x << 13;
+                        x ^= x >>> 7;
+                        x ^= x << 17;
+                        sum += da.getInt(((x >>> 1) % ints) * 4);
+                    }
+                    return sum;
+                }
+            });
+        }
+
+        ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+        try {
+            StopWatch sw = new StopWatch().start();
+            int dummySum = 0;
+            for (Future<Integer> future : threadPool.invokeAll(callables)) {
+                dummySum += future.get();
+            }
+            sw.stop();
+            logger.debug("dummySum:" + dummySum);
+            return sw.getNanos() / 1e9;
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
     void print(String prefix, MiniPerfTest perf) {
         logger.info(prefix + ": " + perf.getReport());
         put(prefix + ".sum", perf.getSum());
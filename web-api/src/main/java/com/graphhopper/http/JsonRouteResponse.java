@@ -0,0 +1,68 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+
+/**
+ * A route response together with the options for its JSON. Returned as entity by a resource the
+ * route is written directly to the response stream, see
+ * {@link WebHelper#writeJson(com.fasterxml.jackson.core.JsonGenerator, GHResponse, boolean, boolean, boolean, boolean, float)}.
+ */
+public class JsonRouteResponse {
+    private final GHResponse response;
+    private final boolean enableInstructions;
+    private final boolean calcPoints;
+    private final boolean enableElevation;
+    private final boolean pointsEncoded;
+    private final float took;
+
+    public JsonRouteResponse(GHResponse response, boolean enableInstructions, boolean calcPoints,
+                             boolean enableElevation, boolean pointsEncoded, float took) {
+        this.response = response;
+        this.enableInstructions = enableInstructions;
+        this.calcPoints = calcPoints;
+        this.enableElevation = enableElevation;
+        this.pointsEncoded = pointsEncoded;
+        this.took = took;
+    }
+
+    public GHResponse getResponse() {
+        return response;
+    }
+
+    public boolean isEnableInstructions() {
+        return enableInstructions;
+    }
+
+    public boolean isCalcPoints() {
+        return calcPoints;
+    }
+
+    public boolean isEnableElevation() {
+        return enableElevation;
+    }
+
+    public boolean isPointsEncoded() {
+        return pointsEncoded;
+    }
+
+    public float getTook() {
+        return took;
+    }
+}
@@ -17,14 +17,17 @@
  */
 package com.graphhopper.http;
 
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.graphhopper.GHResponse;
 import com.graphhopper.PathWrapper;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.NumberFormat;
@@ -41,6 +44,9 @@ import java.util.Locale;
  * @author Peter Karich
  */
 public class WebHelper {
+    // only converts tokens to nodes, the objects within are kept as POJO nodes
+    private static final ObjectMapper TREE_MAPPER = new ObjectMapper();
+
     public static String encodeURL(String str) {
         try {
             return URLEncoder.encode(str, "UTF-8");
@@ -102,82 +108,159 @@ public class WebHelper {
     }
 
     public static String encodePolyline(PointList poly, boolean includeElevation) {
-        StringBuilder sb = new StringBuilder();
+        return new String(encodePolylineChars(poly, includeElevation));
+    }
+
+    /**
+     * Writes the encoded polyline as string value without creating a String or StringBuilder.
+     */
+    public static void writePolyline(JsonGenerator gen, PointList poly, boolean includeElevation) throws IOException {
+        char[] chars = encodePolylineChars(poly, includeElevation);
+        gen.writeString(chars, 0, chars.length);
+    }
+
+    private static char[] encodePolylineChars(PointList poly, boolean includeElevation) {
+        // the first pass calculates the length only, so the second pass fills an array of the exact size
         int size = poly.getSize();
+        int length = 0;
         int prevLat = 0;
         int prevLon = 0;
         int prevEle = 0;
         for (int i = 0; i < size; i++) {
             int num = (int) Math.floor(poly.getLatitude(i) * 1e5);
-            encodeNumber(sb, num - prevLat);
+            length += getEncodedLength(num - prevLat);
+            prevLat = num;
+            num = (int) Math.floor(poly.getLongitude(i) * 1e5);
+            length += getEncodedLength(num - prevLon);
+            prevLon = num;
+            if (includeElevation) {
+                num = (int) Math.floor(poly.getElevation(i) * 100);
+                length += getEncodedLength(num - prevEle);
+                prevEle = num;
+            }
+        }
+
+        char[] chars = new char[length];
+        int pos = 0;
+        prevLat = 0;
+        prevLon = 0;
+        prevEle = 0;
+        for (int i = 0; i < size; i++) {
+            int num = (int) Math.floor(poly.getLatitude(i) * 1e5);
+            pos = encodeNumber(chars, pos, num - prevLat);
             prevLat = num;
             num = (int) Math.floor(poly.getLongitude(i) * 1e5);
-            encodeNumber(sb, num - prevLon);
+            pos = encodeNumber(chars, pos, num - prevLon);
             prevLon = num;
             if (includeElevation) {
                 num = (int) Math.floor(poly.getElevation(i) * 100);
-                encodeNumber(sb, num - prevEle);
+                pos = encodeNumber(chars, pos, num - prevEle);
                 prevEle = num;
             }
         }
-        return sb.toString();
+        return chars;
     }
 
-    private static void encodeNumber(StringBuilder sb, int num) {
+    private static int getEncodedLength(int num) {
+        num = num << 1;
+        if (num < 0) {
+            num = ~num;
+        }
+        int length = 1;
+        while (num >= 0x20) {
+            length++;
+            num >>= 5;
+        }
+        return length;
+    }
+
+    private static int encodeNumber(char[] chars, int pos, int num) {
         num = num << 1;
         if (num < 0) {
             num = ~num;
         }
         while (num >= 0x20) {
             int nextValue = (0x20 | (num & 0x1f)) + 63;
-            sb.append((char) (nextValue));
+            chars[pos++] = (char) nextValue;
             num >>= 5;
         }
         num += 63;
-        sb.append((char) (num));
+        chars[pos++] = (char) num;
+        return pos;
     }
 
-
+    /**
+     * Creates the JSON of the specified route response as tree, e.g. to add further fields. Use
+     * {@link #writeJson(JsonGenerator, GHResponse, boolean, boolean, boolean, boolean, float)} to
+     * write the JSON directly to a stream.
+     */
     public static ObjectNode jsonObject(GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) {
-        ObjectNode json = JsonNodeFactory.instance.objectNode();
-        json.putPOJO("hints", ghRsp.getHints().toMap());
+        // without a codec the buffer keeps the objects which are serialized later, like putPOJO
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        try {
+            buffer.writeStartObject();
+            writeJson(buffer, ghRsp, enableInstructions, calcPoints, enableElevation, pointsEncoded, took);
+            buffer.writeEndObject();
+            return TREE_MAPPER.readTree(buffer.asParser());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the fields of the JSON of the specified route response into the current object of the
+     * specified generator. The encoded points are written without intermediate strings and the
+     * instructions, details and other objects are serialized by the codec of the generator.
+     */
+    public static void writeJson(JsonGenerator gen, GHResponse ghRsp, boolean enableInstructions, boolean calcPoints, boolean enableElevation, boolean pointsEncoded, float took) throws IOException {
+        gen.writeObjectField("hints", ghRsp.getHints().toMap());
         // If you replace GraphHopper with your own brand name, this is fine.
         // Still it would be highly appreciated if you mention us in your about page!
-        final ObjectNode info = json.putObject("info");
-        info.putArray("copyrights")
-                .add("GraphHopper")
-                .add("OpenStreetMap contributors");
-        info.put("took", Math.round(took * 1000));
-        ArrayNode jsonPathList = json.putArray("paths");
+        gen.writeObjectFieldStart("info");
+        gen.writeArrayFieldStart("copyrights");
+        gen.writeString("GraphHopper");
+        gen.writeString("OpenStreetMap contributors");
+        gen.writeEndArray();
+        gen.writeNumberField("took", Math.round(took * 1000));
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("paths");
         for (PathWrapper ar : ghRsp.getAll()) {
-            ObjectNode jsonPath = jsonPathList.addObject();
-            jsonPath.put("distance", Helper.round(ar.getDistance(), 3));
-            jsonPath.put("weight", Helper.round6(ar.getRouteWeight()));
-            jsonPath.put("time", ar.getTime());
-            jsonPath.put("transfers", ar.getNumChanges());
+            gen.writeStartObject();
+            gen.writeNumberField("distance", Helper.round(ar.getDistance(), 3));
+            gen.writeNumberField("weight", Helper.round6(ar.getRouteWeight()));
+            gen.writeNumberField("time", ar.getTime());
+            gen.writeNumberField("transfers", ar.getNumChanges());
             if (!ar.getDescription().isEmpty()) {
-                jsonPath.putPOJO("description", ar.getDescription());
+                gen.writeObjectField("description", ar.getDescription());
             }
             if (calcPoints) {
-                jsonPath.put("points_encoded", pointsEncoded);
+                gen.writeBooleanField("points_encoded", pointsEncoded);
                 if (ar.getPoints().getSize() >= 2) {
-                    jsonPath.putPOJO("bbox", ar.calcBBox2D());
+                    gen.writeObjectField("bbox", ar.calcBBox2D());
                 }
-                jsonPath.putPOJO("points", pointsEncoded ? encodePolyline(ar.getPoints(), enableElevation) : ar.getPoints().toLineString(enableElevation));
+                writePoints(gen, "points", ar.getPoints(), enableElevation, pointsEncoded);
                 if (enableInstructions) {
-                    jsonPath.putPOJO("instructions", ar.getInstructions());
+                    gen.writeObjectField("instructions", ar.getInstructions());
                 }
-                jsonPath.putPOJO("legs", ar.getLegs());
-                jsonPath.putPOJO("details", ar.getPathDetails());
-                jsonPath.put("ascend", ar.getAscend());
-                jsonPath.put("descend", ar.getDescend());
+                gen.writeObjectField("legs", ar.getLegs());
+                gen.writeObjectField("details", ar.getPathDetails());
+                gen.writeNumberField("ascend", ar.getAscend());
+                gen.writeNumberField("descend", ar.getDescend());
             }
-            jsonPath.putPOJO("snapped_waypoints", pointsEncoded ? encodePolyline(ar.getWaypoints(), enableElevation) : ar.getWaypoints().toLineString(enableElevation));
+            writePoints(gen, "snapped_waypoints", ar.getWaypoints(), enableElevation, pointsEncoded);
             if (ar.getFare() != null) {
-                jsonPath.put("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
+                gen.writeStringField("fare", NumberFormat.getCurrencyInstance(Locale.ROOT).format(ar.getFare()));
             }
+            gen.writeEndObject();
         }
-        return json;
+        gen.writeEndArray();
     }
 
+    private static void writePoints(JsonGenerator gen, String fieldName, PointList points, boolean enableElevation, boolean pointsEncoded) throws IOException {
+        gen.writeFieldName(fieldName);
+        if (pointsEncoded)
+            writePolyline(gen, points, enableElevation);
+        else
+            gen.writeObject(points.toLineString(enableElevation));
+    }
 }
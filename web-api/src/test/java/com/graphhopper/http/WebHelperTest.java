@@ -17,12 +17,21 @@
  */
 package com.graphhopper.http;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.GHResponse;
+import com.graphhopper.PathWrapper;
+import com.graphhopper.jackson.Jackson;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Peter Karich
@@ -74,4 +83,28 @@ public class WebHelperTest {
         assertEquals("_p~iF~ps|Uo}@_ulLnnqC_anF_mqNvxq`@?", WebHelper.encodePolyline(
                 Helper.createPointList3D(38.5, -120.2, 10, 40.7, -120.95, 1234, 43.252, -126.453, 1234)));
     }
+
+    @Test
+    public void testWriteJsonSameAsTree() throws Exception {
+        PathWrapper path = new PathWrapper().setDistance(1234.5678).setTime(95000).setRouteWeight(321.1234567).
+                setPoints(Helper.createPointList(38.5, -120.2, 40.7, -120.95, 43.252, -126.453)).
+                setDescription(Arrays.asList("a", "b"));
+        path.setWaypoints(Helper.createPointList(38.5, -120.2, 43.252, -126.453));
+        GHResponse rsp = new GHResponse();
+        rsp.add(path);
+
+        ObjectMapper objectMapper = Jackson.newObjectMapper();
+        for (boolean pointsEncoded : new boolean[]{true, false}) {
+            StringWriter writer = new StringWriter();
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(writer)) {
+                gen.writeStartObject();
+                WebHelper.writeJson(gen, rsp, false, true, false, pointsEncoded, 0.012f);
+                gen.writeEndObject();
+            }
+            assertEquals(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, false, true, false, pointsEncoded, 0.012f)),
+                    writer.toString());
+        }
+        assertTrue(objectMapper.writeValueAsString(WebHelper.jsonObject(rsp, false, true, false, true, 0)).
+                contains("\"points\":\"_p~iF~ps|U_ulLnnqC_mqNvxq`@\""));
+    }
 }
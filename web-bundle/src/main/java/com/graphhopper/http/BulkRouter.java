@@ -0,0 +1,158 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.MultiException;
+import com.graphhopper.storage.index.SnapBatch;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.exceptions.GHException;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates the routes of a bulk request on a fixed pool of threads and writes every route as one
+ * line of JSON, in the order of the requests. Only a few routes per thread are calculated ahead of
+ * the route written next, so the memory of a bulk request does not grow with its size and a slow
+ * client slows down its own routes only. The size of the pool is configured via web.bulk.threads.
+ */
+public class BulkRouter implements Managed {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphHopperManaged graphHopperManaged;
+    private final ObjectMapper objectMapper;
+    private final int threads;
+    private ExecutorService executor;
+
+    public BulkRouter(GraphHopperManaged graphHopperManaged, ObjectMapper objectMapper, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("web.bulk.threads has to be positive but was " + threads);
+
+        this.graphHopperManaged = graphHopperManaged;
+        this.objectMapper = objectMapper;
+        this.threads = threads;
+    }
+
+    /**
+     * Routes the specified requests and writes one line per request to the specified stream. A line
+     * is the route response with the additional field 'index' of the request, or the errors of the
+     * request with this index. Returns when all lines are written or throws the exception of the
+     * stream, e.g. if the client closed the connection. Then the remaining routes are cancelled.
+     *
+     * @param snapBatch the snapped points of all requests
+     * @param writer writes the fields of a successful route
+     */
+    public void route(List<GHRequest> requests, SnapBatch snapBatch, ResponseWriter writer, OutputStream out)
+            throws IOException {
+        GraphHopper graphHopper = graphHopperManaged.getGraphHopper();
+        int maxInFlight = threads * 2;
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>(maxInFlight);
+        int next = 0;
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                while (next < requests.size() && next - i < maxInFlight) {
+                    int routeIndex = next++;
+                    GHRequest request = requests.get(routeIndex);
+                    inFlight.add(executor.submit(() -> {
+                        StopWatch sw = new StopWatch().start();
+                        GHResponse response = graphHopper.route(request, snapBatch);
+                        if (response.hasErrors())
+                            return createErrorLine(routeIndex, response.getErrors());
+
+                        // the lines are created by the pool too, so the JSON is written in parallel
+                        ByteArrayOutputStream line = new ByteArrayOutputStream();
+                        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(line)) {
+                            gen.writeStartObject();
+                            gen.writeNumberField("index", routeIndex);
+                            writer.write(gen, response, sw.stop().getSeconds());
+                            gen.writeEndObject();
+                        }
+                        return line.toByteArray();
+                    }));
+                }
+
+                byte[] line;
+                try {
+                    line = inFlight.poll().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Bulk request interrupted at route " + i);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (!(cause instanceof IllegalArgumentException) && !(cause instanceof GHException))
+                        logger.error("Cannot calculate route " + i + " of bulk request", cause);
+                    line = createErrorLine(i, Collections.singletonList(cause));
+                }
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            }
+        } finally {
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private byte[] createErrorLine(int routeIndex, List<Throwable> errors) throws IOException {
+        ObjectNode json = objectMapper.valueToTree(new MultiException(errors));
+        json.put("index", routeIndex);
+        return objectMapper.writeValueAsBytes(json);
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-router-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("started bulk routing with " + threads + " threads");
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executor == null)
+            return;
+
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public interface ResponseWriter {
+        void write(JsonGenerator gen, GHResponse response, float took) throws IOException;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.graphhopper.reader.osm.RunningGraphHopperOSM;
+import com.graphhopper.storage.EdgeScoreStorage;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Reloads the running scores of the graph while requests are served. A reload is triggered via
+ * the {@link ReloadScoresTask} on the admin port or, if graph.edge_scores.watch is enabled, whenever the file configured in
+ * graph.edge_scores.file changes. The new scores are read off-heap and then swapped in, so
+ * running requests finish with the old scores.
+ * <p>
+ * The time to read and to swap the scores, the failed reloads and the memory of the current
+ * scores are reported to the metrics registry.
+ */
+public class EdgeScoreReloader implements Managed {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final RunningGraphHopperOSM graphHopper;
+    private final boolean watch;
+    // wait until the file was not modified for this time before reloading it
+    private final long quietPeriodMillis;
+    private final Timer readTimer;
+    private final Timer swapTimer;
+    private final Counter failures;
+    private volatile long lastReload = -1;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public EdgeScoreReloader(RunningGraphHopperOSM graphHopper, boolean watch, long quietPeriodMillis,
+                             MetricRegistry metrics) {
+        this.graphHopper = graphHopper;
+        this.watch = watch;
+        this.quietPeriodMillis = quietPeriodMillis;
+        readTimer = metrics.timer(MetricRegistry.name(getClass(), "read"));
+        swapTimer = metrics.timer(MetricRegistry.name(getClass(), "swap"));
+        failures = metrics.counter(MetricRegistry.name(getClass(), "failures"));
+        metrics.register(MetricRegistry.name(getClass(), "bytes"), (Gauge<Long>) () -> {
+            EdgeScoreStorage edgeScores = graphHopper.getEdgeScoreStorage();
+            return edgeScores == null || edgeScores.isClosed() ? 0 : edgeScores.getCapacity();
+        });
+        metrics.register(MetricRegistry.name(getClass(), "last_reload"), (Gauge<Long>) () -> lastReload);
+    }
+
+    /**
+     * Reads the configured scores file and replaces the scores used for routing.
+     *
+     * @param delta if true only the scores of the ways listed in the file are replaced
+     * @return the number of edges of the new scores
+     */
+    public synchronized int reload(boolean delta) throws IOException {
+        File file = new File(graphHopper.getEdgeScoresFile());
+        EdgeScoreStorage edgeScores;
+        try (Timer.Context ignored = readTimer.time()) {
+            edgeScores = graphHopper.readEdgeScoreSnapshot(file, delta);
+        } catch (IOException | RuntimeException ex) {
+            failures.inc();
+            throw ex;
+        }
+
+        try (Timer.Context ignored = swapTimer.time()) {
+            graphHopper.swapEdgeScoreStorage(edgeScores);
+        }
+        lastReload = System.currentTimeMillis();
+        logger.info("reloaded edge scores from " + file + (delta ? " (delta)" : "") + " for "
+                + edgeScores.getEdgeCount() + " edges");
+        return edgeScores.getEdgeCount();
+    }
+
+    @Override
+    public void start() throws IOException {
+        if (!watch)
+            return;
+
+        File file = new File(graphHopper.getEdgeScoresFile()).getAbsoluteFile();
+        Path dir = file.getParentFile().toPath();
+        Path fileName = file.toPath().getFileName();
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        watcher = new Thread(() -> watch(fileName), "edge-score-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("watching " + file + " for changed edge scores");
+    }
+
+    private void watch(Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = key.pollEvents().stream().anyMatch(event -> fileName.equals(event.context()));
+                key.reset();
+                if (!changed)
+                    continue;
+
+                // the file is usually written in several steps, so wait until it is complete
+                while ((key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+
+                try {
+                    reload(false);
+                } catch (Exception ex) {
+                    logger.error("Cannot reload edge scores, keeping the current ones", ex);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // stopped
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (watchService == null)
+            return;
+
+        watchService.close();
+        watcher.interrupt();
+        watcher.join();
+    }
+}
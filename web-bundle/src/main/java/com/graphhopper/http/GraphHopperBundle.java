@@ -19,6 +19,8 @@
 package com.graphhopper.http;
 
 import com.bedatadriven.jackson.datatype.jts.JtsModule;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.BeanDescription;
@@ -45,6 +47,7 @@ import com.graphhopper.routing.util.FootFlagEncoder;
 import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.GraphHopperStorage;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.SnapCache;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.TranslationMap;
 import io.dropwizard.ConfiguredBundle;
@@ -62,6 +65,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConfiguration> {
@@ -196,6 +200,7 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         // come out as JSON or GPX, depending on the media type
         environment.jersey().register(new MultiExceptionMapper());
         environment.jersey().register(new MultiExceptionGPXMessageBodyWriter());
+        environment.jersey().register(new JsonRouteResponseMessageBodyWriter(environment.getObjectMapper()));
 
         environment.jersey().register(new IllegalArgumentExceptionMapper());
         environment.jersey().register(new GHPointConverterProvider());
@@ -265,11 +270,20 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
     private void runRegularGraphHopper(CmdArgs configuration, Environment environment) {
         final GraphHopperManaged graphHopperManaged = new GraphHopperManaged(configuration, environment.getObjectMapper());
         environment.lifecycle().manage(graphHopperManaged);
+        // registered after the graph, so it is started after the graph is loaded and stopped before it is closed
+        final EdgeScoreReloader edgeScoreReloader = new EdgeScoreReloader(graphHopperManaged.getGraphHopper(),
+                configuration.getBool("graph.edge_scores.watch", false),
+                configuration.getLong("graph.edge_scores.watch_quiet_period", 5000), environment.metrics());
+        environment.lifecycle().manage(edgeScoreReloader);
+        final BulkRouter bulkRouter = new BulkRouter(graphHopperManaged, environment.getObjectMapper(),
+                configuration.getInt("web.bulk.threads", Runtime.getRuntime().availableProcessors()));
+        environment.lifecycle().manage(bulkRouter);
         environment.jersey().register(new AbstractBinder() {
             @Override
             protected void configure() {
                 bind(configuration).to(CmdArgs.class);
                 bind(graphHopperManaged).to(GraphHopperManaged.class);
+                bind(bulkRouter).to(BulkRouter.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopper.class);
                 bind(graphHopperManaged.getGraphHopper()).to(GraphHopperAPI.class);
 
@@ -285,12 +299,51 @@ public class GraphHopperBundle implements ConfiguredBundle<GraphHopperBundleConf
         if (configuration.getBool("web.change_graph.enabled", false)) {
             environment.jersey().register(ChangeGraphResource.class);
         }
+        if (configuration.getBool("web.scores_reload.enabled", false)) {
+            // on the admin port, as everyone who can reach it can block the routing while the scores are swapped
+            environment.admin().addTask(new ReloadScoresTask(edgeScoreReloader));
+        }
         environment.jersey().register(NearestResource.class);
         environment.jersey().register(RouteResource.class);
+        environment.jersey().register(MatrixResource.class);
+        environment.jersey().register(BulkRouteResource.class);
         environment.jersey().register(IsochroneResource.class);
         environment.jersey().register(I18NResource.class);
         environment.jersey().register(InfoResource.class);
         environment.healthChecks().register("graphhopper", new GraphHopperHealthCheck(graphHopperManaged.getGraphHopper()));
+        environment.healthChecks().register("graphhopper-storage", new GraphHopperStorageHealthCheck(
+                () -> graphHopperManaged.getGraphHopper().getGraphHopperStorage(), graphHopperManaged.getWarmUp()));
+        if (configuration.getInt("index.snap_cache.size", 0) > 0)
+            registerSnapCacheMetrics(graphHopperManaged.getGraphHopper(), environment.metrics());
+    }
+
+    /**
+     * Reports the hits and misses of the snap cache, so that its size can be tuned. The location
+     * index is read when a gauge is read, as it is only created when the graph is loaded.
+     */
+    private static void registerSnapCacheMetrics(GraphHopper graphHopper, MetricRegistry metrics) {
+        registerSnapCacheGauge(metrics, "hits", graphHopper, SnapCache::getHits, 0L);
+        registerSnapCacheGauge(metrics, "misses", graphHopper, SnapCache::getMisses, 0L);
+        registerSnapCacheGauge(metrics, "hit_rate", graphHopper, SnapCache::getHitRate, 0d);
+        registerSnapCacheGauge(metrics, "size", graphHopper, SnapCache::size, 0);
+    }
+
+    private static <T> void registerSnapCacheGauge(MetricRegistry metrics, String name, GraphHopper graphHopper,
+                                                   Function<SnapCache, T> value, T empty) {
+        metrics.register(MetricRegistry.name(SnapCache.class, name), (Gauge<T>) () -> {
+            SnapCache snapCache = getSnapCache(graphHopper);
+            return snapCache == null ? empty : value.apply(snapCache);
+        });
+    }
+
+    private static SnapCache getSnapCache(GraphHopper graphHopper) {
+        try {
+            LocationIndex index = graphHopper.getLocationIndex();
+            return index instanceof SnapCache ? (SnapCache) index : null;
+        } catch (IllegalStateException ex) {
+            // not loaded yet
+            return null;
+        }
     }
 
 }
@@ -19,13 +19,12 @@
 package com.graphhopper.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.graphhopper.GraphHopper;
 import com.graphhopper.json.geo.JsonFeatureCollection;
-import com.graphhopper.reader.osm.GraphHopperOSM;
 import com.graphhopper.reader.osm.RunningGraphHopperOSM;
 
 import com.graphhopper.routing.lm.LandmarkStorage;
 import com.graphhopper.routing.util.spatialrules.SpatialRuleLookupHelper;
+import com.graphhopper.storage.DataAccessWarmUp;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Parameters;
 import com.graphhopper.util.shapes.BBox;
@@ -33,17 +32,22 @@ import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.graphhopper.util.Helper.UTF_CS;
 
 public class GraphHopperManaged implements Managed {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final GraphHopper graphHopper;
+    private final RunningGraphHopperOSM graphHopper;
+    private final DataAccessWarmUp warmUp;
+    private Thread warmUpThread;
 
     public GraphHopperManaged(CmdArgs configuration, ObjectMapper objectMapper) {
         String splitAreaLocation = configuration.get(Parameters.Landmark.PREPARE + "split_area_location", "");
@@ -55,10 +59,9 @@ public class GraphHopperManaged implements Managed {
             landmarkSplittingFeatureCollection = null;
         }
 
-
-//        graphHopper = new GraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
-//        graphHopper = new RunningGraphHopperOSM(landmarkSplittingFeatureCollection).forServer();
-        graphHopper = RunningGraphHopperOSM.getInstance(landmarkSplittingFeatureCollection).forServer();
+        // every managed instance owns its graph and edge scores, so several graphs can be served from one JVM
+        graphHopper = new RunningGraphHopperOSM(landmarkSplittingFeatureCollection);
+        graphHopper.forServer();
 
         String spatialRuleLocation = configuration.get("spatial_rules.location", "");
         if (!spatialRuleLocation.isEmpty()) {
@@ -71,6 +74,13 @@ public class GraphHopperManaged implements Managed {
             }
         }
         graphHopper.init(configuration);
+
+        List<String> warmUpFiles = new ArrayList<>();
+        for (String name : configuration.get("graph.warm_up.files", "").split(",")) {
+            if (!name.trim().isEmpty())
+                warmUpFiles.add(name.trim());
+        }
+        warmUp = warmUpFiles.isEmpty() ? null : new DataAccessWarmUp(warmUpFiles);
     }
 
     @Override
@@ -80,14 +90,53 @@ public class GraphHopperManaged implements Managed {
                 + ", data_reader_file:" + graphHopper.getDataReaderFile()
                 + ", flag_encoders:" + graphHopper.getEncodingManager()
                 + ", " + graphHopper.getGraphHopperStorage().toDetailsString());
+
+        if (warmUp != null) {
+            // the server accepts requests while the files are loaded, the storage health check reports the progress
+            warmUpThread = new Thread("graph-warm-up") {
+                @Override
+                public void run() {
+                    warmUp.warmUp(graphHopper.getGraphHopperStorage().getDirectory());
+                }
+            };
+            warmUpThread.setDaemon(true);
+            warmUpThread.start();
+        }
     }
 
-    GraphHopper getGraphHopper() {
+    RunningGraphHopperOSM getGraphHopper() {
         return graphHopper;
     }
 
+    /**
+     * @return the warm up of the memory mapped files or null if graph.warm_up.files is not set
+     */
+    DataAccessWarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Replaces the edge scores of the loaded graph with the ones from the specified CSV file.
+     *
+     * @param delta if true only the scores of the ways listed in the file are replaced
+     */
+    public void importEdgeScores(File file, boolean delta) throws IOException {
+        int updatedEdges = graphHopper.importEdgeScores(file, delta);
+        logger.info("imported edge scores from " + file + " for " + updatedEdges + " edges"
+                + (delta ? " (delta)" : ""));
+    }
+
     @Override
     public void stop() {
+        if (warmUpThread != null) {
+            // the files must not be touched after they were unmapped
+            warmUpThread.interrupt();
+            try {
+                warmUpThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         graphHopper.close();
     }
 
@@ -0,0 +1,53 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.graphhopper.util.StopWatch;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * This task reloads the running scores of the graph from the configured scores file without a
+ * restart. It is served on the admin port only: POST /tasks/reload-scores?delta=false
+ */
+public class ReloadScoresTask extends Task {
+
+    private final EdgeScoreReloader reloader;
+
+    public ReloadScoresTask(EdgeScoreReloader reloader) {
+        super("reload-scores");
+        this.reloader = reloader;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        boolean delta = false;
+        for (String value : parameters.get("delta")) {
+            if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value))
+                throw new IllegalArgumentException("delta has to be true or false but was " + value);
+            delta = Boolean.parseBoolean(value);
+        }
+
+        StopWatch sw = new StopWatch().start();
+        int edges = reloader.reload(delta);
+        output.println("reloaded the scores of " + edges + " edges" + (delta ? " (delta)" : "")
+                + " in " + sw.stop().getMillis() + "ms");
+    }
+}
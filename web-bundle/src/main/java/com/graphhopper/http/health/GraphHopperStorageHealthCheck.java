@@ -19,23 +19,46 @@
 package com.graphhopper.http.health;
 
 import com.codahale.metrics.health.HealthCheck;
+import com.graphhopper.storage.DataAccessWarmUp;
 import com.graphhopper.storage.GraphHopperStorage;
 
+import java.util.function.Supplier;
+
+/**
+ * Reports the storage as unhealthy until it is loaded and, if configured, until its memory mapped
+ * files are warmed up, so that a load balancer only sends requests once they are answered fast.
+ */
 public class GraphHopperStorageHealthCheck extends HealthCheck {
 
-    private final GraphHopperStorage graphHopperStorage;
+    private final Supplier<GraphHopperStorage> graphHopperStorage;
+    private final DataAccessWarmUp warmUp;
 
     public GraphHopperStorageHealthCheck(GraphHopperStorage graphHopperStorage) {
+        this(() -> graphHopperStorage, null);
+    }
+
+    /**
+     * @param graphHopperStorage supplies the storage or null if it is not yet loaded
+     * @param warmUp             the warm up to wait for or null
+     */
+    public GraphHopperStorageHealthCheck(Supplier<GraphHopperStorage> graphHopperStorage, DataAccessWarmUp warmUp) {
         this.graphHopperStorage = graphHopperStorage;
+        this.warmUp = warmUp;
     }
 
     @Override
     protected Result check() {
-        boolean valid = graphHopperStorage.getBounds().isValid();
-        if (valid) {
-            return Result.healthy();
-        } else {
+        GraphHopperStorage storage = graphHopperStorage.get();
+        if (storage == null || storage.isClosed())
+            return Result.unhealthy("GraphHopperStorage is not loaded.");
+
+        boolean valid = storage.getBounds().isValid();
+        if (!valid)
             return Result.unhealthy("GraphHopperStorage has invalid bounds.");
-        }
+
+        if (warmUp != null && !warmUp.isFinished())
+            return Result.unhealthy("Warming up " + Math.round(warmUp.getProgress() * 100) + "% of " + warmUp.getNames());
+
+        return Result.healthy();
     }
 }
@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.http.BulkRouter;
+import com.graphhopper.http.WebHelper;
+import com.graphhopper.storage.index.SnapBatch;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.graphhopper.util.Parameters.Routing.*;
+
+/**
+ * Calculates many routes in one request. The body contains the points of every route in GeoJSON
+ * order, e.g. {"points": [[[lon1,lat1],[lon2,lat2]], [[lon3,lat3],[lon4,lat4]]]}. The query
+ * parameters are the same for all routes. The points of all routes are snapped once, then the
+ * routes are calculated by the {@link BulkRouter} and streamed back as newline delimited JSON, one
+ * line per route in the order of the body. The response is started before all routes are
+ * calculated, so errors of a single route are written to its line, see BulkRouter.
+ */
+@Path("route/bulk")
+public class BulkRouteResource {
+
+    public static final String NDJSON = "application/x-ndjson";
+    private static final Logger logger = LoggerFactory.getLogger(BulkRouteResource.class);
+
+    private final GraphHopper graphHopper;
+    private final BulkRouter bulkRouter;
+    private final Boolean hasElevation;
+    private final int maxRoutes;
+    private final int maxPointsPerRoute;
+
+    @Inject
+    public BulkRouteResource(GraphHopper graphHopper, BulkRouter bulkRouter, CmdArgs configuration,
+                             @Named("hasElevation") Boolean hasElevation) {
+        this.graphHopper = graphHopper;
+        this.bulkRouter = bulkRouter;
+        this.hasElevation = hasElevation;
+        this.maxRoutes = configuration.getInt("web.bulk.max_routes", 10_000);
+        this.maxPointsPerRoute = configuration.getInt("web.bulk.max_points_per_route", 100);
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(NDJSON)
+    public Response doPost(
+            @Context UriInfo uriInfo,
+            BulkRouteRequest body,
+            @QueryParam(INSTRUCTIONS) @DefaultValue("false") boolean instructions,
+            @QueryParam(CALC_POINTS) @DefaultValue("false") boolean calcPoints,
+            @QueryParam("elevation") @DefaultValue("false") boolean enableElevation,
+            @QueryParam("points_encoded") @DefaultValue("true") boolean pointsEncoded,
+            @QueryParam("vehicle") @DefaultValue("car") String vehicleStr,
+            @QueryParam("weighting") @DefaultValue("fastest") String weighting,
+            @QueryParam("algorithm") @DefaultValue("") String algoStr,
+            @QueryParam("locale") @DefaultValue("en") String localeStr) {
+        StopWatch sw = new StopWatch().start();
+        if (body == null || body.getPoints().isEmpty())
+            throw new IllegalArgumentException("You have to pass the points of at least one route");
+        if (body.getPoints().size() > maxRoutes)
+            throw new IllegalArgumentException("Too many routes: " + body.getPoints().size() + ", the maximum is " + maxRoutes);
+        if (enableElevation && !hasElevation)
+            throw new IllegalArgumentException("Elevation not supported!");
+
+        List<GHRequest> requests = new ArrayList<>(body.getPoints().size());
+        List<GHPoint> allPoints = new ArrayList<>();
+        for (int i = 0; i < body.getPoints().size(); i++) {
+            List<GHPoint> points = body.getPoints().get(i);
+            if (points.size() > maxPointsPerRoute)
+                throw new IllegalArgumentException("Too many points in route " + i + ": " + points.size()
+                        + ", the maximum is " + maxPointsPerRoute);
+
+            GHRequest request = new GHRequest(points);
+            RouteResource.initHints(request.getHints(), uriInfo.getQueryParameters());
+            request.setVehicle(vehicleStr).
+                    setWeighting(weighting).
+                    setAlgorithm(algoStr).
+                    setLocale(localeStr).
+                    getHints().
+                    put(CALC_POINTS, calcPoints).
+                    put(INSTRUCTIONS, instructions);
+            requests.add(request);
+            allPoints.addAll(points);
+        }
+        SnapBatch snapBatch = graphHopper.snap(allPoints, vehicleStr);
+        float snapTook = sw.getCurrentSeconds();
+
+        StreamingOutput output = out -> {
+            bulkRouter.route(requests, snapBatch, (gen, response, took) ->
+                    WebHelper.writeJson(gen, response, instructions, calcPoints, enableElevation, pointsEncoded, took), out);
+            logger.info(requests.size() + " routes, " + snapBatch.size() + " distinct points, snapping took:" + snapTook
+                    + ", took:" + sw.stop().getSeconds() + ", " + algoStr + ", " + weighting + ", " + vehicleStr);
+        };
+        return Response.ok(output, NDJSON).build();
+    }
+
+    public static class BulkRouteRequest {
+        private List<List<GHPoint>> points = Collections.emptyList();
+
+        public List<List<GHPoint>> getPoints() {
+            return points;
+        }
+
+        public void setPoints(List<List<GHPoint>> points) {
+            this.points = points;
+        }
+    }
+}
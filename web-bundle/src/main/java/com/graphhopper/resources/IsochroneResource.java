@@ -68,45 +68,49 @@ public class IsochroneResource {
         if (!encodingManager.supports(vehicle))
             throw new IllegalArgumentException("vehicle not supported:" + vehicle);
 
-        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
-        EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
-        LocationIndex locationIndex = graphHopper.getLocationIndex();
-        QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
-        if (!qr.isValid())
-            throw new IllegalArgumentException("Point not found:" + point);
-
-        Graph graph = graphHopper.getGraphHopperStorage();
-        QueryGraph queryGraph = new QueryGraph(graph);
-        queryGraph.lookup(Collections.singletonList(qr));
-
-        HintsMap hintsMap = new HintsMap();
-        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
-
-        Weighting weighting = graphHopper.createWeighting(hintsMap, encoder, graph);
-        Isochrone isochrone = new Isochrone(queryGraph, weighting, reverseFlow);
-
         if (distanceInMeter > 0) {
             double maxMeter = 50 * 1000;
             if (distanceInMeter > maxMeter)
                 throw new IllegalArgumentException("Specify a limit of less than " + maxMeter / 1000f + "km");
             if (buckets > (distanceInMeter / 500))
                 throw new IllegalArgumentException("Specify buckets less than the number of explored kilometers");
-
-            isochrone.setDistanceLimit(distanceInMeter);
         } else {
-
             long maxSeconds = 80 * 60;
             if (timeLimitInSeconds > maxSeconds)
                 throw new IllegalArgumentException("Specify a limit of less than " + maxSeconds + " seconds");
             if (buckets > (timeLimitInSeconds / 60))
                 throw new IllegalArgumentException("Specify buckets less than the number of explored minutes");
-
-            isochrone.setTimeLimit(timeLimitInSeconds);
         }
 
-        List<List<Double[]>> list = isochrone.searchGPS(qr.getClosestNode(), buckets);
-        if (isochrone.getVisitedNodes() > graphHopper.getMaxVisitedNodes() / 5) {
-            throw new IllegalArgumentException("Server side reset: too many junction nodes would have to explored (" + isochrone.getVisitedNodes() + "). Let us know if you need this increased.");
+        HintsMap hintsMap = new HintsMap();
+        RouteResource.initHints(hintsMap, uriInfo.getQueryParameters());
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        // the weighting reads the edge scores, which must not be swapped while it is used
+        int[] visitedNodes = new int[1];
+        List<List<Double[]>> list = graphHopper.runLocked(() -> {
+            EdgeFilter edgeFilter = DefaultEdgeFilter.allEdges(encoder);
+            LocationIndex locationIndex = graphHopper.getLocationIndex();
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            if (!qr.isValid())
+                throw new IllegalArgumentException("Point not found:" + point);
+
+            Graph graph = graphHopper.getGraphHopperStorage();
+            QueryGraph queryGraph = new QueryGraph(graph);
+            queryGraph.lookup(Collections.singletonList(qr));
+
+            Weighting weighting = graphHopper.createWeighting(hintsMap, encoder, graph);
+            Isochrone isochrone = new Isochrone(queryGraph, weighting, reverseFlow);
+            if (distanceInMeter > 0)
+                isochrone.setDistanceLimit(distanceInMeter);
+            else
+                isochrone.setTimeLimit(timeLimitInSeconds);
+
+            List<List<Double[]>> result = isochrone.searchGPS(qr.getClosestNode(), buckets);
+            visitedNodes[0] = isochrone.getVisitedNodes();
+            return result;
+        });
+        if (visitedNodes[0] > graphHopper.getMaxVisitedNodes() / 5) {
+            throw new IllegalArgumentException("Server side reset: too many junction nodes would have to explored (" + visitedNodes[0] + "). Let us know if you need this increased.");
         }
 
         int counter = 0;
@@ -148,7 +152,7 @@ public class IsochroneResource {
             throw new IllegalArgumentException("type not supported:" + resultStr);
         }
 
-        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + isochrone.getVisitedNodes() + ", " + uriInfo.getQueryParameters());
+        logger.info("took: " + sw.getSeconds() + ", visited nodes:" + visitedNodes[0] + ", " + uriInfo.getQueryParameters());
         return Response.fromResponse(jsonSuccessResponse(calcRes, sw.stop().getSeconds()))
                 .header("X-GH-Took", "" + sw.stop().getSeconds() * 1000)
                 .build();
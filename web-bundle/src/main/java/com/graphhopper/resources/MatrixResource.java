@@ -0,0 +1,139 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.resources;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.util.HintsMap;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.exceptions.ConnectionNotFoundException;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.*;
+
+/**
+ * Calculates the weights, times and distances between many points in one request, in the format
+ * of the Matrix API as read by the GraphHopperMatrixWeb client. Either pass the same points as
+ * 'from' and 'to' via 'point' or pass 'from_point' and 'to_point'. The times are in seconds and
+ * the distances in meter. Pairs without a connection are an error, unless fail_fast=false is
+ * passed, then they are null.
+ */
+@Path("matrix")
+@Produces(MediaType.APPLICATION_JSON)
+public class MatrixResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixResource.class);
+    private static final Set<String> OUT_ARRAYS = new HashSet<>(Arrays.asList("weights", "times", "distances"));
+
+    private final GraphHopper graphHopper;
+
+    @Inject
+    public MatrixResource(GraphHopper graphHopper) {
+        this.graphHopper = graphHopper;
+    }
+
+    @GET
+    public Response doGet(
+            @Context UriInfo uriInfo,
+            @QueryParam("point") List<GHPoint> points,
+            @QueryParam("from_point") List<GHPoint> fromPoints,
+            @QueryParam("to_point") List<GHPoint> toPoints,
+            @QueryParam("out_array") List<String> outArrays,
+            @QueryParam("vehicle") @DefaultValue("car") String vehicleStr,
+            @QueryParam("weighting") @DefaultValue("fastest") String weighting,
+            @QueryParam("fail_fast") @DefaultValue("true") boolean failFast) {
+        StopWatch sw = new StopWatch().start();
+        if (!points.isEmpty()) {
+            if (!fromPoints.isEmpty() || !toPoints.isEmpty())
+                throw new IllegalArgumentException("Either pass point or from_point and to_point but not both");
+
+            fromPoints = points;
+            toPoints = points;
+        } else if (fromPoints.isEmpty() || toPoints.isEmpty()) {
+            throw new IllegalArgumentException("You have to pass at least one point or one from_point and one to_point");
+        }
+
+        if (outArrays.isEmpty())
+            outArrays = Collections.singletonList("weights");
+        for (String outArray : outArrays) {
+            if (!OUT_ARRAYS.contains(outArray))
+                throw new IllegalArgumentException("Unsupported out_array " + outArray + ", supported are " + OUT_ARRAYS);
+        }
+
+        HintsMap hints = new HintsMap();
+        RouteResource.initHints(hints, uriInfo.getQueryParameters());
+        hints.setVehicle(vehicleStr).setWeighting(weighting);
+        DistanceMatrix matrix = graphHopper.calcMatrix(fromPoints, toPoints, hints);
+
+        ObjectNode json = JsonNodeFactory.instance.objectNode();
+        ArrayNode weights = outArrays.contains("weights") ? json.putArray("weights") : null;
+        ArrayNode times = outArrays.contains("times") ? json.putArray("times") : null;
+        ArrayNode distances = outArrays.contains("distances") ? json.putArray("distances") : null;
+        for (int from = 0; from < matrix.getFromCount(); from++) {
+            ArrayNode weightRow = weights == null ? null : weights.addArray();
+            ArrayNode timeRow = times == null ? null : times.addArray();
+            ArrayNode distanceRow = distances == null ? null : distances.addArray();
+            for (int to = 0; to < matrix.getToCount(); to++) {
+                if (!matrix.isConnected(from, to)) {
+                    if (failFast) {
+                        Map<String, Object> details = new HashMap<>();
+                        details.put("from", from);
+                        details.put("to", to);
+                        throw new ConnectionNotFoundException("Connection between locations not found: from_point "
+                                + from + " to to_point " + to, details);
+                    }
+                    if (weightRow != null)
+                        weightRow.addNull();
+                    if (timeRow != null)
+                        timeRow.addNull();
+                    if (distanceRow != null)
+                        distanceRow.addNull();
+                    continue;
+                }
+
+                if (weightRow != null)
+                    weightRow.add(Helper.round(matrix.getWeight(from, to), 3));
+                if (timeRow != null)
+                    timeRow.add(Math.round(matrix.getTime(from, to) / 1000d));
+                if (distanceRow != null)
+                    distanceRow.add(Helper.round(matrix.getDistance(from, to), 1));
+            }
+        }
+
+        float took = sw.stop().getSeconds();
+        ObjectNode info = json.putObject("info");
+        info.putArray("copyrights")
+                .add("GraphHopper")
+                .add("OpenStreetMap contributors");
+        info.put("took", Math.round(took * 1000));
+        logger.info(fromPoints.size() + "x" + toPoints.size() + ", took:" + took + ", " + weighting + ", " + vehicleStr);
+        return Response.ok(json).header("X-GH-Took", "" + Math.round(took * 1000)).build();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import com.graphhopper.reader.osm.RunningGraphHopperOSM;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EdgeScoreReloaderTest {
+    private final File dir = new File("./target/tmp/edge-score-reloader");
+    private final File scoresFile = new File(dir, "scores.csv");
+    private RunningGraphHopperOSM graphHopper;
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(dir);
+        assertTrue(dir.mkdirs());
+        graphHopper = new RunningGraphHopperOSM();
+        graphHopper.init(new CmdArgs().
+                put("graph.location", new File(dir, "gh").getPath()).
+                put("graph.edge_scores.file", scoresFile.getPath()));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(dir);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReloadAfterQuietPeriod() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, true, 500);
+        reloader.start();
+        try {
+            // a file written in several steps is only read once, after it was not modified for the quiet period
+            long lastWrite = 0;
+            for (int i = 0; i < 3; i++) {
+                write(scoresFile, "way_id,scores\n" + i + "\n");
+                lastWrite = System.nanoTime();
+                Thread.sleep(100);
+            }
+
+            Long reload = reloader.reloads.poll(10, TimeUnit.SECONDS);
+            assertNotNull("no reload after the file was changed", reload);
+            assertTrue(reload - lastWrite >= TimeUnit.MILLISECONDS.toNanos(500));
+            assertNull(reloader.reloads.poll(1, TimeUnit.SECONDS));
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    @Test
+    public void testIgnoreOtherFiles() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, true, 100);
+        reloader.start();
+        try {
+            write(new File(dir, "other.csv"), "way_id,scores\n");
+            assertNull(reloader.reloads.poll(1, TimeUnit.SECONDS));
+
+            write(scoresFile, "way_id,scores\n");
+            assertNotNull(reloader.reloads.poll(10, TimeUnit.SECONDS));
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    @Test
+    public void testKeepWatchingAfterFailedReload() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, true, 100);
+        reloader.failures = 1;
+        reloader.start();
+        try {
+            write(scoresFile, "broken");
+            assertNotNull(reloader.reloads.poll(10, TimeUnit.SECONDS));
+
+            write(scoresFile, "way_id,scores\n");
+            assertNotNull(reloader.reloads.poll(10, TimeUnit.SECONDS));
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    @Test
+    public void testNoWatch() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, false, 100);
+        reloader.start();
+        try {
+            write(scoresFile, "way_id,scores\n");
+            assertNull(reloader.reloads.poll(1, TimeUnit.SECONDS));
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    @Test
+    public void testReloadTask() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, false, 100);
+        ReloadScoresTask task = new ReloadScoresTask(reloader);
+        assertEquals("reload-scores", task.getName());
+
+        StringWriter output = new StringWriter();
+        task.execute(ImmutableMultimap.of("delta", "true"), new PrintWriter(output, true));
+        assertNotNull(reloader.reloads.poll());
+        assertTrue(reloader.lastDelta);
+        assertTrue(output.toString(), output.toString().startsWith("reloaded the scores of 42 edges (delta)"));
+
+        task.execute(ImmutableMultimap.<String, String>of(), new PrintWriter(new StringWriter(), true));
+        assertNotNull(reloader.reloads.poll());
+        assertFalse(reloader.lastDelta);
+
+        try {
+            task.execute(ImmutableMultimap.of("delta", "yes"), new PrintWriter(new StringWriter(), true));
+            fail("invalid delta accepted");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(reloader.reloads.isEmpty());
+        }
+    }
+
+    @Test
+    public void testReloadTaskFailure() throws Exception {
+        RecordingReloader reloader = new RecordingReloader(graphHopper, false, 100);
+        reloader.failures = 1;
+        try {
+            new ReloadScoresTask(reloader).execute(ImmutableMultimap.<String, String>of(), new PrintWriter(new StringWriter(), true));
+            fail("failed reload not reported");
+        } catch (IOException ex) {
+            assertEquals("cannot read scores", ex.getMessage());
+        }
+    }
+
+    /**
+     * Records the reloads instead of reading the scores file into the graph.
+     */
+    private static class RecordingReloader extends EdgeScoreReloader {
+        final BlockingQueue<Long> reloads = new LinkedBlockingQueue<>();
+        volatile int failures;
+        volatile boolean lastDelta;
+
+        RecordingReloader(RunningGraphHopperOSM graphHopper, boolean watch, long quietPeriodMillis) {
+            super(graphHopper, watch, quietPeriodMillis, new MetricRegistry());
+        }
+
+        @Override
+        public synchronized int reload(boolean delta) throws IOException {
+            lastDelta = delta;
+            reloads.add(System.nanoTime());
+            if (failures > 0) {
+                failures--;
+                throw new IOException("cannot read scores");
+            }
+            return 42;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphhopper.http.GraphHopperApplication;
+import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BulkRouteResourceIT {
+    private static final String DIR = "./target/andorra-gh/";
+
+    private static final GraphHopperServerConfiguration config = new GraphHopperServerConfiguration();
+
+    static {
+        config.getGraphHopperConfiguration().merge(new CmdArgs().
+                put("graph.flag_encoders", "car").
+                put("prepare.ch.weightings", "fastest").
+                put("prepare.min_network_size", "0").
+                put("prepare.min_one_way_network_size", "0").
+                put("web.bulk.threads", "2").
+                put("web.bulk.max_routes", "10").
+                put("web.bulk.max_points_per_route", "3").
+                put("datareader.file", "../core/files/andorra.osm.pbf").
+                put("graph.location", DIR));
+    }
+
+    @ClassRule
+    public static final DropwizardAppRule<GraphHopperServerConfiguration> app = new DropwizardAppRule(
+            GraphHopperApplication.class, config);
+
+    @AfterClass
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testBulk() throws IOException {
+        String body = "{\"points\": ["
+                + "[[1.536198,42.554851],[1.548128,42.510071]],"
+                + "[[1.548128,42.510071],[1.536198,42.554851]],"
+                + "[[1.536198,42.554851],[-1.5,40.5]],"
+                + "[[1.536198,42.554851],[1.548128,42.510071]]]}";
+        Response response = app.client().target("http://localhost:8080/route/bulk").request().post(Entity.json(body));
+        assertEquals(200, response.getStatus());
+        String[] lines = response.readEntity(String.class).split("\n");
+        assertEquals(4, lines.length);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode[] routes = new JsonNode[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            routes[i] = objectMapper.readTree(lines[i]);
+            assertEquals(i, routes[i].get("index").asInt());
+        }
+
+        double distance = routes[0].get("paths").get(0).get("distance").asDouble();
+        assertTrue("distance wasn't correct:" + distance, distance > 9000 && distance < 9500);
+        assertFalse(routes[0].get("paths").get(0).has("instructions"));
+        assertTrue(routes[1].get("paths").get(0).get("distance").asDouble() > 9000);
+        assertTrue(routes[2].get("message").asText().contains("out of bounds"));
+        assertEquals(distance, routes[3].get("paths").get(0).get("distance").asDouble(), 1e-3);
+    }
+
+    @Test
+    public void testTooManyRoutes() {
+        StringBuilder body = new StringBuilder("{\"points\": [");
+        for (int i = 0; i < 11; i++) {
+            body.append(i == 0 ? "" : ",").append("[[1.536198,42.554851],[1.548128,42.510071]]");
+        }
+        body.append("]}");
+        Response response = app.client().target("http://localhost:8080/route/bulk").request().post(Entity.json(body.toString()));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("Too many routes"));
+    }
+
+    @Test
+    public void testTooManyPoints() {
+        String body = "{\"points\": ["
+                + "[[1.536198,42.554851],[1.548128,42.510071]],"
+                + "[[1.536198,42.554851],[1.548128,42.510071],[1.536198,42.554851],[1.548128,42.510071]]]}";
+        Response response = app.client().target("http://localhost:8080/route/bulk").request().post(Entity.json(body));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("Too many points in route 1"));
+    }
+}
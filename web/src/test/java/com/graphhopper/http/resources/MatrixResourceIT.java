@@ -0,0 +1,145 @@
+/*
+ *  Licensed to GraphHopper GmbH under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper GmbH licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http.resources;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.api.GHMRequest;
+import com.graphhopper.api.GHMatrixSyncRequester;
+import com.graphhopper.api.GraphHopperMatrixWeb;
+import com.graphhopper.api.GraphHopperWeb;
+import com.graphhopper.api.MatrixResponse;
+import com.graphhopper.http.GraphHopperApplication;
+import com.graphhopper.http.GraphHopperServerConfiguration;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MatrixResourceIT {
+    private static final String DIR = "./target/andorra-gh/";
+
+    private static final GraphHopperServerConfiguration config = new GraphHopperServerConfiguration();
+
+    static {
+        config.getGraphHopperConfiguration().merge(new CmdArgs().
+                put("graph.flag_encoders", "car").
+                put("prepare.ch.weightings", "fastest").
+                put("routing.ch.disabling_allowed", "true").
+                put("routing.max_matrix_points", "3").
+                put("prepare.min_network_size", "0").
+                put("prepare.min_one_way_network_size", "0").
+                put("datareader.file", "../core/files/andorra.osm.pbf").
+                put("graph.location", DIR));
+    }
+
+    @ClassRule
+    public static final DropwizardAppRule<GraphHopperServerConfiguration> app = new DropwizardAppRule(
+            GraphHopperApplication.class, config);
+
+    @AfterClass
+    public static void cleanUp() {
+        Helper.removeDir(new File(DIR));
+    }
+
+    @Test
+    public void testBasicQuery() {
+        final Response response = app.client().target("http://localhost:8080/matrix?point=42.554851,1.536198"
+                + "&point=42.510071,1.548128&out_array=distances&out_array=times").request().buildGet().invoke();
+        assertEquals(200, response.getStatus());
+        JsonNode json = response.readEntity(JsonNode.class);
+        assertFalse(json.has("weights"));
+        assertEquals(2, json.get("distances").size());
+        assertEquals(0, json.get("distances").get(0).get(0).asDouble(), 1e-3);
+        double distance = json.get("distances").get(0).get(1).asDouble();
+        assertTrue("distance wasn't correct:" + distance, distance > 9000 && distance < 9500);
+        assertTrue(json.get("times").get(1).get(0).asLong() > 0);
+    }
+
+    @Test
+    public void testMatrixWeb() {
+        GraphHopperMatrixWeb matrixWeb = new GraphHopperMatrixWeb(new GHMatrixSyncRequester("http://localhost:8080/matrix"));
+        GraphHopperWeb hopper = new GraphHopperWeb();
+        assertTrue(hopper.load("http://localhost:8080/route"));
+        List<GHPoint> points = Arrays.asList(new GHPoint(42.554851, 1.536198), new GHPoint(42.531896, 1.553278),
+                new GHPoint(42.510071, 1.548128));
+
+        GHMRequest request = new GHMRequest();
+        request.addAllPoints(points);
+        request.addOutArray("distances").addOutArray("times").addOutArray("weights");
+        request.setVehicle("car");
+        MatrixResponse matrix = matrixWeb.route(request);
+        assertFalse(matrix.getErrors().toString(), matrix.hasErrors());
+
+        GHMRequest flexRequest = new GHMRequest();
+        flexRequest.setFromPoints(points.subList(0, 1)).setToPoints(points);
+        flexRequest.addOutArray("distances");
+        flexRequest.setVehicle("car").getHints().put("ch.disable", true);
+        MatrixResponse flexMatrix = matrixWeb.route(flexRequest);
+        assertFalse(flexMatrix.getErrors().toString(), flexMatrix.hasErrors());
+
+        for (int from = 0; from < points.size(); from++) {
+            for (int to = 0; to < points.size(); to++) {
+                GHResponse rsp = hopper.route(new GHRequest(points.get(from), points.get(to)).setVehicle("car"));
+                assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+                assertEquals(rsp.getBest().getDistance(), matrix.getDistance(from, to), 1);
+                assertEquals(rsp.getBest().getTime(), matrix.getTime(from, to), 1000);
+                if (from == 0)
+                    assertEquals(matrix.getDistance(from, to), flexMatrix.getDistance(from, to), 1);
+            }
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        Response response = app.client().target("http://localhost:8080/matrix?point=42.554851,1.536198&out_array=paths").
+                request().buildGet().invoke();
+        assertEquals(400, response.getStatus());
+        assertTrue(response.readEntity(JsonNode.class).get("message").asText().contains("out_array"));
+
+        response = app.client().target("http://localhost:8080/matrix?point=42.554851,1.536198&from_point=42.510071,1.548128").
+                request().buildGet().invoke();
+        assertEquals(400, response.getStatus());
+    }
+
+    @Test
+    public void testTooManyPoints() {
+        Response response = app.client().target("http://localhost:8080/matrix?from_point=42.554851,1.536198"
+                + "&to_point=42.554851,1.536198&to_point=42.531896,1.553278&to_point=42.510071,1.548128&to_point=42.510071,1.548128").
+                request().buildGet().invoke();
+        assertEquals(400, response.getStatus());
+        String message = response.readEntity(JsonNode.class).get("message").asText();
+        assertTrue(message, message.contains("at most 3 from and to points"));
+
+        response = app.client().target("http://localhost:8080/matrix?from_point=42.554851,1.536198"
+                + "&to_point=42.554851,1.536198&to_point=42.531896,1.553278&to_point=42.510071,1.548128").
+                request().buildGet().invoke();
+        assertEquals(200, response.getStatus());
+    }
+}